@@ -1,25 +1,59 @@
 package com.peternaggschga.books;
 
+import com.peternaggschga.books.account.AccountDetails;
+import com.peternaggschga.books.account.TenantTransactionManager;
+import com.peternaggschga.books.snapshot.SnapshotCommand;
+import com.zaxxer.hikari.HikariDataSource;
 import lombok.NonNull;
 import nz.net.ultraq.thymeleaf.layoutdialect.LayoutDialect;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.crypto.factory.PasswordEncoderFactories;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.util.matcher.AndRequestMatcher;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.FileSystemUtils;
-import org.springframework.web.servlet.config.annotation.ViewControllerRegistry;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
 import java.io.File;
 import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Main application, configuring and starting {@link SpringApplication Spring}.
@@ -35,6 +69,11 @@ public class BooksApplication {
             LOG.error("Fehler beim Datenbankbackup: " + e);
             e.printStackTrace();
         }
+        if (SnapshotCommand.isCommand(args)) {
+            ConfigurableApplicationContext context = new SpringApplicationBuilder(BooksApplication.class)
+                    .web(WebApplicationType.NONE).run(args);
+            System.exit(SpringApplication.exit(context));
+        }
         SpringApplication.run(BooksApplication.class, args);
     }
 
@@ -65,12 +104,168 @@ public class BooksApplication {
         return new LayoutDialect();
     }
 
+    /**
+     * Restricts the queries of every transaction to the library of the signed in account.
+     *
+     * @param entityManagerFactory must not be null.
+     * @return a {@link TenantTransactionManager}, replacing the default transaction manager.
+     */
+    @Bean
+    public TenantTransactionManager transactionManager(@NonNull EntityManagerFactory entityManagerFactory) {
+        return new TenantTransactionManager(entityManagerFactory);
+    }
+
     @Configuration
     static class ApplicationWebConfig implements WebMvcConfigurer {
 
+        /**
+         * Adds ETags to all responses of the JSON API and answers conditional requests with 304 Not Modified.
+         *
+         * @return the {@link FilterRegistrationBean} of the {@link ShallowEtagHeaderFilter}.
+         */
+        @Bean
+        public FilterRegistrationBean<ShallowEtagHeaderFilter> apiEtagFilter() {
+            FilterRegistrationBean<ShallowEtagHeaderFilter> registration =
+                    new FilterRegistrationBean<>(new ShallowEtagHeaderFilter());
+            registration.addUrlPatterns("/api/*");
+            return registration;
+        }
+    }
+
+    /**
+     * Configuration running servlet requests and background tasks on virtual threads instead of the platform thread
+     * pools, enabled by setting books.execution.mode to virtual. Requires a Java 21 runtime.
+     * This mode is experimental and has not been benchmarked. The build still targets Java 17, as Spring Boot 2.6
+     * does not support Java 21, so the executor is looked up at runtime. Neither the throughput nor the effects of
+     * virtual threads pinned by synchronized blocks have been measured. The ExecutionModeBenchmark of the benchmark
+     * profile compares both modes on a Java 21 runtime, the platform mode stays the default until it has been run.
+     */
+    @Configuration
+    @ConditionalOnProperty(name = "books.execution.mode", havingValue = "virtual")
+    static class VirtualThreadConfig {
+
+        @Bean(destroyMethod = "shutdown")
+        public ExecutorService virtualThreadExecutor() {
+            try {
+                ExecutorService executor = (ExecutorService) MethodHandles.publicLookup()
+                        .findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+                                MethodType.methodType(ExecutorService.class))
+                        .invoke();
+                LOG.warn("Anfragen werden auf virtuellen Threads ausgeführt. Dieser Modus ist experimentell und "
+                        + "nicht vermessen");
+                return executor;
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                throw new IllegalStateException("Virtual threads require a Java 21 runtime, running on "
+                        + Runtime.version(), e);
+            } catch (Throwable e) {
+                throw new IllegalStateException("Could not create virtual thread executor", e);
+            }
+        }
+
+        @Bean
+        public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer(
+                @NonNull ExecutorService virtualThreadExecutor) {
+            return protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor);
+        }
+
+        @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+                AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+        public AsyncTaskExecutor applicationTaskExecutor(@NonNull ExecutorService virtualThreadExecutor) {
+            return new TaskExecutorAdapter(virtualThreadExecutor);
+        }
+    }
+
+    /**
+     * Configuration routing read-only transactions to a separate pool of read-only connections, so long reads never
+     * wait for connections held by writing transactions and vice versa. Enabled by setting
+     * books.datasource.read-routing to true, disabled by default.
+     * There is no replica: both pools connect to the same database configured by spring.datasource, the read pool
+     * only separates the connections and marks them read-only.
+     * The pool is chosen when a connection is fetched. With spring.jpa.open-in-view enabled, a web request keeps the
+     * connection of its first transaction until it ends, so all later transactions of the request, including writes,
+     * run on the pool chosen first. Routing per transaction requires spring.jpa.open-in-view=false, which in turn
+     * requires all views to be rendered without lazy loading.
+     */
+    @Configuration
+    @ConditionalOnProperty(name = "books.datasource.read-routing", havingValue = "true")
+    static class ReadRoutingDataSourceConfig {
+        private static final String WRITE_KEY = "write";
+        private static final String READ_KEY = "read";
+
+        ReadRoutingDataSourceConfig(@Value("${spring.jpa.open-in-view:true}") boolean openInView) {
+            if (openInView) {
+                LOG.warn("Lesende Transaktionen werden pro Anfrage statt pro Transaktion geroutet, solange "
+                        + "spring.jpa.open-in-view aktiviert ist");
+            }
+        }
+
+        @Bean(destroyMethod = "close")
+        public HikariDataSource writeDataSource(@NonNull DataSourceProperties properties) {
+            HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class)
+                    .build();
+            dataSource.setPoolName("books-write");
+            return dataSource;
+        }
+
+        @Bean(destroyMethod = "close")
+        public HikariDataSource readDataSource(@NonNull DataSourceProperties properties,
+                                               @Value("${books.datasource.read-pool-size:4}") int poolSize) {
+            HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class)
+                    .build();
+            dataSource.setPoolName("books-read");
+            dataSource.setReadOnly(true);
+            dataSource.setMaximumPoolSize(poolSize);
+            return dataSource;
+        }
+
+        /**
+         * The {@link DataSource} used by JPA. The connection is fetched lazily, as the read-only flag of a
+         * transaction is only known after the transaction manager requested the connection.
+         *
+         * @param writeDataSource must not be null.
+         * @param readDataSource  must not be null.
+         * @return a {@link LazyConnectionDataSourceProxy} of the routing {@link DataSource}.
+         */
+        @Bean
+        @Primary
+        public DataSource dataSource(@NonNull HikariDataSource writeDataSource,
+                                     @NonNull HikariDataSource readDataSource) {
+            AbstractRoutingDataSource routingDataSource = new AbstractRoutingDataSource() {
+                @Override
+                protected Object determineCurrentLookupKey() {
+                    return TransactionSynchronizationManager.isCurrentTransactionReadOnly() ? READ_KEY : WRITE_KEY;
+                }
+            };
+            routingDataSource.setTargetDataSources(Map.of(WRITE_KEY, writeDataSource, READ_KEY, readDataSource));
+            routingDataSource.setDefaultTargetDataSource(writeDataSource);
+            routingDataSource.afterPropertiesSet();
+            LOG.info("Lesende Transaktionen verwenden eigene Verbindungen");
+            return new LazyConnectionDataSourceProxy(routingDataSource);
+        }
+    }
+
+    /**
+     * Configuration of requests to the JSON API authenticating by HTTP Basic. These requests are stateless: they
+     * neither create nor use a session, so a forged cross-site request has no credentials to ride on and the
+     * {@link org.springframework.security.web.csrf.CsrfToken} is not required. API requests authenticated by the
+     * session cookie of a signed in browser are handled by {@link SecurityConfig} and require the token.
+     */
+    @Configuration
+    @Order(1)
+    public static class ApiSecurityConfig extends WebSecurityConfigurerAdapter {
+
         @Override
-        public void addViewControllers(ViewControllerRegistry registry) {
-            registry.addRedirectViewController("/", "/readings");
+        protected void configure(HttpSecurity security) throws Exception {
+            security.requestMatcher(new AndRequestMatcher(new AntPathRequestMatcher("/api/**"),
+                    request -> {
+                        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+                        return authorization != null && authorization.regionMatches(true, 0, "Basic ", 0, 6);
+                    }));
+            security.authorizeRequests().antMatchers("/api/v1/storage/**").hasRole(AccountDetails.ADMIN_ROLE)
+                    .anyRequest().authenticated();
+            security.httpBasic();
+            security.sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS);
+            security.csrf().disable();
         }
     }
 
@@ -81,7 +276,17 @@ public class BooksApplication {
 
         @Override
         protected void configure(HttpSecurity security) throws Exception {
-            security.authorizeRequests().antMatchers("/**").permitAll();
+            security.authorizeRequests().antMatchers("/login", "/register", "/webjars/**", "/js/**").permitAll()
+                    .antMatchers("/api/v1/storage/**").hasRole(AccountDetails.ADMIN_ROLE)
+                    .anyRequest().authenticated();
+            security.formLogin().loginPage("/login");
+            security.logout().logoutSuccessUrl("/login?logout");
+            security.httpBasic();
+        }
+
+        @Bean
+        public PasswordEncoder passwordEncoder() {
+            return PasswordEncoderFactories.createDelegatingPasswordEncoder();
         }
     }
 }
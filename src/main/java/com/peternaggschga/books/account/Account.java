@@ -0,0 +1,79 @@
+package com.peternaggschga.books.account;
+
+import lombok.NonNull;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+
+/**
+ * An entity representing a reader signing in to the application. Every {@link Account} owns the library of its
+ * tenant.
+ */
+@Entity
+public class Account {
+    @Id
+    @GeneratedValue
+    private long id;
+    @NotNull
+    @NotBlank
+    @Column(nullable = false, unique = true)
+    private String username;
+    @NotNull
+    @Column(nullable = false)
+    private String password;
+    private boolean defaultTenant;
+
+    /**
+     * No-arg constructor of {@link Account}, only used by {@link org.springframework.boot.SpringApplication Spring}.
+     */
+    protected Account() {
+    }
+
+    /**
+     * Creates a new {@link Account} instance with the given username and encoded password.
+     *
+     * @param username      must not be null or blank.
+     * @param password      must not be null, must be encoded.
+     * @param defaultTenant whether the {@link Account} owns the library of {@link Tenants#DEFAULT_TENANT}, else it
+     *                      owns a new, empty library.
+     */
+    public Account(@NonNull @NotBlank String username, @NonNull String password, boolean defaultTenant) {
+        if (username.isBlank()) {
+            throw new IllegalArgumentException("Username must not be blank");
+        }
+        this.username = username;
+        this.password = password;
+        this.defaultTenant = defaultTenant;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    /**
+     * Returns the id of the tenant owning the library of this {@link Account}. Apart from the {@link Account} owning
+     * the library of {@link Tenants#DEFAULT_TENANT}, the id of the {@link Account} identifies its tenant.
+     *
+     * @return the id of a tenant.
+     */
+    public long getTenantId() {
+        return defaultTenant ? Tenants.DEFAULT_TENANT : id;
+    }
+
+    @Override
+    public String toString() {
+        return username;
+    }
+}
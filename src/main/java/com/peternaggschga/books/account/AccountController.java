@@ -0,0 +1,61 @@
+package com.peternaggschga.books.account;
+
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.validation.Errors;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+
+/**
+ * A controller signing in and registering {@link Account}s.
+ */
+@Controller
+public class AccountController {
+    private static final Logger LOG = LoggerFactory.getLogger(AccountController.class);
+    @NotNull
+    private final AccountManagement management;
+
+    /**
+     * Creates a new {@link AccountController} instance with the given {@link AccountManagement}.
+     *
+     * @param management must not be null.
+     */
+    public AccountController(@NonNull AccountManagement management) {
+        this.management = management;
+    }
+
+    @GetMapping("/login")
+    public String showLogin() {
+        return "account/login";
+    }
+
+    @GetMapping("/register")
+    public String showRegistration(RegistrationForm form) {
+        return "account/register";
+    }
+
+    @PostMapping("/register")
+    public String register(Model model, @Valid RegistrationForm form, Errors result) {
+        if (!result.hasErrors() && management.isUsernameTaken(form.getUsername())) {
+            result.rejectValue("username", "register.username.taken");
+        }
+        if (result.hasErrors()) {
+            LOG.warn("Fehlerhafte Formulardaten: " + result.getAllErrors());
+            return "account/register";
+        }
+        try {
+            management.createAccount(form);
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Konto " + form.getUsername() + " konnte nicht angelegt werden: " + e.getMessage());
+            model.addAttribute("conflict", true);
+            return "account/register";
+        }
+        return "redirect:/login?registered";
+    }
+}
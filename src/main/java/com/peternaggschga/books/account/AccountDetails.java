@@ -0,0 +1,35 @@
+package com.peternaggschga.books.account;
+
+import lombok.NonNull;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.userdetails.User;
+
+/**
+ * The principal of a signed in {@link Account}, remembering the tenant of the {@link Account}. The {@link Account}
+ * owning the library of {@link Tenants#DEFAULT_TENANT} is the owner of the instance and additionally granted
+ * {@link AccountDetails#ADMIN_ROLE}, which is required for operations affecting all tenants.
+ */
+public class AccountDetails extends User {
+    /**
+     * The role of the owner of the instance.
+     */
+    public static final String ADMIN_ROLE = "ADMIN";
+    private static final String ROLE = "ROLE_READER";
+    private final long tenantId;
+
+    /**
+     * Creates a new {@link AccountDetails} instance of the given {@link Account}.
+     *
+     * @param account must not be null.
+     */
+    public AccountDetails(@NonNull Account account) {
+        super(account.getUsername(), account.getPassword(), account.getTenantId() == Tenants.DEFAULT_TENANT
+                ? AuthorityUtils.createAuthorityList(ROLE, "ROLE_" + ADMIN_ROLE)
+                : AuthorityUtils.createAuthorityList(ROLE));
+        this.tenantId = account.getTenantId();
+    }
+
+    public long getTenantId() {
+        return tenantId;
+    }
+}
@@ -0,0 +1,103 @@
+package com.peternaggschga.books.account;
+
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Service managing access to the {@link AccountRepository} and {@link Account} instances. Loads the {@link Account}s
+ * signing in for {@link org.springframework.security.core.SecurityContext Spring Security}.
+ */
+@Service
+@Transactional
+public class AccountManagement implements UserDetailsService {
+    private static final Logger LOG = LoggerFactory.getLogger(AccountManagement.class);
+    @NotNull
+    private final AccountRepository accountRepository;
+    @NotNull
+    private final PasswordEncoder passwordEncoder;
+    @NotNull
+    private final String owner;
+
+    /**
+     * Creates a new {@link AccountManagement} instance with the given {@link AccountRepository},
+     * {@link PasswordEncoder} and owner of the existing library.
+     *
+     * @param accountRepository must not be null.
+     * @param passwordEncoder   must not be null.
+     * @param owner             the username of the {@link Account} taking over the library of
+     *                          {@link Tenants#DEFAULT_TENANT}, can be set on the command line by
+     *                          --books.accounts.owner=name. If blank, no {@link Account} takes over the library.
+     */
+    public AccountManagement(@NonNull AccountRepository accountRepository, @NonNull PasswordEncoder passwordEncoder,
+                             @Value("${books.accounts.owner:}") @NonNull String owner) {
+        this.accountRepository = accountRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.owner = owner.strip();
+    }
+
+    /**
+     * Creates a new {@link Account} with the given username and password. Only an {@link Account} registered with
+     * the configured owner username takes over the library of {@link Tenants#DEFAULT_TENANT}, containing all data
+     * created before accounts existed, and only if no other {@link Account} owns it yet. Every other {@link Account}
+     * starts with an empty library of its own, so registering early never grants access to existing data.
+     *
+     * @param username must not be null or blank, must not be taken.
+     * @param password must not be null or blank, is encoded before it is saved.
+     * @return the new {@link Account} instance.
+     * @throws IllegalArgumentException if the username is already taken.
+     */
+    public Account createAccount(@NonNull @NotBlank String username, @NonNull @NotBlank String password) {
+        if (accountRepository.existsByUsername(username)) {
+            throw new IllegalArgumentException("Username is already taken");
+        }
+        boolean defaultTenant = !owner.isEmpty() && owner.equals(username)
+                && !accountRepository.existsByDefaultTenantTrue();
+        Account account = accountRepository.save(new Account(username, passwordEncoder.encode(password),
+                defaultTenant));
+        LOG.info("Konto " + account + " angelegt" + (defaultTenant ? " mit der bestehenden Bibliothek" : ""));
+        return account;
+    }
+
+    /**
+     * Creates a new {@link Account} with the given form.
+     * Wrapper function of {@link AccountManagement#createAccount(String, String)}.
+     *
+     * @param form must be valid, must not be null.
+     * @return the new {@link Account} instance.
+     * @see AccountManagement#createAccount(String, String)
+     */
+    @SuppressWarnings("UnusedReturnValue")
+    public Account createAccount(@NonNull @Valid RegistrationForm form) {
+        return createAccount(form.getUsername(), form.getPassword());
+    }
+
+    /**
+     * Returns whether an {@link Account} with the given username exists.
+     *
+     * @param username must not be null.
+     * @return true if the username is taken.
+     */
+    @Transactional(readOnly = true)
+    public boolean isUsernameTaken(@NonNull String username) {
+        return accountRepository.existsByUsername(username);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public UserDetails loadUserByUsername(String username) {
+        return accountRepository.findByUsername(username).map(AccountDetails::new)
+                .orElseThrow(() -> new UsernameNotFoundException("Unknown username " + username));
+    }
+}
@@ -0,0 +1,36 @@
+package com.peternaggschga.books.account;
+
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+/**
+ * An interface defining custom queries. Extends {@link CrudRepository} of {@link Account}s.
+ */
+@Repository
+public interface AccountRepository extends CrudRepository<Account, Long> {
+
+    /**
+     * Returns the {@link Account} with the given username.
+     *
+     * @param username must not be null.
+     * @return an {@link Optional} containing the {@link Account}, empty if the username does not exist.
+     */
+    Optional<Account> findByUsername(String username);
+
+    /**
+     * Returns whether an {@link Account} with the given username exists.
+     *
+     * @param username must not be null.
+     * @return true if the username is taken.
+     */
+    boolean existsByUsername(String username);
+
+    /**
+     * Returns whether an {@link Account} owns the library of {@link Tenants#DEFAULT_TENANT}.
+     *
+     * @return true if the existing library was taken over.
+     */
+    boolean existsByDefaultTenantTrue();
+}
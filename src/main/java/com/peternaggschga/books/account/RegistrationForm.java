@@ -0,0 +1,34 @@
+package com.peternaggschga.books.account;
+
+import org.hibernate.validator.constraints.Length;
+
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+
+/**
+ * A container class for validation of form inputs registering new {@link Account}s.
+ */
+public class RegistrationForm {
+    @NotNull
+    @NotBlank
+    @Length(max = 64)
+    @SuppressWarnings("FieldMayBeFinal")
+    private String username;
+    @NotNull
+    @Length(min = 8, max = 128)
+    @SuppressWarnings("FieldMayBeFinal")
+    private String password;
+
+    public RegistrationForm(String username, String password) {
+        this.username = username;
+        this.password = password;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+}
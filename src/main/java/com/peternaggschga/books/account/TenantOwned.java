@@ -0,0 +1,16 @@
+package com.peternaggschga.books.account;
+
+/**
+ * An entity belonging to the library of a single tenant.
+ *
+ * @see Tenants
+ */
+public interface TenantOwned {
+
+    /**
+     * Returns the id of the tenant owning this entity.
+     *
+     * @return the id of a tenant, {@link Tenants#DEFAULT_TENANT} for entities created before accounts existed.
+     */
+    long getTenantId();
+}
@@ -0,0 +1,45 @@
+package com.peternaggschga.books.account;
+
+import lombok.NonNull;
+import org.hibernate.Session;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.OptionalLong;
+
+/**
+ * A {@link JpaTransactionManager} enabling the {@link Tenants#FILTER} for the tenant of the current thread whenever a
+ * transaction begins, so all JPQL and criteria queries only return entities of that tenant. Loading entities by id
+ * bypasses Hibernate filters, these have to be checked by {@link Tenants#isAccessible(TenantOwned)}.
+ */
+public class TenantTransactionManager extends JpaTransactionManager {
+
+    /**
+     * Creates a new {@link TenantTransactionManager} instance with the given {@link EntityManagerFactory}.
+     *
+     * @param entityManagerFactory must not be null.
+     */
+    public TenantTransactionManager(@NonNull EntityManagerFactory entityManagerFactory) {
+        super(entityManagerFactory);
+    }
+
+    @Override
+    protected void doBegin(@NonNull Object transaction, @NonNull TransactionDefinition definition) {
+        super.doBegin(transaction, definition);
+        EntityManagerHolder holder = (EntityManagerHolder) TransactionSynchronizationManager
+                .getResource(obtainEntityManagerFactory());
+        if (holder == null) {
+            return;
+        }
+        Session session = holder.getEntityManager().unwrap(Session.class);
+        OptionalLong tenant = Tenants.getCurrentTenant();
+        if (tenant.isPresent()) {
+            session.enableFilter(Tenants.FILTER).setParameter(Tenants.FILTER_PARAMETER, tenant.getAsLong());
+        } else {
+            session.disableFilter(Tenants.FILTER);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.peternaggschga.books.account;
+
+import lombok.NonNull;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.OptionalLong;
+
+/**
+ * Resolves the tenant of the current thread. Requests of a signed in {@link Account} are bound to the library of its
+ * tenant, background tasks and startup code run without a tenant and see the libraries of all tenants.
+ */
+public final class Tenants {
+    /**
+     * The tenant owning all data created before accounts existed. It is assigned to the first {@link Account}.
+     */
+    public static final long DEFAULT_TENANT = 0;
+    /**
+     * The name of the column referencing the tenant in the tables of all {@link TenantOwned} entities.
+     */
+    public static final String COLUMN = "tenant_id";
+    /**
+     * The name of the Hibernate filter restricting queries to a single tenant.
+     */
+    public static final String FILTER = "tenant";
+    /**
+     * The name of the parameter of {@link Tenants#FILTER}.
+     */
+    public static final String FILTER_PARAMETER = "tenantId";
+
+    private Tenants() {
+    }
+
+    /**
+     * Returns the tenant of the {@link Account} signed in on the current thread.
+     *
+     * @return an {@link OptionalLong} containing the id of the tenant, empty if no {@link Account} is signed in.
+     */
+    public static OptionalLong getCurrentTenant() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof AccountDetails)) {
+            return OptionalLong.empty();
+        }
+        return OptionalLong.of(((AccountDetails) authentication.getPrincipal()).getTenantId());
+    }
+
+    /**
+     * Returns the tenant new entities are assigned to, i.e. the tenant of the signed in {@link Account} or
+     * {@link Tenants#DEFAULT_TENANT} if there is none.
+     *
+     * @return the id of a tenant.
+     */
+    public static long getCurrentTenantOrDefault() {
+        return getCurrentTenant().orElse(DEFAULT_TENANT);
+    }
+
+    /**
+     * Returns whether the given entity may be accessed on the current thread, i.e. whether it belongs to the tenant of
+     * the signed in {@link Account} or no {@link Account} is signed in.
+     *
+     * @param entity must not be null.
+     * @return true if the entity is accessible.
+     */
+    public static boolean isAccessible(@NonNull TenantOwned entity) {
+        OptionalLong tenant = getCurrentTenant();
+        return tenant.isEmpty() || tenant.getAsLong() == entity.getTenantId();
+    }
+}
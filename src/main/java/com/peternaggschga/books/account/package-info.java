@@ -0,0 +1,11 @@
+/**
+ * Accounts of the readers using the application and the partitioning of their libraries. Every
+ * {@link com.peternaggschga.books.account.TenantOwned} entity belongs to the library of a tenant, the filter defined
+ * here restricts all queries to the library of the signed in {@link com.peternaggschga.books.account.Account}.
+ */
+@FilterDef(name = Tenants.FILTER, parameters = @ParamDef(name = Tenants.FILTER_PARAMETER, type = "long"),
+        defaultCondition = Tenants.COLUMN + " = :" + Tenants.FILTER_PARAMETER)
+package com.peternaggschga.books.account;
+
+import org.hibernate.annotations.FilterDef;
+import org.hibernate.annotations.ParamDef;
@@ -0,0 +1,36 @@
+package com.peternaggschga.books.api;
+
+import lombok.NonNull;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.validation.constraints.NotNull;
+import java.util.List;
+
+/**
+ * A controller executing batches of {@link BatchOperation}s sent to the JSON API.
+ */
+@RestController
+public class BatchApiController {
+    @NotNull
+    private final BatchService batchService;
+
+    /**
+     * Creates a new {@link BatchApiController} instance with the given {@link BatchService}.
+     *
+     * @param batchService must not be null.
+     */
+    public BatchApiController(@NonNull BatchService batchService) {
+        this.batchService = batchService;
+    }
+
+    @PostMapping("/api/v1/batch")
+    public ResponseEntity<List<BatchResult>> executeBatch(@RequestBody List<BatchOperation> operations) {
+        List<BatchResult> results = batchService.execute(operations);
+        boolean succeeded = results.stream().allMatch(result -> result.getStatus() == BatchResult.Status.OK);
+        return ResponseEntity.status(succeeded ? HttpStatus.OK : HttpStatus.UNPROCESSABLE_ENTITY).body(results);
+    }
+}
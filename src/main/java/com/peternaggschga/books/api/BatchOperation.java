@@ -0,0 +1,45 @@
+package com.peternaggschga.books.api;
+
+import java.util.Map;
+
+/**
+ * A single create, update or delete operation of a batch request of the JSON API.
+ */
+public class BatchOperation {
+    private String op;
+    private String type;
+    private Long id;
+    private Map<String, Object> data;
+
+    public String getOp() {
+        return op;
+    }
+
+    public void setOp(String op) {
+        this.op = op;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Map<String, Object> getData() {
+        return data;
+    }
+
+    public void setData(Map<String, Object> data) {
+        this.data = data;
+    }
+}
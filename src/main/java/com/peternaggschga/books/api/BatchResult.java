@@ -0,0 +1,75 @@
+package com.peternaggschga.books.api;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.NonNull;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * The result of a single {@link BatchOperation}.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchResult {
+    private final int index;
+    @NotNull
+    private final Status status;
+    private final Long id;
+    private final String error;
+
+    /**
+     * Creates a new {@link BatchResult} instance with the given index, {@link Status}, id and error.
+     *
+     * @param index  the index of the operation in the batch.
+     * @param status must not be null.
+     * @param id     the id of the affected entity, can be null.
+     * @param error  a description of the error, can be null.
+     */
+    public BatchResult(int index, @NonNull Status status, Long id, String error) {
+        this.index = index;
+        this.status = status;
+        this.id = id;
+        this.error = error;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * The possible outcomes of a {@link BatchOperation}.
+     */
+    public enum Status {
+        /**
+         * The operation was executed and committed.
+         */
+        OK,
+        /**
+         * The operation was not executed as it is malformed or its data is invalid.
+         */
+        INVALID,
+        /**
+         * The operation failed during execution, the whole batch was rolled back.
+         */
+        FAILED,
+        /**
+         * The operation was executed but rolled back, as another operation failed.
+         */
+        ROLLED_BACK,
+        /**
+         * The operation was not executed, as another operation is invalid or failed.
+         */
+        SKIPPED
+    }
+}
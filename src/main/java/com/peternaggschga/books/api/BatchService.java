@@ -0,0 +1,243 @@
+package com.peternaggschga.books.api;
+
+import com.peternaggschga.books.api.BatchResult.Status;
+import com.peternaggschga.books.author.Author;
+import com.peternaggschga.books.author.AuthorManagement;
+import com.peternaggschga.books.books.BookManagement;
+import com.peternaggschga.books.books.book.Book;
+import com.peternaggschga.books.books.book.EditBookForm;
+import com.peternaggschga.books.books.series.EditSeriesForm;
+import com.peternaggschga.books.reading.EditReadingForm;
+import com.peternaggschga.books.reading.ReadingManagement;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import javax.validation.constraints.NotNull;
+import java.util.*;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Service executing batches of {@link BatchOperation}s on {@link Book}s, series and readings. All operations are
+ * validated first, afterwards they are executed in a single transaction. If one operation fails, the whole batch is
+ * rolled back.
+ */
+@Service
+public class BatchService {
+    /**
+     * The maximum number of operations of a single batch.
+     */
+    public static final int MAX_OPERATIONS = 1000;
+    private static final Logger LOG = LoggerFactory.getLogger(BatchService.class);
+    @NotNull
+    private final BookManagement bookManagement;
+    @NotNull
+    private final AuthorManagement authorManagement;
+    @NotNull
+    private final ReadingManagement readingManagement;
+    @NotNull
+    private final Validator validator;
+    @NotNull
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Creates a new {@link BatchService} instance with the given {@link BookManagement}, {@link AuthorManagement},
+     * {@link ReadingManagement}, {@link Validator} and {@link PlatformTransactionManager}.
+     *
+     * @param bookManagement     must not be null.
+     * @param authorManagement   must not be null.
+     * @param readingManagement  must not be null.
+     * @param validator          must not be null.
+     * @param transactionManager must not be null.
+     */
+    public BatchService(@NonNull BookManagement bookManagement, @NonNull AuthorManagement authorManagement,
+                        @NonNull ReadingManagement readingManagement, @NonNull Validator validator,
+                        @NonNull PlatformTransactionManager transactionManager) {
+        this.bookManagement = bookManagement;
+        this.authorManagement = authorManagement;
+        this.readingManagement = readingManagement;
+        this.validator = validator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Validates and executes the given {@link BatchOperation}s. Operations are only executed if all of them are
+     * valid and only committed if all of them succeed.
+     *
+     * @param operations must not be null, must not contain more than {@link BatchService#MAX_OPERATIONS} elements.
+     * @return a {@link List} containing a {@link BatchResult} for every operation in the same order.
+     * @throws IllegalArgumentException if operations contains too many elements.
+     */
+    public List<BatchResult> execute(@NonNull List<BatchOperation> operations) {
+        if (operations.size() > MAX_OPERATIONS) {
+            throw new IllegalArgumentException("Batch must not contain more than " + MAX_OPERATIONS + " operations");
+        }
+        List<LongSupplier> actions = new ArrayList<>(operations.size());
+        BatchResult[] results = new BatchResult[operations.size()];
+        boolean valid = true;
+        for (int i = 0; i < operations.size(); i++) {
+            try {
+                actions.add(prepare(operations.get(i)));
+            } catch (RuntimeException e) {
+                results[i] = new BatchResult(i, Status.INVALID, operations.get(i).getId(), e.getMessage());
+                actions.add(null);
+                valid = false;
+            }
+        }
+        if (!valid) {
+            return complete(results, Status.SKIPPED);
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (int i = 0; i < actions.size(); i++) {
+                    try {
+                        results[i] = new BatchResult(i, Status.OK, actions.get(i).getAsLong(), null);
+                    } catch (RuntimeException e) {
+                        LOG.warn("Fehler beim Ausführen von Operation " + i + " des Batches: " + e);
+                        status.setRollbackOnly();
+                        results[i] = new BatchResult(i, Status.FAILED, operations.get(i).getId(), e.getMessage());
+                        for (int j = 0; j < i; j++) {
+                            results[j] = new BatchResult(j, Status.ROLLED_BACK, results[j].getId(), null);
+                        }
+                        return;
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            LOG.warn("Fehler beim Speichern des Batches: " + e);
+            for (int i = 0; i < results.length; i++) {
+                results[i] = new BatchResult(i, Status.FAILED, operations.get(i).getId(), e.getMessage());
+            }
+        }
+        return complete(results, Status.SKIPPED);
+    }
+
+    private List<BatchResult> complete(@NonNull BatchResult[] results, @NonNull Status missing) {
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                results[i] = new BatchResult(i, missing, null, null);
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    private LongSupplier prepare(@NonNull BatchOperation operation) {
+        String op = Objects.requireNonNull(operation.getOp(), "Operation must not be null");
+        String type = Objects.requireNonNull(operation.getType(), "Type must not be null");
+        if (!op.equals("create")) {
+            Objects.requireNonNull(operation.getId(), "Id must not be null for operation " + op);
+        }
+        Map<String, Object> data = operation.getData() == null ? Map.of() : operation.getData();
+        switch (type + ":" + op) {
+            case "book:create":
+            case "book:update":
+                return prepareBook(operation.getId(), data);
+            case "book:delete":
+                return () -> {
+                    bookManagement.deleteBook(operation.getId());
+                    return operation.getId();
+                };
+            case "series:create":
+            case "series:update":
+                return prepareSeries(operation.getId(), data);
+            case "series:delete":
+                return () -> {
+                    bookManagement.deleteSeries(operation.getId());
+                    return operation.getId();
+                };
+            case "reading:create":
+            case "reading:update":
+                return prepareReading(operation.getId(), data);
+            case "reading:delete":
+                return () -> {
+                    readingManagement.deleteReading(operation.getId());
+                    return operation.getId();
+                };
+            default:
+                throw new IllegalArgumentException("Unknown operation " + op + " of type " + type);
+        }
+    }
+
+    private LongSupplier prepareBook(Long id, @NonNull Map<String, Object> data) {
+        EditBookForm form = validate(new EditBookForm(getString(data, "title"), getIds(data, "authors"),
+                getString(data, "published"), getString(data, "isbn"), getInteger(data, "pages"),
+                getString(data, "language"), getIds(data, "series"), getLong(data, "version")));
+        return () -> {
+            Set<Author> authors = form.getAuthors().stream()
+                    .map(authorManagement::findAuthorById).collect(Collectors.toSet());
+            Book book = id == null ? bookManagement.createBook(form, authors)
+                    : bookManagement.updateBook(id, form, authors);
+            bookManagement.setSeriesOfBook(book, form.getSeries());
+            return book.getId();
+        };
+    }
+
+    private LongSupplier prepareSeries(Long id, @NonNull Map<String, Object> data) {
+        EditSeriesForm form = validate(new EditSeriesForm(getString(data, "title"), getIds(data, "books"),
+                getLong(data, "version")));
+        return () -> id == null ? bookManagement.createSeries(form).getId()
+                : bookManagement.updateSeries(id, form).getId();
+    }
+
+    private LongSupplier prepareReading(Long id, @NonNull Map<String, Object> data) {
+        String end = getString(data, "end");
+        EditReadingForm form = validate(new EditReadingForm(getLong(data, "book"), getString(data, "beginning"),
+                end == null ? "" : end, getInteger(data, "pagesPerHour"), getLong(data, "version")));
+        return () -> {
+            Book book = bookManagement.findBookById(form.getBookId());
+            return id == null ? readingManagement.createReading(form, book).getId()
+                    : readingManagement.updateReading(id, form, book).getId();
+        };
+    }
+
+    private <T> T validate(@NonNull T form) {
+        Set<ConstraintViolation<T>> violations = validator.validate(form);
+        if (!violations.isEmpty()) {
+            throw new IllegalArgumentException(violations.stream()
+                    .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                    .sorted().collect(Collectors.joining(", ")));
+        }
+        return form;
+    }
+
+    private static String getString(@NonNull Map<String, Object> data, @NonNull String key) {
+        Object value = data.get(key);
+        return value == null ? null : value.toString();
+    }
+
+    private static Long getLong(@NonNull Map<String, Object> data, @NonNull String key) {
+        Object value = data.get(key);
+        return value == null ? null : toNumber(key, value).longValue();
+    }
+
+    private static Integer getInteger(@NonNull Map<String, Object> data, @NonNull String key) {
+        Object value = data.get(key);
+        return value == null ? null : toNumber(key, value).intValue();
+    }
+
+    private static List<Long> getIds(@NonNull Map<String, Object> data, @NonNull String key) {
+        Object value = data.get(key);
+        if (value == null) {
+            return null;
+        }
+        if (!(value instanceof Collection)) {
+            throw new IllegalArgumentException(key + " must be a list of ids");
+        }
+        return ((Collection<?>) value).stream().map(id -> toNumber(key, id).longValue())
+                .collect(Collectors.toList());
+    }
+
+    private static Number toNumber(@NonNull String key, Object value) {
+        if (!(value instanceof Number)) {
+            throw new IllegalArgumentException(key + " must be a number");
+        }
+        return (Number) value;
+    }
+}
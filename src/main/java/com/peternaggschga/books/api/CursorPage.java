@@ -0,0 +1,80 @@
+package com.peternaggschga.books.api;
+
+import lombok.NonNull;
+
+import javax.validation.constraints.NotNull;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A page of resources returned by the JSON API. The next cursor is opaque to clients and null on the last page.
+ */
+public class CursorPage {
+    /**
+     * The maximum number of items of a page.
+     */
+    public static final int MAX_LIMIT = 500;
+    @NotNull
+    private final List<Map<String, Object>> items;
+    private final String next;
+
+    /**
+     * Creates a new {@link CursorPage} instance with the given items. If the page is full, a cursor pointing behind its
+     * last item is created.
+     *
+     * @param items must not be null, must be ordered by id ascending.
+     * @param limit the maximum number of items of a page.
+     */
+    public CursorPage(@NonNull List<Map<String, Object>> items, int limit) {
+        this.items = items;
+        this.next = items.isEmpty() || items.size() < limit ? null
+                : encode((Long) items.get(items.size() - 1).get(ResourceDefinition.ID));
+    }
+
+    public List<Map<String, Object>> getItems() {
+        return items;
+    }
+
+    public String getNext() {
+        return next;
+    }
+
+    /**
+     * Returns the id encoded in the given cursor. Resources with ids greater than the returned one follow the cursor.
+     *
+     * @param cursor can be null, in that case the cursor points before the first resource.
+     * @return the id encoded in cursor.
+     * @throws IllegalArgumentException if the cursor is malformed.
+     */
+    public static long decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return Long.MIN_VALUE;
+        }
+        try {
+            return Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor " + cursor, e);
+        }
+    }
+
+    /**
+     * Checks whether the given limit is a valid page size.
+     *
+     * @param limit must be positive and at most {@link CursorPage#MAX_LIMIT}.
+     * @return limit.
+     * @throws IllegalArgumentException if the limit is not valid.
+     */
+    public static int checkLimit(int limit) {
+        if (limit <= 0 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_LIMIT);
+        }
+        return limit;
+    }
+
+    private static String encode(long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(Long.toString(id).getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,109 @@
+package com.peternaggschga.books.api;
+
+import lombok.NonNull;
+
+import javax.validation.constraints.NotNull;
+import java.util.*;
+
+/**
+ * Describes how an entity is exposed by the JSON API: which fields exist and which JPQL paths they are read from.
+ * Attributes are single values that are selected directly, collections are lists of ids of associated entities.
+ */
+public class ResourceDefinition {
+    /**
+     * Name of the field every resource has, containing the id of the entity.
+     */
+    public static final String ID = "id";
+    @NotNull
+    private final Class<?> entity;
+    @NotNull
+    private final Map<String, String> attributes = new LinkedHashMap<>();
+    @NotNull
+    private final Map<String, String> collections = new LinkedHashMap<>();
+
+    /**
+     * Creates a new {@link ResourceDefinition} instance for the given entity, only containing the field
+     * {@link ResourceDefinition#ID}.
+     *
+     * @param entity must not be null, must be a JPA entity.
+     */
+    public ResourceDefinition(@NonNull Class<?> entity) {
+        this.entity = entity;
+        attributes.put(ID, ID);
+    }
+
+    /**
+     * Adds an attribute field with the given name that is read from the attribute with the same name.
+     *
+     * @param name must not be null.
+     * @return this instance.
+     */
+    public ResourceDefinition withAttribute(@NonNull String name) {
+        return withAttribute(name, name);
+    }
+
+    /**
+     * Adds an attribute field with the given name that is read from the given path.
+     *
+     * @param name must not be null.
+     * @param path must not be null, relative to the entity (e.g. book.id).
+     * @return this instance.
+     */
+    public ResourceDefinition withAttribute(@NonNull String name, @NonNull String path) {
+        attributes.put(name, path);
+        return this;
+    }
+
+    /**
+     * Adds a collection field with the given name containing the ids of the entities associated by the given path.
+     *
+     * @param name must not be null.
+     * @param path must not be null, must be a to-many association of the entity.
+     * @return this instance.
+     */
+    public ResourceDefinition withCollection(@NonNull String name, @NonNull String path) {
+        collections.put(name, path);
+        return this;
+    }
+
+    public String getEntityName() {
+        return entity.getSimpleName();
+    }
+
+    public Map<String, String> getAttributes() {
+        return Collections.unmodifiableMap(attributes);
+    }
+
+    public Map<String, String> getCollections() {
+        return Collections.unmodifiableMap(collections);
+    }
+
+    /**
+     * Parses the fields parameter of a request into a {@link Set} of field names. The id is always included.
+     * A null or blank parameter selects all fields.
+     *
+     * @param fields comma separated field names, can be null.
+     * @return a {@link Set} of field names in the order of the definition.
+     * @throws IllegalArgumentException if fields contains an unknown field.
+     */
+    public Set<String> parseFields(String fields) {
+        Set<String> result = new LinkedHashSet<>();
+        if (fields == null || fields.isBlank()) {
+            result.addAll(attributes.keySet());
+            result.addAll(collections.keySet());
+            return result;
+        }
+        Set<String> requested = new HashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (!attributes.containsKey(name) && !collections.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown field " + name + " of " + getEntityName());
+            }
+            requested.add(name);
+        }
+        result.add(ID);
+        attributes.keySet().stream().filter(requested::contains).forEach(result::add);
+        collections.keySet().stream().filter(requested::contains).forEach(result::add);
+        return result;
+    }
+}
@@ -0,0 +1,96 @@
+package com.peternaggschga.books.api;
+
+import lombok.NonNull;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * A repository reading resources of the JSON API. Only the columns of the requested fields are selected, collections
+ * are only joined if they were requested.
+ */
+@Repository
+public class SparseResourceRepository {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Returns at most limit resources with ids greater than after, ordered by id ascending.
+     *
+     * @param definition must not be null.
+     * @param fields     must not be null, must be parsed by {@link ResourceDefinition#parseFields(String)}.
+     * @param after      the id of the last resource of the previous page.
+     * @param limit      must be positive.
+     * @return a {@link List} of resources, each containing only the given fields.
+     */
+    public List<Map<String, Object>> findPage(@NonNull ResourceDefinition definition, @NonNull Set<String> fields,
+                                              long after, int limit) {
+        TypedQuery<Tuple> query = entityManager.createQuery(selectAttributes(definition, fields)
+                + " WHERE e.id > :after ORDER BY e.id", Tuple.class);
+        query.setParameter("after", after);
+        query.setMaxResults(limit);
+        return toResources(definition, fields, query.getResultList());
+    }
+
+    /**
+     * Returns the resource with the given id.
+     *
+     * @param definition must not be null.
+     * @param fields     must not be null, must be parsed by {@link ResourceDefinition#parseFields(String)}.
+     * @param id         the id of the resource.
+     * @return an {@link Optional} containing the resource, if it exists.
+     */
+    public Optional<Map<String, Object>> findById(@NonNull ResourceDefinition definition, @NonNull Set<String> fields,
+                                                  long id) {
+        TypedQuery<Tuple> query = entityManager.createQuery(selectAttributes(definition, fields)
+                + " WHERE e.id = :id", Tuple.class);
+        query.setParameter("id", id);
+        return toResources(definition, fields, query.getResultList()).stream().findFirst();
+    }
+
+    private String selectAttributes(@NonNull ResourceDefinition definition, @NonNull Set<String> fields) {
+        return "SELECT " + definition.getAttributes().entrySet().stream()
+                .filter(attribute -> fields.contains(attribute.getKey()))
+                .map(attribute -> "e." + attribute.getValue())
+                .collect(Collectors.joining(", "))
+                + " FROM " + definition.getEntityName() + " e";
+    }
+
+    private List<Map<String, Object>> toResources(@NonNull ResourceDefinition definition,
+                                                  @NonNull Set<String> fields, @NonNull List<Tuple> tuples) {
+        List<String> attributes = definition.getAttributes().keySet().stream().filter(fields::contains)
+                .collect(Collectors.toList());
+        Map<Long, Map<String, Object>> resources = new LinkedHashMap<>();
+        for (Tuple tuple : tuples) {
+            Map<String, Object> resource = new LinkedHashMap<>();
+            for (int i = 0; i < attributes.size(); i++) {
+                resource.put(attributes.get(i), tuple.get(i));
+            }
+            resources.put((Long) resource.get(ResourceDefinition.ID), resource);
+        }
+        if (resources.isEmpty()) {
+            return new ArrayList<>();
+        }
+        for (Map.Entry<String, String> collection : definition.getCollections().entrySet()) {
+            if (!fields.contains(collection.getKey())) {
+                continue;
+            }
+            resources.values().forEach(resource -> resource.put(collection.getKey(), new ArrayList<Long>()));
+            TypedQuery<Tuple> query = entityManager.createQuery("SELECT e.id, j.id FROM "
+                    + definition.getEntityName() + " e JOIN e." + collection.getValue()
+                    + " j WHERE e.id IN :ids ORDER BY j.id", Tuple.class);
+            query.setParameter("ids", resources.keySet());
+            for (Tuple tuple : query.getResultList()) {
+                @SuppressWarnings("unchecked")
+                List<Long> ids = (List<Long>) resources.get(tuple.get(0, Long.class)).get(collection.getKey());
+                ids.add(tuple.get(1, Long.class));
+            }
+        }
+        return new ArrayList<>(resources.values());
+    }
+}
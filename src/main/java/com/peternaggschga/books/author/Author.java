@@ -1,26 +1,44 @@
 package com.peternaggschga.books.author;
 
 import com.neovisionaries.i18n.CountryCode;
+import com.peternaggschga.books.account.TenantOwned;
+import com.peternaggschga.books.account.Tenants;
 import com.peternaggschga.books.books.book.Book;
+import com.peternaggschga.books.rendering.DateFormats;
 import lombok.NonNull;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.Filter;
 
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.Version;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.time.format.FormatStyle;
 
 /**
  * An entity representing a person writing {@link Book}s.
  */
 @Entity
-public class Author {
+@DynamicUpdate
+@Filter(name = Tenants.FILTER)
+@Table(indexes = @Index(name = "author_tenant_index", columnList = Tenants.COLUMN + ", id"))
+public class Author implements TenantOwned {
     @Id
     @GeneratedValue
     private long id;
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private long version;
+    /**
+     * The tenant owning this entity. New instances are assigned to the tenant of the signed in account.
+     */
+    @Column(name = Tenants.COLUMN, nullable = false, updatable = false, columnDefinition = "bigint default 0")
+    private long tenantId = Tenants.getCurrentTenantOrDefault();
     @NotNull
     @NotBlank
     private String firstName;
@@ -60,6 +78,15 @@ public class Author {
         return id;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public long getTenantId() {
+        return tenantId;
+    }
+
     public String getFirstName() {
         return firstName;
     }
@@ -122,20 +149,20 @@ public class Author {
      * Returns locally formatted String representing the birthDate.
      *
      * @return locally formatted String representing a date, can be null.
-     * @see DateTimeFormatter#ofLocalizedDate(FormatStyle)
+     * @see DateFormats#formatDate(LocalDate)
      */
     public String getBirthDateString() {
-        return birthDate == null ? null : getBirthDate().format(DateTimeFormatter.ofLocalizedDate(FormatStyle.MEDIUM));
+        return DateFormats.formatDate(birthDate);
     }
 
     /**
      * Returns locally formatted String representing the deathDate.
      *
      * @return locally formatted String representing a date, can be null.
-     * @see DateTimeFormatter#ofLocalizedDate(FormatStyle)
+     * @see DateFormats#formatDate(LocalDate)
      */
     public String getDeathDateString() {
-        return deathDate == null ? null : getDeathDate().format(DateTimeFormatter.ofLocalizedDate(FormatStyle.MEDIUM));
+        return DateFormats.formatDate(deathDate);
     }
 
     @Override
@@ -0,0 +1,44 @@
+package com.peternaggschga.books.author;
+
+import com.peternaggschga.books.api.CursorPage;
+import lombok.NonNull;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.validation.constraints.NotNull;
+import java.util.Map;
+
+/**
+ * A controller serving {@link Author} resources of the JSON API.
+ */
+@RestController
+@RequestMapping("/api/v1/authors")
+public class AuthorApiController {
+    @NotNull
+    private final AuthorManagement management;
+
+    /**
+     * Creates a new {@link AuthorApiController} instance with the given {@link AuthorManagement}.
+     *
+     * @param management must not be null.
+     */
+    public AuthorApiController(@NonNull AuthorManagement management) {
+        this.management = management;
+    }
+
+    @GetMapping
+    public CursorPage findAuthors(@RequestParam(required = false) String cursor,
+                                  @RequestParam(defaultValue = "50") int limit,
+                                  @RequestParam(required = false) String fields) {
+        return management.findAuthorResources(AuthorManagement.AUTHOR_RESOURCE.parseFields(fields),
+                CursorPage.decode(cursor), CursorPage.checkLimit(limit));
+    }
+
+    @GetMapping("/{id}")
+    public Map<String, Object> findAuthor(@PathVariable long id, @RequestParam(required = false) String fields) {
+        return management.findAuthorResourceById(id, AuthorManagement.AUTHOR_RESOURCE.parseFields(fields));
+    }
+}
@@ -1,18 +1,33 @@
 package com.peternaggschga.books.author;
 
 import com.neovisionaries.i18n.CountryCode;
+import com.peternaggschga.books.books.BookManagement;
+import com.peternaggschga.books.readmodel.Library;
+import com.peternaggschga.books.readmodel.ReadModel;
+import com.peternaggschga.books.rendering.PartialRows;
+import com.peternaggschga.books.rendering.RowFragmentCache;
+import com.peternaggschga.books.rendering.StreamingTableRenderer;
 import lombok.NonNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.Errors;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * A controller dealing with requests concerning {@link Author}s.
@@ -20,24 +35,74 @@ import javax.validation.constraints.NotNull;
 @Controller
 public class AuthorController {
     private static final Logger LOG = LoggerFactory.getLogger(AuthorController.class);
+    private static final int MAX_LOOKUP_LIMIT = 50;
     @NotNull
     private final AuthorManagement management;
+    @NotNull
+    private final BookManagement bookManagement;
+    @NotNull
+    private final RowFragmentCache rowFragmentCache;
+    @NotNull
+    private final StreamingTableRenderer tableRenderer;
+    @NotNull
+    private final ReadModel readModel;
 
     /**
-     * Creates a new {@link AuthorController} instance with the given {@link AuthorManagement}.
+     * Creates a new {@link AuthorController} instance with the given {@link AuthorManagement},
+     * {@link BookManagement}, {@link RowFragmentCache}, {@link StreamingTableRenderer} and {@link ReadModel}.
      *
-     * @param management must not be null.
+     * @param management       must not be null.
+     * @param bookManagement   must not be null.
+     * @param rowFragmentCache must not be null.
+     * @param tableRenderer    must not be null.
+     * @param readModel        must not be null.
      */
-    public AuthorController(@NonNull AuthorManagement management) {
+    public AuthorController(@NonNull AuthorManagement management, @NonNull BookManagement bookManagement,
+                            @NonNull RowFragmentCache rowFragmentCache, @NonNull StreamingTableRenderer tableRenderer,
+                            @NonNull ReadModel readModel) {
         this.management = management;
+        this.bookManagement = bookManagement;
+        this.rowFragmentCache = rowFragmentCache;
+        this.tableRenderer = tableRenderer;
+        this.readModel = readModel;
     }
 
     @GetMapping("/authors")
-    public String showAuthors(Model model) {
+    public String showAuthors(Model model, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        if (readModel.isEnabled()) {
+            Library library = readModel.getLibrary();
+            if (tableRenderer.isEnabled()) {
+                tableRenderer.render("author/authors", model.asMap(), library.getAuthors()::stream,
+                        rowFragmentCache::renderAuthor, request, response);
+                return null;
+            }
+            model.addAttribute("authors", library.getAuthors());
+            return "author/authors";
+        }
+        if (tableRenderer.isEnabled()) {
+            tableRenderer.render("author/authors", model.asMap(), management::streamAllAuthors,
+                    rowFragmentCache::renderAuthor, request, response);
+            return null;
+        }
         model.addAttribute("authors", management.findAllAuthors());
         return "author/authors";
     }
 
+    @GetMapping("/authors/lookup")
+    @ResponseBody
+    public List<Map<String, Object>> lookupAuthors(@RequestParam("q") String prefix,
+                                                   @RequestParam(defaultValue = "10") int limit) {
+        return management.findAuthorsByPrefix(prefix, Math.max(1, Math.min(limit, MAX_LOOKUP_LIMIT))).stream()
+                .map(author -> Map.<String, Object>of("id", author.getId(), "label", author.toString()))
+                .collect(Collectors.toList());
+    }
+
+    @GetMapping("/authors/{id}/row")
+    public void showAuthorRow(@PathVariable long id, HttpServletResponse response) throws IOException {
+        PartialRows.writeRow(response, id, rowFragmentCache.renderAuthor(management.findAuthorById(id)));
+    }
+
     @GetMapping("/authors/add")
     public String addAuthor(Model model, EditAuthorForm form) {
         form.setCountryCodeString(CountryCode.US.toString());
@@ -51,6 +116,7 @@ public class AuthorController {
         Author author = management.findAuthorById(id);
         model.addAttribute("countries", CountryCode.values());
         model.addAttribute("id", author.getId());
+        model.addAttribute("books", bookManagement.findBooksByIds(bookManagement.findBookIdsByAuthor(id)));
         form.setFirstName(author.getFirstName());
         form.setLastName(author.getLastName());
         if (author.getBirthDate() != null) {
@@ -60,28 +126,48 @@ public class AuthorController {
             form.setDeathDateString(author.getDeathDate().toString());
         }
         form.setCountryCodeString(author.getNationality().toString());
+        form.setVersion(author.getVersion());
         return "author/edit_author";
     }
 
     @PostMapping("/authors/save")
-    public String saveAuthor(long id, Model model, @Valid EditAuthorForm form, Errors result) {
+    public String saveAuthor(long id, Model model, @Valid EditAuthorForm form, Errors result,
+                             HttpServletRequest request, HttpServletResponse response) throws IOException {
         if (result.hasErrors()) {
             LOG.warn("Fehlerhafte Formulardaten: " + result.getAllErrors());
             model.addAttribute("countries", CountryCode.values());
             model.addAttribute("id", id);
             return "author/edit_author";
         }
+        Author author;
         if (id < 0) {
-            management.createAuthor(form);
+            author = management.createAuthor(form);
         } else {
-            management.updateAuthor(id, form);
+            try {
+                author = management.updateAuthor(id, form);
+            } catch (ObjectOptimisticLockingFailureException e) {
+                LOG.warn("Konflikt beim Speichern von Autor " + id + ": " + e.getMessage());
+                form.setVersion(management.findAuthorById(id).getVersion());
+                model.addAttribute("conflict", true);
+                model.addAttribute("countries", CountryCode.values());
+                model.addAttribute("id", id);
+                return "author/edit_author";
+            }
+        }
+        if (PartialRows.isPartial(request)) {
+            PartialRows.writeRow(response, author.getId(), rowFragmentCache.renderAuthor(author));
+            return null;
         }
         return "redirect:/authors";
     }
 
     @PostMapping("/authors/delete")
-    public String deleteAuthor(long id) {
+    public String deleteAuthor(long id, HttpServletRequest request, HttpServletResponse response) {
         management.deleteAuthor(id);
+        if (PartialRows.isPartial(request)) {
+            PartialRows.writeDeleted(response, id);
+            return null;
+        }
         return "redirect:/authors";
     }
 }
@@ -1,17 +1,33 @@
 package com.peternaggschga.books.author;
 
 import com.neovisionaries.i18n.CountryCode;
+import com.peternaggschga.books.account.Tenants;
+import com.peternaggschga.books.api.CursorPage;
+import com.peternaggschga.books.api.ResourceDefinition;
+import com.peternaggschga.books.api.SparseResourceRepository;
 import com.peternaggschga.books.books.BookManagement;
 import com.peternaggschga.books.books.book.Book;
+import com.peternaggschga.books.events.EntityChangedEvent;
+import com.peternaggschga.books.events.EntityChangedEvent.ChangeType;
+import com.peternaggschga.books.events.EntityChangedEvent.EntityType;
+import com.peternaggschga.books.reading.ReadingManagement;
+import com.peternaggschga.books.search.PrefixIndex;
 import lombok.NonNull;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.util.Streamable;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import javax.transaction.Transactional;
+import javax.annotation.PostConstruct;
 import javax.validation.Valid;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Service managing access to the {@link AuthorRepository} and {@link Author} instances.
@@ -19,21 +35,45 @@ import java.time.LocalDate;
 @Service
 @Transactional
 public class AuthorManagement {
+    /**
+     * The fields of {@link Author}s exposed by the JSON API.
+     */
+    public static final ResourceDefinition AUTHOR_RESOURCE = new ResourceDefinition(Author.class)
+            .withAttribute("firstName").withAttribute("lastName").withAttribute("birthDate")
+            .withAttribute("deathDate").withAttribute("nationality").withAttribute("version");
     @NotNull
     private final AuthorRepository authorRepository;
     @NotNull
     private final BookManagement bookManagement;
+    @NotNull
+    private final ReadingManagement readingManagement;
+    @NotNull
+    private final SparseResourceRepository resourceRepository;
+    @NotNull
+    private final ApplicationEventPublisher eventPublisher;
+    @NotNull
+    private final PrefixIndex authorIndex = new PrefixIndex();
 
     /**
-     * Creates a new {@link AuthorManagement} instance with the given {@link AuthorRepository} and
-     * {@link BookManagement}.
+     * Creates a new {@link AuthorManagement} instance with the given {@link AuthorRepository},
+     * {@link BookManagement}, {@link ReadingManagement}, {@link SparseResourceRepository} and
+     * {@link ApplicationEventPublisher}.
      *
-     * @param authorRepository must not be null.
-     * @param bookManagement   must not be null.
+     * @param authorRepository   must not be null.
+     * @param bookManagement     must not be null.
+     * @param readingManagement  must not be null.
+     * @param resourceRepository must not be null.
+     * @param eventPublisher     must not be null.
      */
-    public AuthorManagement(@NonNull AuthorRepository authorRepository, @NonNull BookManagement bookManagement) {
+    public AuthorManagement(@NonNull AuthorRepository authorRepository, @NonNull BookManagement bookManagement,
+                            @NonNull ReadingManagement readingManagement,
+                            @NonNull SparseResourceRepository resourceRepository,
+                            @NonNull ApplicationEventPublisher eventPublisher) {
         this.authorRepository = authorRepository;
         this.bookManagement = bookManagement;
+        this.readingManagement = readingManagement;
+        this.resourceRepository = resourceRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
@@ -49,7 +89,9 @@ public class AuthorManagement {
      */
     public Author createAuthor(@NonNull @NotBlank String firstName, @NonNull @NotBlank String lastName,
                                LocalDate birthDate, LocalDate deathDate, @NonNull CountryCode nationality) {
-        return authorRepository.save(new Author(firstName, lastName, birthDate, deathDate, nationality));
+        Author author = authorRepository.save(new Author(firstName, lastName, birthDate, deathDate, nationality));
+        publishChange(author.getId(), ChangeType.CREATED);
+        return author;
     }
 
     /**
@@ -69,7 +111,7 @@ public class AuthorManagement {
 
     /**
      * Updates the {@link Author} referred to by the given id with the given firstName, lastName, birthDate, deathDate
-     * and nationality. The updated instance is saved to the {@link AuthorRepository}.
+     * and nationality. The changes of the managed instance are written when the transaction is committed.
      *
      * @param id          must be valid.
      * @param firstName   must not be null or blank.
@@ -87,20 +129,28 @@ public class AuthorManagement {
         author.setBirthDate(birthDate);
         author.setDeathDate(deathDate);
         author.setNationality(nationality);
-        return authorRepository.save(author);
+        publishChange(id, ChangeType.UPDATED);
+        return author;
     }
 
     /**
      * Updates the {@link Author} referred to by the given id with the given {@link EditAuthorForm}. Wrapper function
      * of {@link AuthorManagement#updateAuthor(long, String, String, LocalDate, LocalDate, CountryCode)}.
+     * If the form was created from another version of the {@link Author}, an
+     * {@link ObjectOptimisticLockingFailureException} is thrown.
      *
      * @param id   must be valid.
      * @param form must be valid, must not be null.
      * @return the updated {@link Author} instance.
+     * @throws ObjectOptimisticLockingFailureException if the {@link Author} was changed concurrently.
      * @see AuthorManagement#updateAuthor(long, String, String, LocalDate, LocalDate, CountryCode)
      */
     @SuppressWarnings("UnusedReturnValue")
     public Author updateAuthor(long id, @NonNull @Valid EditAuthorForm form) {
+        Author author = findAuthorById(id);
+        if (form.getVersion() != null && form.getVersion() != author.getVersion()) {
+            throw new ObjectOptimisticLockingFailureException(Author.class, id);
+        }
         return updateAuthor(id, form.getFirstName(), form.getLastName(), form.getBirthDate(), form.getDeathDate(),
                 form.getCountryCode());
     }
@@ -117,6 +167,7 @@ public class AuthorManagement {
             }
         }
         authorRepository.delete(author);
+        publishChange(author.getId(), ChangeType.DELETED);
     }
 
     /**
@@ -130,32 +181,172 @@ public class AuthorManagement {
         deleteAuthor(findAuthorById(id));
     }
 
+    /**
+     * Merges the {@link Author} referenced by duplicateId into the one referenced by survivorId. Every {@link Book}
+     * of the duplicate is credited to the survivor instead, afterwards the duplicate is deleted. The join table is
+     * updated by a few set-based statements instead of loading and saving every {@link Book}, books written by both
+     * {@link Author}s simply lose the duplicate.
+     *
+     * @param survivorId  must be valid.
+     * @param duplicateId must be valid, must not equal survivorId.
+     * @return the surviving {@link Author}.
+     */
+    public Author mergeAuthors(long survivorId, long duplicateId) {
+        if (survivorId == duplicateId) {
+            throw new IllegalArgumentException("Cannot merge an author into itself");
+        }
+        findAuthorById(survivorId);
+        findAuthorById(duplicateId);
+        List<Long> bookIds = authorRepository.findBookIdsById(duplicateId);
+        if (!bookIds.isEmpty()) {
+            authorRepository.reassignBooks(survivorId, duplicateId);
+            authorRepository.deleteBookAssignments(duplicateId);
+            authorRepository.incrementBookVersions(bookIds);
+        }
+        authorRepository.deleteByIdInBulk(duplicateId);
+        for (long bookId : bookIds) {
+            eventPublisher.publishEvent(new EntityChangedEvent(EntityType.BOOK, bookId, ChangeType.UPDATED));
+        }
+        publishChange(duplicateId, ChangeType.DELETED);
+        return findAuthorById(survivorId);
+    }
+
     /**
      * Returns all {@link Author}s present in {@link AuthorRepository}.
      *
      * @return an {@link Streamable} containing all {@link Author} instances in {@link AuthorRepository}.
      */
+    @Transactional(readOnly = true)
     public Streamable<Author> findAllAuthors() {
         return authorRepository.findAll();
     }
 
     /**
-     * Returns the number of {@link Author}s saved in {@link AuthorRepository}.
+     * Returns all {@link Author}s present in {@link AuthorRepository} as a {@link Stream}. The {@link Stream} must be
+     * consumed and closed inside the calling transaction.
      *
-     * @return a long counting the number of {@link Book}s.
+     * @return a {@link Stream} containing all {@link Author} instances in {@link AuthorRepository}.
      */
+    @Transactional(readOnly = true)
+    public Stream<Author> streamAllAuthors() {
+        return authorRepository.streamAll();
+    }
+
+    /**
+     * Returns the number of {@link Author}s saved in {@link AuthorRepository}. The number is read from the counters
+     * maintained by {@link ReadingManagement}, so the database is not queried.
+     *
+     * @return a long counting the number of {@link Author}s.
+     */
+    @Transactional(readOnly = true)
     public long getAuthorCount() {
-        return authorRepository.count();
+        return readingManagement.getAuthorCount();
     }
 
     /**
      * Returns the {@link Author} referenced by the given id.
-     * If the id does not exist, a {@link java.util.NoSuchElementException} is thrown.
+     * If the id does not exist or belongs to another tenant, a {@link java.util.NoSuchElementException} is thrown.
      *
      * @param id must be valid, else {@link java.util.NoSuchElementException} is thrown.
      * @return the {@link Author} referenced by id.
      */
+    @Transactional(readOnly = true)
     public Author findAuthorById(long id) {
-        return authorRepository.findById(id).orElseThrow();
+        return authorRepository.findById(id).filter(Tenants::isAccessible).orElseThrow();
+    }
+
+    /**
+     * Returns the {@link Author}s referenced by the given ids in the order of the ids. Ids that do not exist are
+     * ignored.
+     *
+     * @param ids must not be null.
+     * @return a {@link List} containing the {@link Author}s.
+     */
+    @Transactional(readOnly = true)
+    public List<Author> findAuthorsByIds(@NonNull Collection<Long> ids) {
+        Map<Long, Author> authors = Streamable.of(authorRepository.findAllById(ids)).stream()
+                .collect(Collectors.toMap(Author::getId, Function.identity()));
+        return ids.stream().map(authors::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the {@link Author}s of the current tenant with a first or last name starting with the given prefix,
+     * using the in-memory author index. Both "first last" and "last first" are matched, case and diacritics are
+     * ignored.
+     *
+     * @param prefix must not be null.
+     * @param limit  the maximum number of returned {@link Author}s, must be positive.
+     * @return a {@link List} containing at most limit {@link Author}s.
+     */
+    @Transactional(readOnly = true)
+    public List<Author> findAuthorsByPrefix(@NonNull String prefix, int limit) {
+        return findAuthorsByIds(authorIndex.find(Tenants.getCurrentTenantOrDefault(), prefix, limit));
+    }
+
+    /**
+     * Rebuilds the in-memory author index from {@link AuthorRepository}. Called once on startup, afterwards the index
+     * is maintained by {@link AuthorManagement#updateAuthorIndex(EntityChangedEvent)}.
+     */
+    @PostConstruct
+    public void rebuildAuthorIndex() {
+        Map<Long, List<String>> names = new HashMap<>();
+        Map<Long, Long> tenants = new HashMap<>();
+        for (Object[] row : authorRepository.findAllNames()) {
+            names.put((Long) row[0], namesOf((String) row[1], (String) row[2]));
+            tenants.put((Long) row[0], (Long) row[3]);
+        }
+        authorIndex.replaceAll(names, tenants);
+    }
+
+    /**
+     * Updates the in-memory author index after a change of an {@link Author} was committed. Called asynchronously by
+     * {@link com.peternaggschga.books.search.SearchIndexProjection} with the events of the transactional outbox.
+     *
+     * @param event must not be null, must refer to an {@link Author}.
+     */
+    @Transactional(readOnly = true)
+    public void updateAuthorIndex(@NonNull EntityChangedEvent event) {
+        Optional<Author> author = event.getChangeType() == ChangeType.DELETED ? Optional.empty()
+                : authorRepository.findById(event.getEntityId());
+        if (author.isPresent()) {
+            authorIndex.put(author.get().getTenantId(), event.getEntityId(),
+                    namesOf(author.get().getFirstName(), author.get().getLastName()).toArray(new String[0]));
+        } else {
+            authorIndex.remove(event.getEntityId());
+        }
+    }
+
+    /**
+     * Returns a page of {@link Author}s for the JSON API, only containing the given fields.
+     *
+     * @param fields must not be null, must be parsed by {@link AuthorManagement#AUTHOR_RESOURCE}.
+     * @param after  the id of the last {@link Author} of the previous page.
+     * @param limit  must be valid regarding {@link CursorPage#checkLimit(int)}.
+     * @return a {@link CursorPage} of {@link Author} resources.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage findAuthorResources(@NonNull Set<String> fields, long after, int limit) {
+        return new CursorPage(resourceRepository.findPage(AUTHOR_RESOURCE, fields, after, limit), limit);
+    }
+
+    /**
+     * Returns the {@link Author} referenced by the given id as resource of the JSON API.
+     * If the id does not exist, a {@link java.util.NoSuchElementException} is thrown.
+     *
+     * @param id     must be valid, else {@link java.util.NoSuchElementException} is thrown.
+     * @param fields must not be null, must be parsed by {@link AuthorManagement#AUTHOR_RESOURCE}.
+     * @return a {@link Map} containing the given fields.
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> findAuthorResourceById(long id, @NonNull Set<String> fields) {
+        return resourceRepository.findById(AUTHOR_RESOURCE, fields, id).orElseThrow();
+    }
+
+    private static List<String> namesOf(@NonNull String firstName, @NonNull String lastName) {
+        return List.of(firstName + ' ' + lastName, lastName + ' ' + firstName);
+    }
+
+    private void publishChange(long id, @NonNull ChangeType changeType) {
+        eventPublisher.publishEvent(new EntityChangedEvent(EntityType.AUTHOR, id, changeType));
     }
 }
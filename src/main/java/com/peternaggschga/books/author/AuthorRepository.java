@@ -1,9 +1,21 @@
 package com.peternaggschga.books.author;
 
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.data.util.Streamable;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import javax.validation.constraints.NotNull;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
 /**
  * An interface defining custom queries. Extends {@link CrudRepository} of {@link Author}s.
  */
@@ -17,4 +29,88 @@ public interface AuthorRepository extends CrudRepository<Author, Long> {
      */
     @Override
     Streamable<Author> findAll();
+
+    /**
+     * Returns all saved {@link Author} instances. Must be called and consumed inside a transaction.
+     *
+     * @return a {@link Stream} containing all {@link Author} instances.
+     */
+    @Query("SELECT a FROM Author a")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "200"))
+    Stream<Author> streamAll();
+
+    /**
+     * Returns the id, first name, last name and tenant of all saved {@link Author} instances without loading the
+     * entities.
+     *
+     * @return a {@link List} containing an array of id, first name, last name and tenant id for every
+     * {@link Author}.
+     */
+    @Query("SELECT a.id, a.firstName, a.lastName, a.tenantId FROM Author a")
+    List<Object[]> findAllNames();
+
+    /**
+     * Returns the number of saved {@link Author} instances of every tenant.
+     *
+     * @return a {@link List} containing an array of tenant id and number of {@link Author}s for every tenant.
+     */
+    @Query("SELECT e.tenantId, COUNT(e) FROM Author e GROUP BY e.tenantId")
+    List<Object[]> countByTenant();
+
+    /**
+     * Returns the ids of all {@link com.peternaggschga.books.books.book.Book}s written by the {@link Author}
+     * referenced by the given id without loading the entities.
+     *
+     * @param id the id of the {@link Author}.
+     * @return a {@link List} of ids, ordered ascending.
+     */
+    @Query("SELECT b.id FROM Book b JOIN b.authors a WHERE a.id = :id ORDER BY b.id")
+    List<Long> findBookIdsById(@Param("id") long id);
+
+    /**
+     * Credits all {@link com.peternaggschga.books.books.book.Book}s of the {@link Author} referenced by duplicate to
+     * the one referenced by survivor, except those already written by survivor. Those would collide with the primary
+     * key of the join table and have to be removed by {@link AuthorRepository#deleteBookAssignments(long)}.
+     *
+     * @param survivor  the id of the {@link Author} receiving the books.
+     * @param duplicate the id of the {@link Author} losing the books.
+     * @return the number of updated rows.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(nativeQuery = true, value = "UPDATE book_authors SET authors_id = :survivor WHERE authors_id = :duplicate "
+            + "AND book_id NOT IN (SELECT ba.book_id FROM book_authors ba WHERE ba.authors_id = :survivor)")
+    int reassignBooks(@Param("survivor") long survivor, @Param("duplicate") long duplicate);
+
+    /**
+     * Removes the {@link Author} referenced by the given id from all of its
+     * {@link com.peternaggschga.books.books.book.Book}s.
+     *
+     * @param id the id of the {@link Author}.
+     * @return the number of deleted rows.
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = "DELETE FROM book_authors WHERE authors_id = :id")
+    int deleteBookAssignments(@Param("id") long id);
+
+    /**
+     * Increments the versions of the {@link com.peternaggschga.books.books.book.Book}s referenced by the given ids,
+     * so concurrent edits of books changed by bulk updates fail instead of overwriting the changes.
+     *
+     * @param ids must not be null.
+     * @return the number of updated {@link com.peternaggschga.books.books.book.Book}s.
+     */
+    @Modifying
+    @Query("UPDATE Book b SET b.version = b.version + 1 WHERE b.id IN :ids")
+    int incrementBookVersions(@NotNull @Param("ids") Collection<Long> ids);
+
+    /**
+     * Deletes the {@link Author} referenced by the given id without loading it. Clears the persistence context, as
+     * it may still contain the deleted {@link Author} and outdated {@link com.peternaggschga.books.books.book.Book}s.
+     *
+     * @param id the id of the {@link Author}.
+     * @return the number of deleted {@link Author}s.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM Author a WHERE a.id = :id")
+    int deleteByIdInBulk(@Param("id") long id);
 }
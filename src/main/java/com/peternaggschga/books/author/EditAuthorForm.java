@@ -32,14 +32,16 @@ public class EditAuthorForm {
     @NotNull
     @Length(min = 2, max = 2)
     private String countryCodeString;
+    private Long version;
 
     public EditAuthorForm(String firstName, String lastName, String birthDateString, String deathDateString,
-                          String countryCodeString) {
+                          String countryCodeString, Long version) {
         this.firstName = firstName;
         this.lastName = lastName;
         this.birthDateString = birthDateString;
         this.deathDateString = deathDateString;
         this.countryCodeString = countryCodeString;
+        this.version = version;
     }
 
     public String getFirstName() {
@@ -77,6 +79,10 @@ public class EditAuthorForm {
         return CountryCode.getByCode(countryCodeString);
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
     public void setFirstName(@NonNull @NotBlank String firstName) {
         this.firstName = firstName;
     }
@@ -96,4 +102,8 @@ public class EditAuthorForm {
     public void setCountryCodeString(@NonNull @NotBlank String countryCodeString) {
         this.countryCodeString = countryCodeString;
     }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
 }
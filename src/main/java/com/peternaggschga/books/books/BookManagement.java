@@ -1,5 +1,9 @@
 package com.peternaggschga.books.books;
 
+import com.peternaggschga.books.account.Tenants;
+import com.peternaggschga.books.api.CursorPage;
+import com.peternaggschga.books.api.ResourceDefinition;
+import com.peternaggschga.books.api.SparseResourceRepository;
 import com.peternaggschga.books.author.Author;
 import com.peternaggschga.books.books.book.Book;
 import com.peternaggschga.books.books.book.BookRepository;
@@ -7,51 +11,112 @@ import com.peternaggschga.books.books.book.EditBookForm;
 import com.peternaggschga.books.books.series.EditSeriesForm;
 import com.peternaggschga.books.books.series.Series;
 import com.peternaggschga.books.books.series.SeriesRepository;
+import com.peternaggschga.books.books.series.SeriesSummary;
+import com.peternaggschga.books.books.series.SeriesVolumeMigration;
+import com.peternaggschga.books.events.EntityChangedEvent;
+import com.peternaggschga.books.events.EntityChangedEvent.ChangeType;
+import com.peternaggschga.books.events.EntityChangedEvent.EntityType;
 import com.peternaggschga.books.reading.ReadingManagement;
+import com.peternaggschga.books.search.AdjacencyIndex;
+import com.peternaggschga.books.search.PrefixIndex;
 import lombok.NonNull;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.util.Streamable;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import javax.transaction.Transactional;
+import javax.annotation.PostConstruct;
 import javax.validation.Valid;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Positive;
 import java.time.LocalDate;
-import java.util.Collection;
-import java.util.Locale;
-import java.util.Set;
+import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Service managing access to the {@link BookRepository} and {@link Book} instances as well as the
- * {@link SeriesRepository} and {@link Series} instances.
+ * {@link SeriesRepository} and {@link Series} instances. The in-memory indexes are rebuilt on startup after the
+ * {@link SeriesVolumeMigration} has run.
  */
 @Service
+@DependsOn(SeriesVolumeMigration.BEAN_NAME)
 @Transactional
 public class BookManagement {
     public static final Locale[] LANGUAGES = {Locale.GERMAN, Locale.ENGLISH};
+    /**
+     * The maximum number of {@link Book}s matching a lookup prefix that are ordered by their last reading.
+     */
+    public static final int MAX_LOOKUP_CANDIDATES = 1000;
+    /**
+     * The fields of {@link Book}s exposed by the JSON API.
+     */
+    public static final ResourceDefinition BOOK_RESOURCE = new ResourceDefinition(Book.class)
+            .withAttribute("title").withAttribute("published").withAttribute("isbn").withAttribute("pages")
+            .withAttribute("language").withAttribute("version").withCollection("authors", "authors");
+    /**
+     * The fields of {@link Series} exposed by the JSON API.
+     */
+    public static final ResourceDefinition SERIES_RESOURCE = new ResourceDefinition(Series.class)
+            .withAttribute("title").withAttribute("version").withCollection("books", "books");
     @NotNull
     private final BookRepository bookRepository;
     @NotNull
     private final SeriesRepository seriesRepository;
     @NotNull
     private final ReadingManagement readingManagement;
+    @NotNull
+    private final SparseResourceRepository resourceRepository;
+    @NotNull
+    private final ApplicationEventPublisher eventPublisher;
+    @NotNull
+    private final PrefixIndex bookIndex = new PrefixIndex();
+    @NotNull
+    private final PrefixIndex seriesIndex = new PrefixIndex();
+    @NotNull
+    private final AdjacencyIndex bookAuthors = new AdjacencyIndex();
+    @NotNull
+    private final AdjacencyIndex seriesBooks = new AdjacencyIndex();
+    /**
+     * Key of the ids of the {@link Book}s and {@link Series} changed by the current transaction, bound as transaction
+     * resource by {@link BookManagement#recordPendingChange(EntityChangedEvent)}.
+     */
+    @NotNull
+    private final Object pendingChangesKey = new Object();
 
     /**
-     * Creates a new {@link BookManagement} instance with the given {@link BookRepository}, {@link SeriesRepository} and
-     * {@link ReadingManagement}.
+     * Creates a new {@link BookManagement} instance with the given {@link BookRepository}, {@link SeriesRepository},
+     * {@link ReadingManagement}, {@link SparseResourceRepository} and {@link ApplicationEventPublisher}.
      *
-     * @param bookRepository    must not be null.
-     * @param seriesRepository  must not be null.
-     * @param readingManagement must not be null.
+     * @param bookRepository     must not be null.
+     * @param seriesRepository   must not be null.
+     * @param readingManagement  must not be null.
+     * @param resourceRepository must not be null.
+     * @param eventPublisher     must not be null.
      */
     public BookManagement(@NonNull BookRepository bookRepository, @NonNull SeriesRepository seriesRepository,
-                          @NonNull ReadingManagement readingManagement) {
+                          @NonNull ReadingManagement readingManagement,
+                          @NonNull SparseResourceRepository resourceRepository,
+                          @NonNull ApplicationEventPublisher eventPublisher) {
         this.bookRepository = bookRepository;
         this.seriesRepository = seriesRepository;
         this.readingManagement = readingManagement;
+        this.resourceRepository = resourceRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
@@ -69,7 +134,9 @@ public class BookManagement {
     public Book createBook(@NonNull @NotBlank String title, @NonNull @NotEmpty Collection<Author> authors,
                            @NonNull LocalDate published, @NonNull String isbn, @Positive int pages,
                            @NonNull Locale language) {
-        return bookRepository.save(new Book(title, authors, published, isbn, pages, language));
+        Book book = bookRepository.save(new Book(title, authors, published, isbn, pages, language));
+        publishChange(EntityType.BOOK, book.getId(), ChangeType.CREATED);
+        return book;
     }
 
     /**
@@ -90,7 +157,7 @@ public class BookManagement {
 
     /**
      * Updates the {@link Book} referred to by the given id with the given title, authors, published, isbn, pages and
-     * language. The updated instance is saved to the {@link BookRepository}.
+     * language. The changes of the managed instance are written when the transaction is committed.
      *
      * @param id        must be valid.
      * @param title     must not be null or blank.
@@ -111,36 +178,58 @@ public class BookManagement {
         book.setIsbn(isbn);
         book.setPages(pages);
         book.setLanguage(language);
-        return bookRepository.save(book);
+        publishChange(EntityType.BOOK, id, ChangeType.UPDATED);
+        return book;
     }
 
     /**
      * Updates the {@link Book} referred to by the given id with the given {@link EditBookForm}. Wrapper function
      * of {@link BookManagement#updateBook(long, String, Collection, LocalDate, String, int, Locale)}.
+     * If the form was created from another version of the {@link Book}, an
+     * {@link ObjectOptimisticLockingFailureException} is thrown.
      *
      * @param id      must be valid.
      * @param form    must be valid, must not be null.
      * @param authors must not be null or empty.
      * @return the updated {@link Book} instance.
+     * @throws ObjectOptimisticLockingFailureException if the {@link Book} was changed concurrently.
      * @see BookManagement#updateBook(long, String, Collection, LocalDate, String, int, Locale)
      */
     public Book updateBook(long id, @NonNull @Valid EditBookForm form, @NonNull @NotEmpty Collection<Author> authors) {
+        Book book = findBookById(id);
+        if (form.getVersion() != null && form.getVersion() != book.getVersion()) {
+            throw new ObjectOptimisticLockingFailureException(Book.class, id);
+        }
         return updateBook(id, form.getTitle(), authors, form.getPublished(), form.getIsbn(), form.getPages(),
                 form.getLanguage());
     }
 
+    /**
+     * Sets the cover of the {@link Book} referred to by the given id to the image of the given hash. The image has to
+     * be stored in the {@link com.peternaggschga.books.covers.CoverStore} before.
+     *
+     * @param id        must be valid.
+     * @param coverHash must match {@link com.peternaggschga.books.covers.CoverStore#HASH_REGEX}, null removes the
+     *                  cover.
+     * @return the updated {@link Book} instance.
+     */
+    public Book updateCover(long id, String coverHash) {
+        Book book = findBookById(id);
+        book.setCoverHash(coverHash);
+        publishChange(EntityType.BOOK, id, ChangeType.UPDATED);
+        return book;
+    }
+
     /**
      * Deletes the given {@link Book} from {@link BookRepository}.
      *
      * @param book must not be null.
      */
     public void deleteBook(@NonNull Book book) {
-        for (Series series : findSeriesByBook(book)) {
-            series.remove(book);
-            seriesRepository.save(series);
-        }
+        removeBookFromAllSeries(book);
         readingManagement.deleteReadingsByBook(book);
         bookRepository.delete(book);
+        publishChange(EntityType.BOOK, book.getId(), ChangeType.DELETED);
     }
 
     /**
@@ -154,43 +243,212 @@ public class BookManagement {
         deleteBook(findBookById(id));
     }
 
+    /**
+     * Merges the {@link Book} referenced by duplicateId into the one referenced by survivorId. The
+     * {@link com.peternaggschga.books.reading.Reading}s of the duplicate are moved to the survivor and the survivor
+     * replaces the duplicate in all of its {@link Series}, afterwards the duplicate is deleted.
+     *
+     * @param survivorId  must be valid.
+     * @param duplicateId must be valid, must not equal survivorId.
+     * @return the surviving {@link Book}.
+     */
+    public Book mergeBooks(long survivorId, long duplicateId) {
+        if (survivorId == duplicateId) {
+            throw new IllegalArgumentException("Cannot merge a book into itself");
+        }
+        Book survivor = findBookById(survivorId);
+        Book duplicate = findBookById(duplicateId);
+        readingManagement.findReadingsByBook(duplicate).forEach(reading -> readingManagement.updateReading(
+                reading.getId(), survivor, reading.getBeginning(), reading.getEnd(), reading.getPagesPerHour()));
+        for (Series series : findSeriesByBook(duplicate)) {
+            series.remove(duplicate);
+            series.addAll(Set.of(survivor));
+            publishChange(EntityType.SERIES, series.getId(), ChangeType.UPDATED);
+        }
+        deleteBook(duplicate);
+        return survivor;
+    }
+
     /**
      * Returns all {@link Book}s present in {@link BookRepository}.
      *
      * @return an {@link Iterable} containing all {@link Book} instances in {@link BookRepository}.
      */
+    @Transactional(readOnly = true)
     public Streamable<Book> findAllBooks() {
         return bookRepository.findAll();
     }
 
     /**
-     * Returns the number of {@link Book}s saved in {@link BookRepository}.
+     * Returns all {@link Book}s present in {@link BookRepository} as a {@link Stream}. The {@link Stream} must be
+     * consumed and closed inside the calling transaction.
+     *
+     * @return a {@link Stream} containing all {@link Book} instances in {@link BookRepository}.
+     */
+    @Transactional(readOnly = true)
+    public Stream<Book> streamAllBooks() {
+        return bookRepository.streamAll();
+    }
+
+    /**
+     * Returns the number of {@link Book}s saved in {@link BookRepository}. The number is read from the counters
+     * maintained by {@link ReadingManagement}, so the database is not queried.
      *
      * @return a long counting the number of {@link Book}s.
      */
+    @Transactional(readOnly = true)
     public long getBookCount() {
-        return bookRepository.count();
+        return readingManagement.getBookCount();
     }
 
     /**
      * Returns the {@link Book} referenced by the given id.
-     * If the id does not exist, a {@link java.util.NoSuchElementException} is thrown.
+     * If the id does not exist or belongs to another tenant, a {@link java.util.NoSuchElementException} is thrown.
      *
      * @param id must be valid, else {@link java.util.NoSuchElementException} is thrown.
      * @return the {@link Book} referenced by id.
      */
+    @Transactional(readOnly = true)
     public Book findBookById(long id) {
-        return bookRepository.findById(id).orElseThrow();
+        return bookRepository.findById(id).filter(Tenants::isAccessible).orElseThrow();
+    }
+
+    /**
+     * Returns whether the cover referenced by the given hash belongs to a {@link Book} accessible on the current
+     * thread. Covers are stored once per content, so the same hash may be used by {@link Book}s of several tenants.
+     *
+     * @param coverHash must not be null.
+     * @return true if a {@link Book} of the current tenant has the cover, or any {@link Book} if there is no tenant.
+     */
+    @Transactional(readOnly = true)
+    public boolean isCoverAccessible(@NonNull String coverHash) {
+        OptionalLong tenant = Tenants.getCurrentTenant();
+        return tenant.isPresent() ? bookRepository.existsByCoverHashAndTenantId(coverHash, tenant.getAsLong())
+                : bookRepository.existsByCoverHash(coverHash);
     }
 
     /**
-     * Returns all {@link Book}s associated with the given {@link Author}.
+     * Returns all {@link Book}s associated with the given {@link Author}. The ids of the {@link Book}s are read from
+     * the in-memory adjacency index. Only the {@link Book}s changed by the calling transaction are looked up in the
+     * database instead, so associations changed earlier in the transaction are found, as required by mutations like
+     * {@link com.peternaggschga.books.author.AuthorManagement#deleteAuthor(Author)}.
      *
      * @param author must not be null.
-     * @return a {@link Streamable} containing {@link Book}s.
+     * @return a {@link Streamable} containing {@link Book}s, ordered by id.
+     * @see BookManagement#findBookIdsByAuthor(long)
      */
+    @Transactional(readOnly = true)
     public Streamable<Book> findBooksByAuthor(@NonNull Author author) {
-        return bookRepository.findByAuthorsContains(author);
+        List<Long> ids = findBookIdsByAuthor(author.getId());
+        Set<Long> changed = pendingChanges(EntityType.BOOK);
+        if (!changed.isEmpty()) {
+            SortedSet<Long> merged = new TreeSet<>(ids);
+            merged.removeAll(changed);
+            merged.addAll(bookRepository.findIdsByAuthorIdAndIdIn(author.getId(), changed));
+            ids = new ArrayList<>(merged);
+        }
+        return Streamable.of(findBooksByIds(ids));
+    }
+
+    /**
+     * Returns the ids of all {@link Book}s associated with the {@link Author} referenced by the given id without
+     * querying the database. The ids are read from the in-memory adjacency index, which only contains committed
+     * associations, so mutations must use {@link BookManagement#findBooksByAuthor(Author)} instead.
+     *
+     * @param authorId the id of the {@link Author}.
+     * @return a {@link List} of ids in ascending order, empty if the {@link Author} has no {@link Book}s.
+     */
+    @Transactional(readOnly = true)
+    public List<Long> findBookIdsByAuthor(long authorId) {
+        return AdjacencyIndex.toList(bookAuthors.getSources(authorId));
+    }
+
+    /**
+     * Returns the {@link Book}s referenced by the given ids in the order of the ids. Ids that do not exist are
+     * ignored.
+     *
+     * @param ids must not be null.
+     * @return a {@link List} containing the {@link Book}s.
+     */
+    @Transactional(readOnly = true)
+    public List<Book> findBooksByIds(@NonNull Collection<Long> ids) {
+        Map<Long, Book> books = Streamable.of(bookRepository.findAllById(ids)).stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+        return ids.stream().map(books::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    /**
+     * Returns a page of {@link Book}s of the current tenant with a word of their title, the name of one of their
+     * {@link Author}s or their isbn starting with the given prefix, the most recently read first. If prefix is blank,
+     * all {@link Book}s are paged. Only the first {@link BookManagement#MAX_LOOKUP_CANDIDATES} matches of the
+     * in-memory book index are considered.
+     *
+     * @param prefix must not be null.
+     * @param page   the index of the page, must not be negative.
+     * @param size   the size of the page, must be positive.
+     * @return a {@link Slice} of {@link Book}s.
+     */
+    @Transactional(readOnly = true)
+    public Slice<Book> findBooksForLookup(@NonNull String prefix, int page, int size) {
+        Pageable pageable = PageRequest.of(page, size);
+        Slice<Long> ids;
+        if (PrefixIndex.normalize(prefix).isEmpty()) {
+            ids = bookRepository.findIdsByLastReading(pageable);
+        } else {
+            List<Long> candidates = bookIndex.find(Tenants.getCurrentTenantOrDefault(), prefix, MAX_LOOKUP_CANDIDATES);
+            if (candidates.isEmpty()) {
+                return new SliceImpl<>(List.of(), pageable, false);
+            }
+            ids = bookRepository.findIdsByLastReading(candidates, pageable);
+        }
+        return new SliceImpl<>(findBooksByIds(ids.getContent()), pageable, ids.hasNext());
+    }
+
+    /**
+     * Rebuilds the in-memory book index from {@link BookRepository}. Called once on startup, afterwards the index is
+     * maintained by {@link BookManagement#updateBookIndex(EntityChangedEvent)}.
+     */
+    @PostConstruct
+    public void rebuildBookIndex() {
+        Map<Long, List<String>> terms = new HashMap<>();
+        Map<Long, Long> tenants = new HashMap<>();
+        for (Object[] row : bookRepository.findAllLookupTerms()) {
+            tenants.put((Long) row[0], (Long) row[5]);
+            List<String> bookTerms = terms.computeIfAbsent((Long) row[0], id -> {
+                List<String> list = new ArrayList<>();
+                list.add((String) row[1]);
+                list.add((String) row[2]);
+                list.add(((String) row[2]).replaceAll("[- ]", ""));
+                return list;
+            });
+            bookTerms.add(row[3] + " " + row[4]);
+            bookTerms.add(row[4] + " " + row[3]);
+        }
+        bookIndex.replaceAll(terms, tenants);
+    }
+
+    /**
+     * Updates the in-memory book index after a change of a {@link Book} or {@link Author} was committed. Called
+     * asynchronously by {@link com.peternaggschga.books.search.SearchIndexProjection} with the events of the
+     * transactional outbox.
+     *
+     * @param event must not be null, must refer to a {@link Book} or an {@link Author}.
+     */
+    @Transactional(readOnly = true)
+    public void updateBookIndex(@NonNull EntityChangedEvent event) {
+        if (event.getEntityType() == EntityType.AUTHOR) {
+            if (event.getChangeType() == ChangeType.UPDATED) {
+                findBooksByIds(findBookIdsByAuthor(event.getEntityId())).forEach(this::indexBook);
+            }
+            return;
+        }
+        Optional<Book> book = event.getChangeType() == ChangeType.DELETED ? Optional.empty()
+                : bookRepository.findById(event.getEntityId());
+        if (book.isPresent()) {
+            indexBook(book.get());
+        } else {
+            bookIndex.remove(event.getEntityId());
+        }
     }
 
     /**
@@ -202,7 +460,9 @@ public class BookManagement {
      * @return the new {@link Series} instance.
      */
     public Series createSeries(@NonNull @NotBlank String title, Collection<Book> books) {
-        return seriesRepository.save(new Series(title, books));
+        Series series = seriesRepository.save(new Series(title, books));
+        publishChange(EntityType.SERIES, series.getId(), ChangeType.CREATED);
+        return series;
     }
 
     /**
@@ -222,7 +482,7 @@ public class BookManagement {
 
     /**
      * Updates the {@link Series} referred to by the given id with the given title and {@link Book}s.
-     * The updated instance is saved to the {@link SeriesRepository}.
+     * The changes of the managed instance are written when the transaction is committed.
      *
      * @param id    must be valid.
      * @param title must not be null or blank.
@@ -233,21 +493,28 @@ public class BookManagement {
         Series series = findSeriesById(id);
         series.setTitle(title);
         series.setBooks(books);
-        return seriesRepository.save(series);
+        publishChange(EntityType.SERIES, id, ChangeType.UPDATED);
+        return series;
     }
 
     /**
      * Updates the {@link Series} referred to by the given id with the given {@link EditSeriesForm}.
-     * The updated instance is saved to the {@link SeriesRepository}.
      * Wrapper function of {@link BookManagement#updateSeries(long, String, Collection)}.
+     * If the form was created from another version of the {@link Series}, an
+     * {@link ObjectOptimisticLockingFailureException} is thrown.
      *
      * @param id   must be valid.
      * @param form must not be null or invalid.
      * @return the updated {@link Series} instance.
+     * @throws ObjectOptimisticLockingFailureException if the {@link Series} was changed concurrently.
      * @see BookManagement#updateSeries(long, String, Collection)
      */
     @SuppressWarnings("UnusedReturnValue")
     public Series updateSeries(long id, @NonNull @Valid EditSeriesForm form) {
+        Series series = findSeriesById(id);
+        if (form.getVersion() != null && form.getVersion() != series.getVersion()) {
+            throw new ObjectOptimisticLockingFailureException(Series.class, id);
+        }
         return updateSeries(id, form.getTitle(), form.getBooks() == null ? null :
                 form.getBooks().stream().map(this::findBookById).collect(Collectors.toSet()));
     }
@@ -255,10 +522,13 @@ public class BookManagement {
     /**
      * Deletes the {@link Series} referenced by the given id from {@link SeriesRepository}.
      *
-     * @param id must be valid.
+     * @param id must be valid, else {@link java.util.NoSuchElementException} is thrown.
+     * @see BookManagement#findSeriesById(long)
      */
     public void deleteSeries(long id) {
-        seriesRepository.deleteById(id);
+        Series series = findSeriesById(id);
+        seriesRepository.delete(series);
+        publishChange(EntityType.SERIES, series.getId(), ChangeType.DELETED);
     }
 
     /**
@@ -274,7 +544,8 @@ public class BookManagement {
     public Series addBooksToSeries(Collection<Book> books, long seriesId) {
         Series series = findSeriesById(seriesId);
         series.addAll(books);
-        return seriesRepository.save(series);
+        publishChange(EntityType.SERIES, seriesId, ChangeType.UPDATED);
+        return series;
     }
 
     /**
@@ -298,7 +569,25 @@ public class BookManagement {
     public void removeBookFromAllSeries(@NonNull Book book) {
         for (Series series : findSeriesByBook(book)) {
             series.remove(book);
-            seriesRepository.save(series);
+            publishChange(EntityType.SERIES, series.getId(), ChangeType.UPDATED);
+        }
+    }
+
+    /**
+     * Removes the given {@link Book} from all {@link Series} it is associated to and adds it to the {@link Series}
+     * referenced by the given ids.
+     *
+     * @param book      must not be null.
+     * @param seriesIds can be null, must contain valid ids.
+     * @see BookManagement#removeBookFromAllSeries(Book)
+     * @see BookManagement#addBooksToSeries(Book, long)
+     */
+    public void setSeriesOfBook(@NonNull Book book, Collection<Long> seriesIds) {
+        removeBookFromAllSeries(book);
+        if (seriesIds != null) {
+            for (long seriesId : seriesIds) {
+                addBooksToSeries(book, seriesId);
+            }
         }
     }
 
@@ -307,28 +596,314 @@ public class BookManagement {
      *
      * @return an {@link Iterable} containing all {@link Series} instances in {@link SeriesRepository}.
      */
+    @Transactional(readOnly = true)
     public Streamable<Series> findAllSeries() {
         return seriesRepository.findAll();
     }
 
+    /**
+     * Returns a {@link SeriesSummary} of every {@link Series} present in {@link SeriesRepository}, ordered by id. The
+     * summaries are created by two aggregate queries, so no {@link Book}s are loaded.
+     *
+     * @return a {@link List} of {@link SeriesSummary}s.
+     */
+    @Transactional(readOnly = true)
+    public List<SeriesSummary> findAllSeriesSummaries() {
+        Map<Long, StringBuilder> authorStrings = new HashMap<>();
+        Map<Long, Set<Long>> authorIds = new HashMap<>();
+        for (Object[] row : seriesRepository.findAllAuthorCounts()) {
+            StringBuilder builder = authorStrings.computeIfAbsent((Long) row[0], id -> new StringBuilder());
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+            builder.append(row[2]).append(' ').append(row[3]);
+            authorIds.computeIfAbsent((Long) row[0], id -> new HashSet<>()).add((Long) row[1]);
+        }
+        List<SeriesSummary> summaries = new ArrayList<>();
+        for (Object[] row : seriesRepository.findAllBookCounts()) {
+            long id = (Long) row[0];
+            StringBuilder authorString = authorStrings.get(id);
+            summaries.add(new SeriesSummary(id, (Long) row[1], (String) row[2], (Long) row[3],
+                    authorString == null ? null : authorString.toString(),
+                    authorIds.getOrDefault(id, Set.of())));
+        }
+        return summaries;
+    }
+
+    /**
+     * Returns a {@link SeriesSummary} of the {@link Series} referenced by the given id. Equals the corresponding
+     * element of {@link BookManagement#findAllSeriesSummaries()}, but only loads the {@link Book}s of this
+     * {@link Series}.
+     *
+     * @param id must be valid, else {@link java.util.NoSuchElementException} is thrown.
+     * @return a {@link SeriesSummary}, never null.
+     */
+    @Transactional(readOnly = true)
+    public SeriesSummary findSeriesSummaryById(long id) {
+        Series series = findSeriesById(id);
+        Map<Author, Long> bookCounts = new HashMap<>();
+        for (Book book : series.getVolumes()) {
+            for (Author author : book.getAuthors()) {
+                bookCounts.merge(author, 1L, Long::sum);
+            }
+        }
+        List<Author> authors = new ArrayList<>(bookCounts.keySet());
+        authors.sort(Comparator.comparing((Author author) -> bookCounts.get(author)).reversed()
+                .thenComparingLong(Author::getId));
+        return new SeriesSummary(series.getId(), series.getVersion(), series.getTitle(), series.getVolumes().size(),
+                authors.isEmpty() ? null : authors.stream().map(Author::toString).collect(Collectors.joining(", ")),
+                authors.stream().map(Author::getId).collect(Collectors.toSet()));
+    }
+
     /**
      * Returns the {@link Series} referenced by the given id.
-     * If the id does not exist, a {@link java.util.NoSuchElementException} is thrown.
+     * If the id does not exist or belongs to another tenant, a {@link java.util.NoSuchElementException} is thrown.
      *
      * @param id must be valid, else {@link java.util.NoSuchElementException} is thrown.
      * @return the {@link Series} referenced by id.
      */
+    @Transactional(readOnly = true)
     public Series findSeriesById(long id) {
-        return seriesRepository.findById(id).orElseThrow();
+        return seriesRepository.findById(id).filter(Tenants::isAccessible).orElseThrow();
     }
 
     /**
-     * Returns all {@link Series} saved in {@link SeriesRepository} that contain the given {@link Book}.
+     * Returns all {@link Series} saved in {@link SeriesRepository} that contain the given {@link Book}. The ids of the
+     * {@link Series} are read from the in-memory adjacency index. Only the {@link Series} changed by the calling
+     * transaction are looked up in the database instead, so associations changed earlier in the transaction are
+     * found, as required by mutations like {@link BookManagement#deleteBook(Book)}.
      *
      * @param book must not be null.
-     * @return a {@link Streamable} containing {@link Series}.
+     * @return a {@link Streamable} containing {@link Series}, ordered by id.
+     * @see BookManagement#findSeriesIdsByBook(long)
      */
+    @Transactional(readOnly = true)
     public Streamable<Series> findSeriesByBook(@NonNull Book book) {
-        return seriesRepository.findByBooksContains(book);
+        List<Long> ids = findSeriesIdsByBook(book.getId());
+        Set<Long> changed = pendingChanges(EntityType.SERIES);
+        if (!changed.isEmpty()) {
+            SortedSet<Long> merged = new TreeSet<>(ids);
+            merged.removeAll(changed);
+            merged.addAll(seriesRepository.findIdsByBookIdAndIdIn(book.getId(), changed));
+            ids = new ArrayList<>(merged);
+        }
+        return Streamable.of(findSeriesByIds(ids));
+    }
+
+    /**
+     * Returns the ids of all {@link Series} containing the {@link Book} referenced by the given id without querying
+     * the database. The ids are read from the in-memory adjacency index, which only contains committed associations,
+     * so mutations must use {@link BookManagement#findSeriesByBook(Book)} instead.
+     *
+     * @param bookId the id of the {@link Book}.
+     * @return a {@link List} of ids in ascending order, empty if the {@link Book} is not part of a {@link Series}.
+     */
+    @Transactional(readOnly = true)
+    public List<Long> findSeriesIdsByBook(long bookId) {
+        return AdjacencyIndex.toList(seriesBooks.getSources(bookId));
+    }
+
+    /**
+     * Returns the {@link Series} referenced by the given ids in the order of the ids. Ids that do not exist are
+     * ignored.
+     *
+     * @param ids must not be null.
+     * @return a {@link List} containing the {@link Series}.
+     */
+    @Transactional(readOnly = true)
+    public List<Series> findSeriesByIds(@NonNull Collection<Long> ids) {
+        Map<Long, Series> series = Streamable.of(seriesRepository.findAllById(ids)).stream()
+                .collect(Collectors.toMap(Series::getId, Function.identity()));
+        return ids.stream().map(series::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the {@link Series} of the current tenant with a word of their title starting with the given prefix,
+     * using the in-memory series index. Case and diacritics are ignored.
+     *
+     * @param prefix must not be null.
+     * @param limit  the maximum number of returned {@link Series}, must be positive.
+     * @return a {@link List} containing at most limit {@link Series}.
+     */
+    @Transactional(readOnly = true)
+    public List<Series> findSeriesByPrefix(@NonNull String prefix, int limit) {
+        return findSeriesByIds(seriesIndex.find(Tenants.getCurrentTenantOrDefault(), prefix, limit));
+    }
+
+    /**
+     * Rebuilds the in-memory series index from {@link SeriesRepository}. Called once on startup, afterwards the index
+     * is maintained by {@link BookManagement#updateSeriesIndex(EntityChangedEvent)}.
+     */
+    @PostConstruct
+    public void rebuildSeriesIndex() {
+        Map<Long, List<String>> titles = new HashMap<>();
+        Map<Long, Long> tenants = new HashMap<>();
+        for (Object[] row : seriesRepository.findAllTitles()) {
+            titles.put((Long) row[0], List.of((String) row[1]));
+            tenants.put((Long) row[0], (Long) row[2]);
+        }
+        seriesIndex.replaceAll(titles, tenants);
+    }
+
+    /**
+     * Updates the in-memory series index after a change of a {@link Series} was committed. Called asynchronously by
+     * {@link com.peternaggschga.books.search.SearchIndexProjection} with the events of the transactional outbox.
+     *
+     * @param event must not be null, must refer to a {@link Series}.
+     */
+    @Transactional(readOnly = true)
+    public void updateSeriesIndex(@NonNull EntityChangedEvent event) {
+        Optional<Series> series = event.getChangeType() == ChangeType.DELETED ? Optional.empty()
+                : seriesRepository.findById(event.getEntityId());
+        if (series.isPresent()) {
+            seriesIndex.put(series.get().getTenantId(), event.getEntityId(), series.get().getTitle());
+        } else {
+            seriesIndex.remove(event.getEntityId());
+        }
+    }
+
+    /**
+     * Rebuilds the in-memory adjacency indexes of the {@link Author}s of all {@link Book}s and the {@link Book}s of
+     * all {@link Series}. Called once on startup, afterwards the indexes are maintained by
+     * {@link BookManagement#updateAdjacencyIndexes(EntityChangedEvent)}.
+     */
+    @PostConstruct
+    public void rebuildAdjacencyIndexes() {
+        bookAuthors.replaceAll(groupIds(bookRepository.findAllAuthorIds()));
+        seriesBooks.replaceAll(groupIds(seriesRepository.findAllVolumeIds()));
+    }
+
+    /**
+     * Updates the in-memory adjacency indexes after a change of a {@link Book} or {@link Series} was committed. The
+     * associations of the changed entity are reloaded in a new transaction, so the indexes always reflect the
+     * committed state. Changes of {@link Author}s need no update, as an {@link Author} is only deleted after all of
+     * their {@link Book}s were deleted or changed.
+     *
+     * @param event must not be null.
+     */
+    @TransactionalEventListener
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void updateAdjacencyIndexes(@NonNull EntityChangedEvent event) {
+        long id = event.getEntityId();
+        if (event.getEntityType() == EntityType.BOOK) {
+            bookAuthors.put(id, event.getChangeType() == ChangeType.DELETED ? List.of()
+                    : bookRepository.findAuthorIdsById(id));
+        } else if (event.getEntityType() == EntityType.SERIES) {
+            seriesBooks.put(id, event.getChangeType() == ChangeType.DELETED ? List.of()
+                    : seriesRepository.findBookIdsById(id));
+        }
+    }
+
+    /**
+     * Remembers the ids of the {@link Book}s and {@link Series} changed by the current transaction until it completes,
+     * as the adjacency indexes are only updated after the commit.
+     *
+     * @param event must not be null.
+     * @see BookManagement#findBooksByAuthor(Author)
+     * @see BookManagement#findSeriesByBook(Book)
+     */
+    @EventListener
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public void recordPendingChange(@NonNull EntityChangedEvent event) {
+        if ((event.getEntityType() != EntityType.BOOK && event.getEntityType() != EntityType.SERIES)
+                || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Map<EntityType, Set<Long>> changes =
+                (Map<EntityType, Set<Long>>) TransactionSynchronizationManager.getResource(pendingChangesKey);
+        if (changes == null) {
+            Map<EntityType, Set<Long>> newChanges = new EnumMap<>(EntityType.class);
+            TransactionSynchronizationManager.bindResource(pendingChangesKey, newChanges);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(pendingChangesKey);
+                }
+            });
+            changes = newChanges;
+        }
+        changes.computeIfAbsent(event.getEntityType(), type -> new HashSet<>()).add(event.getEntityId());
+    }
+
+    /**
+     * Returns a page of {@link Book}s for the JSON API, only containing the given fields.
+     *
+     * @param fields must not be null, must be parsed by {@link BookManagement#BOOK_RESOURCE}.
+     * @param after  the id of the last {@link Book} of the previous page.
+     * @param limit  must be valid regarding {@link CursorPage#checkLimit(int)}.
+     * @return a {@link CursorPage} of {@link Book} resources.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage findBookResources(@NonNull Set<String> fields, long after, int limit) {
+        return new CursorPage(resourceRepository.findPage(BOOK_RESOURCE, fields, after, limit), limit);
+    }
+
+    /**
+     * Returns the {@link Book} referenced by the given id as resource of the JSON API.
+     * If the id does not exist, a {@link java.util.NoSuchElementException} is thrown.
+     *
+     * @param id     must be valid, else {@link java.util.NoSuchElementException} is thrown.
+     * @param fields must not be null, must be parsed by {@link BookManagement#BOOK_RESOURCE}.
+     * @return a {@link Map} containing the given fields.
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> findBookResourceById(long id, @NonNull Set<String> fields) {
+        return resourceRepository.findById(BOOK_RESOURCE, fields, id).orElseThrow();
+    }
+
+    /**
+     * Returns a page of {@link Series} for the JSON API, only containing the given fields.
+     *
+     * @param fields must not be null, must be parsed by {@link BookManagement#SERIES_RESOURCE}.
+     * @param after  the id of the last {@link Series} of the previous page.
+     * @param limit  must be valid regarding {@link CursorPage#checkLimit(int)}.
+     * @return a {@link CursorPage} of {@link Series} resources.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage findSeriesResources(@NonNull Set<String> fields, long after, int limit) {
+        return new CursorPage(resourceRepository.findPage(SERIES_RESOURCE, fields, after, limit), limit);
+    }
+
+    /**
+     * Returns the {@link Series} referenced by the given id as resource of the JSON API.
+     * If the id does not exist, a {@link java.util.NoSuchElementException} is thrown.
+     *
+     * @param id     must be valid, else {@link java.util.NoSuchElementException} is thrown.
+     * @param fields must not be null, must be parsed by {@link BookManagement#SERIES_RESOURCE}.
+     * @return a {@link Map} containing the given fields.
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> findSeriesResourceById(long id, @NonNull Set<String> fields) {
+        return resourceRepository.findById(SERIES_RESOURCE, fields, id).orElseThrow();
+    }
+
+    private void indexBook(@NonNull Book book) {
+        List<String> terms = new ArrayList<>(List.of(book.getTitle(), book.getIsbn(),
+                book.getIsbn().replaceAll("[- ]", "")));
+        for (Author author : book.getAuthors()) {
+            terms.add(author.getFirstName() + ' ' + author.getLastName());
+            terms.add(author.getLastName() + ' ' + author.getFirstName());
+        }
+        bookIndex.put(book.getTenantId(), book.getId(), terms.toArray(new String[0]));
+    }
+
+    private static Map<Long, List<Long>> groupIds(@NonNull List<Object[]> pairs) {
+        Map<Long, List<Long>> result = new HashMap<>();
+        for (Object[] pair : pairs) {
+            result.computeIfAbsent((Long) pair[0], id -> new ArrayList<>()).add((Long) pair[1]);
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<Long> pendingChanges(@NonNull EntityType entityType) {
+        Map<EntityType, Set<Long>> changes =
+                (Map<EntityType, Set<Long>>) TransactionSynchronizationManager.getResource(pendingChangesKey);
+        return changes == null ? Set.of() : changes.getOrDefault(entityType, Set.of());
+    }
+
+    private void publishChange(@NonNull EntityType entityType, long id, @NonNull ChangeType changeType) {
+        eventPublisher.publishEvent(new EntityChangedEvent(entityType, id, changeType));
     }
 }
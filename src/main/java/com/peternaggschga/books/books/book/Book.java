@@ -1,27 +1,46 @@
 package com.peternaggschga.books.books.book;
 
+import com.peternaggschga.books.account.TenantOwned;
+import com.peternaggschga.books.account.Tenants;
 import com.peternaggschga.books.author.Author;
+import com.peternaggschga.books.covers.CoverStore;
+import com.peternaggschga.books.rendering.DateFormats;
 import lombok.NonNull;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.Filter;
 
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.ManyToMany;
+import javax.persistence.Table;
+import javax.persistence.Version;
 import javax.validation.constraints.*;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.time.format.FormatStyle;
 import java.util.*;
 
 /**
  * An Entity representing a Book.
  */
 @Entity
-public class Book {
+@DynamicUpdate
+@Filter(name = Tenants.FILTER)
+@Table(indexes = @Index(name = "book_tenant_index", columnList = Tenants.COLUMN + ", id"))
+public class Book implements TenantOwned {
     public static final String ISBN_REGEX = "^(?:ISBN(?:-1[03])?:? )?(?=[0-9X]{10}$|(?=(?:[0-9]+[- ]){3})[- 0-9X]{13}$|97[89][0-9]{10}$|(?=(?:[0-9]+[- ]){4})[- 0-9]{17}$)(?:97[89][- ]?)?[0-9]{1,5}[- ]?[0-9]+[- ]?[0-9]+[- ]?[0-9X]$";
     @GeneratedValue
     @Id
     private long id;
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private long version;
+    /**
+     * The tenant owning this entity. New instances are assigned to the tenant of the signed in account.
+     */
+    @Column(name = Tenants.COLUMN, nullable = false, updatable = false, columnDefinition = "bigint default 0")
+    private long tenantId = Tenants.getCurrentTenantOrDefault();
     @NotNull
     @NotBlank
     private String title;
@@ -38,6 +57,12 @@ public class Book {
     private int pages;
     @NotNull
     private Locale language;
+    /**
+     * The hash of the cover image in the {@link CoverStore}, null if no cover was uploaded.
+     */
+    @Column(length = 64)
+    @Pattern(regexp = CoverStore.HASH_REGEX)
+    private String coverHash;
 
     /**
      * No-arg constructor of {@link Book}, only used by {@link org.springframework.boot.SpringApplication Spring}.
@@ -87,19 +112,34 @@ public class Book {
         return id;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public long getTenantId() {
+        return tenantId;
+    }
+
     public Set<Author> getAuthors() {
         return authors;
     }
 
     public void setAuthors(@NonNull Author author) {
-        this.authors = Set.of(author);
+        setAuthors(Set.of(author));
     }
 
     public void setAuthors(@NonNull @NotEmpty Collection<Author> authors) {
         if (authors.isEmpty()) {
             throw new IllegalArgumentException("List of authors must not be empty");
         }
-        this.authors = new HashSet<>(authors);
+        if (this.authors == null) {
+            this.authors = new HashSet<>(authors);
+            return;
+        }
+        // the managed collection is changed in place, so only changed rows of the join table are written
+        this.authors.retainAll(authors);
+        this.authors.addAll(authors);
     }
 
     /**
@@ -161,6 +201,17 @@ public class Book {
         this.language = language;
     }
 
+    public String getCoverHash() {
+        return coverHash;
+    }
+
+    public void setCoverHash(String coverHash) {
+        if (coverHash != null && !coverHash.matches(CoverStore.HASH_REGEX)) {
+            throw new IllegalArgumentException("Cover hash must match regex " + CoverStore.HASH_REGEX);
+        }
+        this.coverHash = coverHash;
+    }
+
     public LocalDate getPublished() {
         return published;
     }
@@ -171,7 +222,7 @@ public class Book {
      * @return a {@link String} representing published.
      */
     public String getPublishedString() {
-        return published.format(DateTimeFormatter.ofLocalizedDate(FormatStyle.MEDIUM));
+        return DateFormats.formatDate(published);
     }
 
     @Override
@@ -3,19 +3,36 @@ package com.peternaggschga.books.books.book;
 import com.peternaggschga.books.author.Author;
 import com.peternaggschga.books.author.AuthorManagement;
 import com.peternaggschga.books.books.BookManagement;
-import com.peternaggschga.books.books.series.Series;
+import com.peternaggschga.books.covers.CoverStore;
+import com.peternaggschga.books.readmodel.Library;
+import com.peternaggschga.books.readmodel.ReadModel;
+import com.peternaggschga.books.rendering.PartialRows;
+import com.peternaggschga.books.rendering.RowFragmentCache;
+import com.peternaggschga.books.rendering.StreamingTableRenderer;
 import lombok.NonNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Slice;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.Errors;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.multipart.MultipartFile;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -25,63 +42,128 @@ import java.util.stream.Collectors;
 @Controller
 public class BookController {
     private static final Logger LOG = LoggerFactory.getLogger(BookController.class);
+    private static final int MAX_LOOKUP_LIMIT = 50;
     @NotNull
     private final BookManagement bookManagement;
     @NotNull
     private final AuthorManagement authorManagement;
+    @NotNull
+    private final RowFragmentCache rowFragmentCache;
+    @NotNull
+    private final StreamingTableRenderer tableRenderer;
+    @NotNull
+    private final ReadModel readModel;
+    @NotNull
+    private final CoverStore coverStore;
 
     /**
-     * Creates a new {@link BookController} instance with the given {@link BookManagement} and {@link AuthorManagement}.
+     * Creates a new {@link BookController} instance with the given {@link BookManagement}, {@link AuthorManagement},
+     * {@link RowFragmentCache}, {@link StreamingTableRenderer}, {@link ReadModel} and {@link CoverStore}.
      *
      * @param bookManagement   must not be null.
      * @param authorManagement must not be null.
+     * @param rowFragmentCache must not be null.
+     * @param tableRenderer    must not be null.
+     * @param readModel        must not be null.
+     * @param coverStore       must not be null.
      */
-    public BookController(@NonNull BookManagement bookManagement, @NonNull AuthorManagement authorManagement) {
+    public BookController(@NonNull BookManagement bookManagement, @NonNull AuthorManagement authorManagement,
+                          @NonNull RowFragmentCache rowFragmentCache, @NonNull StreamingTableRenderer tableRenderer,
+                          @NonNull ReadModel readModel, @NonNull CoverStore coverStore) {
         this.bookManagement = bookManagement;
         this.authorManagement = authorManagement;
+        this.rowFragmentCache = rowFragmentCache;
+        this.tableRenderer = tableRenderer;
+        this.readModel = readModel;
+        this.coverStore = coverStore;
     }
 
     @GetMapping("/books")
-    public String showBooks(Model model) {
+    public String showBooks(Model model, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        if (readModel.isEnabled()) {
+            Library library = readModel.getLibrary();
+            model.addAttribute("authorExists", !library.getAuthors().isEmpty());
+            if (tableRenderer.isEnabled()) {
+                tableRenderer.render("books/book/books", model.asMap(), library.getBooks()::stream,
+                        rowFragmentCache::renderBook, request, response);
+                return null;
+            }
+            model.addAttribute("books", library.getBooks());
+            return "books/book/books";
+        }
         model.addAttribute("authorExists", authorManagement.getAuthorCount() > 0);
+        if (tableRenderer.isEnabled()) {
+            tableRenderer.render("books/book/books", model.asMap(), bookManagement::streamAllBooks,
+                    rowFragmentCache::renderBook, request, response);
+            return null;
+        }
         model.addAttribute("books", bookManagement.findAllBooks());
         return "books/book/books";
     }
 
+    @GetMapping("/books/lookup")
+    @ResponseBody
+    public Map<String, Object> lookupBooks(@RequestParam(name = "q", defaultValue = "") String prefix,
+                                           @RequestParam(defaultValue = "0") int page,
+                                           @RequestParam(defaultValue = "10") int limit) {
+        Slice<Book> books = bookManagement.findBooksForLookup(prefix, Math.max(0, page),
+                Math.max(1, Math.min(limit, MAX_LOOKUP_LIMIT)));
+        Map<String, Object> result = new HashMap<>();
+        result.put("items", books.map(book -> Map.<String, Object>of("id", book.getId(), "label", book.toString()))
+                .getContent());
+        result.put("next", books.hasNext() ? books.getNumber() + 1 : null);
+        return result;
+    }
+
+    @GetMapping("/books/{id}/row")
+    public void showBookRow(@PathVariable long id, HttpServletResponse response) throws IOException {
+        PartialRows.writeRow(response, id, rowFragmentCache.renderBook(bookManagement.findBookById(id)));
+    }
+
     @GetMapping("/books/add")
-    public String addBook(Model model, @SuppressWarnings("unused") EditBookForm form) {
-        model.addAttribute("languages", BookManagement.LANGUAGES);
-        model.addAttribute("authors", authorManagement.findAllAuthors());
-        model.addAttribute("seriesIterable", bookManagement.findAllSeries());
-        model.addAttribute("id", -1);
+    public String addBook(Model model, EditBookForm form) {
+        addFormAttributes(model, form, -1);
         return "books/book/edit_book";
     }
 
     @GetMapping("/books/{id}")
     public String editBook(@PathVariable long id, Model model, EditBookForm form) {
         Book book = bookManagement.findBookById(id);
-        model.addAttribute("languages", BookManagement.LANGUAGES);
-        model.addAttribute("authors", authorManagement.findAllAuthors());
-        model.addAttribute("seriesIterable", bookManagement.findAllSeries());
-        model.addAttribute("id", book.getId());
         form.setTitle(book.getTitle());
         form.setAuthors(book.getAuthors().stream().map(Author::getId).collect(Collectors.toList()));
         form.setPublishedString(book.getPublished().toString());
         form.setIsbn(book.getIsbn());
         form.setPages(book.getPages());
         form.setLanguageString(book.getLanguage().toString());
-        form.setSeries(bookManagement.findSeriesByBook(book).map(Series::getId).toList());
+        form.setSeries(bookManagement.findSeriesIdsByBook(book.getId()));
+        form.setVersion(book.getVersion());
+        addFormAttributes(model, form, book.getId());
+        model.addAttribute("coverHash", book.getCoverHash());
         return "books/book/edit_book";
     }
 
+    @PostMapping("/books/{id}/cover")
+    public String uploadCover(@PathVariable long id, MultipartFile cover) throws IOException {
+        // fails for missing books and books of other tenants before the image is stored
+        bookManagement.findBookById(id);
+        String hash;
+        try (InputStream input = cover.getInputStream()) {
+            hash = coverStore.store(input);
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Ungültiges Cover für Buch " + id + ": " + e.getMessage());
+            return "redirect:/books/" + id + "?coverError";
+        }
+        bookManagement.updateCover(id, hash);
+        return "redirect:/books/" + id;
+    }
+
     @PostMapping("/books/save")
-    public String saveBook(long id, Model model, @Valid EditBookForm form, Errors result) {
+    public String saveBook(long id, Model model, @Valid EditBookForm form, Errors result,
+                           HttpServletRequest request, HttpServletResponse response) throws IOException {
         if (result.hasErrors()) {
             LOG.warn("Fehlerhafte Formulardaten: " + result.getAllErrors());
-            model.addAttribute("languages", BookManagement.LANGUAGES);
-            model.addAttribute("authors", authorManagement.findAllAuthors());
-            model.addAttribute("seriesIterable", bookManagement.findAllSeries());
-            model.addAttribute("id", id);
+            addFormAttributes(model, form, id);
             return "books/book/edit_book";
         }
         Set<Author> authors = form.getAuthors().stream().map(authorManagement::findAuthorById)
@@ -90,20 +172,40 @@ public class BookController {
         if (id < 0) {
             book = bookManagement.createBook(form, authors);
         } else {
-            book = bookManagement.updateBook(id, form, authors);
-        }
-        bookManagement.removeBookFromAllSeries(book);
-        if (form.getSeries() != null) {
-            for (long seriesId : form.getSeries()) {
-                bookManagement.addBooksToSeries(book, seriesId);
+            try {
+                book = bookManagement.updateBook(id, form, authors);
+            } catch (ObjectOptimisticLockingFailureException e) {
+                LOG.warn("Konflikt beim Speichern von Buch " + id + ": " + e.getMessage());
+                form.setVersion(bookManagement.findBookById(id).getVersion());
+                model.addAttribute("conflict", true);
+                addFormAttributes(model, form, id);
+                return "books/book/edit_book";
             }
         }
+        bookManagement.setSeriesOfBook(book, form.getSeries());
+        if (PartialRows.isPartial(request)) {
+            PartialRows.writeRow(response, book.getId(), rowFragmentCache.renderBook(book));
+            return null;
+        }
         return "redirect:/books";
     }
 
     @PostMapping("/books/delete")
-    public String deleteBook(long id) {
+    public String deleteBook(long id, HttpServletRequest request, HttpServletResponse response) {
         bookManagement.deleteBook(id);
+        if (PartialRows.isPartial(request)) {
+            PartialRows.writeDeleted(response, id);
+            return null;
+        }
         return "redirect:/books";
     }
+
+    private void addFormAttributes(@NonNull Model model, @NonNull EditBookForm form, long id) {
+        model.addAttribute("languages", BookManagement.LANGUAGES);
+        model.addAttribute("selectedAuthors", form.getAuthors() == null ? List.of()
+                : authorManagement.findAuthorsByIds(form.getAuthors()));
+        model.addAttribute("selectedSeries", form.getSeries() == null ? List.of()
+                : bookManagement.findSeriesByIds(form.getSeries()));
+        model.addAttribute("id", id);
+    }
 }
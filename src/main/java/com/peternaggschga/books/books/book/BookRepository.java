@@ -1,11 +1,22 @@
 package com.peternaggschga.books.books.book;
 
 import com.peternaggschga.books.author.Author;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.data.util.Streamable;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import javax.validation.constraints.NotNull;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 /**
  * An interface defining custom queries. Extends {@link CrudRepository} of {@link Book}s.
@@ -22,10 +33,109 @@ public interface BookRepository extends CrudRepository<Book, Long> {
     Streamable<Book> findAll();
 
     /**
-     * Returns all {@link Book}s associated with the given {@link Author}.
+     * Returns all saved {@link Book} instances. Must be called and consumed inside a transaction.
+     *
+     * @return a {@link Stream} containing all {@link Book} instances.
+     */
+    @Query("SELECT b FROM Book b")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "200"))
+    Stream<Book> streamAll();
+
+    /**
+     * Returns the ids of those {@link Book}s referenced by the given ids that are associated with the {@link Author}
+     * referenced by authorId. As the query flushes the persistence context, associations changed by the calling
+     * transaction are found.
+     *
+     * @param authorId the id of the {@link Author}.
+     * @param ids      must not be null or empty.
+     * @return a {@link List} of ids.
+     */
+    @Query("SELECT b.id FROM Book b JOIN b.authors a WHERE a.id = :authorId AND b.id IN :ids")
+    List<Long> findIdsByAuthorIdAndIdIn(@Param("authorId") long authorId, @NotNull @Param("ids") Collection<Long> ids);
+
+    /**
+     * Returns the ids of the {@link Author}s of the {@link Book} referenced by the given id without loading the
+     * entities.
+     *
+     * @param id the id of the {@link Book}.
+     * @return a {@link List} of ids, empty if the {@link Book} does not exist.
+     */
+    @Query("SELECT a.id FROM Book b JOIN b.authors a WHERE b.id = :id")
+    List<Long> findAuthorIdsById(@Param("id") long id);
+
+    /**
+     * Returns the id, title, isbn and tenant of all saved {@link Book} instances together with the first and last
+     * name of each of their {@link Author}s without loading the entities.
+     *
+     * @return a {@link List} containing an array of id, title, isbn, first name, last name and tenant id for every
+     * pair of {@link Book} and {@link Author}.
+     */
+    @Query("SELECT b.id, b.title, b.isbn, a.firstName, a.lastName, b.tenantId FROM Book b JOIN b.authors a")
+    List<Object[]> findAllLookupTerms();
+
+    /**
+     * Returns the id, title, isbn and tenant of all saved {@link Book} instances without loading the entities.
+     *
+     * @return a {@link List} containing an array of id, title, isbn and tenant id for every {@link Book}, ordered
+     * by id.
+     */
+    @Query("SELECT b.id, b.title, b.isbn, b.tenantId FROM Book b ORDER BY b.id")
+    List<Object[]> findAllTitles();
+
+    /**
+     * Returns the number of saved {@link Book} instances of every tenant.
+     *
+     * @return a {@link List} containing an array of tenant id and number of {@link Book}s for every tenant.
+     */
+    @Query("SELECT e.tenantId, COUNT(e) FROM Book e GROUP BY e.tenantId")
+    List<Object[]> countByTenant();
+
+    /**
+     * Returns the ids of all pairs of saved {@link Book}s and their {@link Author}s without loading the entities.
+     *
+     * @return a {@link List} containing an array of book id and author id for every pair of {@link Book} and
+     * {@link Author}, ordered by book id and author id.
+     */
+    @Query("SELECT b.id, a.id FROM Book b JOIN b.authors a ORDER BY b.id, a.id")
+    List<Object[]> findAllAuthorIds();
+
+    /**
+     * Returns the ids of all saved {@link Book}s, the most recently read first. {@link Book}s that were never read
+     * come last.
+     *
+     * @param pageable must not be null.
+     * @return a {@link Slice} of ids.
+     */
+    @Query("SELECT b.id FROM Book b LEFT JOIN Reading r ON r.book = b "
+            + "GROUP BY b.id ORDER BY MAX(r.beginning) DESC NULLS LAST, b.id")
+    Slice<Long> findIdsByLastReading(@NotNull Pageable pageable);
+
+    /**
+     * Returns the given ids of {@link Book}s, the most recently read first. {@link Book}s that were never read
+     * come last.
+     *
+     * @param ids      must not be null or empty.
+     * @param pageable must not be null.
+     * @return a {@link Slice} of ids.
+     */
+    @Query("SELECT b.id FROM Book b LEFT JOIN Reading r ON r.book = b WHERE b.id IN :ids "
+            + "GROUP BY b.id ORDER BY MAX(r.beginning) DESC NULLS LAST, b.id")
+    Slice<Long> findIdsByLastReading(@NotNull @Param("ids") Collection<Long> ids, @NotNull Pageable pageable);
+
+    /**
+     * Returns whether any saved {@link Book} has the cover referenced by the given hash.
+     *
+     * @param coverHash must not be null.
+     * @return true if such a {@link Book} exists.
+     */
+    boolean existsByCoverHash(@NotNull String coverHash);
+
+    /**
+     * Returns whether a {@link Book} of the given tenant has the cover referenced by the given hash.
      *
-     * @param author must not be null.
-     * @return a {@link Streamable} containing {@link Book}s.
+     * @param coverHash must not be null.
+     * @param tenantId  the id of the tenant.
+     * @return true if such a {@link Book} exists.
      */
-    Streamable<Book> findByAuthorsContains(@NotNull Author author);
+    boolean existsByCoverHashAndTenantId(@NotNull String coverHash, long tenantId);
 }
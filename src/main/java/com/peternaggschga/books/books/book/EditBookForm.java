@@ -38,9 +38,10 @@ public class EditBookForm {
     private List<Long> authors;
     @SuppressWarnings("FieldMayBeFinal")
     private List<Long> series;
+    private Long version;
 
     public EditBookForm(String title, List<Long> authors, String publishedString, String isbn, Integer pages,
-                        String languageString, List<Long> series) {
+                        String languageString, List<Long> series, Long version) {
         this.title = title;
         this.authors = authors;
         this.publishedString = publishedString;
@@ -48,6 +49,7 @@ public class EditBookForm {
         this.pages = pages;
         this.languageString = languageString;
         this.series = series;
+        this.version = version;
     }
 
     public String getTitle() {
@@ -89,6 +91,10 @@ public class EditBookForm {
         return series;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
     public void setTitle(@NonNull @NotBlank String title) {
         this.title = title;
     }
@@ -116,4 +122,8 @@ public class EditBookForm {
     public void setSeries(@NonNull List<Long> series) {
         this.series = series;
     }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
 }
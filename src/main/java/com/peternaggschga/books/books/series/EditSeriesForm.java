@@ -16,10 +16,12 @@ public class EditSeriesForm {
     private String title;
     @SuppressWarnings("FieldMayBeFinal")
     private List<Long> books;
+    private Long version;
 
-    public EditSeriesForm(String title, List<Long> books) {
+    public EditSeriesForm(String title, List<Long> books, Long version) {
         this.title = title;
         this.books = books;
+        this.version = version;
     }
 
     public String getTitle() {
@@ -30,6 +32,10 @@ public class EditSeriesForm {
         return books;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
     public void setTitle(@NonNull @NotBlank String title) {
         this.title = title;
     }
@@ -37,4 +43,8 @@ public class EditSeriesForm {
     public void setBooks(@NonNull List<Long> books) {
         this.books = books;
     }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
 }
@@ -1,13 +1,22 @@
 package com.peternaggschga.books.books.series;
 
+import com.peternaggschga.books.account.TenantOwned;
+import com.peternaggschga.books.account.Tenants;
 import com.peternaggschga.books.author.Author;
 import com.peternaggschga.books.books.book.Book;
 import lombok.NonNull;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.Filter;
 
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.ManyToMany;
+import javax.persistence.OrderColumn;
+import javax.persistence.Table;
+import javax.persistence.Version;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import java.util.*;
@@ -16,19 +25,36 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
- * An entity representing a series of {@link Book}s.
+ * An entity representing a series of {@link Book}s. The order of the volumes is persisted, new {@link Book}s are
+ * inserted according to their date of publication.
  */
 @Entity
-public class Series {
+@DynamicUpdate
+@Filter(name = Tenants.FILTER)
+@Table(indexes = @Index(name = "series_tenant_index", columnList = Tenants.COLUMN + ", id"))
+public class Series implements TenantOwned {
+    /**
+     * The name of the column holding the position of a {@link Book} in its series.
+     */
+    public static final String VOLUME_COLUMN = "volume";
     @GeneratedValue
     @Id
     private long id;
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private long version;
+    /**
+     * The tenant owning this entity. New instances are assigned to the tenant of the signed in account.
+     */
+    @Column(name = Tenants.COLUMN, nullable = false, updatable = false, columnDefinition = "bigint default 0")
+    private long tenantId = Tenants.getCurrentTenantOrDefault();
     @NotNull
     @NotBlank
     private String title;
     @NotNull
     @ManyToMany
-    private Set<Book> books;
+    @OrderColumn(name = VOLUME_COLUMN)
+    private List<Book> books;
 
     /**
      * No-arg constructor of {@link Series}, only used by {@link org.springframework.boot.SpringApplication Spring}.
@@ -43,20 +69,37 @@ public class Series {
      * @param books must not be null.
      */
     public Series(@NonNull @NotBlank String title, Collection<Book> books) {
-        this.books = new TreeSet<>(Comparator.comparing(Book::getPublished));
+        this.books = new ArrayList<>();
         setTitle(title);
         setBooks(books);
     }
 
     /**
      * Adds all {@link Book}s of the given {@link Collection} and their associated {@link Author}s to the series.
+     * Every {@link Book} is inserted behind all volumes published before or at the same date. {@link Book}s already
+     * contained in the series are ignored.
      *
      * @param books can be null.
      * @return true if books were changed by the operation.
      */
     @SuppressWarnings("UnusedReturnValue")
     public boolean addAll(Collection<Book> books) {
-        return books != null && this.books.addAll(books);
+        if (books == null) {
+            return false;
+        }
+        boolean changed = false;
+        for (Book book : books) {
+            if (this.books.contains(book)) {
+                continue;
+            }
+            int index = this.books.size();
+            while (index > 0 && this.books.get(index - 1).getPublished().isAfter(book.getPublished())) {
+                index--;
+            }
+            this.books.add(index, book);
+            changed = true;
+        }
+        return changed;
     }
 
     public void setBooks(Collection<Book> books) {
@@ -68,6 +111,15 @@ public class Series {
         return id;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public long getTenantId() {
+        return tenantId;
+    }
+
     public String getTitle() {
         return title;
     }
@@ -115,9 +167,19 @@ public class Series {
         return builder.toString();
     }
 
+    /**
+     * Returns the {@link Book}s contained in this series in the order of their volumes.
+     *
+     * @return an unmodifiable {@link List} of {@link Book}s.
+     */
+    public List<Book> getVolumes() {
+        return Collections.unmodifiableList(books);
+    }
+
     /**
      * Returns a {@link SortedSet} of all {@link Book}s contained in this series.
-     * The books are sorted by their date of publication.
+     * The books are sorted by their date of publication. The set is a copy, use {@link Series#getVolumes()} to
+     * iterate the persisted order without copying.
      *
      * @return a {@link SortedSet} of {@link Book}s.
      */
@@ -0,0 +1,45 @@
+package com.peternaggschga.books.books.series;
+
+import com.peternaggschga.books.api.CursorPage;
+import com.peternaggschga.books.books.BookManagement;
+import lombok.NonNull;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.validation.constraints.NotNull;
+import java.util.Map;
+
+/**
+ * A controller serving {@link Series} resources of the JSON API.
+ */
+@RestController
+@RequestMapping("/api/v1/series")
+public class SeriesApiController {
+    @NotNull
+    private final BookManagement management;
+
+    /**
+     * Creates a new {@link SeriesApiController} instance with the given {@link BookManagement}.
+     *
+     * @param management must not be null.
+     */
+    public SeriesApiController(@NonNull BookManagement management) {
+        this.management = management;
+    }
+
+    @GetMapping
+    public CursorPage findAllSeries(@RequestParam(required = false) String cursor,
+                                    @RequestParam(defaultValue = "50") int limit,
+                                    @RequestParam(required = false) String fields) {
+        return management.findSeriesResources(BookManagement.SERIES_RESOURCE.parseFields(fields),
+                CursorPage.decode(cursor), CursorPage.checkLimit(limit));
+    }
+
+    @GetMapping("/{id}")
+    public Map<String, Object> findSeries(@PathVariable long id, @RequestParam(required = false) String fields) {
+        return management.findSeriesResourceById(id, BookManagement.SERIES_RESOURCE.parseFields(fields));
+    }
+}
@@ -2,18 +2,31 @@ package com.peternaggschga.books.books.series;
 
 import com.peternaggschga.books.books.BookManagement;
 import com.peternaggschga.books.books.book.Book;
+import com.peternaggschga.books.readmodel.Library;
+import com.peternaggschga.books.readmodel.ReadModel;
+import com.peternaggschga.books.rendering.PartialRows;
+import com.peternaggschga.books.rendering.RowFragmentCache;
+import com.peternaggschga.books.rendering.StreamingTableRenderer;
 import lombok.NonNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.Errors;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -22,60 +35,129 @@ import java.util.stream.Collectors;
 @Controller
 public class SeriesController {
     private static final Logger LOG = LoggerFactory.getLogger(SeriesController.class);
+    private static final int MAX_LOOKUP_LIMIT = 50;
     @NotNull
     private final BookManagement management;
+    @NotNull
+    private final RowFragmentCache rowFragmentCache;
+    @NotNull
+    private final StreamingTableRenderer tableRenderer;
+    @NotNull
+    private final ReadModel readModel;
 
     /**
-     * Creates a new {@link SeriesController} instance with the given {@link BookManagement}.
+     * Creates a new {@link SeriesController} instance with the given {@link BookManagement},
+     * {@link RowFragmentCache}, {@link StreamingTableRenderer} and {@link ReadModel}.
      *
-     * @param management must not be null.
+     * @param management       must not be null.
+     * @param rowFragmentCache must not be null.
+     * @param tableRenderer    must not be null.
+     * @param readModel        must not be null.
      */
-    public SeriesController(@NonNull BookManagement management) {
+    public SeriesController(@NonNull BookManagement management, @NonNull RowFragmentCache rowFragmentCache,
+                            @NonNull StreamingTableRenderer tableRenderer, @NonNull ReadModel readModel) {
         this.management = management;
+        this.rowFragmentCache = rowFragmentCache;
+        this.tableRenderer = tableRenderer;
+        this.readModel = readModel;
     }
 
     @GetMapping("/series")
-    public String showSeries(Model model) {
-        model.addAttribute("seriesIterable", management.findAllSeries());
+    public String showSeries(Model model, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        if (readModel.isEnabled()) {
+            Library library = readModel.getLibrary();
+            if (tableRenderer.isEnabled()) {
+                tableRenderer.render("books/series/series", model.asMap(), library.getSeries()::stream,
+                        rowFragmentCache::renderSeries, request, response);
+                return null;
+            }
+            model.addAttribute("seriesIterable", library.getSeries());
+            return "books/series/series";
+        }
+        if (tableRenderer.isEnabled()) {
+            tableRenderer.render("books/series/series", model.asMap(),
+                    () -> management.findAllSeriesSummaries().stream(), rowFragmentCache::renderSeries, request,
+                    response);
+            return null;
+        }
+        model.addAttribute("seriesIterable", management.findAllSeriesSummaries());
         return "books/series/series";
     }
 
+    @GetMapping("/series/lookup")
+    @ResponseBody
+    public List<Map<String, Object>> lookupSeries(@RequestParam("q") String prefix,
+                                                  @RequestParam(defaultValue = "10") int limit) {
+        return management.findSeriesByPrefix(prefix, Math.max(1, Math.min(limit, MAX_LOOKUP_LIMIT))).stream()
+                .map(series -> Map.<String, Object>of("id", series.getId(), "label", series.getTitle()))
+                .collect(Collectors.toList());
+    }
+
+    @GetMapping("/series/{id}/row")
+    public void showSeriesRow(@PathVariable long id, HttpServletResponse response) throws IOException {
+        PartialRows.writeRow(response, id, rowFragmentCache.renderSeries(management.findSeriesSummaryById(id)));
+    }
+
     @GetMapping("/series/add")
-    public String addSeries(Model model, @SuppressWarnings("unused") EditSeriesForm form) {
-        model.addAttribute("books", management.findAllBooks());
-        model.addAttribute("id", -1);
+    public String addSeries(Model model, EditSeriesForm form) {
+        addFormAttributes(model, form, -1);
         return "books/series/edit_series";
     }
 
     @GetMapping("/series/{id}")
     public String editAuthor(@PathVariable long id, Model model, EditSeriesForm form) {
         Series series = management.findSeriesById(id);
-        model.addAttribute("books", management.findAllBooks());
-        model.addAttribute("id", series.getId());
         form.setTitle(series.getTitle());
-        form.setBooks(series.getBooks().stream().map(Book::getId).collect(Collectors.toList()));
+        form.setBooks(series.getVolumes().stream().map(Book::getId).collect(Collectors.toList()));
+        form.setVersion(series.getVersion());
+        addFormAttributes(model, form, series.getId());
         return "books/series/edit_series";
     }
 
     @PostMapping("/series/save")
-    public String saveSeries(long id, Model model, @Valid EditSeriesForm form, Errors result) {
+    public String saveSeries(long id, Model model, @Valid EditSeriesForm form, Errors result,
+                             HttpServletRequest request, HttpServletResponse response) throws IOException {
         if (result.hasErrors()) {
             LOG.warn("Fehlerhafte Formulardaten: " + result.getAllErrors());
-            model.addAttribute("books", management.findAllBooks());
-            model.addAttribute("id", id);
+            addFormAttributes(model, form, id);
             return "books/series/edit_series";
         }
+        Series series;
         if (id < 0) {
-            management.createSeries(form);
+            series = management.createSeries(form);
         } else {
-            management.updateSeries(id, form);
+            try {
+                series = management.updateSeries(id, form);
+            } catch (ObjectOptimisticLockingFailureException e) {
+                LOG.warn("Konflikt beim Speichern von Reihe " + id + ": " + e.getMessage());
+                form.setVersion(management.findSeriesById(id).getVersion());
+                model.addAttribute("conflict", true);
+                addFormAttributes(model, form, id);
+                return "books/series/edit_series";
+            }
+        }
+        if (PartialRows.isPartial(request)) {
+            PartialRows.writeRow(response, series.getId(),
+                    rowFragmentCache.renderSeries(management.findSeriesSummaryById(series.getId())));
+            return null;
         }
         return "redirect:/series";
     }
 
     @PostMapping("/series/delete")
-    public String deleteSeries(long id) {
+    public String deleteSeries(long id, HttpServletRequest request, HttpServletResponse response) {
         management.deleteSeries(id);
+        if (PartialRows.isPartial(request)) {
+            PartialRows.writeDeleted(response, id);
+            return null;
+        }
         return "redirect:/series";
     }
+
+    private void addFormAttributes(@NonNull Model model, @NonNull EditSeriesForm form, long id) {
+        model.addAttribute("selectedBooks", form.getBooks() == null ? List.of()
+                : management.findBooksByIds(form.getBooks()));
+        model.addAttribute("id", id);
+    }
 }
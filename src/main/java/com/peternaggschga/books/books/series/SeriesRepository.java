@@ -1,11 +1,17 @@
 package com.peternaggschga.books.books.series;
 
 import com.peternaggschga.books.books.book.Book;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.data.util.Streamable;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.validation.constraints.NotNull;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * An interface defining custom queries. Extends {@link CrudRepository} of {@link Series}.
@@ -22,10 +28,88 @@ public interface SeriesRepository extends CrudRepository<Series, Long> {
     Streamable<Series> findAll();
 
     /**
-     * Returns all {@link Series} that contain the given {@link Book}.
+     * Returns the ids of those {@link Series} referenced by the given ids that contain the {@link Book} referenced by
+     * bookId. As the query flushes the persistence context, associations changed by the calling transaction are
+     * found.
      *
-     * @param book must not be null.
-     * @return a {@link Streamable} containing {@link Series}.
+     * @param bookId the id of the {@link Book}.
+     * @param ids    must not be null or empty.
+     * @return a {@link List} of ids.
      */
-    Streamable<Series> findByBooksContains(@NotNull Book book);
+    @Query("SELECT s.id FROM Series s JOIN s.books b WHERE b.id = :bookId AND s.id IN :ids")
+    List<Long> findIdsByBookIdAndIdIn(@Param("bookId") long bookId, @NotNull @Param("ids") Collection<Long> ids);
+
+    /**
+     * Returns the ids of the {@link Book}s of the {@link Series} referenced by the given id without loading the
+     * entities.
+     *
+     * @param id the id of the {@link Series}.
+     * @return a {@link List} of ids, empty if the {@link Series} does not exist.
+     */
+    @Query("SELECT b.id FROM Series s JOIN s.books b WHERE s.id = :id")
+    List<Long> findBookIdsById(@Param("id") long id);
+
+    /**
+     * Returns the id, title and tenant of all saved {@link Series} instances without loading the entities.
+     *
+     * @return a {@link List} containing an array of id, title and tenant id for every {@link Series}.
+     */
+    @Query("SELECT s.id, s.title, s.tenantId FROM Series s")
+    List<Object[]> findAllTitles();
+
+    /**
+     * Returns the number of saved {@link Series} instances of every tenant.
+     *
+     * @return a {@link List} containing an array of tenant id and number of {@link Series}s for every tenant.
+     */
+    @Query("SELECT e.tenantId, COUNT(e) FROM Series e GROUP BY e.tenantId")
+    List<Object[]> countByTenant();
+
+    /**
+     * Returns the id, version, title and tenant of all saved {@link Series} instances together with the number of
+     * their {@link Book}s without loading the entities.
+     *
+     * @return a {@link List} containing an array of id, version, title, number of {@link Book}s and tenant id for
+     * every {@link Series}, ordered by id.
+     */
+    @Query("SELECT s.id, s.version, s.title, COUNT(b), s.tenantId FROM Series s LEFT JOIN s.books b "
+            + "GROUP BY s.id, s.version, s.title, s.tenantId ORDER BY s.id")
+    List<Object[]> findAllBookCounts();
+
+    /**
+     * Returns the id of every {@link Series} together with the id, first name and last name of every
+     * {@link com.peternaggschga.books.author.Author} who wrote a {@link Book} of it and the number of these
+     * {@link Book}s without loading the entities.
+     *
+     * @return a {@link List} containing an array of series id, author id, first name, last name and number of
+     * {@link Book}s, ordered by series and descending number of {@link Book}s.
+     */
+    @Query("SELECT s.id, a.id, a.firstName, a.lastName, COUNT(b) FROM Series s JOIN s.books b JOIN b.authors a "
+            + "GROUP BY s.id, a.id, a.firstName, a.lastName ORDER BY s.id, COUNT(b) DESC, a.id")
+    List<Object[]> findAllAuthorCounts();
+
+    /**
+     * Returns the ids of all saved {@link Series} together with the ids of their {@link Book}s without loading the
+     * entities.
+     *
+     * @return a {@link List} containing an array of series id and book id for every volume, ordered by series and
+     * volume.
+     */
+    @Query("SELECT s.id, b.id FROM Series s JOIN s.books b ORDER BY s.id, INDEX(b)")
+    List<Object[]> findAllVolumeIds();
+
+    /**
+     * Sets the volume of all {@link Book}s in a {@link Series} that do not have one yet according to their date of
+     * publication. Used to migrate series saved before the order of volumes was persisted.
+     *
+     * @return the number of updated rows.
+     */
+    @Modifying
+    @Transactional
+    @Query(nativeQuery = true, value = "UPDATE series_books sb SET " + Series.VOLUME_COLUMN + " = ("
+            + "SELECT COUNT(*) FROM series_books other JOIN book ob ON ob.id = other.books_id "
+            + "JOIN book b ON b.id = sb.books_id WHERE other.series_id = sb.series_id "
+            + "AND (ob.published < b.published OR (ob.published = b.published AND ob.id < b.id))) "
+            + "WHERE " + Series.VOLUME_COLUMN + " IS NULL")
+    int initializeVolumes();
 }
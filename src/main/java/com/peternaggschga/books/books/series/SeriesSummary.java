@@ -0,0 +1,75 @@
+package com.peternaggschga.books.books.series;
+
+import com.peternaggschga.books.author.Author;
+import com.peternaggschga.books.books.book.Book;
+import lombok.NonNull;
+
+import javax.validation.constraints.NotNull;
+import java.util.Set;
+
+/**
+ * A read-only summary of a {@link Series} as displayed on the series list. It is created from aggregate queries, so
+ * the {@link Book}s of the {@link Series} are never loaded.
+ */
+public class SeriesSummary {
+    private final long id;
+    private final long version;
+    @NotNull
+    private final String title;
+    private final long bookCount;
+    private final String authorString;
+    @NotNull
+    private final Set<Long> authorIds;
+
+    /**
+     * Creates a new {@link SeriesSummary} instance with the given id, version, title, number of {@link Book}s,
+     * names and ids of {@link Author}s.
+     *
+     * @param id           the id of the {@link Series}.
+     * @param version      the version of the {@link Series}.
+     * @param title        must not be null.
+     * @param bookCount    the number of {@link Book}s in the {@link Series}.
+     * @param authorString can be null, if the {@link Series} contains no {@link Book}s.
+     * @param authorIds    must not be null.
+     */
+    public SeriesSummary(long id, long version, @NonNull String title, long bookCount, String authorString,
+                         @NonNull Set<Long> authorIds) {
+        this.id = id;
+        this.version = version;
+        this.title = title;
+        this.bookCount = bookCount;
+        this.authorString = authorString;
+        this.authorIds = Set.copyOf(authorIds);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public long getBookCount() {
+        return bookCount;
+    }
+
+    /**
+     * Returns a {@link String} containing the names of all {@link Author}s who wrote a {@link Book} in the series,
+     * sorted by the amount of books in the series they worked on.
+     *
+     * @return a {@link String} containing names, null if the series contains no {@link Book}s.
+     * @see Series#getAuthorString()
+     */
+    public String getAuthorString() {
+        return authorString;
+    }
+
+    public Set<Long> getAuthorIds() {
+        return authorIds;
+    }
+}
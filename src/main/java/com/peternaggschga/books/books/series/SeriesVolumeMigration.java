@@ -0,0 +1,49 @@
+package com.peternaggschga.books.books.series;
+
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Persists the order of volumes of {@link Series} saved before it was stored in the database. The migration runs
+ * once on startup, before any bean reading the volumes is initialized: beans building indexes or snapshots of
+ * {@link Series} on startup declare a dependency on {@link SeriesVolumeMigration#BEAN_NAME}, so they never read
+ * volumes that are still null.
+ */
+@Component(SeriesVolumeMigration.BEAN_NAME)
+public class SeriesVolumeMigration {
+    /**
+     * The name of the migration bean, used by dependent beans.
+     */
+    public static final String BEAN_NAME = "seriesVolumeMigration";
+    private static final Logger LOG = LoggerFactory.getLogger(SeriesVolumeMigration.class);
+    @NotNull
+    private final SeriesRepository seriesRepository;
+
+    /**
+     * Creates a new {@link SeriesVolumeMigration} instance with the given {@link SeriesRepository}.
+     *
+     * @param seriesRepository must not be null.
+     */
+    public SeriesVolumeMigration(@NonNull SeriesRepository seriesRepository) {
+        this.seriesRepository = seriesRepository;
+    }
+
+    /**
+     * Sets the volume of all {@link com.peternaggschga.books.books.book.Book}s in a {@link Series} that do not have
+     * one yet.
+     *
+     * @see SeriesRepository#initializeVolumes()
+     */
+    @PostConstruct
+    public void migrate() {
+        int updated = seriesRepository.initializeVolumes();
+        if (updated > 0) {
+            LOG.info("Bandnummern von " + updated + " Büchern in Reihen initialisiert");
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.peternaggschga.books.changelog;
+
+import com.peternaggschga.books.events.EntityChangedEvent;
+import com.peternaggschga.books.events.OutboxConsumer;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * An append-only audit trail of all committed {@link EntityChangedEvent}s. The events are received as
+ * {@link OutboxConsumer} from the transactional outbox, so no committed change is lost if the application stops
+ * before it was recorded; in turn, a change may be recorded more than once. The records are written to memory-mapped
+ * segment files of a fixed size, so appending a record is a copy into memory and does not cost a database write. Every
+ * batch is forced to disk before the outbox entries are deleted. Once a segment is full, it is forced to disk and a
+ * new segment is started. Every segment starts with a header of
+ * {@link ChangeLog#HEADER_SIZE} bytes containing {@link ChangeLog#MAGIC}, {@link ChangeLog#FORMAT_VERSION} and its
+ * sequence number, followed by {@link ChangeLogRecord}s. The segments can be read by {@link ChangeLogReader}.
+ */
+@Component
+@ConditionalOnProperty(name = "books.changelog.enabled", havingValue = "true", matchIfMissing = true)
+public class ChangeLog implements OutboxConsumer {
+    /**
+     * The first bytes of every segment file.
+     */
+    public static final int MAGIC = 0x424b434c;
+    /**
+     * The version of the record format written by this class.
+     */
+    public static final short FORMAT_VERSION = 1;
+    /**
+     * The number of bytes of the header of a segment.
+     */
+    public static final int HEADER_SIZE = Integer.BYTES + Short.BYTES + Long.BYTES;
+    private static final Logger LOG = LoggerFactory.getLogger(ChangeLog.class);
+    @NotNull
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean forceOnAppend;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long sequence;
+
+    /**
+     * Creates a new {@link ChangeLog} instance writing to the given directory. Appending continues after the last
+     * valid record of the newest segment, torn records left by a crash are overwritten.
+     *
+     * @param directory     must not be null, is created if it does not exist.
+     * @param segmentSize   the number of bytes of a segment file, must be able to hold at least one record.
+     * @param forceOnAppend whether every record is forced to disk immediately instead of after every batch.
+     * @throws IOException if the directory or the newest segment could not be opened.
+     */
+    public ChangeLog(@Value("${books.changelog.directory:./db/changelog}") @NonNull Path directory,
+                     @Value("${books.changelog.segment-size:16777216}") int segmentSize,
+                     @Value("${books.changelog.force-on-append:false}") boolean forceOnAppend) throws IOException {
+        if (segmentSize < HEADER_SIZE + ChangeLogRecord.RECORD_SIZE) {
+            throw new IllegalArgumentException("Segment size must hold at least one record");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.segmentSize = segmentSize;
+        this.forceOnAppend = forceOnAppend;
+        List<Path> segments = ChangeLogReader.listSegments(directory);
+        if (segments.isEmpty()) {
+            openSegment(1);
+            return;
+        }
+        Path newest = segments.get(segments.size() - 1);
+        sequence = ChangeLogReader.sequenceOf(newest);
+        channel = FileChannel.open(newest, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), segmentSize));
+        if (buffer.getInt(0) != MAGIC || buffer.getShort(Integer.BYTES) != FORMAT_VERSION) {
+            LOG.warn("Unbekanntes Segment im Änderungsprotokoll: " + newest);
+            rotate();
+            return;
+        }
+        buffer.position(HEADER_SIZE);
+        while (ChangeLogRecord.read(buffer) != null) {
+            // skip to the end of the valid records
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "changelog";
+    }
+
+    /**
+     * Appends the given committed {@link EntityChangedEvent}s with the current time and forces them to disk. If the
+     * batch fails, it is delivered again by the outbox.
+     *
+     * @param events must not be null.
+     * @throws IOException if a record could not be written.
+     */
+    @Override
+    public synchronized void accept(@NonNull List<EntityChangedEvent> events) throws IOException {
+        Instant now = Instant.now();
+        for (EntityChangedEvent event : events) {
+            append(new ChangeLogRecord(now, event));
+        }
+        if (!forceOnAppend) {
+            buffer.force();
+        }
+    }
+
+    /**
+     * Appends the given {@link ChangeLogRecord} to the current segment, starting a new segment if it is full.
+     *
+     * @param record must not be null.
+     * @throws IOException if a new segment could not be created.
+     */
+    public synchronized void append(@NonNull ChangeLogRecord record) throws IOException {
+        if (buffer == null) {
+            throw new IllegalStateException("Change log is closed");
+        }
+        if (buffer.remaining() < ChangeLogRecord.RECORD_SIZE + Short.BYTES) {
+            rotate();
+        }
+        record.write(buffer);
+        if (forceOnAppend) {
+            buffer.force();
+        }
+    }
+
+    /**
+     * Forces the current segment to disk and closes it.
+     *
+     * @throws IOException if the segment could not be closed.
+     */
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+        buffer.force();
+        channel.close();
+        buffer = null;
+    }
+
+    private void rotate() throws IOException {
+        buffer.force();
+        channel.close();
+        openSegment(sequence + 1);
+    }
+
+    private void openSegment(long sequence) throws IOException {
+        this.sequence = sequence;
+        channel = FileChannel.open(ChangeLogReader.segmentPath(directory, sequence), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        ByteBuffer header = buffer.duplicate();
+        header.putInt(MAGIC).putShort(FORMAT_VERSION).putLong(sequence);
+        buffer.position(HEADER_SIZE);
+        buffer.force();
+    }
+}
@@ -0,0 +1,133 @@
+package com.peternaggschga.books.changelog;
+
+import com.peternaggschga.books.events.EntityChangedEvent.EntityType;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reads the segment files written by {@link ChangeLog}. Can be run as command line tool to print the complete log or
+ * the records matching a query:
+ * <pre>
+ * java -cp books.jar com.peternaggschga.books.changelog.ChangeLogReader &lt;directory&gt; [type [id]] [--from instant] [--to instant]
+ * </pre>
+ */
+public final class ChangeLogReader {
+    private static final Pattern SEGMENT_NAME = Pattern.compile("changes-(\\d{16})\\.log");
+
+    private ChangeLogReader() {
+    }
+
+    /**
+     * Returns the path of the segment with the given sequence number in the given directory.
+     *
+     * @param directory must not be null.
+     * @param sequence  the sequence number of the segment.
+     * @return the {@link Path} of the segment file, never null.
+     */
+    public static Path segmentPath(@NonNull Path directory, long sequence) {
+        return directory.resolve(String.format("changes-%016d.log", sequence));
+    }
+
+    /**
+     * Returns the sequence number of the given segment file.
+     *
+     * @param segment must not be null, must be named like {@link ChangeLogReader#segmentPath(Path, long)}.
+     * @return the sequence number.
+     */
+    public static long sequenceOf(@NonNull Path segment) {
+        Matcher matcher = SEGMENT_NAME.matcher(segment.getFileName().toString());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Not a change log segment: " + segment);
+        }
+        return Long.parseLong(matcher.group(1));
+    }
+
+    /**
+     * Returns all segment files in the given directory ordered by their sequence number.
+     *
+     * @param directory must not be null.
+     * @return a {@link List} of {@link Path}s, empty if the directory does not exist.
+     * @throws IOException if the directory could not be listed.
+     */
+    public static List<Path> listSegments(@NonNull Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> SEGMENT_NAME.matcher(file.getFileName().toString()).matches())
+                    .sorted().collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Replays all records in the given directory in the order they were appended. Reading a segment stops at the
+     * first torn or corrupted record.
+     *
+     * @param directory must not be null.
+     * @param consumer  must not be null, is called for every valid {@link ChangeLogRecord}.
+     * @throws IOException if a segment could not be read.
+     */
+    public static void replay(@NonNull Path directory, @NonNull Consumer<ChangeLogRecord> consumer)
+            throws IOException {
+        for (Path segment : listSegments(directory)) {
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (buffer.remaining() < ChangeLog.HEADER_SIZE || buffer.getInt(0) != ChangeLog.MAGIC) {
+                    throw new IOException("Not a change log segment: " + segment);
+                }
+                if (buffer.getShort(Integer.BYTES) != ChangeLog.FORMAT_VERSION) {
+                    throw new IOException("Unsupported change log format in " + segment);
+                }
+                buffer.position(ChangeLog.HEADER_SIZE);
+                for (ChangeLogRecord record = ChangeLogRecord.read(buffer); record != null;
+                     record = ChangeLogRecord.read(buffer)) {
+                    consumer.accept(record);
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: ChangeLogReader <directory> [type [id]] [--from instant] [--to instant]");
+            System.exit(2);
+        }
+        Predicate<ChangeLogRecord> filter = record -> true;
+        int positional = 0;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--from") && i + 1 < args.length) {
+                Instant from = Instant.parse(args[++i]);
+                filter = filter.and(record -> !record.getTimestamp().isBefore(from));
+            } else if (args[i].equals("--to") && i + 1 < args.length) {
+                Instant to = Instant.parse(args[++i]);
+                filter = filter.and(record -> record.getTimestamp().isBefore(to));
+            } else if (positional++ == 0) {
+                EntityType type = EntityType.valueOf(args[i].toUpperCase());
+                filter = filter.and(record -> record.getEvent().getEntityType() == type);
+            } else {
+                long id = Long.parseLong(args[i]);
+                filter = filter.and(record -> record.getEvent().getEntityId() == id);
+            }
+        }
+        Predicate<ChangeLogRecord> query = filter;
+        replay(Path.of(args[0]), record -> {
+            if (query.test(record)) {
+                System.out.println(record);
+            }
+        });
+    }
+}
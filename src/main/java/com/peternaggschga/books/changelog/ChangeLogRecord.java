@@ -0,0 +1,107 @@
+package com.peternaggschga.books.changelog;
+
+import com.peternaggschga.books.events.EntityChangedEvent;
+import com.peternaggschga.books.events.EntityChangedEvent.ChangeType;
+import com.peternaggschga.books.events.EntityChangedEvent.EntityType;
+import lombok.NonNull;
+
+import javax.validation.constraints.NotNull;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.zip.CRC32;
+
+/**
+ * A single record of the {@link ChangeLog}. In a segment file every record is stored as an unsigned 16 bit length of
+ * the body, the body and a CRC32 checksum of the body. The body of format version 1 consists of the timestamp in
+ * milliseconds since the epoch (8 bytes), the ordinal of the {@link EntityType} (1 byte), the ordinal of the
+ * {@link ChangeType} (1 byte) and the id of the entity (8 bytes). A length of zero marks the end of a segment.
+ */
+public class ChangeLogRecord {
+    /**
+     * The number of bytes of the body of a record.
+     */
+    public static final int BODY_SIZE = Long.BYTES + 2 + Long.BYTES;
+    /**
+     * The number of bytes a record occupies in a segment file.
+     */
+    public static final int RECORD_SIZE = Short.BYTES + BODY_SIZE + Integer.BYTES;
+    @NotNull
+    private final Instant timestamp;
+    @NotNull
+    private final EntityChangedEvent event;
+
+    /**
+     * Creates a new {@link ChangeLogRecord} instance with the given timestamp and {@link EntityChangedEvent}.
+     *
+     * @param timestamp must not be null.
+     * @param event     must not be null.
+     */
+    public ChangeLogRecord(@NonNull Instant timestamp, @NonNull EntityChangedEvent event) {
+        this.timestamp = timestamp;
+        this.event = event;
+    }
+
+    /**
+     * Reads the record at the position of the given {@link ByteBuffer}. If no complete and valid record is found, the
+     * position of the buffer is not changed and null is returned.
+     *
+     * @param buffer must not be null.
+     * @return the {@link ChangeLogRecord} or null if the end of the segment or a torn record was reached.
+     */
+    public static ChangeLogRecord read(@NonNull ByteBuffer buffer) {
+        int start = buffer.position();
+        if (buffer.remaining() < Short.BYTES) {
+            return null;
+        }
+        int length = Short.toUnsignedInt(buffer.getShort(start));
+        if (length != BODY_SIZE || buffer.remaining() < Short.BYTES + length + Integer.BYTES) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(start + Short.BYTES).limit(start + Short.BYTES + length));
+        if ((int) crc.getValue() != buffer.getInt(start + Short.BYTES + length)) {
+            return null;
+        }
+        int body = start + Short.BYTES;
+        int entityType = Byte.toUnsignedInt(buffer.get(body + Long.BYTES));
+        int changeType = Byte.toUnsignedInt(buffer.get(body + Long.BYTES + 1));
+        if (entityType >= EntityType.values().length || changeType >= ChangeType.values().length) {
+            return null;
+        }
+        ChangeLogRecord record = new ChangeLogRecord(Instant.ofEpochMilli(buffer.getLong(body)),
+                new EntityChangedEvent(EntityType.values()[entityType], buffer.getLong(body + Long.BYTES + 2),
+                        ChangeType.values()[changeType]));
+        buffer.position(start + RECORD_SIZE);
+        return record;
+    }
+
+    /**
+     * Writes this record at the position of the given {@link ByteBuffer} and advances the position.
+     *
+     * @param buffer must not be null, must have at least {@link ChangeLogRecord#RECORD_SIZE} bytes remaining.
+     */
+    public void write(@NonNull ByteBuffer buffer) {
+        int body = buffer.position() + Short.BYTES;
+        buffer.putShort((short) BODY_SIZE);
+        buffer.putLong(timestamp.toEpochMilli());
+        buffer.put((byte) event.getEntityType().ordinal());
+        buffer.put((byte) event.getChangeType().ordinal());
+        buffer.putLong(event.getEntityId());
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(body).limit(body + BODY_SIZE));
+        buffer.putInt((int) crc.getValue());
+    }
+
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    public EntityChangedEvent getEvent() {
+        return event;
+    }
+
+    @Override
+    public String toString() {
+        return timestamp + " " + event;
+    }
+}
@@ -0,0 +1,108 @@
+package com.peternaggschga.books.covers;
+
+import com.peternaggschga.books.books.BookManagement;
+import lombok.NonNull;
+import org.apache.catalina.Globals;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+/**
+ * A controller serving the images of the {@link CoverStore}. Images never change, so they are cached by clients for a
+ * year and revalidated by their entity tag. If the servlet container supports it, the file is handed to the operating
+ * system, which copies it to the socket without passing it through the JVM. Otherwise, it is copied through the JVM
+ * like any other response.
+ * The {@link CoverStore} keeps every image once, no matter how many tenants use it, so an image is only served if it
+ * is the cover of a book of the current tenant. Knowing the hash of an image is not enough to read it.
+ */
+@Controller
+public class CoverController {
+    private static final String IMMUTABLE = "private, max-age=31536000, immutable";
+    @NotNull
+    private final CoverStore coverStore;
+    @NotNull
+    private final BookManagement bookManagement;
+
+    /**
+     * Creates a new {@link CoverController} instance with the given {@link CoverStore} and {@link BookManagement}.
+     *
+     * @param coverStore     must not be null.
+     * @param bookManagement must not be null.
+     */
+    public CoverController(@NonNull CoverStore coverStore, @NonNull BookManagement bookManagement) {
+        this.coverStore = coverStore;
+        this.bookManagement = bookManagement;
+    }
+
+    @GetMapping("/covers/{hash}")
+    public void showCover(@PathVariable String hash, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        if (!bookManagement.isCoverAccessible(hash)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        send(coverStore.findCover(hash), true, request, response);
+    }
+
+    @GetMapping("/covers/{hash}/thumbnail")
+    public void showThumbnail(@PathVariable String hash, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        if (!bookManagement.isCoverAccessible(hash)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        Optional<CoverFile> thumbnail = coverStore.findThumbnail(hash);
+        if (thumbnail.isPresent()) {
+            send(thumbnail, true, request, response);
+        } else {
+            // the original stands in until the thumbnail exists, it must not be cached in place of the thumbnail
+            send(coverStore.findCover(hash), false, request, response);
+        }
+    }
+
+    private static void send(@NonNull Optional<CoverFile> cover, boolean immutable,
+                             @NonNull HttpServletRequest request, @NonNull HttpServletResponse response)
+            throws IOException {
+        if (cover.isEmpty()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        CoverFile file = cover.get();
+        response.setHeader(HttpHeaders.CACHE_CONTROL, immutable ? IMMUTABLE : "no-cache");
+        if (new ServletWebRequest(request, response).checkNotModified(file.getEntityTag())) {
+            return;
+        }
+        response.setContentType(file.getMediaType());
+        response.setContentLengthLong(file.getSize());
+        if (Boolean.TRUE.equals(request.getAttribute(Globals.SENDFILE_SUPPORTED_ATTR))) {
+            request.setAttribute(Globals.SENDFILE_FILENAME_ATTR, file.getPath().toAbsolutePath().toString());
+            request.setAttribute(Globals.SENDFILE_FILE_START_ATTR, 0L);
+            request.setAttribute(Globals.SENDFILE_FILE_END_ATTR, file.getSize());
+            return;
+        }
+        // not zero-copy: the output stream is no FileChannel, so transferTo copies through a buffer on the heap
+        try (FileChannel channel = FileChannel.open(file.getPath(), StandardOpenOption.READ)) {
+            WritableByteChannel output = Channels.newChannel(response.getOutputStream());
+            long position = 0;
+            while (position < file.getSize()) {
+                long transferred = channel.transferTo(position, file.getSize() - position, output);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.peternaggschga.books.covers;
+
+import lombok.NonNull;
+
+import javax.validation.constraints.NotNull;
+import java.nio.file.Path;
+
+/**
+ * An image file of the {@link CoverStore}. Files are never changed once written, so they are identified by their
+ * entity tag forever.
+ */
+public class CoverFile {
+    @NotNull
+    private final Path path;
+    @NotNull
+    private final String mediaType;
+    private final long size;
+    @NotNull
+    private final String entityTag;
+
+    /**
+     * Creates a new {@link CoverFile} instance with the given {@link Path}, media type, size and entity tag.
+     *
+     * @param path      must not be null.
+     * @param mediaType must not be null.
+     * @param size      the number of bytes of the file.
+     * @param entityTag must not be null, must be quoted.
+     */
+    public CoverFile(@NonNull Path path, @NonNull String mediaType, long size, @NonNull String entityTag) {
+        this.path = path;
+        this.mediaType = mediaType;
+        this.size = size;
+        this.entityTag = entityTag;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public String getEntityTag() {
+        return entityTag;
+    }
+}
@@ -0,0 +1,324 @@
+package com.peternaggschga.books.covers;
+
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.validation.constraints.NotNull;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stores cover images as files outside the database, so loading {@link com.peternaggschga.books.books.book.Book}s
+ * never loads images. Files are addressed by the SHA-256 hash of their content: equal images are stored once and a
+ * stored file never changes, so it can be cached by clients forever. Thumbnails are created in the background by a
+ * fixed number of threads with a bounded queue. If the queue is full, the thumbnail is created once it is requested.
+ */
+@Component
+public class CoverStore {
+    /**
+     * The format of the hashes identifying cover images.
+     */
+    public static final String HASH_REGEX = "^[0-9a-f]{64}$";
+    private static final Logger LOG = LoggerFactory.getLogger(CoverStore.class);
+    private static final String THUMBNAIL_FORMAT = "jpg";
+    private static final String THUMBNAIL_MEDIA_TYPE = "image/jpeg";
+    private static final long MAX_PIXELS = 100_000_000L;
+    @NotNull
+    private final Path directory;
+    @NotNull
+    private final Path thumbnailDirectory;
+    @NotNull
+    private final Path temporaryDirectory;
+    private final int thumbnailWidth;
+    @NotNull
+    private final ThreadPoolExecutor executor;
+    @NotNull
+    private final Map<String, String> mediaTypes = new ConcurrentHashMap<>();
+    @NotNull
+    private final Set<String> pendingThumbnails = ConcurrentHashMap.newKeySet();
+    @NotNull
+    private final Set<String> failedThumbnails = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Creates a new {@link CoverStore} instance storing its files in the given directory. Temporary files left by an
+     * interrupted upload are deleted.
+     *
+     * @param directory        must not be null, is created if it does not exist.
+     * @param thumbnailWidth   the width of thumbnails in pixels, must be positive.
+     * @param thumbnailThreads the number of threads creating thumbnails, must be positive.
+     * @param queueCapacity    the maximum number of thumbnails waiting to be created, must be positive.
+     * @throws IOException if the directory could not be created.
+     */
+    public CoverStore(@Value("${books.covers.directory:./db/covers}") @NonNull Path directory,
+                      @Value("${books.covers.thumbnail-width:160}") int thumbnailWidth,
+                      @Value("${books.covers.thumbnail-threads:2}") int thumbnailThreads,
+                      @Value("${books.covers.thumbnail-queue-capacity:100}") int queueCapacity) throws IOException {
+        if (thumbnailWidth <= 0 || thumbnailThreads <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("Thumbnail width, threads and queue capacity must be positive");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.thumbnailDirectory = Files.createDirectories(directory.resolve("thumbnails"));
+        this.temporaryDirectory = Files.createDirectories(directory.resolve("tmp"));
+        this.thumbnailWidth = thumbnailWidth;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(thumbnailThreads, thumbnailThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "cover-thumbnails-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(temporaryDirectory)) {
+            for (Path leftover : leftovers) {
+                Files.deleteIfExists(leftover);
+            }
+        }
+    }
+
+    /**
+     * Returns whether the given {@link String} is a hash identifying a cover image.
+     *
+     * @param hash can be null.
+     * @return true if hash matches {@link CoverStore#HASH_REGEX}.
+     */
+    public static boolean isHash(String hash) {
+        return hash != null && hash.matches(HASH_REGEX);
+    }
+
+    /**
+     * Stores the image read from the given {@link InputStream} and schedules the creation of its thumbnail. Storing
+     * an image that is already stored does not change the store.
+     *
+     * @param input must not be null, must contain a JPEG, PNG, GIF or WebP image.
+     * @return the hash identifying the image, never null.
+     * @throws IOException              if the image could not be stored.
+     * @throws IllegalArgumentException if the content of input is not an image of a supported format.
+     */
+    public String store(@NonNull InputStream input) throws IOException {
+        Path temporary = Files.createTempFile(temporaryDirectory, "cover", ".tmp");
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (OutputStream output = new DigestOutputStream(Files.newOutputStream(temporary), digest)) {
+                input.transferTo(output);
+            }
+            if (detectMediaType(temporary) == null) {
+                throw new IllegalArgumentException("Unsupported image format");
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            Path target = coverPath(hash);
+            if (Files.notExists(target)) {
+                Files.createDirectories(target.getParent());
+                Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            scheduleThumbnail(hash);
+            return hash;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Returns the cover image identified by the given hash.
+     *
+     * @param hash must not be null.
+     * @return an {@link Optional} containing the {@link CoverFile}, empty if the image does not exist.
+     * @throws IOException if the image could not be read.
+     */
+    public Optional<CoverFile> findCover(@NonNull String hash) throws IOException {
+        if (!isHash(hash)) {
+            return Optional.empty();
+        }
+        Path path = coverPath(hash);
+        if (Files.notExists(path)) {
+            return Optional.empty();
+        }
+        String mediaType = mediaTypes.get(hash);
+        if (mediaType == null) {
+            mediaType = detectMediaType(path);
+            if (mediaType == null) {
+                return Optional.empty();
+            }
+            mediaTypes.put(hash, mediaType);
+        }
+        return Optional.of(new CoverFile(path, mediaType, Files.size(path), '"' + hash + '"'));
+    }
+
+    /**
+     * Returns the thumbnail of the cover image identified by the given hash. If the thumbnail was not created yet, its
+     * creation is scheduled.
+     *
+     * @param hash must not be null.
+     * @return an {@link Optional} containing the {@link CoverFile} of the thumbnail, empty if it does not exist yet.
+     * @throws IOException if the thumbnail could not be read.
+     */
+    public Optional<CoverFile> findThumbnail(@NonNull String hash) throws IOException {
+        if (!isHash(hash)) {
+            return Optional.empty();
+        }
+        Path path = thumbnailPath(hash);
+        if (Files.exists(path)) {
+            return Optional.of(new CoverFile(path, THUMBNAIL_MEDIA_TYPE, Files.size(path),
+                    '"' + hash + '-' + thumbnailWidth + '"'));
+        }
+        if (Files.exists(coverPath(hash))) {
+            scheduleThumbnail(hash);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Stops the creation of thumbnails. Thumbnails that were not created yet are created once they are requested.
+     */
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void scheduleThumbnail(@NonNull String hash) {
+        if (failedThumbnails.contains(hash) || !pendingThumbnails.add(hash)) {
+            return;
+        }
+        try {
+            executor.execute(() -> createThumbnail(hash));
+        } catch (RejectedExecutionException e) {
+            pendingThumbnails.remove(hash);
+            LOG.warn("Warteschlange für Vorschaubilder ist voll, " + hash + " wird bei Abruf erstellt");
+        }
+    }
+
+    private void createThumbnail(@NonNull String hash) {
+        try {
+            BufferedImage image = readImage(coverPath(hash));
+            if (image == null) {
+                failedThumbnails.add(hash);
+                LOG.info("Kein Vorschaubild für Format von " + hash);
+                return;
+            }
+            int width = Math.min(thumbnailWidth, image.getWidth());
+            int height = Math.max(1, (int) Math.round((double) image.getHeight() * width / image.getWidth()));
+            BufferedImage thumbnail = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = thumbnail.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                        RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                // transparent areas become white instead of black, as JPEG has no alpha channel
+                graphics.drawImage(image, 0, 0, width, height, Color.WHITE, null);
+            } finally {
+                graphics.dispose();
+            }
+            Path target = thumbnailPath(hash);
+            Files.createDirectories(target.getParent());
+            Path temporary = Files.createTempFile(temporaryDirectory, "thumbnail", ".tmp");
+            try {
+                if (!ImageIO.write(thumbnail, THUMBNAIL_FORMAT, temporary.toFile())) {
+                    throw new IOException("No image writer for " + THUMBNAIL_FORMAT);
+                }
+                Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException | RuntimeException e) {
+            failedThumbnails.add(hash);
+            LOG.error("Fehler beim Erstellen des Vorschaubildes von " + hash + ": " + e);
+        } finally {
+            pendingThumbnails.remove(hash);
+        }
+    }
+
+    /**
+     * Decodes the image of the given file. Only every n-th pixel is decoded, so large images are never decoded at
+     * full size just to be scaled down afterwards.
+     *
+     * @param file must not be null.
+     * @return the decoded {@link BufferedImage}, null if its format is not supported.
+     * @throws IOException if the file could not be read or the image is too large.
+     */
+    private BufferedImage readImage(@NonNull Path file) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                long width = reader.getWidth(0);
+                long height = reader.getHeight(0);
+                if (width * height > MAX_PIXELS) {
+                    throw new IOException("Image of " + width + "x" + height + " pixels is too large");
+                }
+                ImageReadParam parameters = reader.getDefaultReadParam();
+                int subsampling = (int) Math.max(1, width / (2L * thumbnailWidth));
+                parameters.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, parameters);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private Path coverPath(@NonNull String hash) {
+        return directory.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private Path thumbnailPath(@NonNull String hash) {
+        return thumbnailDirectory.resolve(hash.substring(0, 2)).resolve(hash + '-' + thumbnailWidth + '.'
+                + THUMBNAIL_FORMAT);
+    }
+
+    private static String detectMediaType(@NonNull Path file) throws IOException {
+        byte[] header = new byte[12];
+        int length;
+        try (InputStream input = Files.newInputStream(file)) {
+            length = input.readNBytes(header, 0, header.length);
+        }
+        if (length >= 3 && (header[0] & 0xff) == 0xff && (header[1] & 0xff) == 0xd8 && (header[2] & 0xff) == 0xff) {
+            return "image/jpeg";
+        }
+        if (length >= 8 && (header[0] & 0xff) == 0x89 && header[1] == 'P' && header[2] == 'N' && header[3] == 'G') {
+            return "image/png";
+        }
+        if (length >= 6 && header[0] == 'G' && header[1] == 'I' && header[2] == 'F' && header[3] == '8') {
+            return "image/gif";
+        }
+        if (length >= 12 && header[0] == 'R' && header[1] == 'I' && header[2] == 'F' && header[3] == 'F'
+                && header[8] == 'W' && header[9] == 'E' && header[10] == 'B' && header[11] == 'P') {
+            return "image/webp";
+        }
+        return null;
+    }
+}
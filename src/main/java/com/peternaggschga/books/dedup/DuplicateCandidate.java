@@ -0,0 +1,88 @@
+package com.peternaggschga.books.dedup;
+
+import com.peternaggschga.books.events.EntityChangedEvent.EntityType;
+import lombok.NonNull;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * A pair of entities of the same type and tenant that probably describe the same author or book. The entity with the
+ * smaller id was created first and is the first of the pair.
+ */
+public class DuplicateCandidate {
+    @NotNull
+    private final EntityType entityType;
+    private final long tenantId;
+    private final long firstId;
+    @NotNull
+    private final String firstLabel;
+    private final long secondId;
+    @NotNull
+    private final String secondLabel;
+    private final double score;
+
+    /**
+     * Creates a new {@link DuplicateCandidate} instance with the given {@link EntityType}, tenant, ids, labels and
+     * score.
+     *
+     * @param entityType  must not be null.
+     * @param tenantId    the id of the tenant owning both entities.
+     * @param firstId     the id of the first entity, must be smaller than secondId.
+     * @param firstLabel  must not be null.
+     * @param secondId    the id of the second entity.
+     * @param secondLabel must not be null.
+     * @param score       the similarity of both entities between 0 and 1.
+     */
+    public DuplicateCandidate(@NonNull EntityType entityType, long tenantId, long firstId, @NonNull String firstLabel,
+                              long secondId, @NonNull String secondLabel, double score) {
+        if (firstId >= secondId) {
+            throw new IllegalArgumentException("First id must be smaller than second id");
+        }
+        this.entityType = entityType;
+        this.tenantId = tenantId;
+        this.firstId = firstId;
+        this.firstLabel = firstLabel;
+        this.secondId = secondId;
+        this.secondLabel = secondLabel;
+        this.score = score;
+    }
+
+    public EntityType getEntityType() {
+        return entityType;
+    }
+
+    public long getTenantId() {
+        return tenantId;
+    }
+
+    public long getFirstId() {
+        return firstId;
+    }
+
+    public String getFirstLabel() {
+        return firstLabel;
+    }
+
+    public long getSecondId() {
+        return secondId;
+    }
+
+    public String getSecondLabel() {
+        return secondLabel;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    /**
+     * Returns whether the entity of the given type referenced by the given id is part of this pair.
+     *
+     * @param entityType must not be null.
+     * @param id         the id of the entity.
+     * @return true if the entity is one of the pair.
+     */
+    public boolean contains(@NonNull EntityType entityType, long id) {
+        return this.entityType == entityType && (firstId == id || secondId == id);
+    }
+}
@@ -0,0 +1,76 @@
+package com.peternaggschga.books.dedup;
+
+import com.peternaggschga.books.account.Tenants;
+import com.peternaggschga.books.author.AuthorManagement;
+import com.peternaggschga.books.books.BookManagement;
+import com.peternaggschga.books.events.EntityChangedEvent.EntityType;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+
+import javax.validation.constraints.NotNull;
+import java.util.List;
+
+/**
+ * A controller showing the {@link DuplicateReport} of the {@link DuplicateDetector} and merging duplicates.
+ */
+@Controller
+public class DuplicateController {
+    private static final Logger LOG = LoggerFactory.getLogger(DuplicateController.class);
+    @NotNull
+    private final DuplicateDetector detector;
+    @NotNull
+    private final AuthorManagement authorManagement;
+    @NotNull
+    private final BookManagement bookManagement;
+
+    /**
+     * Creates a new {@link DuplicateController} instance with the given {@link DuplicateDetector},
+     * {@link AuthorManagement} and {@link BookManagement}.
+     *
+     * @param detector         must not be null.
+     * @param authorManagement must not be null.
+     * @param bookManagement   must not be null.
+     */
+    public DuplicateController(@NonNull DuplicateDetector detector, @NonNull AuthorManagement authorManagement,
+                               @NonNull BookManagement bookManagement) {
+        this.detector = detector;
+        this.authorManagement = authorManagement;
+        this.bookManagement = bookManagement;
+    }
+
+    @GetMapping("/duplicates")
+    public String showDuplicates(Model model) {
+        model.addAttribute("running", detector.isRunning());
+        DuplicateReport report = detector.getReport();
+        model.addAttribute("report", report);
+        model.addAttribute("candidates", report == null ? List.of()
+                : report.getCandidates(Tenants.getCurrentTenantOrDefault()));
+        return "dedup/duplicates";
+    }
+
+    @PostMapping("/duplicates/scan")
+    public String scanDuplicates() {
+        if (!detector.startScan()) {
+            LOG.info("Duplikatsuche läuft bereits");
+        }
+        return "redirect:/duplicates";
+    }
+
+    @PostMapping("/duplicates/merge")
+    public String mergeDuplicates(EntityType entityType, long survivor, long duplicate) {
+        if (entityType == EntityType.AUTHOR) {
+            authorManagement.mergeAuthors(survivor, duplicate);
+        } else if (entityType == EntityType.BOOK) {
+            bookManagement.mergeBooks(survivor, duplicate);
+        } else {
+            throw new IllegalArgumentException("Cannot merge entities of type " + entityType);
+        }
+        detector.removeFromReport(entityType, duplicate);
+        return "redirect:/duplicates";
+    }
+}
@@ -0,0 +1,325 @@
+package com.peternaggschga.books.dedup;
+
+import com.peternaggschga.books.author.Author;
+import com.peternaggschga.books.author.AuthorRepository;
+import com.peternaggschga.books.books.book.Book;
+import com.peternaggschga.books.books.book.BookRepository;
+import com.peternaggschga.books.events.EntityChangedEvent.EntityType;
+import com.peternaggschga.books.search.PrefixIndex;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.validation.constraints.NotNull;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.ToDoubleBiFunction;
+import java.util.regex.Pattern;
+
+/**
+ * Searches the whole library for {@link Author}s and {@link Book}s that were entered more than once. Comparing every
+ * pair of entities would take quadratic time, so the entities are grouped into blocks sharing a key first: the words
+ * of the names of {@link Author}s, the words of the titles and the normalized isbn of {@link Book}s. Only entities of
+ * the same block are compared, blocks larger than the configured maximum are skipped, as their key is too common to
+ * indicate a duplicate. The pairs are scored by the similarity of the {@link TrigramSet}s of their names or titles,
+ * {@link Book}s additionally by their shared {@link Author}s. Blocks never span tenants, so only entities of the same
+ * library are compared.
+ */
+@Service
+public class DuplicateDetector {
+    private static final Logger LOG = LoggerFactory.getLogger(DuplicateDetector.class);
+    private static final Pattern ISBN_PREFIX = Pattern.compile("^ISBN(?:-1[03])?:?\\s*", Pattern.CASE_INSENSITIVE);
+    private static final Pattern NON_ISBN_CHARACTERS = Pattern.compile("[^0-9X]");
+    private static final int MIN_NAME_KEY_LENGTH = 3;
+    private static final int MIN_TITLE_KEY_LENGTH = 4;
+    private static final double TITLE_WEIGHT = 0.7;
+    @NotNull
+    private final AuthorRepository authorRepository;
+    @NotNull
+    private final BookRepository bookRepository;
+    @NotNull
+    private final TransactionTemplate transactionTemplate;
+    @NotNull
+    private final AsyncTaskExecutor taskExecutor;
+    private final double threshold;
+    private final int maxBlockSize;
+    @NotNull
+    private final AtomicReference<DuplicateReport> report = new AtomicReference<>();
+    @NotNull
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * Creates a new {@link DuplicateDetector} instance with the given {@link AuthorRepository},
+     * {@link BookRepository}, {@link PlatformTransactionManager}, {@link AsyncTaskExecutor} and configuration.
+     *
+     * @param authorRepository   must not be null.
+     * @param bookRepository     must not be null.
+     * @param transactionManager must not be null.
+     * @param taskExecutor       must not be null, runs the scans in the background.
+     * @param threshold          the minimal score of a reported pair, must be between 0 and 1.
+     * @param maxBlockSize       the maximum number of entities of a compared block, must be at least 2.
+     */
+    public DuplicateDetector(@NonNull AuthorRepository authorRepository, @NonNull BookRepository bookRepository,
+                             @NonNull PlatformTransactionManager transactionManager,
+                             @NonNull AsyncTaskExecutor taskExecutor,
+                             @Value("${books.dedup.threshold:0.75}") double threshold,
+                             @Value("${books.dedup.max-block-size:100}") int maxBlockSize) {
+        if (threshold < 0 || threshold > 1) {
+            throw new IllegalArgumentException("Threshold must be between 0 and 1");
+        }
+        if (maxBlockSize < 2) {
+            throw new IllegalArgumentException("Maximum block size must be at least 2");
+        }
+        this.authorRepository = authorRepository;
+        this.bookRepository = bookRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.taskExecutor = taskExecutor;
+        this.threshold = threshold;
+        this.maxBlockSize = maxBlockSize;
+    }
+
+    /**
+     * Starts a scan of the whole library in the background, unless a scan is already running. The result replaces
+     * the current {@link DuplicateReport} once the scan finished.
+     *
+     * @return true if a new scan was started.
+     */
+    public boolean startScan() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            taskExecutor.execute(() -> {
+                try {
+                    report.set(scan());
+                } catch (RuntimeException e) {
+                    LOG.error("Fehler bei der Duplikatsuche: " + e);
+                } finally {
+                    running.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * Returns the {@link DuplicateReport} of the last finished scan.
+     *
+     * @return a {@link DuplicateReport}, null if no scan finished yet.
+     */
+    public DuplicateReport getReport() {
+        return report.get();
+    }
+
+    /**
+     * Removes all {@link DuplicateCandidate}s containing the given entity from the current report. Called after the
+     * entity was merged into another one.
+     *
+     * @param entityType must not be null.
+     * @param id         the id of the merged entity.
+     */
+    public void removeFromReport(@NonNull EntityType entityType, long id) {
+        report.updateAndGet(current -> current == null ? null : current.without(entityType, id));
+    }
+
+    /**
+     * Scans the whole library for duplicates in the calling thread.
+     *
+     * @return a new {@link DuplicateReport}, never null.
+     */
+    public DuplicateReport scan() {
+        Instant started = Instant.now();
+        Scan scan = new Scan();
+        transactionTemplate.executeWithoutResult(status -> {
+            scanAuthors(scan);
+            scanBooks(scan);
+        });
+        scan.candidates.sort(Comparator.comparingDouble(DuplicateCandidate::getScore).reversed()
+                .thenComparing(DuplicateCandidate::getEntityType).thenComparingLong(DuplicateCandidate::getFirstId));
+        LOG.info("Duplikatsuche beendet: " + scan.candidates.size() + " Kandidaten nach " + scan.comparisonCount
+                + " Vergleichen, " + scan.skippedBlocks + " Blöcke übersprungen");
+        return new DuplicateReport(started, Instant.now(), scan.entityCount, scan.comparisonCount, scan.candidates);
+    }
+
+    private void scanAuthors(@NonNull Scan scan) {
+        List<Entry> entries = new ArrayList<>();
+        for (Object[] row : authorRepository.findAllNames()) {
+            String label = row[1] + " " + row[2];
+            List<String> words = new ArrayList<>(Arrays.asList(PrefixIndex.normalize(label).split(" ")));
+            // sorting the words makes names with swapped first and last name equal
+            Collections.sort(words);
+            Entry entry = new Entry((Long) row[0], (Long) row[3], label, TrigramSet.of(String.join(" ", words)));
+            for (String word : words) {
+                if (word.length() >= MIN_NAME_KEY_LENGTH) {
+                    entry.keys.add(word);
+                }
+            }
+            if (entry.keys.isEmpty()) {
+                entry.keys.add(String.join(" ", words));
+            }
+            entries.add(entry);
+        }
+        compareBlocks(EntityType.AUTHOR, entries, (first, second) -> first.trigrams.similarity(second.trigrams), scan);
+    }
+
+    private void scanBooks(@NonNull Scan scan) {
+        Map<Long, List<Long>> authorIds = new HashMap<>();
+        for (Object[] row : bookRepository.findAllAuthorIds()) {
+            authorIds.computeIfAbsent((Long) row[0], id -> new ArrayList<>()).add((Long) row[1]);
+        }
+        List<Entry> entries = new ArrayList<>();
+        for (Object[] row : bookRepository.findAllTitles()) {
+            long id = (Long) row[0];
+            String title = (String) row[1];
+            Entry entry = new Entry(id, (Long) row[3], row[2] == null ? title : title + " (" + row[2] + ")",
+                    TrigramSet.of(title));
+            entry.isbn = normalizeIsbn((String) row[2]);
+            entry.authorIds = authorIds.getOrDefault(id, List.of()).stream().mapToLong(Long::longValue).sorted()
+                    .toArray();
+            if (!entry.isbn.isEmpty()) {
+                entry.keys.add("isbn:" + entry.isbn);
+            }
+            String normalized = PrefixIndex.normalize(title);
+            for (String word : normalized.split(" ")) {
+                if (word.length() >= MIN_TITLE_KEY_LENGTH) {
+                    entry.keys.add("title:" + word);
+                }
+            }
+            if (entry.keys.isEmpty()) {
+                entry.keys.add("title:" + normalized);
+            }
+            entries.add(entry);
+        }
+        compareBlocks(EntityType.BOOK, entries, (first, second) -> {
+            if (!first.isbn.isEmpty() && first.isbn.equals(second.isbn)) {
+                return 1;
+            }
+            return TITLE_WEIGHT * first.trigrams.similarity(second.trigrams)
+                    + (1 - TITLE_WEIGHT) * jaccard(first.authorIds, second.authorIds);
+        }, scan);
+    }
+
+    private void compareBlocks(@NonNull EntityType entityType, @NonNull List<Entry> entries,
+                               @NonNull ToDoubleBiFunction<Entry, Entry> scoring, @NonNull Scan scan) {
+        entries.sort(Comparator.comparingLong(entry -> entry.id));
+        Map<String, List<Integer>> blocks = new HashMap<>();
+        for (int i = 0; i < entries.size(); i++) {
+            for (String key : entries.get(i).keys) {
+                blocks.computeIfAbsent(entries.get(i).tenantId + "/" + key, k -> new ArrayList<>()).add(i);
+            }
+        }
+        Set<Long> compared = new HashSet<>();
+        for (List<Integer> block : blocks.values()) {
+            if (block.size() > maxBlockSize) {
+                scan.skippedBlocks++;
+                continue;
+            }
+            for (int i = 0; i < block.size(); i++) {
+                for (int j = i + 1; j < block.size(); j++) {
+                    // indexes of a block are ascending, so every pair is identified by the smaller index first
+                    if (!compared.add((long) block.get(i) * entries.size() + block.get(j))) {
+                        continue;
+                    }
+                    Entry first = entries.get(block.get(i));
+                    Entry second = entries.get(block.get(j));
+                    scan.comparisonCount++;
+                    double score = scoring.applyAsDouble(first, second);
+                    if (score >= threshold) {
+                        scan.candidates.add(new DuplicateCandidate(entityType, first.tenantId, first.id,
+                                first.label, second.id, second.label, score));
+                    }
+                }
+            }
+        }
+        scan.entityCount += entries.size();
+    }
+
+    /**
+     * Removes separators and prefixes from the given isbn and converts an ISBN-10 to the equal ISBN-13.
+     *
+     * @param isbn can be null.
+     * @return the digits of the ISBN-13, empty if isbn is null or blank.
+     */
+    static String normalizeIsbn(String isbn) {
+        if (isbn == null) {
+            return "";
+        }
+        String digits = NON_ISBN_CHARACTERS.matcher(ISBN_PREFIX.matcher(isbn.trim()).replaceFirst("")
+                .toUpperCase(Locale.ROOT)).replaceAll("");
+        if (digits.length() != 10) {
+            return digits;
+        }
+        String body = "978" + digits.substring(0, 9);
+        int sum = 0;
+        for (int i = 0; i < body.length(); i++) {
+            sum += (body.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        return body + (10 - sum % 10) % 10;
+    }
+
+    private static double jaccard(@NonNull long[] first, @NonNull long[] second) {
+        if (first.length == 0 && second.length == 0) {
+            return 0;
+        }
+        int shared = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] == second[j]) {
+                shared++;
+                i++;
+                j++;
+            } else if (first[i] < second[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return (double) shared / (first.length + second.length - shared);
+    }
+
+    private static final class Entry {
+        private final long id;
+        private final long tenantId;
+        @NotNull
+        private final String label;
+        @NotNull
+        private final TrigramSet trigrams;
+        @NotNull
+        private final Set<String> keys = new LinkedHashSet<>();
+        @NotNull
+        private String isbn = "";
+        @NotNull
+        private long[] authorIds = new long[0];
+
+        private Entry(long id, long tenantId, @NonNull String label, @NonNull TrigramSet trigrams) {
+            this.id = id;
+            this.tenantId = tenantId;
+            this.label = label;
+            this.trigrams = trigrams;
+        }
+    }
+
+    private static final class Scan {
+        @NotNull
+        private final List<DuplicateCandidate> candidates = new ArrayList<>();
+        private int entityCount;
+        private long comparisonCount;
+        private int skippedBlocks;
+    }
+}
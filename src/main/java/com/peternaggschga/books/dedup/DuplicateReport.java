@@ -0,0 +1,98 @@
+package com.peternaggschga.books.dedup;
+
+import com.peternaggschga.books.events.EntityChangedEvent.EntityType;
+import lombok.NonNull;
+
+import javax.validation.constraints.NotNull;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The result of a scan of the whole library for duplicates. Reports are immutable, merging a pair creates a new
+ * report without the merged entity.
+ */
+public class DuplicateReport {
+    @NotNull
+    private final Instant started;
+    @NotNull
+    private final Instant finished;
+    private final int entityCount;
+    private final long comparisonCount;
+    @NotNull
+    private final List<DuplicateCandidate> candidates;
+
+    /**
+     * Creates a new {@link DuplicateReport} instance with the given times, numbers and {@link DuplicateCandidate}s.
+     *
+     * @param started         must not be null.
+     * @param finished        must not be null.
+     * @param entityCount     the number of scanned entities.
+     * @param comparisonCount the number of compared pairs.
+     * @param candidates      must not be null, should be ordered by score descending.
+     */
+    public DuplicateReport(@NonNull Instant started, @NonNull Instant finished, int entityCount,
+                           long comparisonCount, @NonNull List<DuplicateCandidate> candidates) {
+        this.started = started;
+        this.finished = finished;
+        this.entityCount = entityCount;
+        this.comparisonCount = comparisonCount;
+        this.candidates = List.copyOf(candidates);
+    }
+
+    /**
+     * Returns a copy of this report without the {@link DuplicateCandidate}s containing the given entity.
+     *
+     * @param entityType must not be null.
+     * @param id         the id of the removed entity.
+     * @return a new {@link DuplicateReport}.
+     */
+    public DuplicateReport without(@NonNull EntityType entityType, long id) {
+        return new DuplicateReport(started, finished, entityCount, comparisonCount, candidates.stream()
+                .filter(candidate -> !candidate.contains(entityType, id)).collect(Collectors.toList()));
+    }
+
+    public Instant getStarted() {
+        return started;
+    }
+
+    public Instant getFinished() {
+        return finished;
+    }
+
+    /**
+     * Returns a locally formatted {@link String} representing the end of the scan.
+     *
+     * @return a {@link String} representing finished.
+     */
+    public String getFinishedString() {
+        return finished.atZone(ZoneId.systemDefault())
+                .format(DateTimeFormatter.ofLocalizedDateTime(FormatStyle.MEDIUM));
+    }
+
+    public int getEntityCount() {
+        return entityCount;
+    }
+
+    public long getComparisonCount() {
+        return comparisonCount;
+    }
+
+    public List<DuplicateCandidate> getCandidates() {
+        return candidates;
+    }
+
+    /**
+     * Returns the {@link DuplicateCandidate}s of the given tenant.
+     *
+     * @param tenantId the id of the tenant.
+     * @return a {@link List} of {@link DuplicateCandidate}s, ordered by score descending.
+     */
+    public List<DuplicateCandidate> getCandidates(long tenantId) {
+        return candidates.stream().filter(candidate -> candidate.getTenantId() == tenantId)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,74 @@
+package com.peternaggschga.books.dedup;
+
+import com.peternaggschga.books.search.PrefixIndex;
+import lombok.NonNull;
+
+import javax.validation.constraints.NotNull;
+import java.util.Arrays;
+
+/**
+ * The set of character trigrams of a normalized text. Every word is padded with spaces, so the beginnings and ends of
+ * words form trigrams of their own. Each trigram is packed into a long, the set is stored as a sorted array, so the
+ * similarity of two sets is computed by a single merge.
+ */
+public final class TrigramSet {
+    private static final TrigramSet EMPTY = new TrigramSet(new long[0]);
+    @NotNull
+    private final long[] trigrams;
+
+    private TrigramSet(@NonNull long[] trigrams) {
+        this.trigrams = trigrams;
+    }
+
+    /**
+     * Creates the {@link TrigramSet} of the given text. The text is normalized by
+     * {@link PrefixIndex#normalize(String)} first, so case and diacritics are ignored.
+     *
+     * @param text must not be null.
+     * @return a {@link TrigramSet}, empty if the text is blank.
+     */
+    public static TrigramSet of(@NonNull String text) {
+        String normalized = PrefixIndex.normalize(text);
+        if (normalized.isEmpty()) {
+            return EMPTY;
+        }
+        String padded = "  " + normalized.replace(" ", "  ") + " ";
+        long[] trigrams = new long[padded.length() - 2];
+        for (int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = ((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2);
+        }
+        return new TrigramSet(Arrays.stream(trigrams).sorted().distinct().toArray());
+    }
+
+    /**
+     * Returns the Jaccard similarity of this and the given {@link TrigramSet}, i.e. the number of shared trigrams
+     * divided by the number of distinct trigrams of both.
+     *
+     * @param other must not be null.
+     * @return a double between 0 (nothing in common) and 1 (equal sets).
+     */
+    public double similarity(@NonNull TrigramSet other) {
+        if (trigrams.length == 0 && other.trigrams.length == 0) {
+            return 1;
+        }
+        int shared = 0;
+        int i = 0;
+        int j = 0;
+        while (i < trigrams.length && j < other.trigrams.length) {
+            if (trigrams[i] == other.trigrams[j]) {
+                shared++;
+                i++;
+                j++;
+            } else if (trigrams[i] < other.trigrams[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return (double) shared / (trigrams.length + other.trigrams.length - shared);
+    }
+
+    public int size() {
+        return trigrams.length;
+    }
+}
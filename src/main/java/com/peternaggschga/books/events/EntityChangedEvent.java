@@ -0,0 +1,80 @@
+package com.peternaggschga.books.events;
+
+import lombok.NonNull;
+
+import javax.validation.constraints.NotNull;
+import java.util.Objects;
+
+/**
+ * An event published by the management services whenever an entity of the library is created, updated or deleted.
+ * Listeners that depend on the committed state should use
+ * {@link org.springframework.transaction.event.TransactionalEventListener}.
+ */
+public class EntityChangedEvent {
+    @NotNull
+    private final EntityType entityType;
+    private final long entityId;
+    @NotNull
+    private final ChangeType changeType;
+
+    /**
+     * Creates a new {@link EntityChangedEvent} instance with the given {@link EntityType}, id and {@link ChangeType}.
+     *
+     * @param entityType must not be null.
+     * @param entityId   the id of the changed entity.
+     * @param changeType must not be null.
+     */
+    public EntityChangedEvent(@NonNull EntityType entityType, long entityId, @NonNull ChangeType changeType) {
+        this.entityType = entityType;
+        this.entityId = entityId;
+        this.changeType = changeType;
+    }
+
+    public EntityType getEntityType() {
+        return entityType;
+    }
+
+    public long getEntityId() {
+        return entityId;
+    }
+
+    public ChangeType getChangeType() {
+        return changeType;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        EntityChangedEvent that = (EntityChangedEvent) o;
+        return entityId == that.entityId && entityType == that.entityType && changeType == that.changeType;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(entityType, entityId, changeType);
+    }
+
+    @Override
+    public String toString() {
+        return changeType + " " + entityType + "#" + entityId;
+    }
+
+    /**
+     * The kinds of entities managed by the application.
+     */
+    public enum EntityType {
+        AUTHOR, BOOK, SERIES, READING
+    }
+
+    /**
+     * The kinds of changes that can be applied to an entity.
+     */
+    public enum ChangeType {
+        CREATED, UPDATED, DELETED
+    }
+}
@@ -0,0 +1,32 @@
+package com.peternaggschga.books.events;
+
+import lombok.NonNull;
+
+import java.util.List;
+
+/**
+ * A consumer of the transactional outbox, e.g. a projection maintaining derived data. Every consumer is fed by its
+ * own worker thread from a bounded queue, so a slow consumer neither delays the writing transactions nor the other
+ * consumers. Consumers must be idempotent, as a batch is delivered again if it fails or the application stops before
+ * all consumers processed it. Events failing repeatedly are delivered again later as {@link OutboxDeadLetter}s,
+ * possibly after newer events of the same entity, so consumers should read the current state of changed entities.
+ */
+public interface OutboxConsumer {
+
+    /**
+     * Returns the name of the consumer, used for its worker thread, in log messages and to assign
+     * {@link OutboxDeadLetter}s, so it must not change between restarts.
+     *
+     * @return a {@link String}, never null.
+     */
+    String getName();
+
+    /**
+     * Processes a batch of {@link EntityChangedEvent}s in the order they were written to the outbox. Throwing an
+     * exception causes the batch to be retried.
+     *
+     * @param events must not be null or empty.
+     * @throws Exception if the batch could not be processed.
+     */
+    void accept(@NonNull List<EntityChangedEvent> events) throws Exception;
+}
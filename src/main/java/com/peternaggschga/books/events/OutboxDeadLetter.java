@@ -0,0 +1,88 @@
+package com.peternaggschga.books.events;
+
+import com.peternaggschga.books.events.EntityChangedEvent.ChangeType;
+import com.peternaggschga.books.events.EntityChangedEvent.EntityType;
+import lombok.NonNull;
+
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.validation.constraints.NotNull;
+import java.time.Instant;
+
+/**
+ * An entity representing an {@link EntityChangedEvent} a single {@link OutboxConsumer} failed to process. Dead
+ * letters are retried with exponential backoff by the worker of their consumer only and deleted once the consumer
+ * processed them, so the other consumers never receive the event twice because of it.
+ */
+@Entity
+@Table(indexes = @Index(columnList = "consumer, nextAttempt"))
+public class OutboxDeadLetter {
+    @GeneratedValue
+    @Id
+    private long id;
+    @NotNull
+    private String consumer;
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    private EntityType entityType;
+    private long entityId;
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    private ChangeType changeType;
+    private int attempts;
+    @NotNull
+    private Instant nextAttempt;
+
+    /**
+     * No-arg constructor of {@link OutboxDeadLetter}, only used by
+     * {@link org.springframework.boot.SpringApplication Spring}.
+     */
+    protected OutboxDeadLetter() {
+    }
+
+    /**
+     * Creates a new {@link OutboxDeadLetter} instance for the given {@link EntityChangedEvent} the
+     * {@link OutboxConsumer} with the given name failed to process, retried at the given time.
+     *
+     * @param consumer    must not be null.
+     * @param event       must not be null.
+     * @param nextAttempt must not be null.
+     */
+    public OutboxDeadLetter(@NonNull String consumer, @NonNull EntityChangedEvent event, @NonNull Instant nextAttempt) {
+        this.consumer = consumer;
+        this.entityType = event.getEntityType();
+        this.entityId = event.getEntityId();
+        this.changeType = event.getChangeType();
+        this.nextAttempt = nextAttempt;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getConsumer() {
+        return consumer;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public Instant getNextAttempt() {
+        return nextAttempt;
+    }
+
+    /**
+     * Returns the {@link EntityChangedEvent} represented by this dead letter.
+     *
+     * @return a new {@link EntityChangedEvent}.
+     */
+    public EntityChangedEvent toEvent() {
+        return new EntityChangedEvent(entityType, entityId, changeType);
+    }
+}
@@ -0,0 +1,56 @@
+package com.peternaggschga.books.events;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.validation.constraints.NotNull;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An interface defining custom queries. Extends {@link CrudRepository} of {@link OutboxDeadLetter}s.
+ */
+@Repository
+public interface OutboxDeadLetterRepository extends CrudRepository<OutboxDeadLetter, Long> {
+
+    /**
+     * Returns the oldest {@link OutboxDeadLetter}s of the {@link OutboxConsumer} with the given name that are due
+     * for a retry at the given time.
+     *
+     * @param consumer must not be null.
+     * @param now      must not be null.
+     * @param pageable must not be null, limits the number of returned dead letters.
+     * @return a {@link List} of {@link OutboxDeadLetter}s ordered by id.
+     */
+    @Query("SELECT d FROM OutboxDeadLetter d WHERE d.consumer = :consumer AND d.nextAttempt <= :now ORDER BY d.id")
+    List<OutboxDeadLetter> findDue(@NotNull @Param("consumer") String consumer, @NotNull @Param("now") Instant now,
+                                   @NotNull Pageable pageable);
+
+    /**
+     * Counts the failed attempts of the {@link OutboxDeadLetter}s referenced by the given ids and postpones their
+     * next retry to the given time.
+     *
+     * @param ids         must not be null.
+     * @param nextAttempt must not be null.
+     * @return the number of updated dead letters.
+     */
+    @Modifying
+    @Query("UPDATE OutboxDeadLetter d SET d.attempts = d.attempts + 1, d.nextAttempt = :nextAttempt "
+            + "WHERE d.id IN :ids")
+    int postpone(@NotNull @Param("ids") Collection<Long> ids, @NotNull @Param("nextAttempt") Instant nextAttempt);
+
+    /**
+     * Deletes the {@link OutboxDeadLetter}s referenced by the given ids.
+     *
+     * @param ids must not be null.
+     * @return the number of deleted dead letters.
+     */
+    @Modifying
+    @Query("DELETE FROM OutboxDeadLetter d WHERE d.id IN :ids")
+    int deleteByIds(@NotNull @Param("ids") Collection<Long> ids);
+}
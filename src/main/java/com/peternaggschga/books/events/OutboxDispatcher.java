@@ -0,0 +1,366 @@
+package com.peternaggschga.books.events;
+
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.validation.constraints.NotNull;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Dispatches the entries of the transactional outbox to all {@link OutboxConsumer}s. A dispatcher thread reads
+ * batches of pending {@link OutboxEntry}s and hands every batch to the bounded queue of each consumer. Every consumer
+ * is run by its own worker thread, which retries failed batches with exponential backoff. If a consumer still fails,
+ * the batch is moved to its {@link OutboxDeadLetter}s, which the worker retries with a longer backoff, delivering them
+ * to the failed consumer only. A batch is deleted from the outbox once all consumers processed or dead-lettered it;
+ * if even that fails, the batch is marked pending and dispatched to all consumers again. If the queue of a consumer
+ * is full, no further batches are read until it caught up. The threads are stopped with the other
+ * {@link SmartLifecycle} components, i.e. before the database is closed.
+ */
+@Component
+public class OutboxDispatcher implements SmartLifecycle {
+    private static final Logger LOG = LoggerFactory.getLogger(OutboxDispatcher.class);
+    /**
+     * The maximum number of times the delay of a dead letter is doubled.
+     */
+    private static final int MAX_DEAD_LETTER_BACKOFF = 6;
+    @NotNull
+    private final OutboxRepository repository;
+    @NotNull
+    private final OutboxDeadLetterRepository deadLetters;
+    @NotNull
+    private final TransactionTemplate transactionTemplate;
+    @NotNull
+    private final List<Worker> workers;
+    private final int batchSize;
+    private final long pollInterval;
+    private final int maxAttempts;
+    private final long retryDelay;
+    private final long deadLetterDelay;
+    @NotNull
+    private final Semaphore wakeUps = new Semaphore(0);
+    @NotNull
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean running;
+
+    /**
+     * Creates a new {@link OutboxDispatcher} instance with the given {@link OutboxRepository},
+     * {@link OutboxDeadLetterRepository}, {@link PlatformTransactionManager}, {@link OutboxConsumer}s and
+     * configuration.
+     *
+     * @param repository         must not be null.
+     * @param deadLetters        must not be null.
+     * @param transactionManager must not be null.
+     * @param consumers          must not be null.
+     * @param batchSize          the maximum number of entries dispatched at once, must be positive.
+     * @param queueCapacity      the maximum number of batches queued for a single consumer, must be positive.
+     * @param pollInterval       the milliseconds between two polls of the outbox if no commit is signalled.
+     * @param maxAttempts        the number of times a consumer tries to process a batch, must be positive.
+     * @param retryDelay         the milliseconds before the first retry, doubled for every further retry.
+     * @param deadLetterDelay    the milliseconds before the first retry of a dead letter, doubled for every further
+     *                           retry up to {@value MAX_DEAD_LETTER_BACKOFF} times.
+     */
+    public OutboxDispatcher(@NonNull OutboxRepository repository, @NonNull OutboxDeadLetterRepository deadLetters,
+                            @NonNull PlatformTransactionManager transactionManager,
+                            @NonNull ObjectProvider<OutboxConsumer> consumers,
+                            @Value("${books.outbox.batch-size:100}") int batchSize,
+                            @Value("${books.outbox.queue-capacity:16}") int queueCapacity,
+                            @Value("${books.outbox.poll-interval:1000}") long pollInterval,
+                            @Value("${books.outbox.max-attempts:5}") int maxAttempts,
+                            @Value("${books.outbox.retry-delay:500}") long retryDelay,
+                            @Value("${books.outbox.dead-letter-delay:60000}") long deadLetterDelay) {
+        if (batchSize <= 0 || queueCapacity <= 0 || maxAttempts <= 0) {
+            throw new IllegalArgumentException("Batch size, queue capacity and attempts must be positive");
+        }
+        this.repository = repository;
+        this.deadLetters = deadLetters;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.workers = consumers.orderedStream().map(consumer -> new Worker(consumer, queueCapacity))
+                .collect(Collectors.toList());
+        this.batchSize = batchSize;
+        this.pollInterval = pollInterval;
+        this.maxAttempts = maxAttempts;
+        this.retryDelay = retryDelay;
+        this.deadLetterDelay = deadLetterDelay;
+    }
+
+    /**
+     * Starts the dispatcher and worker threads once the application is ready. Entries dispatched before the last
+     * shutdown but not processed completely are dispatched again.
+     */
+    @Override
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> repository.resetDispatched());
+        running = true;
+        for (Worker worker : workers) {
+            threads.add(startThread("outbox-" + worker.consumer.getName(), worker::run));
+        }
+        threads.add(startThread("outbox-dispatcher", this::dispatch));
+        LOG.info("Outbox gestartet mit " + workers.size() + " Verbrauchern");
+    }
+
+    /**
+     * Stops all threads. Batches that were not processed completely remain in the outbox.
+     */
+    @Override
+    public synchronized void stop() {
+        running = false;
+        threads.forEach(Thread::interrupt);
+        for (Thread thread : threads) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        threads.clear();
+    }
+
+    /**
+     * Returns false, the threads are started once the application is ready, after the command line runners.
+     *
+     * @return false.
+     */
+    @Override
+    public boolean isAutoStartup() {
+        return false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Signals that new entries were committed to the outbox.
+     */
+    public void wakeUp() {
+        wakeUps.release();
+    }
+
+    private static Thread startThread(@NonNull String name, @NonNull Runnable runnable) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private void dispatch() {
+        while (running) {
+            try {
+                wakeUps.tryAcquire(pollInterval, TimeUnit.MILLISECONDS);
+                wakeUps.drainPermits();
+                //noinspection StatementWithEmptyBody
+                while (running && dispatchBatch()) {
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                LOG.error("Fehler beim Verteilen der Outbox: " + e);
+            }
+        }
+    }
+
+    /**
+     * Reads the next batch of pending entries and queues it for all consumers.
+     *
+     * @return true if further entries might be pending.
+     */
+    private boolean dispatchBatch() {
+        for (Worker worker : workers) {
+            if (worker.queue.remainingCapacity() == 0) {
+                return false;
+            }
+        }
+        List<OutboxEntry> entries = transactionTemplate.execute(status -> {
+            List<OutboxEntry> pending = repository.findPending(PageRequest.of(0, batchSize));
+            if (!pending.isEmpty()) {
+                repository.markDispatched(pending.stream().map(OutboxEntry::getId).collect(Collectors.toList()));
+            }
+            return pending;
+        });
+        if (entries == null || entries.isEmpty()) {
+            return false;
+        }
+        Batch batch = new Batch(entries);
+        if (workers.isEmpty()) {
+            batch.delete();
+        }
+        for (Worker worker : workers) {
+            // only this thread adds to the queues, so the capacity checked above is still available
+            worker.queue.add(batch);
+        }
+        return entries.size() == batchSize;
+    }
+
+    private final class Batch {
+        @NotNull
+        private final List<Long> ids;
+        @NotNull
+        private final List<EntityChangedEvent> events;
+        @NotNull
+        private final AtomicInteger remaining = new AtomicInteger(workers.size());
+        private volatile boolean failed;
+
+        private Batch(@NonNull List<OutboxEntry> entries) {
+            this.ids = entries.stream().map(OutboxEntry::getId).collect(Collectors.toList());
+            this.events = entries.stream().map(OutboxEntry::toEvent).collect(Collectors.toUnmodifiableList());
+        }
+
+        private void complete(boolean success) {
+            if (!success) {
+                failed = true;
+            }
+            if (remaining.decrementAndGet() > 0) {
+                return;
+            }
+            if (failed) {
+                LOG.error("Outbox-Einträge " + ids + " werden erneut verteilt");
+                transactionTemplate.executeWithoutResult(status -> repository.markPending(ids));
+            } else {
+                delete();
+            }
+        }
+
+        private void delete() {
+            transactionTemplate.executeWithoutResult(status -> repository.deleteByIds(ids));
+        }
+    }
+
+    private final class Worker {
+        @NotNull
+        private final OutboxConsumer consumer;
+        @NotNull
+        private final BlockingQueue<Batch> queue;
+
+        private Worker(@NonNull OutboxConsumer consumer, int queueCapacity) {
+            this.consumer = consumer;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        }
+
+        private void run() {
+            long nextRetry = 0;
+            while (running) {
+                Batch batch;
+                try {
+                    if (System.currentTimeMillis() >= nextRetry) {
+                        nextRetry = System.currentTimeMillis() + pollInterval;
+                        retryDeadLetters();
+                    }
+                    batch = queue.poll(pollInterval, TimeUnit.MILLISECONDS);
+                    if (batch == null) {
+                        continue;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (RuntimeException e) {
+                    LOG.error("Fehler beim Wiederholen der Outbox-Einträge von " + consumer.getName() + ": " + e);
+                    continue;
+                }
+                boolean success;
+                try {
+                    success = process(batch) || deadLetter(batch);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                try {
+                    batch.complete(success);
+                } catch (RuntimeException e) {
+                    LOG.error("Fehler beim Abschließen von Outbox-Einträgen: " + e);
+                }
+            }
+        }
+
+        private boolean process(@NonNull Batch batch) throws InterruptedException {
+            for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+                try {
+                    consumer.accept(batch.events);
+                    return true;
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (Exception e) {
+                    LOG.warn("Verbraucher " + consumer.getName() + " scheiterte bei Versuch " + attempt + ": " + e);
+                    if (attempt < maxAttempts) {
+                        Thread.sleep(retryDelay << (attempt - 1));
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Saves the events of the given batch as dead letters of this consumer.
+         *
+         * @return true if the dead letters were saved.
+         */
+        private boolean deadLetter(@NonNull Batch batch) {
+            Instant nextAttempt = Instant.now().plusMillis(deadLetterDelay);
+            List<OutboxDeadLetter> letters = batch.events.stream()
+                    .map(event -> new OutboxDeadLetter(consumer.getName(), event, nextAttempt))
+                    .collect(Collectors.toList());
+            try {
+                transactionTemplate.executeWithoutResult(status -> deadLetters.saveAll(letters));
+            } catch (RuntimeException e) {
+                LOG.error("Outbox-Einträge " + batch.ids + " von " + consumer.getName()
+                        + " konnten nicht zurückgestellt werden: " + e);
+                return false;
+            }
+            LOG.error("Verbraucher " + consumer.getName() + " stellt Outbox-Einträge " + batch.ids + " zurück");
+            return true;
+        }
+
+        /**
+         * Hands the dead letters of this consumer that are due to the consumer once. Processed dead letters are
+         * deleted, the retry of the others is postponed.
+         */
+        private void retryDeadLetters() throws InterruptedException {
+            List<OutboxDeadLetter> due = transactionTemplate.execute(status ->
+                    deadLetters.findDue(consumer.getName(), Instant.now(), PageRequest.of(0, batchSize)));
+            if (due == null || due.isEmpty()) {
+                return;
+            }
+            List<Long> ids = due.stream().map(OutboxDeadLetter::getId).collect(Collectors.toList());
+            try {
+                consumer.accept(due.stream().map(OutboxDeadLetter::toEvent).collect(Collectors.toUnmodifiableList()));
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                int attempts = due.stream().mapToInt(OutboxDeadLetter::getAttempts).max().orElse(0) + 1;
+                Instant nextAttempt = Instant.now()
+                        .plusMillis(deadLetterDelay << Math.min(attempts, MAX_DEAD_LETTER_BACKOFF));
+                transactionTemplate.executeWithoutResult(status -> deadLetters.postpone(ids, nextAttempt));
+                LOG.warn("Verbraucher " + consumer.getName() + " scheiterte an zurückgestellten Outbox-Einträgen "
+                        + ids + ", nächster Versuch um " + nextAttempt + ": " + e);
+                return;
+            }
+            transactionTemplate.executeWithoutResult(status -> deadLetters.deleteByIds(ids));
+            LOG.info("Verbraucher " + consumer.getName() + " hat " + ids.size()
+                    + " zurückgestellte Outbox-Einträge verarbeitet");
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.peternaggschga.books.events;
+
+import com.peternaggschga.books.events.EntityChangedEvent.ChangeType;
+import com.peternaggschga.books.events.EntityChangedEvent.EntityType;
+import lombok.NonNull;
+
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.validation.constraints.NotNull;
+import java.time.Instant;
+
+/**
+ * An entity representing an {@link EntityChangedEvent} in the transactional outbox. Entries are written in the
+ * transaction publishing the event and deleted once all {@link OutboxConsumer}s processed them.
+ */
+@Entity
+public class OutboxEntry {
+    @GeneratedValue
+    @Id
+    private long id;
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    private EntityType entityType;
+    private long entityId;
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    private ChangeType changeType;
+    @NotNull
+    private Instant created;
+    private boolean dispatched;
+
+    /**
+     * No-arg constructor of {@link OutboxEntry}, only used by {@link org.springframework.boot.SpringApplication Spring}.
+     */
+    protected OutboxEntry() {
+    }
+
+    /**
+     * Creates a new {@link OutboxEntry} instance representing the given {@link EntityChangedEvent}.
+     *
+     * @param event must not be null.
+     */
+    public OutboxEntry(@NonNull EntityChangedEvent event) {
+        this.entityType = event.getEntityType();
+        this.entityId = event.getEntityId();
+        this.changeType = event.getChangeType();
+        this.created = Instant.now();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public Instant getCreated() {
+        return created;
+    }
+
+    public boolean isDispatched() {
+        return dispatched;
+    }
+
+    /**
+     * Returns the {@link EntityChangedEvent} represented by this entry.
+     *
+     * @return a new {@link EntityChangedEvent}.
+     */
+    public EntityChangedEvent toEvent() {
+        return new EntityChangedEvent(entityType, entityId, changeType);
+    }
+}
@@ -0,0 +1,68 @@
+package com.peternaggschga.books.events;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.validation.constraints.NotNull;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An interface defining custom queries. Extends {@link CrudRepository} of {@link OutboxEntry}s.
+ */
+@Repository
+public interface OutboxRepository extends CrudRepository<OutboxEntry, Long> {
+
+    /**
+     * Returns the oldest {@link OutboxEntry}s that were not dispatched yet.
+     *
+     * @param pageable must not be null, limits the number of returned entries.
+     * @return a {@link List} of {@link OutboxEntry}s ordered by id.
+     */
+    @Query("SELECT e FROM OutboxEntry e WHERE e.dispatched = false ORDER BY e.id")
+    List<OutboxEntry> findPending(@NotNull Pageable pageable);
+
+    /**
+     * Marks the {@link OutboxEntry}s referenced by the given ids as dispatched.
+     *
+     * @param ids must not be null.
+     * @return the number of updated entries.
+     */
+    @Modifying
+    @Query("UPDATE OutboxEntry e SET e.dispatched = true WHERE e.id IN :ids")
+    int markDispatched(@NotNull @Param("ids") Collection<Long> ids);
+
+    /**
+     * Marks the {@link OutboxEntry}s referenced by the given ids as pending again, so they are dispatched once more.
+     *
+     * @param ids must not be null.
+     * @return the number of updated entries.
+     */
+    @Modifying
+    @Query("UPDATE OutboxEntry e SET e.dispatched = false WHERE e.id IN :ids")
+    int markPending(@NotNull @Param("ids") Collection<Long> ids);
+
+    /**
+     * Marks all dispatched {@link OutboxEntry}s as pending again, so entries that were not processed completely
+     * before a shutdown are dispatched once more.
+     *
+     * @return the number of updated entries.
+     */
+    @Modifying
+    @Query("UPDATE OutboxEntry e SET e.dispatched = false WHERE e.dispatched = true")
+    int resetDispatched();
+
+    /**
+     * Deletes the {@link OutboxEntry}s referenced by the given ids.
+     *
+     * @param ids must not be null.
+     * @return the number of deleted entries.
+     */
+    @Modifying
+    @Query("DELETE FROM OutboxEntry e WHERE e.id IN :ids")
+    int deleteByIds(@NotNull @Param("ids") Collection<Long> ids);
+}
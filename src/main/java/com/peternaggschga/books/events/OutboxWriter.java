@@ -0,0 +1,54 @@
+package com.peternaggschga.books.events;
+
+import lombok.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Writes every {@link EntityChangedEvent} into the transactional outbox. The {@link OutboxEntry} is saved in the
+ * transaction that published the event, so it is committed if and only if the change itself is committed. Writing a
+ * single row is all the publishing transaction pays, independent of the number of {@link OutboxConsumer}s.
+ */
+@Component
+public class OutboxWriter {
+    @NotNull
+    private final OutboxRepository repository;
+    @NotNull
+    private final OutboxDispatcher dispatcher;
+
+    /**
+     * Creates a new {@link OutboxWriter} instance with the given {@link OutboxRepository} and
+     * {@link OutboxDispatcher}.
+     *
+     * @param repository must not be null.
+     * @param dispatcher must not be null.
+     */
+    public OutboxWriter(@NonNull OutboxRepository repository, @NonNull OutboxDispatcher dispatcher) {
+        this.repository = repository;
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Saves the given {@link EntityChangedEvent} as {@link OutboxEntry} in the publishing transaction.
+     *
+     * @param event must not be null.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void write(@NonNull EntityChangedEvent event) {
+        repository.save(new OutboxEntry(event));
+    }
+
+    /**
+     * Notifies the {@link OutboxDispatcher} after the publishing transaction was committed, so the new entries are
+     * dispatched without waiting for the next poll.
+     *
+     * @param event must not be null.
+     */
+    @TransactionalEventListener
+    public void committed(@NonNull EntityChangedEvent event) {
+        dispatcher.wakeUp();
+    }
+}
@@ -0,0 +1,342 @@
+package com.peternaggschga.books.live;
+
+import com.peternaggschga.books.account.Tenants;
+import com.peternaggschga.books.events.EntityChangedEvent;
+import com.peternaggschga.books.events.EntityChangedEvent.ChangeType;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes the committed changes of the library to the open list pages of the same tenant as server-sent events. Every
+ * change is sent as a compact diff, i.e. the {@link EntityChangedEvent} itself, the pages fetch the rows they display
+ * themselves. Changes are collected per connection and sent in batches every flush interval, so several changes of
+ * the same entity are coalesced into one. A connection never has more than one batch in flight: while a slow client
+ * is still receiving, further changes are coalesced into its next batch. If more than the configured number of
+ * entities changed in between, the batch is dropped and the client is told to reload instead, so the memory used by
+ * a connection is bounded.
+ * Every batch carries an id made of the epoch of this instance, i.e. its start time, and the number of changes of the
+ * tenant, e.g. {@code 1639000000000-42}. The number of changes restarts at 0 with the application, so a client
+ * reconnecting with an id of another epoch or an older number has missed changes and is told to reload as well.
+ */
+@Component
+@ConditionalOnProperty(name = "books.live.enabled", havingValue = "true", matchIfMissing = true)
+public class ChangeStream {
+    /**
+     * Name of the event containing a batch of changes.
+     */
+    public static final String CHANGES_EVENT = "changes";
+    /**
+     * Name of the event telling the client that changes were lost and the page has to be reloaded.
+     */
+    public static final String RELOAD_EVENT = "reload";
+    private static final Logger LOG = LoggerFactory.getLogger(ChangeStream.class);
+    private final long timeout;
+    private final long heartbeatInterval;
+    private final int maxPending;
+    private final int maxConnections;
+    private final long epoch = System.currentTimeMillis();
+    @NotNull
+    private final Map<Long, Channel> channels = new ConcurrentHashMap<>();
+    @NotNull
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    @NotNull
+    private final ScheduledExecutorService scheduler;
+    @NotNull
+    private final ThreadPoolExecutor senders;
+
+    /**
+     * Creates a new {@link ChangeStream} instance with the given configuration.
+     *
+     * @param flushInterval     the milliseconds changes are collected before they are sent, must be positive.
+     * @param heartbeatInterval the milliseconds after which an idle connection is checked, must be positive.
+     * @param timeout           the milliseconds after which a connection is closed, clients reconnect on their own.
+     * @param maxPending        the maximum number of changed entities kept per connection, must be positive.
+     * @param maxConnections    the maximum number of open connections, must be positive.
+     * @param senderThreads     the number of threads writing to the connections, must be positive.
+     */
+    public ChangeStream(@Value("${books.live.flush-interval:250}") long flushInterval,
+                        @Value("${books.live.heartbeat-interval:30000}") long heartbeatInterval,
+                        @Value("${books.live.timeout:1800000}") long timeout,
+                        @Value("${books.live.max-pending:200}") int maxPending,
+                        @Value("${books.live.max-connections:1000}") int maxConnections,
+                        @Value("${books.live.sender-threads:4}") int senderThreads) {
+        if (flushInterval <= 0 || heartbeatInterval <= 0 || maxPending <= 0 || maxConnections <= 0
+                || senderThreads <= 0) {
+            throw new IllegalArgumentException("Intervals, limits and threads must be positive");
+        }
+        this.timeout = timeout;
+        this.heartbeatInterval = heartbeatInterval;
+        this.maxPending = maxPending;
+        this.maxConnections = maxConnections;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "change-stream");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger threadCount = new AtomicInteger();
+        // every connection has at most one send queued or running, so the queue never holds more than
+        // maxConnections sends, a rejected send is released by flush and retried by the next one
+        this.senders = new ThreadPoolExecutor(senderThreads, senderThreads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(maxConnections), runnable -> {
+            Thread thread = new Thread(runnable, "change-stream-sender-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        scheduler.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens a new connection receiving the changes of the tenant of the current thread.
+     *
+     * @param lastEventId the id of the last batch received by a reconnecting client, can be null.
+     * @return a new {@link SseEmitter}, never null.
+     * @throws ResponseStatusException if the maximum number of connections is reached.
+     */
+    public SseEmitter subscribe(String lastEventId) {
+        if (connectionCount.incrementAndGet() > maxConnections) {
+            connectionCount.decrementAndGet();
+            LOG.warn("Maximale Anzahl an Verbindungen für Änderungen erreicht");
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many open change streams");
+        }
+        Channel channel = channels.computeIfAbsent(Tenants.getCurrentTenantOrDefault(), tenant -> new Channel());
+        Subscriber subscriber = new Subscriber(createEmitter(timeout));
+        synchronized (channel) {
+            subscriber.sequence = channel.sequence;
+            subscriber.overflow = lastEventId != null && !isCurrent(lastEventId, channel.sequence);
+            channel.subscribers.add(subscriber);
+        }
+        Runnable remove = () -> {
+            if (channel.subscribers.remove(subscriber)) {
+                connectionCount.decrementAndGet();
+            }
+        };
+        subscriber.emitter.onCompletion(remove);
+        subscriber.emitter.onTimeout(remove);
+        subscriber.emitter.onError(error -> remove.run());
+        return subscriber.emitter;
+    }
+
+    /**
+     * Adds the committed change to the pending changes of all connections of the tenant of the current thread.
+     * Changes made without a tenant, e.g. by background tasks, cannot be attributed to a library and are not sent.
+     *
+     * @param event must not be null.
+     */
+    @TransactionalEventListener
+    public void onEntityChanged(@NonNull EntityChangedEvent event) {
+        OptionalLong tenant = Tenants.getCurrentTenant();
+        if (tenant.isEmpty()) {
+            return;
+        }
+        Channel channel = channels.get(tenant.getAsLong());
+        if (channel == null) {
+            return;
+        }
+        synchronized (channel) {
+            channel.sequence++;
+            for (Subscriber subscriber : channel.subscribers) {
+                subscriber.add(event, channel.sequence);
+            }
+        }
+    }
+
+    /**
+     * Stops sending changes and closes all connections.
+     */
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+        senders.shutdownNow();
+        for (Channel channel : channels.values()) {
+            for (Subscriber subscriber : channel.subscribers) {
+                subscriber.emitter.complete();
+            }
+        }
+    }
+
+    /**
+     * Creates the {@link SseEmitter} of a new connection.
+     *
+     * @param timeout the milliseconds after which the connection is closed.
+     * @return a new {@link SseEmitter}, never null.
+     */
+    SseEmitter createEmitter(long timeout) {
+        return new SseEmitter(timeout);
+    }
+
+    /**
+     * Sends the pending changes of all connections, which are not sending yet. Called every flush interval.
+     */
+    void flush() {
+        long now = System.currentTimeMillis();
+        for (Channel channel : channels.values()) {
+            for (Subscriber subscriber : channel.subscribers) {
+                if (subscriber.claim(now - heartbeatInterval)) {
+                    try {
+                        senders.execute(() -> subscriber.send(channel));
+                    } catch (RejectedExecutionException e) {
+                        subscriber.release();
+                        LOG.warn("Senden von Änderungen abgelehnt: " + e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the id of the batch of changes with the given sequence number.
+     *
+     * @param sequence the number of changes of a tenant.
+     * @return a {@link String} of the form epoch-sequence.
+     */
+    String eventId(long sequence) {
+        return epoch + "-" + sequence;
+    }
+
+    /**
+     * Returns whether the given id of the last batch received by a client was sent by this instance with the given
+     * sequence number, i.e. whether the client has not missed any changes.
+     *
+     * @param lastEventId must not be null.
+     * @param sequence    the current number of changes of the tenant of the client.
+     * @return true if both the epoch and the sequence number of the id match.
+     */
+    boolean isCurrent(@NonNull String lastEventId, long sequence) {
+        int separator = lastEventId.indexOf('-');
+        if (separator < 0) {
+            return false;
+        }
+        try {
+            return Long.parseLong(lastEventId.substring(0, separator)) == epoch
+                    && Long.parseLong(lastEventId.substring(separator + 1)) == sequence;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * The connections of a tenant together with the number of changes of its library.
+     */
+    private static final class Channel {
+        private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+        private long sequence;
+    }
+
+    /**
+     * A connection together with the changes not sent yet, keyed by entity.
+     */
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final Map<String, EntityChangedEvent> pending = new LinkedHashMap<>();
+        private long sequence;
+        private boolean overflow;
+        private boolean sending;
+        private long lastSent = System.currentTimeMillis();
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        private synchronized void add(EntityChangedEvent event, long sequence) {
+            this.sequence = sequence;
+            if (overflow) {
+                return;
+            }
+            String key = event.getEntityType() + "#" + event.getEntityId();
+            EntityChangedEvent previous = pending.get(key);
+            if (previous != null && previous.getChangeType() == ChangeType.CREATED) {
+                // the client has not seen the entity yet, so it is still new or was never there
+                if (event.getChangeType() == ChangeType.DELETED) {
+                    pending.remove(key);
+                }
+                return;
+            }
+            pending.remove(key);
+            pending.put(key, event);
+            if (pending.size() > maxPending) {
+                overflow = true;
+                pending.clear();
+            }
+        }
+
+        /**
+         * Reserves the connection for a send if it has changes to send or was idle since the given time.
+         */
+        private synchronized boolean claim(long idleSince) {
+            if (sending || (pending.isEmpty() && !overflow && lastSent > idleSince)) {
+                return false;
+            }
+            sending = true;
+            return true;
+        }
+
+        /**
+         * Releases the connection reserved by {@link Subscriber#claim(long)} without sending, so the pending changes
+         * are sent by a later flush.
+         */
+        private synchronized void release() {
+            sending = false;
+        }
+
+        private void send(Channel channel) {
+            List<EntityChangedEvent> changes;
+            boolean reload;
+            long id;
+            synchronized (this) {
+                changes = new ArrayList<>(pending.values());
+                reload = overflow;
+                id = sequence;
+                pending.clear();
+                overflow = false;
+            }
+            try {
+                if (reload) {
+                    emitter.send(SseEmitter.event().name(RELOAD_EVENT).id(eventId(id)).data(""));
+                } else if (!changes.isEmpty()) {
+                    emitter.send(SseEmitter.event().name(CHANGES_EVENT).id(eventId(id))
+                            .data(changes, MediaType.APPLICATION_JSON));
+                } else {
+                    // detects closed connections, which would otherwise only be removed by their timeout
+                    emitter.send(SseEmitter.event().comment(""));
+                }
+            } catch (IOException | IllegalStateException e) {
+                if (channel.subscribers.remove(this)) {
+                    connectionCount.decrementAndGet();
+                }
+                emitter.completeWithError(e);
+            } finally {
+                synchronized (this) {
+                    lastSent = System.currentTimeMillis();
+                    sending = false;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.peternaggschga.books.live;
+
+import lombok.NonNull;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * A controller opening connections to the {@link ChangeStream} for the list pages.
+ */
+@RestController
+@ConditionalOnProperty(name = "books.live.enabled", havingValue = "true", matchIfMissing = true)
+public class ChangeStreamController {
+    @NotNull
+    private final ChangeStream changeStream;
+
+    /**
+     * Creates a new {@link ChangeStreamController} instance with the given {@link ChangeStream}.
+     *
+     * @param changeStream must not be null.
+     */
+    public ChangeStreamController(@NonNull ChangeStream changeStream) {
+        this.changeStream = changeStream;
+    }
+
+    @GetMapping(path = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestHeader(name = "Last-Event-ID", required = false) String lastEventId) {
+        return changeStream.subscribe(lastEventId);
+    }
+}
@@ -28,12 +28,15 @@ public class EditReadingForm {
     @Positive
     @SuppressWarnings("FieldMayBeFinal")
     private Integer pagesPerHour;
+    private Long version;
 
-    public EditReadingForm(Long bookId, String beginningString, String endString, Integer pagesPerHour) {
+    public EditReadingForm(Long bookId, String beginningString, String endString, Integer pagesPerHour,
+                           Long version) {
         this.bookId = bookId;
         this.beginningString = beginningString;
         this.endString = endString;
         this.pagesPerHour = pagesPerHour;
+        this.version = version;
     }
 
     public LocalDate getBeginning() {
@@ -62,6 +65,10 @@ public class EditReadingForm {
         return pagesPerHour;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
     public void setBookId(long bookId) {
         this.bookId = bookId;
     }
@@ -77,4 +84,8 @@ public class EditReadingForm {
     public void setPagesPerHour(int pagesPerHour) {
         this.pagesPerHour = pagesPerHour;
     }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
 }
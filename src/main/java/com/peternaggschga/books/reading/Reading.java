@@ -1,27 +1,48 @@
 package com.peternaggschga.books.reading;
 
+import com.peternaggschga.books.account.TenantOwned;
+import com.peternaggschga.books.account.Tenants;
 import com.peternaggschga.books.books.book.Book;
+import com.peternaggschga.books.rendering.DateFormats;
 import lombok.NonNull;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.Filter;
 
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import javax.persistence.Version;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Positive;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.time.format.FormatStyle;
 import java.util.Objects;
 
 /**
- * An entity representing one reading of a certain {@link Book}.
+ * An entity representing one reading of a certain {@link Book}. The readings are indexed by beginning, so the
+ * timeline can be paged without sorting the whole table, and by end, so unfinished readings are found quickly.
  */
 @Entity
-public class Reading {
+@DynamicUpdate
+@Filter(name = Tenants.FILTER)
+@Table(indexes = {@Index(name = "reading_tenant_beginning_index",
+        columnList = Tenants.COLUMN + ", beginning DESC, id DESC"),
+        @Index(name = "reading_tenant_end_index", columnList = Tenants.COLUMN + ", end")})
+public class Reading implements TenantOwned {
     @GeneratedValue
     @Id
     private long id;
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private long version;
+    /**
+     * The tenant owning this entity. New instances are assigned to the tenant of the signed in account.
+     */
+    @Column(name = Tenants.COLUMN, nullable = false, updatable = false, columnDefinition = "bigint default 0")
+    private long tenantId = Tenants.getCurrentTenantOrDefault();
     @NotNull
     @ManyToOne
     private Book book;
@@ -56,6 +77,15 @@ public class Reading {
         return id;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public long getTenantId() {
+        return tenantId;
+    }
+
     public Book getBook() {
         return book;
     }
@@ -81,7 +111,7 @@ public class Reading {
      * @return a {@link String} representing beginning.
      */
     public String getBeginningString() {
-        return beginning.format(DateTimeFormatter.ofLocalizedDate(FormatStyle.MEDIUM));
+        return DateFormats.formatDate(beginning);
     }
 
     public LocalDate getEnd() {
@@ -101,7 +131,7 @@ public class Reading {
      * @return a {@link String} representing end.
      */
     public String getEndString() {
-        return end == null ? null : end.format(DateTimeFormatter.ofLocalizedDate(FormatStyle.MEDIUM));
+        return DateFormats.formatDate(end);
     }
 
     public int getPagesPerHour() {
@@ -0,0 +1,44 @@
+package com.peternaggschga.books.reading;
+
+import com.peternaggschga.books.api.CursorPage;
+import lombok.NonNull;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.validation.constraints.NotNull;
+import java.util.Map;
+
+/**
+ * A controller serving {@link Reading} resources of the JSON API.
+ */
+@RestController
+@RequestMapping("/api/v1/readings")
+public class ReadingApiController {
+    @NotNull
+    private final ReadingManagement management;
+
+    /**
+     * Creates a new {@link ReadingApiController} instance with the given {@link ReadingManagement}.
+     *
+     * @param management must not be null.
+     */
+    public ReadingApiController(@NonNull ReadingManagement management) {
+        this.management = management;
+    }
+
+    @GetMapping
+    public CursorPage findReadings(@RequestParam(required = false) String cursor,
+                                   @RequestParam(defaultValue = "50") int limit,
+                                   @RequestParam(required = false) String fields) {
+        return management.findReadingResources(ReadingManagement.READING_RESOURCE.parseFields(fields),
+                CursorPage.decode(cursor), CursorPage.checkLimit(limit));
+    }
+
+    @GetMapping("/{id}")
+    public Map<String, Object> findReading(@PathVariable long id, @RequestParam(required = false) String fields) {
+        return management.findReadingResourceById(id, ReadingManagement.READING_RESOURCE.parseFields(fields));
+    }
+}
@@ -1,96 +1,307 @@
 package com.peternaggschga.books.reading;
 
 import com.peternaggschga.books.books.BookManagement;
+import com.peternaggschga.books.readmodel.Library;
+import com.peternaggschga.books.readmodel.ReadModel;
+import com.peternaggschga.books.readmodel.ReadingView;
+import com.peternaggschga.books.rendering.PartialRows;
+import com.peternaggschga.books.rendering.RowFragmentCache;
+import com.peternaggschga.books.rendering.StreamingTableRenderer;
 import lombok.NonNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.Errors;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.util.UriComponentsBuilder;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.Year;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * A controller dealing with requests concerning {@link Reading}s.
  */
 @Controller
 public class ReadingController {
+    /**
+     * Name of the response header containing the URL of the next window of rows of the timeline.
+     */
+    public static final String NEXT_ROWS_HEADER = "X-Next-Rows";
     private static final Logger LOG = LoggerFactory.getLogger(ReadingController.class);
+    private static final int RECENTLY_FINISHED = 10;
     @NotNull
     private final ReadingManagement readingManagement;
     @NotNull
     private final BookManagement bookManagement;
+    @NotNull
+    private final RowFragmentCache rowFragmentCache;
+    @NotNull
+    private final StreamingTableRenderer tableRenderer;
+    @NotNull
+    private final ReadModel readModel;
+    private final int windowSize;
 
     /**
-     * Creates a new {@link ReadingController} instance with the given {@link ReadingManagement} and
-     * {@link BookManagement}.
+     * Creates a new {@link ReadingController} instance with the given {@link ReadingManagement},
+     * {@link BookManagement}, {@link RowFragmentCache}, {@link StreamingTableRenderer} and {@link ReadModel}.
      *
      * @param readingManagement must not be null.
      * @param bookManagement    must not be null.
+     * @param rowFragmentCache  must not be null.
+     * @param tableRenderer     must not be null.
+     * @param readModel         must not be null.
+     * @param windowSize        the number of {@link Reading}s loaded at once by the timeline, must be positive.
      */
-    public ReadingController(@NonNull ReadingManagement readingManagement, @NonNull BookManagement bookManagement) {
+    public ReadingController(@NonNull ReadingManagement readingManagement, @NonNull BookManagement bookManagement,
+                             @NonNull RowFragmentCache rowFragmentCache, @NonNull StreamingTableRenderer tableRenderer,
+                             @NonNull ReadModel readModel,
+                             @Value("${books.readings.window-size:50}") int windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("Window size must be positive");
+        }
         this.readingManagement = readingManagement;
         this.bookManagement = bookManagement;
+        this.rowFragmentCache = rowFragmentCache;
+        this.tableRenderer = tableRenderer;
+        this.readModel = readModel;
+        this.windowSize = windowSize;
+    }
+
+    @GetMapping("/")
+    public String showDashboard(Model model) {
+        model.addAttribute("bookExists", readingManagement.getBookCount() > 0);
+        model.addAttribute("readingsInProgress", readingManagement.findReadingsInProgress());
+        model.addAttribute("recentlyFinished", readingManagement.findRecentlyFinishedReadings(RECENTLY_FINISHED));
+        model.addAttribute("authorCount", readingManagement.getAuthorCount());
+        model.addAttribute("bookCount", readingManagement.getBookCount());
+        model.addAttribute("seriesCount", readingManagement.getSeriesCount());
+        model.addAttribute("readingCount", readingManagement.getReadingCount());
+        return "reading/dashboard";
     }
 
     @GetMapping("/readings")
-    public String showReadings(Model model) {
-        model.addAttribute("bookExists", bookManagement.getBookCount() > 0);
-        model.addAttribute("readings", readingManagement.findAllReadings());
-        return "reading/readings";
+    public String showReadings(Model model, HttpServletRequest request, HttpServletResponse response,
+                               @RequestParam(required = false) Year year,
+                               @RequestParam(required = false) YearMonth month,
+                               @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE) LocalDate from,
+                               @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE) LocalDate to,
+                               @RequestParam(defaultValue = "false") boolean open,
+                               @RequestParam(required = false) String cursor) throws IOException {
+        model.addAttribute("year", year);
+        model.addAttribute("month", month);
+        model.addAttribute("from", from);
+        model.addAttribute("to", to);
+        model.addAttribute("open", open);
+        if (readModel.isEnabled()) {
+            Library library = readModel.getLibrary();
+            model.addAttribute("bookExists", !library.getBooks().isEmpty());
+            return showTimeline(model, findTimeline(library, year, month, from, to, open, cursor),
+                    rowFragmentCache::renderReading, request, response);
+        }
+        model.addAttribute("bookExists", readingManagement.getBookCount() > 0);
+        return showTimeline(model, findTimeline(year, month, from, to, open, cursor),
+                rowFragmentCache::renderReading, request, response);
+    }
+
+    @GetMapping("/readings/rows")
+    public ResponseEntity<String> showReadingRows(HttpServletRequest request,
+                                                  @RequestParam(required = false) Year year,
+                                                  @RequestParam(required = false) YearMonth month,
+                                                  @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE)
+                                                          LocalDate from,
+                                                  @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE)
+                                                          LocalDate to,
+                                                  @RequestParam(defaultValue = "false") boolean open,
+                                                  @RequestParam(required = false) String cursor) {
+        if (readModel.isEnabled()) {
+            return showTimelineRows(request, findTimeline(readModel.getLibrary(), year, month, from, to, open, cursor),
+                    rowFragmentCache::renderReading);
+        }
+        return showTimelineRows(request, findTimeline(year, month, from, to, open, cursor),
+                rowFragmentCache::renderReading);
+    }
+
+    @GetMapping("/readings/{id}/row")
+    public void showReadingRow(@PathVariable long id, HttpServletResponse response) throws IOException {
+        PartialRows.writeRow(response, id, rowFragmentCache.renderReading(readingManagement.findReadingById(id)));
     }
 
     @GetMapping("/readings/add")
-    public String addReading(Model model, @SuppressWarnings("unused") EditReadingForm form) {
-        model.addAttribute("books", bookManagement.findAllBooks());
-        model.addAttribute("id", -1);
+    public String addReading(Model model, EditReadingForm form) {
+        addFormAttributes(model, form, -1);
         return "reading/edit_reading";
     }
 
     @GetMapping("/readings/{id}")
     public String editAuthor(@PathVariable long id, Model model, EditReadingForm form) {
         Reading reading = readingManagement.findReadingById(id);
-        model.addAttribute("books", bookManagement.findAllBooks());
-        model.addAttribute("id", id);
-        form.setBookId(id);
+        form.setBookId(reading.getBook().getId());
         form.setBeginningString(reading.getBeginning().toString());
-        if (form.getEnd() != null) {
-            form.setEndString(form.getEnd().toString());
+        if (reading.getEnd() != null) {
+            form.setEndString(reading.getEnd().toString());
         }
         form.setPagesPerHour(reading.getPagesPerHour());
+        form.setVersion(reading.getVersion());
+        addFormAttributes(model, form, id);
         return "reading/edit_reading";
     }
 
     @PostMapping("/readings/save")
-    public String saveReading(long id, Model model, @Valid EditReadingForm form, Errors result) {
+    public String saveReading(long id, Model model, @Valid EditReadingForm form, Errors result,
+                              HttpServletRequest request, HttpServletResponse response) throws IOException {
         if (result.hasErrors()) {
             LOG.warn("Fehlerhafte Formulardaten: " + result.getAllErrors());
-            model.addAttribute("books", bookManagement.findAllBooks());
-            model.addAttribute("id", id);
+            addFormAttributes(model, form, id);
             return "reading/edit_reading";
         }
         if (form.getEnd() != null && form.getBeginning().isAfter(form.getEnd())) {
             LOG.warn("Fehlerhafte Formulardaten: Beginn nach Ende!");
             result.rejectValue("endString", "IsBeforeBeginningDate");
-            model.addAttribute("books", bookManagement.findAllBooks());
-            model.addAttribute("id", id);
+            addFormAttributes(model, form, id);
             return "reading/edit_reading";
         }
+        Reading reading;
         if (id < 0) {
-            readingManagement.createReading(form, bookManagement.findBookById(form.getBookId()));
+            reading = readingManagement.createReading(form, bookManagement.findBookById(form.getBookId()));
         } else {
-            readingManagement.updateReading(id, form, bookManagement.findBookById(form.getBookId()));
+            try {
+                reading = readingManagement.updateReading(id, form, bookManagement.findBookById(form.getBookId()));
+            } catch (ObjectOptimisticLockingFailureException e) {
+                LOG.warn("Konflikt beim Speichern von Lesung " + id + ": " + e.getMessage());
+                form.setVersion(readingManagement.findReadingById(id).getVersion());
+                model.addAttribute("conflict", true);
+                addFormAttributes(model, form, id);
+                return "reading/edit_reading";
+            }
+        }
+        if (PartialRows.isPartial(request)) {
+            PartialRows.writeRow(response, reading.getId(), rowFragmentCache.renderReading(reading));
+            return null;
         }
         return "redirect:/readings";
     }
 
     @PostMapping("/readings/delete")
-    public String deleteReading(long id) {
+    public String deleteReading(long id, HttpServletRequest request, HttpServletResponse response) {
         readingManagement.deleteReading(id);
+        if (PartialRows.isPartial(request)) {
+            PartialRows.writeDeleted(response, id);
+            return null;
+        }
         return "redirect:/readings";
     }
+
+    /**
+     * Renders a window of the timeline into the list page. If the {@link StreamingTableRenderer} is enabled, the page
+     * around the table is flushed before the rows of the window are written.
+     */
+    private <T> String showTimeline(@NonNull Model model, @NonNull ReadingTimeline<T> timeline,
+                                    @NonNull Function<T, String> rowRenderer, @NonNull HttpServletRequest request,
+                                    @NonNull HttpServletResponse response) throws IOException {
+        model.addAttribute("nextPage", nextUrl(request, "/readings", timeline));
+        model.addAttribute("nextRows", nextUrl(request, "/readings/rows", timeline));
+        if (tableRenderer.isEnabled()) {
+            tableRenderer.render("reading/readings", model.asMap(), timeline.getReadings()::stream, rowRenderer,
+                    request, response);
+            return null;
+        }
+        model.addAttribute("readings", timeline.getReadings());
+        return "reading/readings";
+    }
+
+    private <T> ResponseEntity<String> showTimelineRows(@NonNull HttpServletRequest request,
+                                                        @NonNull ReadingTimeline<T> timeline,
+                                                        @NonNull Function<T, String> rowRenderer) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(new MediaType(MediaType.TEXT_HTML, StandardCharsets.UTF_8));
+        if (timeline.getNext() != null) {
+            response.header(NEXT_ROWS_HEADER, nextUrl(request, "/readings/rows", timeline));
+        }
+        return response.body(timeline.getReadings().stream().map(rowRenderer).collect(Collectors.joining()));
+    }
+
+    private ReadingTimeline<Reading> findTimeline(Year year, YearMonth month, LocalDate from, LocalDate to,
+                                                  boolean open, String cursor) {
+        try {
+            if (open) {
+                return readingManagement.findTimelineInProgress(cursor, windowSize);
+            } else if (month != null) {
+                return readingManagement.findTimeline(month, cursor, windowSize);
+            } else if (year != null) {
+                return readingManagement.findTimeline(year, cursor, windowSize);
+            }
+            return readingManagement.findTimeline(from, to, cursor, windowSize);
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Fehlerhafte Anfrage: " + e.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the same window of the timeline as {@link ReadingController#findTimeline(Year, YearMonth, LocalDate,
+     * LocalDate, boolean, String)}, read from the given {@link Library} instead of the database.
+     */
+    private ReadingTimeline<ReadingView> findTimeline(@NonNull Library library, Year year, YearMonth month,
+                                                      LocalDate from, LocalDate to, boolean open, String cursor) {
+        try {
+            ReadingTimeline.Position position = ReadingTimeline.Position.decode(cursor);
+            Stream<ReadingView> readings;
+            if (open) {
+                readings = library.streamTimeline(ReadingTimeline.MIN_DATE, ReadingTimeline.MAX_DATE,
+                        position.getBeginning(), position.getId()).filter(reading -> reading.getEnd() == null);
+            } else if (month != null) {
+                readings = library.streamTimeline(month.atDay(1), month.atEndOfMonth(), position.getBeginning(),
+                        position.getId());
+            } else if (year != null) {
+                readings = library.streamTimeline(year.atDay(1), year.atMonth(12).atEndOfMonth(),
+                        position.getBeginning(), position.getId());
+            } else {
+                readings = library.streamTimeline(from == null ? ReadingTimeline.MIN_DATE : from,
+                        to == null ? ReadingTimeline.MAX_DATE : to, position.getBeginning(), position.getId());
+            }
+            return new ReadingTimeline<>(readings.limit(windowSize + 1L).collect(Collectors.toList()), windowSize,
+                    ReadingView::getBeginning, ReadingView::getId);
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Fehlerhafte Anfrage: " + e.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
+    private static String nextUrl(@NonNull HttpServletRequest request, @NonNull String path,
+                                  @NonNull ReadingTimeline<?> timeline) {
+        if (timeline.getNext() == null) {
+            return null;
+        }
+        return UriComponentsBuilder.fromPath(request.getContextPath() + path).query(request.getQueryString())
+                .replaceQueryParam("cursor", timeline.getNext()).build(true).toUriString();
+    }
+
+    private void addFormAttributes(@NonNull Model model, @NonNull EditReadingForm form, long id) {
+        model.addAttribute("selectedBooks", form.getBookId() == null ? List.of()
+                : bookManagement.findBooksByIds(List.of(form.getBookId())));
+        model.addAttribute("id", id);
+    }
 }
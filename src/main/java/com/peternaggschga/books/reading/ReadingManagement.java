@@ -1,17 +1,43 @@
 package com.peternaggschga.books.reading;
 
+import com.peternaggschga.books.account.Tenants;
+import com.peternaggschga.books.api.CursorPage;
+import com.peternaggschga.books.api.ResourceDefinition;
+import com.peternaggschga.books.api.SparseResourceRepository;
+import com.peternaggschga.books.author.AuthorRepository;
 import com.peternaggschga.books.books.book.Book;
+import com.peternaggschga.books.books.book.BookRepository;
 import com.peternaggschga.books.books.series.Series;
 import com.peternaggschga.books.books.series.SeriesRepository;
+import com.peternaggschga.books.events.EntityChangedEvent;
+import com.peternaggschga.books.events.EntityChangedEvent.ChangeType;
+import com.peternaggschga.books.events.EntityChangedEvent.EntityType;
 import lombok.NonNull;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.data.util.Streamable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
-import javax.transaction.Transactional;
+import javax.annotation.PostConstruct;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Positive;
 import java.time.LocalDate;
+import java.time.Year;
+import java.time.YearMonth;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 /**
  * Service managing access to the {@link ReadingRepository} and {@link Reading} instances.
@@ -19,16 +45,50 @@ import java.time.LocalDate;
 @Service
 @Transactional
 public class ReadingManagement {
+    /**
+     * The fields of {@link Reading}s exposed by the JSON API.
+     */
+    public static final ResourceDefinition READING_RESOURCE = new ResourceDefinition(Reading.class)
+            .withAttribute("book", "book.id").withAttribute("beginning").withAttribute("end")
+            .withAttribute("pagesPerHour").withAttribute("version");
     @NotNull
     private final ReadingRepository readingRepository;
+    @NotNull
+    private final AuthorRepository authorRepository;
+    @NotNull
+    private final BookRepository bookRepository;
+    @NotNull
+    private final SeriesRepository seriesRepository;
+    @NotNull
+    private final SparseResourceRepository resourceRepository;
+    @NotNull
+    private final ApplicationEventPublisher eventPublisher;
+    @NotNull
+    private final Map<Long, Statistics> statistics = new ConcurrentHashMap<>();
 
     /**
-     * Creates a new {@link ReadingManagement} instance with the given {@link ReadingRepository}.
+     * Creates a new {@link ReadingManagement} instance with the given {@link ReadingRepository},
+     * {@link AuthorRepository}, {@link BookRepository}, {@link SeriesRepository}, {@link SparseResourceRepository}
+     * and {@link ApplicationEventPublisher}.
      *
-     * @param readingRepository must not be null.
+     * @param readingRepository  must not be null.
+     * @param authorRepository   must not be null.
+     * @param bookRepository     must not be null.
+     * @param seriesRepository   must not be null.
+     * @param resourceRepository must not be null.
+     * @param eventPublisher     must not be null.
      */
-    public ReadingManagement(@NonNull ReadingRepository readingRepository) {
+    public ReadingManagement(@NonNull ReadingRepository readingRepository,
+                             @NonNull AuthorRepository authorRepository, @NonNull BookRepository bookRepository,
+                             @NonNull SeriesRepository seriesRepository,
+                             @NonNull SparseResourceRepository resourceRepository,
+                             @NonNull ApplicationEventPublisher eventPublisher) {
         this.readingRepository = readingRepository;
+        this.authorRepository = authorRepository;
+        this.bookRepository = bookRepository;
+        this.seriesRepository = seriesRepository;
+        this.resourceRepository = resourceRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
@@ -43,7 +103,9 @@ public class ReadingManagement {
      */
     public Reading createReading(@NonNull Book book, @NonNull LocalDate beginning, LocalDate end,
                                  @Positive int pagesPerHour) {
-        return readingRepository.save(new Reading(book, beginning, end, pagesPerHour));
+        Reading reading = readingRepository.save(new Reading(book, beginning, end, pagesPerHour));
+        publishChange(reading.getId(), ChangeType.CREATED);
+        return reading;
     }
 
     /**
@@ -62,7 +124,7 @@ public class ReadingManagement {
 
     /**
      * Updates the {@link Reading} referred to by the given id with the given {@link Book}, beginning, end and
-     * pagesPerHour. The updated instance is saved to the {@link ReadingRepository}.
+     * pagesPerHour. The changes of the managed instance are written when the transaction is committed.
      *
      * @param id           must be valid.
      * @param book         must not be null.
@@ -78,21 +140,29 @@ public class ReadingManagement {
         reading.setBeginning(beginning);
         reading.setEnd(end);
         reading.setPagesPerHour(pagesPerHour);
-        return readingRepository.save(reading);
+        publishChange(id, ChangeType.UPDATED);
+        return reading;
     }
 
     /**
      * Updates the {@link Reading} referred to by the given id with the given {@link EditReadingForm}.
      * Wrapper function of {@link ReadingManagement#updateReading(long, Book, LocalDate, LocalDate, int)}.
+     * If the form was created from another version of the {@link Reading}, an
+     * {@link ObjectOptimisticLockingFailureException} is thrown.
      *
      * @param id   must be valid.
      * @param form must be valid, must not be null.
      * @param book must not be null.
      * @return the updated {@link Reading} instance.
+     * @throws ObjectOptimisticLockingFailureException if the {@link Reading} was changed concurrently.
      * @see ReadingManagement#updateReading(long, Book, LocalDate, LocalDate, int)
      */
     @SuppressWarnings("UnusedReturnValue")
     public Reading updateReading(long id, @NonNull @Valid EditReadingForm form, @NonNull Book book) {
+        Reading reading = findReadingById(id);
+        if (form.getVersion() != null && form.getVersion() != reading.getVersion()) {
+            throw new ObjectOptimisticLockingFailureException(Reading.class, id);
+        }
         return updateReading(id, book, form.getBeginning(), form.getEnd(), form.getPagesPerHour());
     }
 
@@ -103,15 +173,19 @@ public class ReadingManagement {
      */
     public void deleteReading(@NonNull Reading reading) {
         readingRepository.delete(reading);
+        publishChange(reading.getId(), ChangeType.DELETED);
     }
 
     /**
      * Deletes the {@link Reading} referenced by the given id from {@link ReadingRepository}.
+     * Wrapper function of {@link ReadingManagement#deleteReading(Reading)}.
      *
-     * @param id must be valid.
+     * @param id must be valid, else {@link java.util.NoSuchElementException} is thrown.
+     * @see ReadingManagement#deleteReading(Reading)
+     * @see ReadingManagement#findReadingById(long)
      */
     public void deleteReading(long id) {
-        readingRepository.deleteById(id);
+        deleteReading(findReadingById(id));
     }
 
     /**
@@ -130,19 +204,91 @@ public class ReadingManagement {
      *
      * @return an {@link Iterable} containing all {@link Reading} instances in {@link ReadingRepository}.
      */
+    @Transactional(readOnly = true)
     public Streamable<Reading> findAllReadings() {
         return readingRepository.findAll();
     }
 
+    /**
+     * Returns a window of the {@link Reading}s that began between from and to, the most recent first. Only the
+     * {@link Reading}s behind the given cursor are read from the index on beginning.
+     *
+     * @param from   can be null, in that case the timeline is not limited to the past.
+     * @param to     can be null, in that case the timeline is not limited to the future.
+     * @param cursor can be null, in that case the window starts with the most recent {@link Reading}.
+     * @param limit  the maximum number of {@link Reading}s, must be positive.
+     * @return a {@link ReadingTimeline} containing at most limit {@link Reading}s.
+     * @throws IllegalArgumentException if the cursor is malformed or limit is not positive.
+     */
+    @Transactional(readOnly = true)
+    public ReadingTimeline<Reading> findTimeline(LocalDate from, LocalDate to, String cursor, int limit) {
+        checkTimelineLimit(limit);
+        ReadingTimeline.Position position = ReadingTimeline.Position.decode(cursor);
+        LocalDate start = from == null ? ReadingTimeline.MIN_DATE : from;
+        LocalDate end = to == null || to.isAfter(position.getBeginning()) ? position.getBeginning() : to;
+        if (start.isAfter(end)) {
+            return new ReadingTimeline<>(List.of(), limit, Reading::getBeginning, Reading::getId);
+        }
+        return new ReadingTimeline<>(readingRepository.findTimeline(start, end, position.getBeginning(),
+                position.getId(), PageRequest.of(0, limit + 1)), limit, Reading::getBeginning, Reading::getId);
+    }
+
+    /**
+     * Returns a window of the {@link Reading}s that began in the given year, the most recent first.
+     * Wrapper function of {@link ReadingManagement#findTimeline(LocalDate, LocalDate, String, int)}.
+     *
+     * @param year   must not be null.
+     * @param cursor can be null, in that case the window starts with the most recent {@link Reading}.
+     * @param limit  the maximum number of {@link Reading}s, must be positive.
+     * @return a {@link ReadingTimeline} containing at most limit {@link Reading}s.
+     * @see ReadingManagement#findTimeline(LocalDate, LocalDate, String, int)
+     */
+    @Transactional(readOnly = true)
+    public ReadingTimeline<Reading> findTimeline(@NonNull Year year, String cursor, int limit) {
+        return findTimeline(year.atDay(1), year.atMonth(12).atEndOfMonth(), cursor, limit);
+    }
+
+    /**
+     * Returns a window of the {@link Reading}s that began in the given month, the most recent first.
+     * Wrapper function of {@link ReadingManagement#findTimeline(LocalDate, LocalDate, String, int)}.
+     *
+     * @param month  must not be null.
+     * @param cursor can be null, in that case the window starts with the most recent {@link Reading}.
+     * @param limit  the maximum number of {@link Reading}s, must be positive.
+     * @return a {@link ReadingTimeline} containing at most limit {@link Reading}s.
+     * @see ReadingManagement#findTimeline(LocalDate, LocalDate, String, int)
+     */
+    @Transactional(readOnly = true)
+    public ReadingTimeline<Reading> findTimeline(@NonNull YearMonth month, String cursor, int limit) {
+        return findTimeline(month.atDay(1), month.atEndOfMonth(), cursor, limit);
+    }
+
+    /**
+     * Returns a window of the {@link Reading}s that are not finished yet, the most recent first.
+     *
+     * @param cursor can be null, in that case the window starts with the most recent {@link Reading}.
+     * @param limit  the maximum number of {@link Reading}s, must be positive.
+     * @return a {@link ReadingTimeline} containing at most limit {@link Reading}s without end.
+     * @throws IllegalArgumentException if the cursor is malformed or limit is not positive.
+     */
+    @Transactional(readOnly = true)
+    public ReadingTimeline<Reading> findTimelineInProgress(String cursor, int limit) {
+        checkTimelineLimit(limit);
+        ReadingTimeline.Position position = ReadingTimeline.Position.decode(cursor);
+        return new ReadingTimeline<>(readingRepository.findTimelineInProgress(position.getBeginning(),
+                position.getId(), PageRequest.of(0, limit + 1)), limit, Reading::getBeginning, Reading::getId);
+    }
+
     /**
      * Returns the {@link Reading} referenced by the given id.
-     * If the id does not exist, a {@link java.util.NoSuchElementException} is thrown.
+     * If the id does not exist or belongs to another tenant, a {@link java.util.NoSuchElementException} is thrown.
      *
      * @param id must be valid, else {@link java.util.NoSuchElementException} is thrown.
      * @return the {@link Reading} referenced by id.
      */
+    @Transactional(readOnly = true)
     public Reading findReadingById(long id) {
-        return readingRepository.findById(id).orElseThrow();
+        return readingRepository.findById(id).filter(Tenants::isAccessible).orElseThrow();
     }
 
     /**
@@ -151,7 +297,196 @@ public class ReadingManagement {
      * @param book must not be null.
      * @return a {@link Streamable} containing {@link Series}.
      */
+    @Transactional(readOnly = true)
     public Streamable<Reading> findReadingsByBook(@NonNull Book book) {
         return readingRepository.findReadingsByBook(book);
     }
+
+    /**
+     * Returns a page of {@link Reading}s for the JSON API, only containing the given fields.
+     *
+     * @param fields must not be null, must be parsed by {@link ReadingManagement#READING_RESOURCE}.
+     * @param after  the id of the last {@link Reading} of the previous page.
+     * @param limit  must be valid regarding {@link CursorPage#checkLimit(int)}.
+     * @return a {@link CursorPage} of {@link Reading} resources.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage findReadingResources(@NonNull Set<String> fields, long after, int limit) {
+        return new CursorPage(resourceRepository.findPage(READING_RESOURCE, fields, after, limit), limit);
+    }
+
+    /**
+     * Returns the {@link Reading} referenced by the given id as resource of the JSON API.
+     * If the id does not exist, a {@link java.util.NoSuchElementException} is thrown.
+     *
+     * @param id     must be valid, else {@link java.util.NoSuchElementException} is thrown.
+     * @param fields must not be null, must be parsed by {@link ReadingManagement#READING_RESOURCE}.
+     * @return a {@link Map} containing the given fields.
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> findReadingResourceById(long id, @NonNull Set<String> fields) {
+        return resourceRepository.findById(READING_RESOURCE, fields, id).orElseThrow();
+    }
+
+    /**
+     * Returns the {@link Reading}s of the current tenant that are not finished yet, the most recently begun first.
+     * The ids of the {@link Reading}s are read from the in-memory index of open {@link Reading}s.
+     *
+     * @return a {@link List} of {@link Reading}s without end, ordered by beginning and id descending.
+     */
+    @Transactional(readOnly = true)
+    public List<Reading> findReadingsInProgress() {
+        return Streamable.of(readingRepository.findAllById(Set.copyOf(currentStatistics().openReadingIds))).stream()
+                .sorted(Comparator.comparing(Reading::getBeginning).thenComparing(Reading::getId).reversed())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the most recently finished {@link Reading}s.
+     *
+     * @param limit the maximum number of {@link Reading}s, must be positive.
+     * @return a {@link List} of {@link Reading}s, ordered by end and id descending.
+     */
+    @Transactional(readOnly = true)
+    public List<Reading> findRecentlyFinishedReadings(int limit) {
+        checkTimelineLimit(limit);
+        return readingRepository.findRecentlyFinished(PageRequest.of(0, limit));
+    }
+
+    /**
+     * Returns the number of {@link com.peternaggschga.books.author.Author}s of the current tenant without querying
+     * the database.
+     *
+     * @return a non-negative long.
+     */
+    @Transactional(readOnly = true)
+    public long getAuthorCount() {
+        return currentStatistics().counters.get(EntityType.AUTHOR).get();
+    }
+
+    /**
+     * Returns the number of {@link Book}s of the current tenant without querying the database.
+     *
+     * @return a non-negative long.
+     */
+    @Transactional(readOnly = true)
+    public long getBookCount() {
+        return currentStatistics().counters.get(EntityType.BOOK).get();
+    }
+
+    /**
+     * Returns the number of {@link Series} of the current tenant without querying the database.
+     *
+     * @return a non-negative long.
+     */
+    @Transactional(readOnly = true)
+    public long getSeriesCount() {
+        return currentStatistics().counters.get(EntityType.SERIES).get();
+    }
+
+    /**
+     * Returns the number of {@link Reading}s of the current tenant without querying the database.
+     *
+     * @return a non-negative long.
+     */
+    @Transactional(readOnly = true)
+    public long getReadingCount() {
+        return currentStatistics().counters.get(EntityType.READING).get();
+    }
+
+    /**
+     * Returns the number of {@link Reading}s of the current tenant that are not finished yet without querying the
+     * database.
+     *
+     * @return a non-negative long.
+     */
+    @Transactional(readOnly = true)
+    public long getReadingInProgressCount() {
+        return currentStatistics().openReadingIds.size();
+    }
+
+    /**
+     * Counts all entities of every tenant and rebuilds the in-memory index of open {@link Reading}s. Called once on
+     * startup, afterwards the counters and the index are maintained by
+     * {@link ReadingManagement#updateStatistics(EntityChangedEvent)}.
+     */
+    @PostConstruct
+    public void rebuildStatistics() {
+        Map<Long, Statistics> rebuilt = new HashMap<>();
+        countByTenant(rebuilt, EntityType.AUTHOR, authorRepository.countByTenant());
+        countByTenant(rebuilt, EntityType.BOOK, bookRepository.countByTenant());
+        countByTenant(rebuilt, EntityType.SERIES, seriesRepository.countByTenant());
+        countByTenant(rebuilt, EntityType.READING, readingRepository.countByTenant());
+        for (Object[] row : readingRepository.findIdsAndTenantsInProgress()) {
+            rebuilt.computeIfAbsent((Long) row[1], tenant -> new Statistics()).openReadingIds.add((Long) row[0]);
+        }
+        statistics.clear();
+        statistics.putAll(rebuilt);
+    }
+
+    /**
+     * Updates the counters and the index of open {@link Reading}s of the current tenant after a change of an entity
+     * was committed. Created and deleted entities are counted, changed {@link Reading}s are reloaded in a new
+     * transaction to check whether they are finished.
+     *
+     * @param event must not be null.
+     */
+    @TransactionalEventListener
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void updateStatistics(@NonNull EntityChangedEvent event) {
+        Statistics tenantStatistics = currentStatistics();
+        if (event.getChangeType() == ChangeType.CREATED) {
+            tenantStatistics.counters.get(event.getEntityType()).incrementAndGet();
+        } else if (event.getChangeType() == ChangeType.DELETED) {
+            tenantStatistics.counters.get(event.getEntityType()).decrementAndGet();
+        }
+        if (event.getEntityType() != EntityType.READING) {
+            return;
+        }
+        boolean open = event.getChangeType() != ChangeType.DELETED && readingRepository
+                .findById(event.getEntityId()).map(reading -> !reading.isFinished()).orElse(false);
+        if (open) {
+            tenantStatistics.openReadingIds.add(event.getEntityId());
+        } else {
+            tenantStatistics.openReadingIds.remove(event.getEntityId());
+        }
+    }
+
+    private Statistics currentStatistics() {
+        return statistics.computeIfAbsent(Tenants.getCurrentTenantOrDefault(), tenant -> new Statistics());
+    }
+
+    private static void countByTenant(@NonNull Map<Long, Statistics> statistics, @NonNull EntityType entityType,
+                                      @NonNull List<Object[]> counts) {
+        for (Object[] row : counts) {
+            statistics.computeIfAbsent((Long) row[0], tenant -> new Statistics())
+                    .counters.get(entityType).set((Long) row[1]);
+        }
+    }
+
+    private static void checkTimelineLimit(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+    }
+
+    private void publishChange(long id, @NonNull ChangeType changeType) {
+        eventPublisher.publishEvent(new EntityChangedEvent(EntityType.READING, id, changeType));
+    }
+
+    /**
+     * The counters of all entities and the ids of the open {@link Reading}s of one tenant.
+     */
+    private static final class Statistics {
+        @NotNull
+        private final Map<EntityType, AtomicLong> counters = new EnumMap<>(EntityType.class);
+        @NotNull
+        private final Set<Long> openReadingIds = ConcurrentHashMap.newKeySet();
+
+        private Statistics() {
+            for (EntityType entityType : EntityType.values()) {
+                counters.put(entityType, new AtomicLong());
+            }
+        }
+    }
 }
@@ -2,12 +2,21 @@ package com.peternaggschga.books.reading;
 
 import com.peternaggschga.books.books.book.Book;
 import com.peternaggschga.books.books.series.Series;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.data.util.Streamable;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import javax.validation.constraints.NotNull;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 /**
  * An interface defining custom queries. Extends {@link CrudRepository} of {@link Reading}s.
@@ -24,6 +33,75 @@ public interface ReadingRepository extends CrudRepository<Reading, Long> {
     @Override
     Streamable<Reading> findAll();
 
+    /**
+     * Returns the id, version, id of the {@link Book}, beginning, end, pages per hour and tenant of all saved
+     * {@link Reading} instances without loading the entities. Must be called and consumed inside a transaction.
+     *
+     * @return a {@link Stream} containing an array of these values for every {@link Reading}.
+     */
+    @Query("SELECT r.id, r.version, r.book.id, r.beginning, r.end, r.pagesPerHour, r.tenantId FROM Reading r")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    Stream<Object[]> streamAllRows();
+
+    /**
+     * Returns the {@link Reading}s together with their {@link Book}s that began between from and to and are ordered
+     * behind the given position of the timeline. The timeline is ordered by beginning and id descending, so the
+     * {@link Reading}s are read from the index on beginning without sorting.
+     *
+     * @param from      must not be null, the earliest beginning.
+     * @param to        must not be null, the latest beginning.
+     * @param beginning must not be null, the beginning of the last {@link Reading} of the previous window.
+     * @param id        the id of the last {@link Reading} of the previous window.
+     * @param pageable  must not be null, limits the size of the window.
+     * @return a {@link List} of {@link Reading}s, ordered by beginning and id descending.
+     */
+    @Query("SELECT r FROM Reading r JOIN FETCH r.book WHERE r.beginning BETWEEN :from AND :to "
+            + "AND (r.beginning < :beginning OR (r.beginning = :beginning AND r.id < :id)) "
+            + "ORDER BY r.beginning DESC, r.id DESC")
+    List<Reading> findTimeline(@NotNull @Param("from") LocalDate from, @NotNull @Param("to") LocalDate to,
+                               @NotNull @Param("beginning") LocalDate beginning, @Param("id") long id,
+                               @NotNull Pageable pageable);
+
+    /**
+     * Returns the unfinished {@link Reading}s together with their {@link Book}s that are ordered behind the given
+     * position of the timeline.
+     *
+     * @param beginning must not be null, the beginning of the last {@link Reading} of the previous window.
+     * @param id        the id of the last {@link Reading} of the previous window.
+     * @param pageable  must not be null, limits the size of the window.
+     * @return a {@link List} of {@link Reading}s without end, ordered by beginning and id descending.
+     */
+    @Query("SELECT r FROM Reading r JOIN FETCH r.book WHERE r.end IS NULL "
+            + "AND (r.beginning < :beginning OR (r.beginning = :beginning AND r.id < :id)) "
+            + "ORDER BY r.beginning DESC, r.id DESC")
+    List<Reading> findTimelineInProgress(@NotNull @Param("beginning") LocalDate beginning, @Param("id") long id,
+                                         @NotNull Pageable pageable);
+
+    /**
+     * Returns the ids and tenants of all {@link Reading}s that are not finished yet.
+     *
+     * @return a {@link List} containing an array of id and tenant id for every unfinished {@link Reading}.
+     */
+    @Query("SELECT r.id, r.tenantId FROM Reading r WHERE r.end IS NULL")
+    List<Object[]> findIdsAndTenantsInProgress();
+
+    /**
+     * Returns the number of saved {@link Reading} instances of every tenant.
+     *
+     * @return a {@link List} containing an array of tenant id and number of {@link Reading}s for every tenant.
+     */
+    @Query("SELECT e.tenantId, COUNT(e) FROM Reading e GROUP BY e.tenantId")
+    List<Object[]> countByTenant();
+
+    /**
+     * Returns the most recently finished {@link Reading}s together with their {@link Book}s.
+     *
+     * @param pageable must not be null, limits the number of {@link Reading}s.
+     * @return a {@link List} of {@link Reading}s, ordered by end and id descending.
+     */
+    @Query("SELECT r FROM Reading r JOIN FETCH r.book WHERE r.end IS NOT NULL ORDER BY r.end DESC, r.id DESC")
+    List<Reading> findRecentlyFinished(@NotNull Pageable pageable);
+
     /**
      * Returns all {@link Series} that contain the given {@link Book}.
      *
@@ -0,0 +1,115 @@
+package com.peternaggschga.books.reading;
+
+import lombok.NonNull;
+
+import javax.validation.constraints.NotNull;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * A window of the timeline of {@link Reading}s, ordered by beginning and id descending. The cursor of the next window
+ * is opaque to clients and null on the last window.
+ *
+ * @param <T> the type of the {@link Reading}s, either {@link Reading} or a view of it.
+ */
+public class ReadingTimeline<T> {
+    /**
+     * The earliest beginning of a {@link Reading} considered by the timeline.
+     */
+    public static final LocalDate MIN_DATE = LocalDate.of(1, 1, 1);
+    /**
+     * The latest beginning of a {@link Reading} considered by the timeline.
+     */
+    public static final LocalDate MAX_DATE = LocalDate.of(9999, 12, 31);
+    @NotNull
+    private final List<T> readings;
+    private final String next;
+
+    /**
+     * Creates a new {@link ReadingTimeline} instance with the given {@link Reading}s. If more {@link Reading}s than
+     * fit into the window are given, the surplus ones are dropped and a cursor pointing behind the last kept
+     * {@link Reading} is created.
+     *
+     * @param readings  must not be null, must be ordered by beginning and id descending.
+     * @param limit     the maximum number of {@link Reading}s of a window.
+     * @param beginning must not be null, returns the beginning of a {@link Reading}.
+     * @param id        must not be null, returns the id of a {@link Reading}.
+     */
+    public ReadingTimeline(@NonNull List<T> readings, int limit, @NonNull Function<T, LocalDate> beginning,
+                           @NonNull ToLongFunction<T> id) {
+        if (readings.size() > limit) {
+            this.readings = List.copyOf(readings.subList(0, limit));
+            T last = this.readings.get(limit - 1);
+            this.next = new Position(beginning.apply(last), id.applyAsLong(last)).encode();
+        } else {
+            this.readings = List.copyOf(readings);
+            this.next = null;
+        }
+    }
+
+    public List<T> getReadings() {
+        return readings;
+    }
+
+    public String getNext() {
+        return next;
+    }
+
+    /**
+     * A position on the timeline, following all {@link Reading}s that began later or on the same day with a greater
+     * id.
+     */
+    public static final class Position {
+        /**
+         * The position in front of all {@link Reading}s.
+         */
+        public static final Position START = new Position(MAX_DATE.plusDays(1), Long.MAX_VALUE);
+        @NotNull
+        private final LocalDate beginning;
+        private final long id;
+
+        private Position(@NonNull LocalDate beginning, long id) {
+            this.beginning = beginning;
+            this.id = id;
+        }
+
+        /**
+         * Returns the position encoded in the given cursor.
+         *
+         * @param cursor can be null, in that case {@link Position#START} is returned.
+         * @return the {@link Position} encoded in cursor.
+         * @throws IllegalArgumentException if the cursor is malformed.
+         */
+        public static Position decode(String cursor) {
+            if (cursor == null || cursor.isBlank()) {
+                return START;
+            }
+            try {
+                String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+                int separator = value.indexOf('/');
+                return new Position(LocalDate.parse(value.substring(0, separator)),
+                        Long.parseLong(value.substring(separator + 1)));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeException e) {
+                throw new IllegalArgumentException("Malformed cursor " + cursor, e);
+            }
+        }
+
+        public LocalDate getBeginning() {
+            return beginning;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        private String encode() {
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((beginning + "/" + id).getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+}
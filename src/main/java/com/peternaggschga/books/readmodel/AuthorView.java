@@ -0,0 +1,87 @@
+package com.peternaggschga.books.readmodel;
+
+import com.neovisionaries.i18n.CountryCode;
+import com.peternaggschga.books.author.Author;
+import com.peternaggschga.books.rendering.DateFormats;
+import lombok.NonNull;
+
+import javax.validation.constraints.NotNull;
+import java.time.LocalDate;
+
+/**
+ * An immutable view of an {@link Author} in the {@link Library}, offering the properties displayed on the list pages.
+ */
+public final class AuthorView {
+    private final long id;
+    private final long version;
+    @NotNull
+    private final String firstName;
+    @NotNull
+    private final String lastName;
+    private final LocalDate birthDate;
+    private final LocalDate deathDate;
+    @NotNull
+    private final CountryCode nationality;
+
+    /**
+     * Creates a new {@link AuthorView} instance showing the current state of the given {@link Author}.
+     *
+     * @param author must not be null.
+     */
+    public AuthorView(@NonNull Author author) {
+        this.id = author.getId();
+        this.version = author.getVersion();
+        this.firstName = author.getFirstName();
+        this.lastName = author.getLastName();
+        this.birthDate = author.getBirthDate();
+        this.deathDate = author.getDeathDate();
+        this.nationality = author.getNationality();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public LocalDate getBirthDate() {
+        return birthDate;
+    }
+
+    /**
+     * @see Author#getBirthDateString()
+     */
+    public String getBirthDateString() {
+        return DateFormats.formatDate(birthDate);
+    }
+
+    public LocalDate getDeathDate() {
+        return deathDate;
+    }
+
+    /**
+     * @see Author#getDeathDateString()
+     */
+    public String getDeathDateString() {
+        return DateFormats.formatDate(deathDate);
+    }
+
+    public CountryCode getNationality() {
+        return nationality;
+    }
+
+    @Override
+    public String toString() {
+        return firstName + " " + lastName;
+    }
+}
@@ -0,0 +1,126 @@
+package com.peternaggschga.books.readmodel;
+
+import com.peternaggschga.books.books.book.Book;
+import com.peternaggschga.books.rendering.DateFormats;
+import lombok.NonNull;
+
+import javax.validation.constraints.NotNull;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * An immutable view of a {@link Book} in the {@link Library}, offering the properties displayed on the list pages. It
+ * references the {@link AuthorView}s of its authors, so it is replaced whenever one of them changes.
+ */
+public final class BookView {
+    private final long id;
+    private final long version;
+    @NotNull
+    private final String title;
+    @NotNull
+    private final List<AuthorView> authors;
+    @NotNull
+    private final LocalDate published;
+    @NotNull
+    private final String isbn;
+    private final int pages;
+    @NotNull
+    private final Locale language;
+    private final String coverHash;
+
+    /**
+     * Creates a new {@link BookView} instance showing the current state of the given {@link Book} written by the
+     * given {@link AuthorView}s.
+     *
+     * @param book    must not be null.
+     * @param authors must not be null.
+     */
+    public BookView(@NonNull Book book, @NonNull List<AuthorView> authors) {
+        this(book.getId(), book.getVersion(), book.getTitle(), authors, book.getPublished(), book.getIsbn(),
+                book.getPages(), book.getLanguage(), book.getCoverHash());
+    }
+
+    private BookView(long id, long version, @NonNull String title, @NonNull List<AuthorView> authors,
+                     @NonNull LocalDate published, @NonNull String isbn, int pages, @NonNull Locale language,
+                     String coverHash) {
+        this.id = id;
+        this.version = version;
+        this.title = title;
+        this.authors = List.copyOf(authors);
+        this.published = published;
+        this.isbn = isbn;
+        this.pages = pages;
+        this.language = language;
+        this.coverHash = coverHash;
+    }
+
+    /**
+     * Returns a copy of this view with the {@link AuthorView} of the same id replaced by the given one.
+     *
+     * @param author must not be null.
+     * @return a new {@link BookView}, never null.
+     */
+    public BookView withAuthor(@NonNull AuthorView author) {
+        List<AuthorView> newAuthors = new ArrayList<>(authors);
+        newAuthors.replaceAll(view -> view.getId() == author.getId() ? author : view);
+        return new BookView(id, version, title, newAuthors, published, isbn, pages, language, coverHash);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public List<AuthorView> getAuthors() {
+        return authors;
+    }
+
+    /**
+     * @see Book#getAuthorString()
+     */
+    public String getAuthorString() {
+        return authors.stream().map(AuthorView::toString).collect(Collectors.joining(", "));
+    }
+
+    public LocalDate getPublished() {
+        return published;
+    }
+
+    /**
+     * @see Book#getPublishedString()
+     */
+    public String getPublishedString() {
+        return DateFormats.formatDate(published);
+    }
+
+    public String getIsbn() {
+        return isbn;
+    }
+
+    public int getPages() {
+        return pages;
+    }
+
+    public Locale getLanguage() {
+        return language;
+    }
+
+    public String getCoverHash() {
+        return coverHash;
+    }
+
+    @Override
+    public String toString() {
+        return getAuthorString() + ": " + title;
+    }
+}
@@ -0,0 +1,481 @@
+package com.peternaggschga.books.readmodel;
+
+import lombok.NonNull;
+
+import javax.validation.constraints.NotNull;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * An immutable snapshot of the whole library graph. All views are indexed by id in {@link LongMap}s, the relations
+ * between them are kept as sorted arrays of ids. Changes return a new {@link Library} sharing everything but the
+ * changed parts with this one and replace all views displaying a changed entity, e.g. the {@link BookView}s of an
+ * updated {@link AuthorView}. The arrays of ids are never modified after their creation.
+ */
+public final class Library {
+    /**
+     * The {@link Library} without any entities.
+     */
+    public static final Library EMPTY = new Library(LongMap.empty(), LongMap.empty(), LongMap.empty(),
+            LongMap.empty(), LongMap.empty(), LongMap.empty(), LongMap.empty(), LongMap.empty());
+    private static final long[] NO_IDS = new long[0];
+    @NotNull
+    private final LongMap<AuthorView> authors;
+    @NotNull
+    private final LongMap<BookView> books;
+    @NotNull
+    private final LongMap<SeriesView> series;
+    @NotNull
+    private final LongMap<ReadingView> readings;
+    /**
+     * Maps the negated epoch day of a beginning to the ids of the {@link ReadingView}s begun on it, so iterating it
+     * yields the most recent readings first.
+     */
+    @NotNull
+    private final LongMap<long[]> readingsByDay;
+    @NotNull
+    private final LongMap<long[]> booksByAuthor;
+    @NotNull
+    private final LongMap<long[]> readingsByBook;
+    @NotNull
+    private final LongMap<long[]> seriesByBook;
+
+    private Library(@NonNull LongMap<AuthorView> authors, @NonNull LongMap<BookView> books,
+                    @NonNull LongMap<SeriesView> series, @NonNull LongMap<ReadingView> readings,
+                    @NonNull LongMap<long[]> readingsByDay, @NonNull LongMap<long[]> booksByAuthor,
+                    @NonNull LongMap<long[]> readingsByBook, @NonNull LongMap<long[]> seriesByBook) {
+        this.authors = authors;
+        this.books = books;
+        this.series = series;
+        this.readings = readings;
+        this.readingsByDay = readingsByDay;
+        this.booksByAuthor = booksByAuthor;
+        this.readingsByBook = readingsByBook;
+        this.seriesByBook = seriesByBook;
+    }
+
+    /**
+     * Creates a new {@link Builder} loading a complete {@link Library} at once.
+     *
+     * @return a new {@link Builder}, never null.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns all {@link AuthorView}s ordered by id.
+     *
+     * @return a {@link LongMap} mapping ids to {@link AuthorView}s, never null.
+     */
+    public LongMap<AuthorView> getAuthors() {
+        return authors;
+    }
+
+    /**
+     * Returns all {@link BookView}s ordered by id.
+     *
+     * @return a {@link LongMap} mapping ids to {@link BookView}s, never null.
+     */
+    public LongMap<BookView> getBooks() {
+        return books;
+    }
+
+    /**
+     * Returns all {@link SeriesView}s ordered by id.
+     *
+     * @return a {@link LongMap} mapping ids to {@link SeriesView}s, never null.
+     */
+    public LongMap<SeriesView> getSeries() {
+        return series;
+    }
+
+    /**
+     * Returns all {@link ReadingView}s ordered by beginning descending.
+     *
+     * @return an {@link Iterable} of {@link ReadingView}s, never null.
+     */
+    public Iterable<ReadingView> getReadings() {
+        return () -> streamReadings().iterator();
+    }
+
+    /**
+     * Returns all {@link ReadingView}s ordered by beginning descending as a {@link Stream}.
+     *
+     * @return a {@link Stream} of {@link ReadingView}s, never null.
+     */
+    public Stream<ReadingView> streamReadings() {
+        return readingsByDay.stream().flatMapToLong(LongStream::of).mapToObj(readings::get);
+    }
+
+    /**
+     * Returns the {@link ReadingView}s that began between from and to and follow the given position on the timeline,
+     * ordered by beginning and id descending. A {@link ReadingView} follows the position if it began before
+     * beginning or on the same day with a smaller id. The iteration starts at the earlier one of to and beginning by
+     * binary search and stops at from.
+     *
+     * @param from      must not be null.
+     * @param to        must not be null.
+     * @param beginning must not be null, the beginning of the position.
+     * @param id        the id of the position.
+     * @return a {@link Stream} of {@link ReadingView}s, never null.
+     */
+    public Stream<ReadingView> streamTimeline(@NonNull LocalDate from, @NonNull LocalDate to,
+                                              @NonNull LocalDate beginning, long id) {
+        LocalDate end = to.isAfter(beginning) ? beginning : to;
+        return readingsByDay.tailStream(-end.toEpochDay())
+                .flatMap(ids -> IntStream.range(0, ids.length).mapToObj(i -> readings.get(ids[ids.length - 1 - i])))
+                .takeWhile(reading -> !reading.getBeginning().isBefore(from))
+                .filter(reading -> reading.getBeginning().isBefore(beginning) || reading.getId() < id);
+    }
+
+    public int getReadingCount() {
+        return readings.size();
+    }
+
+    /**
+     * Returns a {@link Library} containing the given {@link AuthorView} instead of the one with the same id.
+     *
+     * @param author must not be null.
+     * @return a new {@link Library}, never null.
+     */
+    public Library withAuthor(@NonNull AuthorView author) {
+        Editor editor = new Editor(this);
+        editor.putAuthor(author);
+        return editor.toLibrary();
+    }
+
+    /**
+     * Returns a {@link Library} without the {@link AuthorView} referenced by the given id.
+     *
+     * @param id the id of the removed {@link AuthorView}.
+     * @return a new {@link Library}, never null.
+     */
+    public Library withoutAuthor(long id) {
+        Editor editor = new Editor(this);
+        editor.authors = authors.without(id);
+        return editor.toLibrary();
+    }
+
+    /**
+     * Returns a {@link Library} containing the given {@link BookView} instead of the one with the same id.
+     *
+     * @param book must not be null.
+     * @return a new {@link Library}, never null.
+     */
+    public Library withBook(@NonNull BookView book) {
+        Editor editor = new Editor(this);
+        editor.putBook(book);
+        return editor.toLibrary();
+    }
+
+    /**
+     * Returns a {@link Library} without the {@link BookView} referenced by the given id and its
+     * {@link ReadingView}s.
+     *
+     * @param id the id of the removed {@link BookView}.
+     * @return a new {@link Library}, never null.
+     */
+    public Library withoutBook(long id) {
+        Editor editor = new Editor(this);
+        editor.removeBook(id);
+        return editor.toLibrary();
+    }
+
+    /**
+     * Returns a {@link Library} containing the given {@link SeriesView} instead of the one with the same id.
+     *
+     * @param view must not be null.
+     * @return a new {@link Library}, never null.
+     */
+    public Library withSeries(@NonNull SeriesView view) {
+        Editor editor = new Editor(this);
+        editor.removeSeries(view.getId());
+        editor.series = editor.series.with(view.getId(), view);
+        for (BookView book : view.getVolumes()) {
+            editor.seriesByBook = addToIndex(editor.seriesByBook, book.getId(), view.getId());
+        }
+        return editor.toLibrary();
+    }
+
+    /**
+     * Returns a {@link Library} without the {@link SeriesView} referenced by the given id.
+     *
+     * @param id the id of the removed {@link SeriesView}.
+     * @return a new {@link Library}, never null.
+     */
+    public Library withoutSeries(long id) {
+        Editor editor = new Editor(this);
+        editor.removeSeries(id);
+        return editor.toLibrary();
+    }
+
+    /**
+     * Returns a {@link Library} containing the given {@link ReadingView} instead of the one with the same id.
+     *
+     * @param reading must not be null.
+     * @return a new {@link Library}, never null.
+     */
+    public Library withReading(@NonNull ReadingView reading) {
+        Editor editor = new Editor(this);
+        editor.removeReading(reading.getId());
+        editor.readings = editor.readings.with(reading.getId(), reading);
+        editor.readingsByBook = addToIndex(editor.readingsByBook, reading.getBook().getId(), reading.getId());
+        editor.readingsByDay = addToIndex(editor.readingsByDay, -reading.getBeginning().toEpochDay(),
+                reading.getId());
+        return editor.toLibrary();
+    }
+
+    /**
+     * Returns a {@link Library} without the {@link ReadingView} referenced by the given id.
+     *
+     * @param id the id of the removed {@link ReadingView}.
+     * @return a new {@link Library}, never null.
+     */
+    public Library withoutReading(long id) {
+        Editor editor = new Editor(this);
+        editor.removeReading(id);
+        return editor.toLibrary();
+    }
+
+    private static long[] idsOf(@NonNull LongMap<long[]> index, long key) {
+        long[] ids = index.get(key);
+        return ids == null ? NO_IDS : ids;
+    }
+
+    private static LongMap<long[]> addToIndex(@NonNull LongMap<long[]> index, long key, long id) {
+        long[] ids = idsOf(index, key);
+        int position = Arrays.binarySearch(ids, id);
+        if (position >= 0) {
+            return index;
+        }
+        position = -position - 1;
+        long[] newIds = new long[ids.length + 1];
+        System.arraycopy(ids, 0, newIds, 0, position);
+        newIds[position] = id;
+        System.arraycopy(ids, position, newIds, position + 1, ids.length - position);
+        return index.with(key, newIds);
+    }
+
+    private static LongMap<long[]> removeFromIndex(@NonNull LongMap<long[]> index, long key, long id) {
+        long[] ids = idsOf(index, key);
+        int position = Arrays.binarySearch(ids, id);
+        if (position < 0) {
+            return index;
+        }
+        if (ids.length == 1) {
+            return index.without(key);
+        }
+        long[] newIds = new long[ids.length - 1];
+        System.arraycopy(ids, 0, newIds, 0, position);
+        System.arraycopy(ids, position + 1, newIds, position, newIds.length - position);
+        return index.with(key, newIds);
+    }
+
+    /**
+     * Applies a change including all replacements of dependent views before creating the new {@link Library}.
+     */
+    private static final class Editor {
+        private LongMap<AuthorView> authors;
+        private LongMap<BookView> books;
+        private LongMap<SeriesView> series;
+        private LongMap<ReadingView> readings;
+        private LongMap<long[]> readingsByDay;
+        private LongMap<long[]> booksByAuthor;
+        private LongMap<long[]> readingsByBook;
+        private LongMap<long[]> seriesByBook;
+
+        private Editor(@NonNull Library library) {
+            authors = library.authors;
+            books = library.books;
+            series = library.series;
+            readings = library.readings;
+            readingsByDay = library.readingsByDay;
+            booksByAuthor = library.booksByAuthor;
+            readingsByBook = library.readingsByBook;
+            seriesByBook = library.seriesByBook;
+        }
+
+        private void putAuthor(@NonNull AuthorView author) {
+            authors = authors.with(author.getId(), author);
+            for (long bookId : idsOf(booksByAuthor, author.getId())) {
+                BookView book = books.get(bookId);
+                if (book != null) {
+                    putBook(book.withAuthor(author));
+                }
+            }
+        }
+
+        private void putBook(@NonNull BookView book) {
+            BookView old = books.get(book.getId());
+            if (old != null) {
+                for (AuthorView author : old.getAuthors()) {
+                    booksByAuthor = removeFromIndex(booksByAuthor, author.getId(), book.getId());
+                }
+            }
+            for (AuthorView author : book.getAuthors()) {
+                booksByAuthor = addToIndex(booksByAuthor, author.getId(), book.getId());
+            }
+            books = books.with(book.getId(), book);
+            for (long readingId : idsOf(readingsByBook, book.getId())) {
+                ReadingView reading = readings.get(readingId);
+                if (reading != null) {
+                    readings = readings.with(readingId, reading.withBook(book));
+                }
+            }
+            for (long seriesId : idsOf(seriesByBook, book.getId())) {
+                SeriesView view = series.get(seriesId);
+                if (view != null) {
+                    series = series.with(seriesId, view.withVolume(book));
+                }
+            }
+        }
+
+        private void removeBook(long id) {
+            BookView old = books.get(id);
+            if (old != null) {
+                for (AuthorView author : old.getAuthors()) {
+                    booksByAuthor = removeFromIndex(booksByAuthor, author.getId(), id);
+                }
+            }
+            books = books.without(id);
+            for (long readingId : idsOf(readingsByBook, id)) {
+                removeReading(readingId);
+            }
+            for (long seriesId : idsOf(seriesByBook, id)) {
+                SeriesView view = series.get(seriesId);
+                if (view != null) {
+                    series = series.with(seriesId, view.withoutVolume(id));
+                }
+            }
+            seriesByBook = seriesByBook.without(id);
+        }
+
+        private void removeSeries(long id) {
+            SeriesView old = series.get(id);
+            if (old == null) {
+                return;
+            }
+            for (BookView book : old.getVolumes()) {
+                seriesByBook = removeFromIndex(seriesByBook, book.getId(), id);
+            }
+            series = series.without(id);
+        }
+
+        private void removeReading(long id) {
+            ReadingView old = readings.get(id);
+            if (old == null) {
+                return;
+            }
+            readingsByBook = removeFromIndex(readingsByBook, old.getBook().getId(), id);
+            readingsByDay = removeFromIndex(readingsByDay, -old.getBeginning().toEpochDay(), id);
+            readings = readings.without(id);
+        }
+
+        private Library toLibrary() {
+            return new Library(authors, books, series, readings, readingsByDay, booksByAuthor, readingsByBook,
+                    seriesByBook);
+        }
+    }
+
+    /**
+     * A builder creating a {@link Library} from views added in any order. The views must reference each other
+     * consistently, e.g. a {@link ReadingView} must reference the added {@link BookView} of its book.
+     */
+    public static final class Builder {
+        private final List<AuthorView> authors = new ArrayList<>();
+        private final List<BookView> books = new ArrayList<>();
+        private final List<SeriesView> series = new ArrayList<>();
+        private final List<ReadingView> readings = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        public Builder addAuthor(@NonNull AuthorView author) {
+            authors.add(author);
+            return this;
+        }
+
+        public Builder addBook(@NonNull BookView book) {
+            books.add(book);
+            return this;
+        }
+
+        public Builder addSeries(@NonNull SeriesView view) {
+            series.add(view);
+            return this;
+        }
+
+        public Builder addReading(@NonNull ReadingView reading) {
+            readings.add(reading);
+            return this;
+        }
+
+        /**
+         * Creates the {@link Library} containing all added views.
+         *
+         * @return a new {@link Library}, never null.
+         */
+        public Library build() {
+            Map<Long, IdList> readingsByDay = new HashMap<>();
+            Map<Long, IdList> booksByAuthor = new HashMap<>();
+            Map<Long, IdList> readingsByBook = new HashMap<>();
+            Map<Long, IdList> seriesByBook = new HashMap<>();
+            LongMap<AuthorView> authorMap = toMap(authors, AuthorView::getId);
+            LongMap<BookView> bookMap = toMap(books, BookView::getId);
+            for (BookView book : bookMap) {
+                book.getAuthors().forEach(author -> add(booksByAuthor, author.getId(), book.getId()));
+            }
+            LongMap<SeriesView> seriesMap = toMap(series, SeriesView::getId);
+            for (SeriesView view : seriesMap) {
+                view.getVolumes().forEach(book -> add(seriesByBook, book.getId(), view.getId()));
+            }
+            LongMap<ReadingView> readingMap = toMap(readings, ReadingView::getId);
+            for (ReadingView reading : readingMap) {
+                add(readingsByBook, reading.getBook().getId(), reading.getId());
+                add(readingsByDay, -reading.getBeginning().toEpochDay(), reading.getId());
+            }
+            return new Library(authorMap, bookMap, seriesMap, readingMap, toIndex(readingsByDay),
+                    toIndex(booksByAuthor), toIndex(readingsByBook), toIndex(seriesByBook));
+        }
+
+        private static <V> LongMap<V> toMap(@NonNull List<V> views, @NonNull ToLongFunction<V> id) {
+            views.sort(Comparator.comparingLong(id));
+            LongMap.Builder<V> builder = LongMap.builder();
+            views.forEach(view -> builder.put(id.applyAsLong(view), view));
+            return builder.build();
+        }
+
+        private static void add(@NonNull Map<Long, IdList> index, long key, long id) {
+            index.computeIfAbsent(key, k -> new IdList()).add(id);
+        }
+
+        private static LongMap<long[]> toIndex(@NonNull Map<Long, IdList> index) {
+            LongMap.Builder<long[]> builder = LongMap.builder();
+            index.keySet().stream().sorted()
+                    .forEach(key -> builder.put(key, Arrays.copyOf(index.get(key).ids, index.get(key).size)));
+            return builder.build();
+        }
+    }
+
+    private static final class IdList {
+        private long[] ids = new long[4];
+        private int size;
+
+        private void add(long id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package com.peternaggschga.books.readmodel;
+
+import lombok.NonNull;
+
+import javax.validation.constraints.NotNull;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * An immutable map from primitive long keys to values, iterated in ascending order of the keys. The entries are kept
+ * in chunks of sorted primitive keys, so a lookup is a binary search over the first keys of the chunks followed by
+ * one inside a chunk, without boxing. Changes return a new map sharing all chunks but the changed one, so the cost of
+ * a change depends on the size of a chunk and the number of chunks instead of the number of entries. A chunk growing
+ * beyond twice {@link LongMap#CHUNK_SIZE} entries is split. A chunk shrinking below half of it is merged with a
+ * neighbor if the merged chunk has at most one and a half times as many entries, so removals do not leave many small
+ * chunks behind and the merged chunk is not split again by the next insertions.
+ *
+ * @param <V> the type of the values.
+ */
+public final class LongMap<V> implements Iterable<V> {
+    private static final int CHUNK_SIZE = 256;
+    private static final LongMap<?> EMPTY = new LongMap<>(new long[0], new Chunk<?>[0], 0);
+    @NotNull
+    private final long[] firstKeys;
+    @NotNull
+    private final Chunk<?>[] chunks;
+    private final int size;
+
+    private LongMap(@NonNull long[] firstKeys, @NonNull Chunk<?>[] chunks, int size) {
+        this.firstKeys = firstKeys;
+        this.chunks = chunks;
+        this.size = size;
+    }
+
+    /**
+     * Returns the empty {@link LongMap}.
+     *
+     * @param <V> the type of the values.
+     * @return a {@link LongMap} without entries, never null.
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> LongMap<V> empty() {
+        return (LongMap<V>) EMPTY;
+    }
+
+    /**
+     * Creates a new {@link Builder} filling a {@link LongMap} in ascending order of keys.
+     *
+     * @param <V> the type of the values.
+     * @return a new {@link Builder}, never null.
+     */
+    public static <V> Builder<V> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * Returns the value mapped to the given key.
+     *
+     * @param key the key to look up.
+     * @return the value or null if the key is not contained.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        if (size == 0) {
+            return null;
+        }
+        Chunk<?> chunk = chunks[chunkIndex(key)];
+        int index = Arrays.binarySearch(chunk.keys, key);
+        return index < 0 ? null : (V) chunk.values[index];
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns a map containing all entries of this map and the given value mapped to the given key.
+     *
+     * @param key   the key of the entry.
+     * @param value must not be null.
+     * @return a {@link LongMap}, this map if value is already mapped to key.
+     */
+    public LongMap<V> with(long key, @NonNull V value) {
+        if (size == 0) {
+            return new LongMap<>(new long[]{key}, new Chunk<?>[]{new Chunk<>(new long[]{key}, new Object[]{value})},
+                    1);
+        }
+        int chunkIndex = chunkIndex(key);
+        Chunk<?> chunk = chunks[chunkIndex];
+        int index = Arrays.binarySearch(chunk.keys, key);
+        if (index >= 0) {
+            if (chunk.values[index] == value) {
+                return this;
+            }
+            Object[] values = chunk.values.clone();
+            values[index] = value;
+            return replaceChunk(chunkIndex, new Chunk<>(chunk.keys, values), size);
+        }
+        index = -index - 1;
+        long[] keys = new long[chunk.keys.length + 1];
+        Object[] values = new Object[keys.length];
+        System.arraycopy(chunk.keys, 0, keys, 0, index);
+        System.arraycopy(chunk.values, 0, values, 0, index);
+        keys[index] = key;
+        values[index] = value;
+        System.arraycopy(chunk.keys, index, keys, index + 1, chunk.keys.length - index);
+        System.arraycopy(chunk.values, index, values, index + 1, chunk.keys.length - index);
+        if (keys.length <= 2 * CHUNK_SIZE) {
+            return replaceChunk(chunkIndex, new Chunk<>(keys, values), size + 1);
+        }
+        Chunk<?>[] newChunks = new Chunk<?>[chunks.length + 1];
+        long[] newFirstKeys = new long[newChunks.length];
+        System.arraycopy(chunks, 0, newChunks, 0, chunkIndex);
+        System.arraycopy(firstKeys, 0, newFirstKeys, 0, chunkIndex);
+        newChunks[chunkIndex] = new Chunk<>(Arrays.copyOf(keys, CHUNK_SIZE), Arrays.copyOf(values, CHUNK_SIZE));
+        newChunks[chunkIndex + 1] = new Chunk<>(Arrays.copyOfRange(keys, CHUNK_SIZE, keys.length),
+                Arrays.copyOfRange(values, CHUNK_SIZE, values.length));
+        newFirstKeys[chunkIndex] = keys[0];
+        newFirstKeys[chunkIndex + 1] = keys[CHUNK_SIZE];
+        System.arraycopy(chunks, chunkIndex + 1, newChunks, chunkIndex + 2, chunks.length - chunkIndex - 1);
+        System.arraycopy(firstKeys, chunkIndex + 1, newFirstKeys, chunkIndex + 2, chunks.length - chunkIndex - 1);
+        return new LongMap<>(newFirstKeys, newChunks, size + 1);
+    }
+
+    /**
+     * Returns a map containing all entries of this map except the one with the given key.
+     *
+     * @param key the key of the removed entry.
+     * @return a {@link LongMap}, this map if key is not contained.
+     */
+    public LongMap<V> without(long key) {
+        if (size == 0) {
+            return this;
+        }
+        int chunkIndex = chunkIndex(key);
+        Chunk<?> chunk = chunks[chunkIndex];
+        int index = Arrays.binarySearch(chunk.keys, key);
+        if (index < 0) {
+            return this;
+        }
+        if (size == 1) {
+            return empty();
+        }
+        long[] keys = new long[chunk.keys.length - 1];
+        Object[] values = new Object[keys.length];
+        System.arraycopy(chunk.keys, 0, keys, 0, index);
+        System.arraycopy(chunk.values, 0, values, 0, index);
+        System.arraycopy(chunk.keys, index + 1, keys, index, keys.length - index);
+        System.arraycopy(chunk.values, index + 1, values, index, keys.length - index);
+        if (chunks.length > 1 && keys.length < CHUNK_SIZE / 2) {
+            int neighbor = chunkIndex + 1 < chunks.length ? chunkIndex + 1 : chunkIndex - 1;
+            if (keys.length == 0 || keys.length + chunks[neighbor].keys.length <= CHUNK_SIZE + CHUNK_SIZE / 2) {
+                return mergeChunks(Math.min(chunkIndex, neighbor), chunkIndex, new Chunk<>(keys, values), size - 1);
+            }
+        }
+        return replaceChunk(chunkIndex, new Chunk<>(keys, values), size - 1);
+    }
+
+    @Override
+    public Iterator<V> iterator() {
+        return iterator(0, 0);
+    }
+
+    /**
+     * Returns a sequential {@link Stream} of the values in ascending order of their keys.
+     *
+     * @return a {@link Stream}, never null.
+     */
+    public Stream<V> stream() {
+        return StreamSupport.stream(Spliterators.spliterator(iterator(), size,
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+    }
+
+    /**
+     * Returns a sequential {@link Stream} of the values mapped to keys greater than or equal to the given key in
+     * ascending order of their keys. The first value is found by binary search, so the skipped entries are not
+     * iterated.
+     *
+     * @param fromKey the smallest key of the returned values.
+     * @return a {@link Stream}, never null.
+     */
+    public Stream<V> tailStream(long fromKey) {
+        if (size == 0) {
+            return Stream.empty();
+        }
+        int chunkIndex = chunkIndex(fromKey);
+        int index = Arrays.binarySearch(chunks[chunkIndex].keys, fromKey);
+        index = index >= 0 ? index : -index - 1;
+        if (index == chunks[chunkIndex].keys.length) {
+            chunkIndex++;
+            index = 0;
+        }
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(chunkIndex, index),
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+    }
+
+    private Iterator<V> iterator(int firstChunk, int firstIndex) {
+        return new Iterator<>() {
+            private int chunk = firstChunk;
+            private int index = firstIndex;
+
+            @Override
+            public boolean hasNext() {
+                return chunk < chunks.length;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public V next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                V value = (V) chunks[chunk].values[index];
+                if (++index == chunks[chunk].keys.length) {
+                    chunk++;
+                    index = 0;
+                }
+                return value;
+            }
+        };
+    }
+
+    private int chunkIndex(long key) {
+        int index = Arrays.binarySearch(firstKeys, key);
+        return index >= 0 ? index : Math.max(0, -index - 2);
+    }
+
+    private LongMap<V> replaceChunk(int chunkIndex, @NonNull Chunk<?> chunk, int newSize) {
+        Chunk<?>[] newChunks = chunks.clone();
+        newChunks[chunkIndex] = chunk;
+        long[] newFirstKeys = firstKeys;
+        if (firstKeys[chunkIndex] != chunk.keys[0]) {
+            newFirstKeys = firstKeys.clone();
+            newFirstKeys[chunkIndex] = chunk.keys[0];
+        }
+        return new LongMap<>(newFirstKeys, newChunks, newSize);
+    }
+
+    /**
+     * Replaces the chunks at the given index and the one after it by a single chunk containing their entries. The
+     * given chunk replaces the one at changedIndex before merging.
+     */
+    private LongMap<V> mergeChunks(int first, int changedIndex, @NonNull Chunk<?> changed, int newSize) {
+        Chunk<?> left = first == changedIndex ? changed : chunks[first];
+        Chunk<?> right = first == changedIndex ? chunks[first + 1] : changed;
+        long[] keys = Arrays.copyOf(left.keys, left.keys.length + right.keys.length);
+        Object[] values = Arrays.copyOf(left.values, keys.length);
+        System.arraycopy(right.keys, 0, keys, left.keys.length, right.keys.length);
+        System.arraycopy(right.values, 0, values, left.keys.length, right.keys.length);
+        Chunk<?>[] newChunks = new Chunk<?>[chunks.length - 1];
+        long[] newFirstKeys = new long[newChunks.length];
+        System.arraycopy(chunks, 0, newChunks, 0, first);
+        System.arraycopy(firstKeys, 0, newFirstKeys, 0, first);
+        newChunks[first] = new Chunk<>(keys, values);
+        newFirstKeys[first] = keys[0];
+        System.arraycopy(chunks, first + 2, newChunks, first + 1, newChunks.length - first - 1);
+        System.arraycopy(firstKeys, first + 2, newFirstKeys, first + 1, newChunks.length - first - 1);
+        return new LongMap<>(newFirstKeys, newChunks, newSize);
+    }
+
+    int chunkCount() {
+        return chunks.length;
+    }
+
+    private static final class Chunk<V> {
+        private final long[] keys;
+        private final Object[] values;
+
+        private Chunk(long[] keys, Object[] values) {
+            this.keys = keys;
+            this.values = values;
+        }
+    }
+
+    /**
+     * A builder creating a {@link LongMap} from entries added in ascending order of their keys.
+     *
+     * @param <V> the type of the values.
+     */
+    public static final class Builder<V> {
+        private final long[] keys = new long[CHUNK_SIZE];
+        private final Object[] values = new Object[CHUNK_SIZE];
+        private long[] firstKeys = new long[16];
+        private Chunk<?>[] chunks = new Chunk<?>[16];
+        private int chunkCount;
+        private int count;
+        private int size;
+
+        private Builder() {
+        }
+
+        /**
+         * Adds the given entry, its key must be greater than all keys added before.
+         *
+         * @param key   the key of the entry.
+         * @param value must not be null.
+         * @return this {@link Builder}.
+         */
+        public Builder<V> put(long key, @NonNull V value) {
+            if (size > 0 && key <= (count > 0 ? keys[count - 1] : chunks[chunkCount - 1].keys[CHUNK_SIZE - 1])) {
+                throw new IllegalArgumentException("Keys must be added in ascending order");
+            }
+            keys[count] = key;
+            values[count] = value;
+            size++;
+            if (++count == CHUNK_SIZE) {
+                flush();
+            }
+            return this;
+        }
+
+        /**
+         * Creates the {@link LongMap} containing all added entries. The builder must not be used afterwards.
+         *
+         * @return a {@link LongMap}, never null.
+         */
+        public LongMap<V> build() {
+            flush();
+            return size == 0 ? empty() : new LongMap<>(Arrays.copyOf(firstKeys, chunkCount),
+                    Arrays.copyOf(chunks, chunkCount), size);
+        }
+
+        private void flush() {
+            if (count == 0) {
+                return;
+            }
+            if (chunkCount == chunks.length) {
+                chunks = Arrays.copyOf(chunks, chunkCount * 2);
+                firstKeys = Arrays.copyOf(firstKeys, chunkCount * 2);
+            }
+            firstKeys[chunkCount] = keys[0];
+            chunks[chunkCount++] = new Chunk<>(Arrays.copyOf(keys, count), Arrays.copyOf(values, count));
+            count = 0;
+        }
+    }
+}
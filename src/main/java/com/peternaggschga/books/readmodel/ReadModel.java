@@ -0,0 +1,275 @@
+package com.peternaggschga.books.readmodel;
+
+import com.peternaggschga.books.account.TenantOwned;
+import com.peternaggschga.books.account.Tenants;
+import com.peternaggschga.books.author.Author;
+import com.peternaggschga.books.author.AuthorRepository;
+import com.peternaggschga.books.books.book.Book;
+import com.peternaggschga.books.books.book.BookRepository;
+import com.peternaggschga.books.books.series.Series;
+import com.peternaggschga.books.books.series.SeriesRepository;
+import com.peternaggschga.books.books.series.SeriesVolumeMigration;
+import com.peternaggschga.books.events.EntityChangedEvent;
+import com.peternaggschga.books.events.EntityChangedEvent.EntityType;
+import com.peternaggschga.books.reading.ReadingRepository;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.validation.constraints.NotNull;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * An optional read model serving the list pages from memory instead of JPA, enabled by setting
+ * books.read-model.enabled to true. The library graph of every tenant is loaded into an immutable {@link Library} on
+ * startup. After every committed change, the changed entity is reloaded and a new {@link Library} replacing its views
+ * is published for the tenant of the entity, so readers never lock and always see a consistent snapshot. The
+ * {@link Library}s are kept in a concurrent map by tenant, as every reader only ever reads the {@link Library} of a
+ * single tenant. The tenants of all entities are remembered, so deleted entities are removed from the
+ * {@link Library} of their owner.
+ * The listener runs before all other listeners, so the {@link com.peternaggschga.books.rendering.RowFragmentCache}
+ * never caches rows rendered from an outdated snapshot after evicting them.
+ * The library graphs are loaded after the {@link SeriesVolumeMigration} has run, so the volumes are complete.
+ */
+@Component
+@DependsOn(SeriesVolumeMigration.BEAN_NAME)
+public class ReadModel {
+    private static final Logger LOG = LoggerFactory.getLogger(ReadModel.class);
+    @NotNull
+    private final AuthorRepository authorRepository;
+    @NotNull
+    private final BookRepository bookRepository;
+    @NotNull
+    private final SeriesRepository seriesRepository;
+    @NotNull
+    private final ReadingRepository readingRepository;
+    @NotNull
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    @NotNull
+    private final Map<Long, Library> libraries = new ConcurrentHashMap<>();
+    /**
+     * The tenants of all entities contained in {@link ReadModel#libraries} by type and id, only accessed by writers.
+     */
+    @NotNull
+    private final Map<EntityType, Map<Long, Long>> tenants = new EnumMap<>(EntityType.class);
+
+    /**
+     * Creates a new {@link ReadModel} instance with the given repositories and {@link PlatformTransactionManager}.
+     *
+     * @param authorRepository   must not be null.
+     * @param bookRepository     must not be null.
+     * @param seriesRepository   must not be null.
+     * @param readingRepository  must not be null.
+     * @param transactionManager must not be null.
+     * @param enabled            whether the list pages should be served by the read model at all.
+     */
+    public ReadModel(@NonNull AuthorRepository authorRepository, @NonNull BookRepository bookRepository,
+                     @NonNull SeriesRepository seriesRepository, @NonNull ReadingRepository readingRepository,
+                     @NonNull PlatformTransactionManager transactionManager,
+                     @Value("${books.read-model.enabled:false}") boolean enabled) {
+        this.authorRepository = authorRepository;
+        this.bookRepository = bookRepository;
+        this.seriesRepository = seriesRepository;
+        this.readingRepository = readingRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the current snapshot of the library of the current tenant. The snapshot never changes, later changes
+     * are only visible in snapshots returned afterwards.
+     *
+     * @return the current {@link Library}, never null.
+     */
+    public Library getLibrary() {
+        return libraries.getOrDefault(Tenants.getCurrentTenantOrDefault(), Library.EMPTY);
+    }
+
+    /**
+     * Loads the library graphs of all tenants, replacing the current snapshots.
+     */
+    @PostConstruct
+    public synchronized void reload() {
+        if (!enabled) {
+            return;
+        }
+        Map<EntityType, Map<Long, Long>> loadedTenants = new EnumMap<>(EntityType.class);
+        Map<Long, Library> loaded = transactionTemplate.execute(status -> load(loadedTenants));
+        libraries.putAll(loaded);
+        libraries.keySet().retainAll(loaded.keySet());
+        tenants.clear();
+        tenants.putAll(loadedTenants);
+        LOG.info("Lesemodell geladen mit " + loaded.size() + " Bibliotheken und "
+                + loaded.values().stream().mapToInt(Library::getReadingCount).sum() + " Lesungen");
+    }
+
+    /**
+     * Reloads the changed entity after the changing transaction was committed and publishes a new snapshot
+     * containing it.
+     *
+     * @param event must not be null.
+     */
+    @TransactionalEventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public synchronized void onEntityChanged(@NonNull EntityChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> apply(event));
+    }
+
+    private void apply(@NonNull EntityChangedEvent event) {
+        long id = event.getEntityId();
+        EntityType type = event.getEntityType();
+        switch (type) {
+            case AUTHOR:
+                authorRepository.findById(id).ifPresentOrElse(
+                        author -> update(type, id, author, library -> library.withAuthor(new AuthorView(author))),
+                        () -> update(type, id, null, library -> library.withoutAuthor(id)));
+                break;
+            case BOOK:
+                bookRepository.findById(id).ifPresentOrElse(
+                        book -> update(type, id, book, library -> library.withBook(toView(library, book))),
+                        () -> update(type, id, null, library -> library.withoutBook(id)));
+                break;
+            case SERIES:
+                seriesRepository.findById(id).ifPresentOrElse(
+                        series -> update(type, id, series, library -> library.withSeries(toView(library, series))),
+                        () -> update(type, id, null, library -> library.withoutSeries(id)));
+                break;
+            case READING:
+                readingRepository.findById(id).ifPresentOrElse(reading -> update(type, id, reading, library -> {
+                    BookView book = library.getBooks().get(reading.getBook().getId());
+                    Library updated = library;
+                    if (book == null) {
+                        book = toView(library, reading.getBook());
+                        updated = library.withBook(book);
+                        own(tenants, EntityType.BOOK, book.getId(), reading.getTenantId());
+                    }
+                    return updated.withReading(new ReadingView(reading.getId(), reading.getVersion(), book,
+                            reading.getBeginning(), reading.getEnd(), reading.getPagesPerHour()));
+                }), () -> update(type, id, null, library -> library.withoutReading(id)));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown entity type " + type);
+        }
+    }
+
+    /**
+     * Applies the given change to the {@link Library} of the tenant owning the entity of the given type and id. If
+     * the entity was deleted, i.e. the owner is null, its tenant is taken from {@link ReadModel#tenants}.
+     */
+    private void update(@NonNull EntityType type, long id, TenantOwned owner, @NonNull UnaryOperator<Library> change) {
+        long tenant;
+        if (owner != null) {
+            tenant = owner.getTenantId();
+            own(tenants, type, id, tenant);
+        } else {
+            Long deletedTenant = tenants.getOrDefault(type, Map.of()).get(id);
+            if (deletedTenant == null) {
+                // the entity was deleted before the read model contained it
+                return;
+            }
+            tenants.get(type).remove(id);
+            tenant = deletedTenant;
+        }
+        libraries.put(tenant, change.apply(libraries.getOrDefault(tenant, Library.EMPTY)));
+    }
+
+    private static void own(@NonNull Map<EntityType, Map<Long, Long>> tenants, @NonNull EntityType type, long id,
+                            long tenant) {
+        tenants.computeIfAbsent(type, key -> new HashMap<>()).put(id, tenant);
+    }
+
+    private static BookView toView(@NonNull Library library, @NonNull Book book) {
+        return new BookView(book, book.getAuthors().stream().sorted(Comparator.comparingLong(Author::getId))
+                .map(author -> {
+                    AuthorView view = library.getAuthors().get(author.getId());
+                    return view == null ? new AuthorView(author) : view;
+                }).collect(Collectors.toList()));
+    }
+
+    private static SeriesView toView(@NonNull Library library, @NonNull Series series) {
+        return new SeriesView(series.getId(), series.getVersion(), series.getTitle(), series.getVolumes().stream()
+                .map(book -> {
+                    BookView view = library.getBooks().get(book.getId());
+                    return view == null ? toView(library, book) : view;
+                }).collect(Collectors.toList()));
+    }
+
+    private Map<Long, Library> load(@NonNull Map<EntityType, Map<Long, Long>> tenants) {
+        Map<Long, Library.Builder> builders = new HashMap<>();
+        Map<Long, AuthorView> authors = new HashMap<>();
+        for (Author author : authorRepository.findAll()) {
+            AuthorView view = new AuthorView(author);
+            authors.put(view.getId(), view);
+            builderOf(builders, author.getTenantId()).addAuthor(view);
+            own(tenants, EntityType.AUTHOR, view.getId(), author.getTenantId());
+        }
+        Map<Long, List<AuthorView>> authorsOfBooks = new HashMap<>();
+        for (Object[] row : bookRepository.findAllAuthorIds()) {
+            authorsOfBooks.computeIfAbsent((Long) row[0], id -> new ArrayList<>()).add(authors.get((Long) row[1]));
+        }
+        Map<Long, BookView> books = new HashMap<>();
+        for (Book book : bookRepository.findAll()) {
+            BookView view = new BookView(book, authorsOfBooks.getOrDefault(book.getId(), List.of()));
+            books.put(view.getId(), view);
+            builderOf(builders, book.getTenantId()).addBook(view);
+            own(tenants, EntityType.BOOK, view.getId(), book.getTenantId());
+        }
+        Map<Long, List<BookView>> volumes = new HashMap<>();
+        for (Object[] row : seriesRepository.findAllVolumeIds()) {
+            volumes.computeIfAbsent((Long) row[0], id -> new ArrayList<>()).add(books.get((Long) row[1]));
+        }
+        for (Object[] row : seriesRepository.findAllBookCounts()) {
+            builderOf(builders, (Long) row[4]).addSeries(new SeriesView((Long) row[0], (Long) row[1],
+                    (String) row[2], volumes.getOrDefault((Long) row[0], List.of())));
+            own(tenants, EntityType.SERIES, (Long) row[0], (Long) row[4]);
+        }
+        // readings share their dates, so equal dates are represented by a single instance
+        Map<LocalDate, LocalDate> dates = new HashMap<>();
+        try (Stream<Object[]> rows = readingRepository.streamAllRows()) {
+            rows.forEach(row -> {
+                builderOf(builders, (Long) row[6]).addReading(new ReadingView((Long) row[0], (Long) row[1],
+                        books.get((Long) row[2]), dates.computeIfAbsent((LocalDate) row[3], date -> date),
+                        row[4] == null ? null : dates.computeIfAbsent((LocalDate) row[4], date -> date),
+                        (Integer) row[5]));
+                own(tenants, EntityType.READING, (Long) row[0], (Long) row[6]);
+            });
+        }
+        Map<Long, Library> loaded = new HashMap<>();
+        builders.forEach((tenant, builder) -> loaded.put(tenant, builder.build()));
+        return loaded;
+    }
+
+    private static Library.Builder builderOf(@NonNull Map<Long, Library.Builder> builders, long tenant) {
+        return builders.computeIfAbsent(tenant, key -> Library.builder());
+    }
+}
@@ -0,0 +1,91 @@
+package com.peternaggschga.books.readmodel;
+
+import com.peternaggschga.books.reading.Reading;
+import com.peternaggschga.books.rendering.DateFormats;
+import lombok.NonNull;
+
+import javax.validation.constraints.NotNull;
+import java.time.LocalDate;
+
+/**
+ * An immutable view of a {@link Reading} in the {@link Library}, offering the properties displayed on the list pages.
+ * It references the {@link BookView} of the read book, so it is replaced whenever the book changes.
+ */
+public final class ReadingView {
+    private final long id;
+    private final long version;
+    @NotNull
+    private final BookView book;
+    @NotNull
+    private final LocalDate beginning;
+    private final LocalDate end;
+    private final int pagesPerHour;
+
+    /**
+     * Creates a new {@link ReadingView} instance with the given values.
+     *
+     * @param id           the id of the {@link Reading}.
+     * @param version      the version of the {@link Reading}.
+     * @param book         must not be null.
+     * @param beginning    must not be null.
+     * @param end          can be null, if the {@link Reading} is not finished.
+     * @param pagesPerHour the number of pages read per hour.
+     */
+    public ReadingView(long id, long version, @NonNull BookView book, @NonNull LocalDate beginning, LocalDate end,
+                       int pagesPerHour) {
+        this.id = id;
+        this.version = version;
+        this.book = book;
+        this.beginning = beginning;
+        this.end = end;
+        this.pagesPerHour = pagesPerHour;
+    }
+
+    /**
+     * Returns a copy of this view reading the given {@link BookView}.
+     *
+     * @param book must not be null.
+     * @return a new {@link ReadingView}, never null.
+     */
+    public ReadingView withBook(@NonNull BookView book) {
+        return new ReadingView(id, version, book, beginning, end, pagesPerHour);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public BookView getBook() {
+        return book;
+    }
+
+    public LocalDate getBeginning() {
+        return beginning;
+    }
+
+    /**
+     * @see Reading#getBeginningString()
+     */
+    public String getBeginningString() {
+        return DateFormats.formatDate(beginning);
+    }
+
+    public LocalDate getEnd() {
+        return end;
+    }
+
+    /**
+     * @see Reading#getEndString()
+     */
+    public String getEndString() {
+        return DateFormats.formatDate(end);
+    }
+
+    public int getPagesPerHour() {
+        return pagesPerHour;
+    }
+}
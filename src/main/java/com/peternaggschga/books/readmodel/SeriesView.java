@@ -0,0 +1,115 @@
+package com.peternaggschga.books.readmodel;
+
+import com.peternaggschga.books.books.series.Series;
+import lombok.NonNull;
+
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * An immutable view of a {@link Series} in the {@link Library}, offering the properties displayed on the list pages.
+ * It references the {@link BookView}s of its volumes, so it is replaced whenever one of them changes.
+ */
+public final class SeriesView {
+    private final long id;
+    private final long version;
+    @NotNull
+    private final String title;
+    @NotNull
+    private final List<BookView> volumes;
+
+    /**
+     * Creates a new {@link SeriesView} instance with the given values.
+     *
+     * @param id      the id of the {@link Series}.
+     * @param version the version of the {@link Series}.
+     * @param title   must not be null.
+     * @param volumes must not be null, ordered by volume.
+     */
+    public SeriesView(long id, long version, @NonNull String title, @NonNull List<BookView> volumes) {
+        this.id = id;
+        this.version = version;
+        this.title = title;
+        this.volumes = List.copyOf(volumes);
+    }
+
+    /**
+     * Returns a copy of this view with the volume of the same id replaced by the given {@link BookView}.
+     *
+     * @param book must not be null.
+     * @return a new {@link SeriesView}, never null.
+     */
+    public SeriesView withVolume(@NonNull BookView book) {
+        List<BookView> newVolumes = new ArrayList<>(volumes);
+        newVolumes.replaceAll(view -> view.getId() == book.getId() ? book : view);
+        return new SeriesView(id, version, title, newVolumes);
+    }
+
+    /**
+     * Returns a copy of this view without the volume referenced by the given id.
+     *
+     * @param bookId the id of the removed {@link BookView}.
+     * @return a new {@link SeriesView}, never null.
+     */
+    public SeriesView withoutVolume(long bookId) {
+        List<BookView> newVolumes = new ArrayList<>(volumes);
+        newVolumes.removeIf(view -> view.getId() == bookId);
+        return new SeriesView(id, version, title, newVolumes);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public List<BookView> getVolumes() {
+        return volumes;
+    }
+
+    public int getBookCount() {
+        return volumes.size();
+    }
+
+    /**
+     * Returns the ids of all {@link AuthorView}s who wrote a volume of the series.
+     *
+     * @return a {@link Set} of ids, never null.
+     */
+    public Set<Long> getAuthorIds() {
+        return volumes.stream().flatMap(book -> book.getAuthors().stream()).map(AuthorView::getId)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * @see Series#getAuthorString()
+     */
+    public String getAuthorString() {
+        if (volumes.isEmpty()) {
+            return null;
+        }
+        Map<Long, AuthorView> authors = new HashMap<>();
+        Map<Long, Long> counts = new HashMap<>();
+        for (BookView book : volumes) {
+            for (AuthorView author : book.getAuthors()) {
+                authors.put(author.getId(), author);
+                counts.merge(author.getId(), 1L, Long::sum);
+            }
+        }
+        return counts.entrySet().stream()
+                .sorted(Map.Entry.<Long, Long>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .map(entry -> authors.get(entry.getKey()).toString()).collect(Collectors.joining(", "));
+    }
+}
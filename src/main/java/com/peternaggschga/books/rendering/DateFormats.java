@@ -0,0 +1,56 @@
+package com.peternaggschga.books.rendering;
+
+import lombok.NonNull;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Formats dates for display. {@link DateTimeFormatter#ofLocalizedDate(FormatStyle)} looks up the localized pattern
+ * and builds a new formatter on every call, which adds up when a table shows thousands of dates. The formatters are
+ * therefore created once per {@link Locale} and shared, as {@link DateTimeFormatter}s are immutable and thread-safe.
+ */
+public final class DateFormats {
+    private static final Map<Locale, DateTimeFormatter> MEDIUM_DATE_FORMATTERS = new ConcurrentHashMap<>();
+
+    private DateFormats() {
+    }
+
+    /**
+     * Returns the {@link DateTimeFormatter} formatting dates in {@link FormatStyle#MEDIUM} for the given
+     * {@link Locale}.
+     *
+     * @param locale must not be null.
+     * @return a cached {@link DateTimeFormatter}, never null.
+     */
+    public static DateTimeFormatter mediumDate(@NonNull Locale locale) {
+        return MEDIUM_DATE_FORMATTERS.computeIfAbsent(locale,
+                key -> DateTimeFormatter.ofLocalizedDate(FormatStyle.MEDIUM).withLocale(key));
+    }
+
+    /**
+     * Formats the given date in {@link FormatStyle#MEDIUM} for the given {@link Locale}.
+     *
+     * @param date   can be null.
+     * @param locale must not be null.
+     * @return the formatted date, null if date is null.
+     */
+    public static String formatDate(LocalDate date, @NonNull Locale locale) {
+        return date == null ? null : date.format(mediumDate(locale));
+    }
+
+    /**
+     * Formats the given date in {@link FormatStyle#MEDIUM} for the default formatting {@link Locale} of the JVM.
+     * Used where no request {@link Locale} is known.
+     *
+     * @param date can be null.
+     * @return the formatted date, null if date is null.
+     */
+    public static String formatDate(LocalDate date) {
+        return formatDate(date, Locale.getDefault(Locale.Category.FORMAT));
+    }
+}
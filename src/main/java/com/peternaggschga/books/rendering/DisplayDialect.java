@@ -0,0 +1,76 @@
+package com.peternaggschga.books.rendering;
+
+import lombok.NonNull;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.context.IExpressionContext;
+import org.thymeleaf.dialect.AbstractDialect;
+import org.thymeleaf.dialect.IExpressionObjectDialect;
+import org.thymeleaf.expression.IExpressionObjectFactory;
+
+import javax.validation.constraints.NotNull;
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * A Thymeleaf dialect providing the expression object {@code #display}, which formats values for display in the
+ * {@link Locale} of the rendered template, e.g. {@code ${#display.date(reading.beginning)}}. Registered with the
+ * template engine by Spring Boot, as it is a bean.
+ *
+ * @see DateFormats
+ */
+@Component
+public class DisplayDialect extends AbstractDialect implements IExpressionObjectDialect {
+    private static final String EXPRESSION_OBJECT = "display";
+    private static final IExpressionObjectFactory FACTORY = new IExpressionObjectFactory() {
+        @Override
+        public Set<String> getAllExpressionObjectNames() {
+            return Set.of(EXPRESSION_OBJECT);
+        }
+
+        @Override
+        public Object buildObject(IExpressionContext context, String expressionObjectName) {
+            return EXPRESSION_OBJECT.equals(expressionObjectName) ? new Display(context.getLocale()) : null;
+        }
+
+        @Override
+        public boolean isCacheable(String expressionObjectName) {
+            return true;
+        }
+    };
+
+    /**
+     * Creates a new {@link DisplayDialect} instance.
+     */
+    public DisplayDialect() {
+        super("Display");
+    }
+
+    @Override
+    public IExpressionObjectFactory getExpressionObjectFactory() {
+        return FACTORY;
+    }
+
+    /**
+     * The expression object {@code #display}, bound to the {@link Locale} of one template execution.
+     */
+    public static final class Display {
+        @NotNull
+        private final Locale locale;
+
+        private Display(@NonNull Locale locale) {
+            this.locale = locale;
+        }
+
+        /**
+         * Formats the given date in the {@link Locale} of the template.
+         *
+         * @param date can be null.
+         * @return the formatted date, null if date is null.
+         * @see DateFormats#formatDate(LocalDate, Locale)
+         */
+        public String date(LocalDate date) {
+            return DateFormats.formatDate(date, locale);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.peternaggschga.books.rendering;
+
+import lombok.NonNull;
+import org.springframework.http.MediaType;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Answers changes of single entities with the changed table row instead of a redirect to the list page. Clients
+ * requesting a partial response set the request header {@link PartialRows#PARTIAL_HEADER}. A saved entity is
+ * answered with its rendered row and its id in {@link PartialRows#ROW_HEADER}, a deleted entity with an empty body
+ * and its id in {@link PartialRows#DELETED_HEADER}, so the client only has to replace or remove a single row of the
+ * list it already displays. All other clients are redirected as before. The same responses are used by the row
+ * endpoints of the list pages, which return the current row of a single entity.
+ */
+public final class PartialRows {
+    /**
+     * Name of the request header by which clients ask for a partial response.
+     */
+    public static final String PARTIAL_HEADER = "X-Partial";
+    /**
+     * Name of the response header containing the id of the entity whose row is returned.
+     */
+    public static final String ROW_HEADER = "X-Row-Id";
+    /**
+     * Name of the response header containing the id of the entity whose row has to be removed.
+     */
+    public static final String DELETED_HEADER = "X-Deleted-Row";
+
+    private PartialRows() {
+    }
+
+    /**
+     * Returns whether the given {@link HttpServletRequest} asks for a partial response.
+     *
+     * @param request must not be null.
+     * @return true if {@link PartialRows#PARTIAL_HEADER} was sent.
+     */
+    public static boolean isPartial(@NonNull HttpServletRequest request) {
+        return request.getHeader(PARTIAL_HEADER) != null;
+    }
+
+    /**
+     * Writes the given rendered row of the entity referenced by the given id to the given
+     * {@link HttpServletResponse}.
+     *
+     * @param response must not be null.
+     * @param id       the id of the displayed entity.
+     * @param row      must not be null.
+     * @throws IOException if the response could not be written.
+     */
+    public static void writeRow(@NonNull HttpServletResponse response, long id, @NonNull String row)
+            throws IOException {
+        response.setHeader(ROW_HEADER, Long.toString(id));
+        response.setContentType(MediaType.TEXT_HTML_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write(row);
+    }
+
+    /**
+     * Marks the row of the entity referenced by the given id as deleted in the given {@link HttpServletResponse}.
+     *
+     * @param response must not be null.
+     * @param id       the id of the deleted entity.
+     */
+    public static void writeDeleted(@NonNull HttpServletResponse response, long id) {
+        response.setHeader(DELETED_HEADER, Long.toString(id));
+        response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+    }
+}
@@ -0,0 +1,380 @@
+package com.peternaggschga.books.rendering;
+
+import com.peternaggschga.books.author.Author;
+import com.peternaggschga.books.books.book.Book;
+import com.peternaggschga.books.books.series.Series;
+import com.peternaggschga.books.books.series.SeriesSummary;
+import com.peternaggschga.books.events.EntityChangedEvent;
+import com.peternaggschga.books.events.EntityChangedEvent.EntityType;
+import com.peternaggschga.books.reading.Reading;
+import com.peternaggschga.books.readmodel.AuthorView;
+import com.peternaggschga.books.readmodel.BookView;
+import com.peternaggschga.books.readmodel.ReadingView;
+import com.peternaggschga.books.readmodel.SeriesView;
+import lombok.NonNull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.security.web.csrf.CsrfToken;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.WebContext;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.validation.constraints.NotNull;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * A cache holding the rendered table rows of the list pages. Rows are keyed by the id of the displayed entity and the
+ * request {@link Locale} and remember the version of the entity they were rendered from, so a row of an outdated
+ * version is never returned. Every row remembers the entities it was rendered from, so an {@link EntityChangedEvent}
+ * evicts the row of the changed entity as well as all rows displaying it (e.g. the rows of all {@link Reading}s of an
+ * updated {@link Book}).
+ * Once the maximum size is exceeded, the least recently used rows are evicted. The cache is guarded by its monitor,
+ * which is only held for lookups and updates, never while rendering.
+ * As the session-bound {@link CsrfToken} must not be cached, rows are stored with a placeholder that is replaced on
+ * every access.
+ */
+@Component
+public class RowFragmentCache {
+    private static final String FRAGMENT = "row";
+    private static final String CSRF_PLACEHOLDER = "__csrf_token__";
+    /**
+     * Id of the keys that depend on every entity of a type.
+     */
+    private static final long ANY_ID = -1;
+    @NotNull
+    private final ITemplateEngine templateEngine;
+    private final int maximumSize;
+    @NotNull
+    private final LinkedHashMap<RowKey, CachedRow> rows = new LinkedHashMap<>(16, 0.75f, true);
+    @NotNull
+    private final Map<EntityKey, Set<RowKey>> dependents = new HashMap<>();
+    private long generation;
+
+    /**
+     * Creates a new {@link RowFragmentCache} instance with the given {@link ITemplateEngine} and maximum size.
+     *
+     * @param templateEngine must not be null.
+     * @param maximumSize    the maximum number of cached rows, the least recently used rows are evicted beyond it.
+     */
+    public RowFragmentCache(@NonNull ITemplateEngine templateEngine,
+                            @Value("${books.rendering.row-cache-size:100000}") int maximumSize) {
+        this.templateEngine = templateEngine;
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Returns the rendered table row of the given {@link Author}.
+     *
+     * @param author must not be null.
+     * @return the HTML of the row, never null.
+     */
+    public String renderAuthor(@NonNull Author author) {
+        return render(new EntityKey(EntityType.AUTHOR, author.getId()), author.getVersion(), "author/author_row",
+                "author", author, Collections::emptySet);
+    }
+
+    /**
+     * Returns the rendered table row of the given {@link Book}.
+     *
+     * @param book must not be null.
+     * @return the HTML of the row, never null.
+     */
+    public String renderBook(@NonNull Book book) {
+        return render(new EntityKey(EntityType.BOOK, book.getId()), book.getVersion(), "books/book/book_row",
+                "book", book, () -> dependenciesOf(book));
+    }
+
+    /**
+     * Returns the rendered table row of the {@link Series} summarized by the given {@link SeriesSummary}. As the
+     * {@link Book}s of a {@link Series} are not known to the summary, the row is evicted whenever any {@link Book}
+     * changes.
+     *
+     * @param series must not be null.
+     * @return the HTML of the row, never null.
+     */
+    public String renderSeries(@NonNull SeriesSummary series) {
+        return render(new EntityKey(EntityType.SERIES, series.getId()), series.getVersion(),
+                "books/series/series_row", "series", series, () -> {
+                    Set<EntityKey> dependencies = new HashSet<>();
+                    dependencies.add(new EntityKey(EntityType.BOOK, ANY_ID));
+                    for (long authorId : series.getAuthorIds()) {
+                        dependencies.add(new EntityKey(EntityType.AUTHOR, authorId));
+                    }
+                    return dependencies;
+                });
+    }
+
+    /**
+     * Returns the rendered table row of the given {@link Reading}.
+     *
+     * @param reading must not be null.
+     * @return the HTML of the row, never null.
+     */
+    public String renderReading(@NonNull Reading reading) {
+        return render(new EntityKey(EntityType.READING, reading.getId()), reading.getVersion(),
+                "reading/reading_row", "reading", reading, () -> {
+                    Set<EntityKey> dependencies = new HashSet<>(dependenciesOf(reading.getBook()));
+                    dependencies.add(new EntityKey(EntityType.BOOK, reading.getBook().getId()));
+                    return dependencies;
+                });
+    }
+
+    /**
+     * Returns the rendered table row of the given {@link AuthorView}.
+     *
+     * @param author must not be null.
+     * @return the HTML of the row, never null.
+     */
+    public String renderAuthor(@NonNull AuthorView author) {
+        return render(new EntityKey(EntityType.AUTHOR, author.getId()), author.getVersion(), "author/author_row",
+                "author", author, Collections::emptySet);
+    }
+
+    /**
+     * Returns the rendered table row of the given {@link BookView}.
+     *
+     * @param book must not be null.
+     * @return the HTML of the row, never null.
+     */
+    public String renderBook(@NonNull BookView book) {
+        return render(new EntityKey(EntityType.BOOK, book.getId()), book.getVersion(), "books/book/book_row",
+                "book", book, () -> dependenciesOf(book));
+    }
+
+    /**
+     * Returns the rendered table row of the given {@link SeriesView}.
+     *
+     * @param series must not be null.
+     * @return the HTML of the row, never null.
+     */
+    public String renderSeries(@NonNull SeriesView series) {
+        return render(new EntityKey(EntityType.SERIES, series.getId()), series.getVersion(),
+                "books/series/series_row", "series", series, () -> {
+                    Set<EntityKey> dependencies = new HashSet<>();
+                    for (BookView book : series.getVolumes()) {
+                        dependencies.add(new EntityKey(EntityType.BOOK, book.getId()));
+                        dependencies.addAll(dependenciesOf(book));
+                    }
+                    return dependencies;
+                });
+    }
+
+    /**
+     * Returns the rendered table row of the given {@link ReadingView}.
+     *
+     * @param reading must not be null.
+     * @return the HTML of the row, never null.
+     */
+    public String renderReading(@NonNull ReadingView reading) {
+        return render(new EntityKey(EntityType.READING, reading.getId()), reading.getVersion(),
+                "reading/reading_row", "reading", reading, () -> {
+                    Set<EntityKey> dependencies = new HashSet<>(dependenciesOf(reading.getBook()));
+                    dependencies.add(new EntityKey(EntityType.BOOK, reading.getBook().getId()));
+                    return dependencies;
+                });
+    }
+
+    /**
+     * Evicts the row of the changed entity and all rows displaying it. Called after the changing transaction was
+     * committed, so rows rendered afterwards always show the committed state.
+     *
+     * @param event must not be null.
+     */
+    @TransactionalEventListener
+    public void onEntityChanged(@NonNull EntityChangedEvent event) {
+        evict(new EntityKey(event.getEntityType(), event.getEntityId()));
+    }
+
+    /**
+     * Removes all rows from the cache.
+     */
+    public synchronized void clear() {
+        generation++;
+        rows.clear();
+        dependents.clear();
+    }
+
+    private synchronized void evict(@NonNull EntityKey key) {
+        generation++;
+        evictDependents(key);
+        if (key.id != ANY_ID) {
+            evictDependents(new EntityKey(key.type, ANY_ID));
+        }
+    }
+
+    private void evictDependents(@NonNull EntityKey key) {
+        Set<RowKey> keys = dependents.remove(key);
+        if (keys == null) {
+            return;
+        }
+        for (RowKey rowKey : keys) {
+            CachedRow removed = rows.remove(rowKey);
+            if (removed != null) {
+                unlink(rowKey, removed);
+            }
+        }
+    }
+
+    private void put(@NonNull RowKey key, @NonNull CachedRow row) {
+        CachedRow previous = rows.put(key, row);
+        if (previous != null) {
+            unlink(key, previous);
+        }
+        for (EntityKey dependency : row.dependencies) {
+            dependents.computeIfAbsent(dependency, k -> new HashSet<>()).add(key);
+        }
+        Iterator<Map.Entry<RowKey, CachedRow>> eldest = rows.entrySet().iterator();
+        while (rows.size() > maximumSize) {
+            Map.Entry<RowKey, CachedRow> entry = eldest.next();
+            eldest.remove();
+            unlink(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Removes the given key of a row that is no longer cached from the dependents of its dependencies.
+     */
+    private void unlink(@NonNull RowKey key, @NonNull CachedRow row) {
+        for (EntityKey dependency : row.dependencies) {
+            Set<RowKey> keys = dependents.get(dependency);
+            if (keys != null && keys.remove(key) && keys.isEmpty()) {
+                dependents.remove(dependency);
+            }
+        }
+    }
+
+    private Set<EntityKey> dependenciesOf(@NonNull Book book) {
+        Set<EntityKey> dependencies = new HashSet<>();
+        for (Author author : book.getAuthors()) {
+            dependencies.add(new EntityKey(EntityType.AUTHOR, author.getId()));
+        }
+        return dependencies;
+    }
+
+    private Set<EntityKey> dependenciesOf(@NonNull BookView book) {
+        Set<EntityKey> dependencies = new HashSet<>();
+        for (AuthorView author : book.getAuthors()) {
+            dependencies.add(new EntityKey(EntityType.AUTHOR, author.getId()));
+        }
+        return dependencies;
+    }
+
+    private String render(@NonNull EntityKey key, long version, @NonNull String template, @NonNull String variable,
+                          @NonNull Object entity, @NonNull Supplier<Set<EntityKey>> dependencies) {
+        RowKey rowKey = new RowKey(key, LocaleContextHolder.getLocale());
+        CachedRow cached;
+        long renderedGeneration;
+        synchronized (this) {
+            cached = rows.get(rowKey);
+            renderedGeneration = generation;
+        }
+        if (cached != null && cached.version == version) {
+            return cached.html.replace(CSRF_PLACEHOLDER, getCsrfToken().getToken());
+        }
+        String row = renderFragment(template, variable, entity, rowKey.locale);
+        Set<EntityKey> rowDependencies = new HashSet<>(dependencies.get());
+        rowDependencies.add(key);
+        synchronized (this) {
+            // rows rendered concurrently to an eviction might show stale data and are therefore not cached
+            if (renderedGeneration == generation) {
+                put(rowKey, new CachedRow(version, row, rowDependencies));
+            }
+        }
+        return row.replace(CSRF_PLACEHOLDER, getCsrfToken().getToken());
+    }
+
+    private String renderFragment(@NonNull String template, @NonNull String variable, @NonNull Object entity,
+                                  @NonNull Locale locale) {
+        ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder
+                .currentRequestAttributes();
+        HttpServletRequest request = attributes.getRequest();
+        WebContext context = new WebContext(request, attributes.getResponse(), request.getServletContext(), locale,
+                Map.of(variable, entity, "csrfParameter", getCsrfToken().getParameterName(),
+                        "csrfToken", CSRF_PLACEHOLDER));
+        return templateEngine.process(template, Set.of(FRAGMENT), context);
+    }
+
+    private CsrfToken getCsrfToken() {
+        HttpServletRequest request = ((ServletRequestAttributes) RequestContextHolder.currentRequestAttributes())
+                .getRequest();
+        CsrfToken token = (CsrfToken) request.getAttribute(CsrfToken.class.getName());
+        if (token == null) {
+            throw new IllegalStateException("Rows can only be rendered in requests protected against CSRF");
+        }
+        return token;
+    }
+
+    private static final class CachedRow {
+        private final long version;
+        private final String html;
+        /**
+         * The entities whose change evicts the row, including the displayed entity itself.
+         */
+        private final Set<EntityKey> dependencies;
+
+        private CachedRow(long version, String html, Set<EntityKey> dependencies) {
+            this.version = version;
+            this.html = html;
+            this.dependencies = dependencies;
+        }
+    }
+
+    private static final class RowKey {
+        private final EntityKey key;
+        private final Locale locale;
+
+        private RowKey(EntityKey key, Locale locale) {
+            this.key = key;
+            this.locale = locale;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            RowKey rowKey = (RowKey) o;
+            return key.equals(rowKey.key) && locale.equals(rowKey.locale);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(key, locale);
+        }
+    }
+
+    private static final class EntityKey {
+        private final EntityType type;
+        private final long id;
+
+        private EntityKey(EntityType type, long id) {
+            this.type = type;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            EntityKey entityKey = (EntityKey) o;
+            return id == entityKey.id && type == entityKey.type;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, id);
+        }
+    }
+}
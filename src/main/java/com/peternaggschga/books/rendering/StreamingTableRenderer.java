@@ -0,0 +1,126 @@
+package com.peternaggschga.books.rendering;
+
+import lombok.NonNull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.WebContext;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * A renderer writing list pages incrementally. The page around the table is rendered and flushed first, afterwards
+ * the rows are written one by one while the entities are read from a {@link Stream}. The persistence context is
+ * cleared regularly, so the memory used by a request does not depend on the size of the table.
+ */
+@Component
+public class StreamingTableRenderer {
+    /**
+     * Name of the model attribute the list templates output in place of their rows.
+     */
+    public static final String ROWS_ATTRIBUTE = "streamedRows";
+    private static final String ROWS_PLACEHOLDER = "<!--streamed rows-->";
+    @NotNull
+    private final ITemplateEngine templateEngine;
+    @NotNull
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int flushInterval;
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Creates a new {@link StreamingTableRenderer} instance with the given {@link ITemplateEngine} and
+     * {@link PlatformTransactionManager}.
+     *
+     * @param templateEngine     must not be null.
+     * @param transactionManager must not be null.
+     * @param enabled            whether list pages should be streamed at all.
+     * @param flushInterval      the number of rows written between two flushes, must be positive.
+     */
+    public StreamingTableRenderer(@NonNull ITemplateEngine templateEngine,
+                                  @NonNull PlatformTransactionManager transactionManager,
+                                  @Value("${books.rendering.streaming:false}") boolean enabled,
+                                  @Value("${books.rendering.streaming-flush-interval:200}") int flushInterval) {
+        if (flushInterval <= 0) {
+            throw new IllegalArgumentException("Flush interval must be positive");
+        }
+        this.templateEngine = templateEngine;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.enabled = enabled;
+        this.flushInterval = flushInterval;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Renders the given template and writes it to the given {@link HttpServletResponse}. The rows are read from the
+     * {@link Stream} returned by rows inside a read-only transaction and rendered by rowRenderer.
+     *
+     * @param template    must not be null, must output {@link StreamingTableRenderer#ROWS_ATTRIBUTE} in its table.
+     * @param model       must not be null.
+     * @param rows        must not be null, is called inside the transaction.
+     * @param rowRenderer must not be null.
+     * @param request     must not be null.
+     * @param response    must not be null.
+     * @param <T>         the type of the entities displayed in the table.
+     * @throws IOException if the response could not be written.
+     */
+    public <T> void render(@NonNull String template, @NonNull Map<String, Object> model,
+                           @NonNull Supplier<Stream<T>> rows, @NonNull Function<T, String> rowRenderer,
+                           @NonNull HttpServletRequest request, @NonNull HttpServletResponse response)
+            throws IOException {
+        Map<String, Object> variables = new HashMap<>(model);
+        variables.put(ROWS_ATTRIBUTE, ROWS_PLACEHOLDER);
+        String page = templateEngine.process(template, new WebContext(request, response,
+                request.getServletContext(), LocaleContextHolder.getLocale(), variables));
+        int split = page.indexOf(ROWS_PLACEHOLDER);
+        if (split < 0) {
+            throw new IllegalArgumentException("Template " + template + " does not output " + ROWS_ATTRIBUTE);
+        }
+
+        response.setContentType(MediaType.TEXT_HTML_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        PrintWriter writer = response.getWriter();
+        writer.write(page, 0, split);
+        writer.flush();
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<T> stream = rows.get()) {
+                Iterator<T> iterator = stream.iterator();
+                for (int i = 1; iterator.hasNext(); i++) {
+                    writer.write(rowRenderer.apply(iterator.next()));
+                    if (i % flushInterval == 0) {
+                        entityManager.clear();
+                        writer.flush();
+                        if (writer.checkError()) {
+                            throw new UncheckedIOException(new IOException("Client aborted streamed response"));
+                        }
+                    }
+                }
+            }
+        });
+        writer.write(page, split + ROWS_PLACEHOLDER.length(), page.length() - split - ROWS_PLACEHOLDER.length());
+        writer.flush();
+    }
+}
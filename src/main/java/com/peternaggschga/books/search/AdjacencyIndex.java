@@ -0,0 +1,268 @@
+package com.peternaggschga.books.search;
+
+import lombok.NonNull;
+
+import javax.validation.constraints.NotNull;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A compact in-memory index of the edges of a many-to-many association between entities referenced by their ids.
+ * Every edge leads from a source, e.g. a book, to a target, e.g. one of its authors, and can be looked up in both
+ * directions without any query. The ids of both sides are kept in sorted key arrays, the adjacent ids of every key are
+ * stored as a byte array of variable length encoded differences, so a typical id only takes one or two bytes.
+ */
+public class AdjacencyIndex {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final long[] NO_IDS = new long[0];
+    @NotNull
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    @NotNull
+    private final Adjacency targets = new Adjacency();
+    @NotNull
+    private final Adjacency sources = new Adjacency();
+
+    /**
+     * Replaces the content of the index by the given edges.
+     *
+     * @param edges must not be null, maps the ids of the sources to the ids of their targets.
+     */
+    public void replaceAll(@NonNull Map<Long, ? extends Collection<Long>> edges) {
+        SortedMap<Long, long[]> sortedTargets = new TreeMap<>();
+        Map<Long, List<Long>> reverse = new HashMap<>();
+        edges.forEach((source, targetIds) -> {
+            long[] ids = sortedIds(targetIds);
+            if (ids.length > 0) {
+                sortedTargets.put(source, ids);
+            }
+            for (long target : ids) {
+                reverse.computeIfAbsent(target, id -> new ArrayList<>()).add(source);
+            }
+        });
+        SortedMap<Long, long[]> sortedSources = new TreeMap<>();
+        reverse.forEach((target, sourceIds) -> sortedSources.put(target, sortedIds(sourceIds)));
+        lock.writeLock().lock();
+        try {
+            targets.replaceAll(sortedTargets);
+            sources.replaceAll(sortedSources);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Sets the targets of the source referenced by the given id. Edges previously indexed for the source are removed.
+     *
+     * @param source    the id of the source.
+     * @param targetIds must not be null, an empty {@link Collection} removes the source.
+     */
+    public void put(long source, @NonNull Collection<Long> targetIds) {
+        long[] ids = sortedIds(targetIds);
+        lock.writeLock().lock();
+        try {
+            for (long target : targets.get(source)) {
+                if (Arrays.binarySearch(ids, target) < 0) {
+                    sources.remove(target, source);
+                }
+            }
+            for (long target : ids) {
+                sources.add(target, source);
+            }
+            targets.set(source, ids);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all edges of the source referenced by the given id from the index.
+     *
+     * @param source the id of the removed source.
+     */
+    public void remove(long source) {
+        put(source, List.of());
+    }
+
+    /**
+     * Returns the ids of the targets of the source referenced by the given id.
+     *
+     * @param source the id of the source.
+     * @return a sorted array of ids, empty if the source is not indexed.
+     */
+    public long[] getTargets(long source) {
+        lock.readLock().lock();
+        try {
+            return targets.get(source);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of the sources with an edge to the target referenced by the given id.
+     *
+     * @param target the id of the target.
+     * @return a sorted array of ids, empty if no source leads to the target.
+     */
+    public long[] getSources(long target) {
+        lock.readLock().lock();
+        try {
+            return sources.get(target);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of sources in the index.
+     *
+     * @return a non-negative int.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return targets.size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Converts the given array of ids to a {@link List}.
+     *
+     * @param ids must not be null.
+     * @return a {@link List} containing the ids in the same order.
+     */
+    public static List<Long> toList(@NonNull long[] ids) {
+        List<Long> result = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            result.add(id);
+        }
+        return result;
+    }
+
+    private static long[] sortedIds(@NonNull Collection<Long> ids) {
+        return ids.stream().mapToLong(Long::longValue).sorted().distinct().toArray();
+    }
+
+    private static byte[] encode(@NonNull long[] ids) {
+        byte[] buffer = new byte[ids.length * 10];
+        int position = 0;
+        long previous = 0;
+        for (long id : ids) {
+            long delta = id - previous;
+            previous = id;
+            while ((delta & ~0x7fL) != 0) {
+                buffer[position++] = (byte) ((delta & 0x7f) | 0x80);
+                delta >>>= 7;
+            }
+            buffer[position++] = (byte) delta;
+        }
+        return Arrays.copyOf(buffer, position);
+    }
+
+    private static long[] decode(@NonNull byte[] bytes) {
+        int count = 0;
+        for (byte b : bytes) {
+            if (b >= 0) {
+                count++;
+            }
+        }
+        long[] ids = new long[count];
+        long previous = 0;
+        int shift = 0;
+        long delta = 0;
+        int index = 0;
+        for (byte b : bytes) {
+            delta |= (long) (b & 0x7f) << shift;
+            if (b < 0) {
+                shift += 7;
+                continue;
+            }
+            previous += delta;
+            ids[index++] = previous;
+            delta = 0;
+            shift = 0;
+        }
+        return ids;
+    }
+
+    /**
+     * One direction of the index, mapping sorted keys to their encoded adjacent ids.
+     */
+    private static final class Adjacency {
+        private long[] keys = new long[INITIAL_CAPACITY];
+        private byte[][] values = new byte[INITIAL_CAPACITY][];
+        private int size;
+
+        private void replaceAll(@NonNull SortedMap<Long, long[]> entries) {
+            keys = new long[Math.max(entries.size(), INITIAL_CAPACITY)];
+            values = new byte[keys.length][];
+            size = 0;
+            entries.forEach((key, ids) -> {
+                keys[size] = key;
+                values[size] = encode(ids);
+                size++;
+            });
+        }
+
+        private long[] get(long key) {
+            int index = Arrays.binarySearch(keys, 0, size, key);
+            return index < 0 ? NO_IDS : decode(values[index]);
+        }
+
+        private void add(long key, long id) {
+            long[] ids = get(key);
+            int index = Arrays.binarySearch(ids, id);
+            if (index >= 0) {
+                return;
+            }
+            index = -index - 1;
+            long[] result = new long[ids.length + 1];
+            System.arraycopy(ids, 0, result, 0, index);
+            result[index] = id;
+            System.arraycopy(ids, index, result, index + 1, ids.length - index);
+            set(key, result);
+        }
+
+        private void remove(long key, long id) {
+            long[] ids = get(key);
+            int index = Arrays.binarySearch(ids, id);
+            if (index < 0) {
+                return;
+            }
+            long[] result = new long[ids.length - 1];
+            System.arraycopy(ids, 0, result, 0, index);
+            System.arraycopy(ids, index + 1, result, index, result.length - index);
+            set(key, result);
+        }
+
+        private void set(long key, @NonNull long[] ids) {
+            int index = Arrays.binarySearch(keys, 0, size, key);
+            if (index >= 0) {
+                if (ids.length > 0) {
+                    values[index] = encode(ids);
+                    return;
+                }
+                System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+                System.arraycopy(values, index + 1, values, index, size - index - 1);
+                values[--size] = null;
+                return;
+            }
+            if (ids.length == 0) {
+                return;
+            }
+            index = -index - 1;
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            System.arraycopy(keys, index, keys, index + 1, size - index);
+            System.arraycopy(values, index, values, index + 1, size - index);
+            keys[index] = key;
+            values[index] = encode(ids);
+            size++;
+        }
+    }
+}
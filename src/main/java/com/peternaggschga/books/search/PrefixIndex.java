@@ -0,0 +1,232 @@
+package com.peternaggschga.books.search;
+
+import lombok.NonNull;
+
+import javax.validation.constraints.NotNull;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * A compact in-memory index mapping normalized terms to the ids of entities. The terms are kept in sorted parallel
+ * arrays, so finding all ids with a term starting with a given prefix is a binary search followed by a linear scan.
+ * Every word of an indexed text starts a term, so a text can be found by the beginning of each of its words.
+ * Terms are normalized by {@link PrefixIndex#normalize(String)} and therefore ignore case and diacritics.
+ * Every entity belongs to a partition, e.g. the library of a tenant. The partition is stored as fixed-length prefix of
+ * its terms, so the terms of a partition are adjacent and a lookup never scans the terms of other partitions.
+ */
+public class PrefixIndex {
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int PARTITION_LENGTH = Long.SIZE / Character.SIZE;
+    @NotNull
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    @NotNull
+    private String[] terms = new String[INITIAL_CAPACITY];
+    @NotNull
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Normalizes the given text by removing diacritics, converting it to lower case and collapsing whitespace.
+     *
+     * @param text must not be null.
+     * @return the normalized text, never null.
+     */
+    public static String normalize(@NonNull String text) {
+        String decomposed = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return WHITESPACE.matcher(decomposed.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    /**
+     * Replaces the content of the index by the given texts.
+     *
+     * @param texts      must not be null, maps the ids of the indexed entities to their texts.
+     * @param partitions must not be null, maps the ids of the indexed entities to their partitions.
+     */
+    public void replaceAll(@NonNull Map<Long, ? extends Collection<String>> texts,
+                           @NonNull Map<Long, Long> partitions) {
+        List<Entry> entries = new ArrayList<>();
+        texts.forEach((id, values) -> termsOf(partitions.getOrDefault(id, 0L), values)
+                .forEach(term -> entries.add(new Entry(term, id))));
+        entries.sort(null);
+        lock.writeLock().lock();
+        try {
+            terms = new String[Math.max(entries.size(), INITIAL_CAPACITY)];
+            ids = new long[terms.length];
+            size = entries.size();
+            for (int i = 0; i < size; i++) {
+                terms[i] = entries.get(i).term;
+                ids[i] = entries.get(i).id;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Indexes the entity referenced by the given id with the given texts. Terms previously indexed for the id are
+     * removed, even if they belong to another partition.
+     *
+     * @param partition the partition of the indexed entity.
+     * @param id        the id of the indexed entity.
+     * @param texts     must not be null.
+     */
+    public void put(long partition, long id, @NonNull String... texts) {
+        Set<String> newTerms = termsOf(partition, Arrays.asList(texts));
+        lock.writeLock().lock();
+        try {
+            removeEntries(id);
+            for (String term : newTerms) {
+                insertEntry(term, id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all terms of the entity referenced by the given id from the index.
+     *
+     * @param id the id of the removed entity.
+     */
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeEntries(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of the entities of the given partition with a term starting with the given prefix. The ids are
+     * ordered by their matching term, every id is only contained once.
+     *
+     * @param partition the partition of the returned entities.
+     * @param prefix    must not be null, is normalized before the lookup.
+     * @param limit     the maximum number of returned ids, must be positive.
+     * @return a {@link List} containing at most limit ids, empty if prefix is blank.
+     */
+    public List<Long> find(long partition, @NonNull String prefix, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        String normalized = normalize(prefix);
+        if (normalized.isEmpty()) {
+            return Collections.emptyList();
+        }
+        normalized = partitionPrefix(partition) + normalized;
+        Set<Long> result = new LinkedHashSet<>();
+        lock.readLock().lock();
+        try {
+            for (int i = lowerBound(normalized, Long.MIN_VALUE);
+                 i < size && result.size() < limit && terms[i].startsWith(normalized); i++) {
+                result.add(ids[i]);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * Returns the number of terms in the index.
+     *
+     * @return a non-negative int.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static String partitionPrefix(long partition) {
+        char[] prefix = new char[PARTITION_LENGTH];
+        for (int i = 0; i < PARTITION_LENGTH; i++) {
+            prefix[i] = (char) (partition >>> (Character.SIZE * (PARTITION_LENGTH - 1 - i)));
+        }
+        return new String(prefix);
+    }
+
+    private static Set<String> termsOf(long partition, @NonNull Collection<String> texts) {
+        String prefix = partitionPrefix(partition);
+        Set<String> result = new HashSet<>();
+        for (String text : texts) {
+            if (text == null) {
+                continue;
+            }
+            String normalized = normalize(text);
+            int start = normalized.isEmpty() ? -1 : 0;
+            while (start >= 0) {
+                result.add(prefix + normalized.substring(start));
+                int space = normalized.indexOf(' ', start);
+                start = space < 0 ? -1 : space + 1;
+            }
+        }
+        return result;
+    }
+
+    private void insertEntry(@NonNull String term, long id) {
+        int index = lowerBound(term, id);
+        if (size == terms.length) {
+            terms = Arrays.copyOf(terms, size * 2);
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        System.arraycopy(terms, index, terms, index + 1, size - index);
+        System.arraycopy(ids, index, ids, index + 1, size - index);
+        terms[index] = term;
+        ids[index] = id;
+        size++;
+    }
+
+    private void removeEntries(long id) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (ids[i] != id) {
+                terms[kept] = terms[i];
+                ids[kept] = ids[i];
+                kept++;
+            }
+        }
+        Arrays.fill(terms, kept, size, null);
+        size = kept;
+    }
+
+    private int lowerBound(@NonNull String term, long id) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int comparison = terms[middle].compareTo(term);
+            if (comparison < 0 || (comparison == 0 && ids[middle] < id)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        private final String term;
+        private final long id;
+
+        private Entry(String term, long id) {
+            this.term = term;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            int comparison = term.compareTo(o.term);
+            return comparison != 0 ? comparison : Long.compare(id, o.id);
+        }
+    }
+}
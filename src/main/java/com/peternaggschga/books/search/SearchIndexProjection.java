@@ -0,0 +1,61 @@
+package com.peternaggschga.books.search;
+
+import com.peternaggschga.books.author.AuthorManagement;
+import com.peternaggschga.books.books.BookManagement;
+import com.peternaggschga.books.events.EntityChangedEvent;
+import com.peternaggschga.books.events.OutboxConsumer;
+import lombok.NonNull;
+import org.springframework.stereotype.Component;
+
+import javax.validation.constraints.NotNull;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * An {@link OutboxConsumer} maintaining the in-memory {@link PrefixIndex}es of {@link AuthorManagement} and
+ * {@link BookManagement}. As the indexes reload the changed entities, every event of a batch is only applied once.
+ */
+@Component
+public class SearchIndexProjection implements OutboxConsumer {
+    @NotNull
+    private final AuthorManagement authorManagement;
+    @NotNull
+    private final BookManagement bookManagement;
+
+    /**
+     * Creates a new {@link SearchIndexProjection} instance with the given {@link AuthorManagement} and
+     * {@link BookManagement}.
+     *
+     * @param authorManagement must not be null.
+     * @param bookManagement   must not be null.
+     */
+    public SearchIndexProjection(@NonNull AuthorManagement authorManagement, @NonNull BookManagement bookManagement) {
+        this.authorManagement = authorManagement;
+        this.bookManagement = bookManagement;
+    }
+
+    @Override
+    public String getName() {
+        return "search-index";
+    }
+
+    @Override
+    public void accept(@NonNull List<EntityChangedEvent> events) {
+        for (EntityChangedEvent event : new LinkedHashSet<>(events)) {
+            switch (event.getEntityType()) {
+                case AUTHOR:
+                    authorManagement.updateAuthorIndex(event);
+                    bookManagement.updateBookIndex(event);
+                    break;
+                case BOOK:
+                    bookManagement.updateBookIndex(event);
+                    break;
+                case SERIES:
+                    bookManagement.updateSeriesIndex(event);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+}
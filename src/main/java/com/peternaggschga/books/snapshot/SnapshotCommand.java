@@ -0,0 +1,66 @@
+package com.peternaggschga.books.snapshot;
+
+import lombok.NonNull;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Runs the snapshot commands given as application arguments. {@code --snapshot=<file>} writes a snapshot of the
+ * library to the file, {@code --restore=<file>} replaces the library by the snapshot in the file. If a command is
+ * given, the application is started without web server and exits after running it.
+ *
+ * @see SnapshotService
+ */
+@Component
+public class SnapshotCommand implements ApplicationRunner {
+    /**
+     * The option creating a snapshot.
+     */
+    public static final String SNAPSHOT_OPTION = "snapshot";
+    /**
+     * The option restoring a snapshot.
+     */
+    public static final String RESTORE_OPTION = "restore";
+    @NotNull
+    private final SnapshotService snapshotService;
+
+    /**
+     * Creates a new {@link SnapshotCommand} instance with the given {@link SnapshotService}.
+     *
+     * @param snapshotService must not be null.
+     */
+    public SnapshotCommand(@NonNull SnapshotService snapshotService) {
+        this.snapshotService = snapshotService;
+    }
+
+    /**
+     * Checks whether the given application arguments contain a snapshot command.
+     *
+     * @param args must not be null.
+     * @return true if a snapshot should be created or restored.
+     */
+    public static boolean isCommand(@NonNull String[] args) {
+        return Arrays.stream(args).anyMatch(arg -> arg.startsWith("--" + SNAPSHOT_OPTION + "=")
+                || arg.startsWith("--" + RESTORE_OPTION + "="));
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        if (args.containsOption(RESTORE_OPTION)) {
+            for (String file : args.getOptionValues(RESTORE_OPTION)) {
+                snapshotService.restoreSnapshot(Path.of(file));
+            }
+        }
+        if (args.containsOption(SNAPSHOT_OPTION)) {
+            for (String file : args.getOptionValues(SNAPSHOT_OPTION)) {
+                snapshotService.createSnapshot(Path.of(file));
+            }
+        }
+    }
+}
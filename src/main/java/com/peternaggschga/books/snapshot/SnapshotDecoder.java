@@ -0,0 +1,191 @@
+package com.peternaggschga.books.snapshot;
+
+import com.peternaggschga.books.snapshot.SnapshotTable.Column;
+import lombok.NonNull;
+
+import javax.validation.constraints.NotNull;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads a snapshot file written by {@link SnapshotEncoder}. The file is memory-mapped and inflated block by block, so
+ * restoring never holds more than a single block of rows in memory.
+ */
+public class SnapshotDecoder implements Closeable {
+    @NotNull
+    private final FileChannel channel;
+    @NotNull
+    private final MappedByteBuffer buffer;
+    @NotNull
+    private final Inflater inflater = new Inflater();
+    @NotNull
+    private final String[] dictionary;
+    private final long created;
+    private final int dictionaryOffset;
+
+    /**
+     * Creates a new {@link SnapshotDecoder} instance reading the given file.
+     *
+     * @param file must not be null.
+     * @throws IOException if the file could not be read or is not a snapshot of a supported version.
+     */
+    public SnapshotDecoder(@NonNull Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot too large to be mapped: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (size < SnapshotEncoder.HEADER_SIZE + SnapshotEncoder.FOOTER_SIZE
+                    || buffer.getInt(0) != SnapshotEncoder.MAGIC
+                    || buffer.getInt((int) size - Integer.BYTES) != SnapshotEncoder.MAGIC) {
+                throw new IOException("Not a complete snapshot: " + file);
+            }
+            if (buffer.getShort(Integer.BYTES) != SnapshotEncoder.FORMAT_VERSION) {
+                throw new IOException("Unsupported snapshot version " + buffer.getShort(Integer.BYTES) + ": " + file);
+            }
+            created = buffer.getLong(Integer.BYTES + Short.BYTES);
+            dictionaryOffset = (int) buffer.getLong((int) size - SnapshotEncoder.FOOTER_SIZE);
+            buffer.position(dictionaryOffset);
+            if (buffer.get() != SnapshotEncoder.DICTIONARY_TAG) {
+                throw new IOException("Missing dictionary: " + file);
+            }
+            dictionary = new String[buffer.getInt()];
+            ByteBuffer values = inflate();
+            for (int i = 0; i < dictionary.length; i++) {
+                dictionary[i] = readText(values);
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    static long readVarLong(@NonNull ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Returns the time the snapshot was created.
+     *
+     * @return the milliseconds since the epoch.
+     */
+    public long getCreated() {
+        return created;
+    }
+
+    /**
+     * Decodes all blocks of rows and passes them to the given {@link BlockConsumer} in the order they were written.
+     *
+     * @param consumer must not be null.
+     * @throws IOException if a block is corrupted.
+     */
+    public void forEachBlock(@NonNull BlockConsumer consumer) throws IOException {
+        buffer.position(SnapshotEncoder.HEADER_SIZE);
+        while (buffer.position() < dictionaryOffset) {
+            int tag = buffer.get();
+            if (tag < 0 || tag >= SnapshotTable.values().length) {
+                throw new IOException("Unknown block " + tag + " at offset " + (buffer.position() - 1));
+            }
+            SnapshotTable table = SnapshotTable.values()[tag];
+            Object[][] rows = new Object[buffer.getInt()][table.getColumns().size()];
+            ByteBuffer values = inflate();
+            for (int i = 0; i < table.getColumns().size(); i++) {
+                Column column = table.getColumns().get(i);
+                long previous = 0;
+                for (Object[] row : rows) {
+                    switch (column.getType()) {
+                        case LONG:
+                        case DATE:
+                            long delta = readVarLong(values);
+                            if (delta == 0) {
+                                break;
+                            }
+                            delta--;
+                            previous += (delta >>> 1) ^ -(delta & 1);
+                            row[i] = column.getType() == SnapshotTable.ColumnType.LONG ? (Object) previous
+                                    : LocalDate.ofEpochDay(previous);
+                            break;
+                        case DICTIONARY:
+                            int index = (int) readVarLong(values);
+                            row[i] = index == 0 ? null : dictionary[index - 1];
+                            break;
+                        case TEXT:
+                            row[i] = readText(values);
+                            break;
+                        default:
+                            throw new IllegalStateException("Unknown column type " + column.getType());
+                    }
+                }
+            }
+            consumer.accept(table, Arrays.asList(rows));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        channel.close();
+    }
+
+    private ByteBuffer inflate() throws IOException {
+        int rawLength = buffer.getInt();
+        int compressedLength = buffer.getInt();
+        inflater.reset();
+        inflater.setInput(buffer.slice(buffer.position(), compressedLength));
+        byte[] raw = new byte[rawLength];
+        try {
+            if (inflater.inflate(raw) != rawLength || !inflater.finished()) {
+                throw new IOException("Corrupted block at offset " + buffer.position());
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted block at offset " + buffer.position(), e);
+        }
+        buffer.position(buffer.position() + compressedLength);
+        return ByteBuffer.wrap(raw);
+    }
+
+    private static String readText(@NonNull ByteBuffer values) {
+        int length = (int) readVarLong(values);
+        if (length == 0) {
+            return null;
+        }
+        String text = new String(values.array(), values.position(), length - 1, StandardCharsets.UTF_8);
+        values.position(values.position() + length - 1);
+        return text;
+    }
+
+    /**
+     * Receives the decoded rows of a block.
+     */
+    @FunctionalInterface
+    public interface BlockConsumer {
+        /**
+         * Processes the given rows of the given {@link SnapshotTable}.
+         *
+         * @param table must not be null.
+         * @param rows  must not be null, contains the values of every row in the order of the columns of the table.
+         * @throws IOException if the rows could not be processed.
+         */
+        void accept(@NonNull SnapshotTable table, @NonNull List<Object[]> rows) throws IOException;
+    }
+}
@@ -0,0 +1,237 @@
+package com.peternaggschga.books.snapshot;
+
+import com.peternaggschga.books.snapshot.SnapshotTable.Column;
+import lombok.NonNull;
+
+import javax.validation.constraints.NotNull;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a snapshot file. A snapshot starts with a header of {@link SnapshotEncoder#HEADER_SIZE} bytes containing
+ * {@link SnapshotEncoder#MAGIC}, {@link SnapshotEncoder#FORMAT_VERSION} and the creation time in milliseconds. The
+ * rows of every {@link SnapshotTable} follow in blocks of at most {@link SnapshotEncoder#BLOCK_ROWS} rows. A block
+ * consists of the ordinal of its table (1 byte), the number of rows, the raw and the compressed length (4 bytes each)
+ * and the deflated columns of the block, stored one after another. The dictionary of all
+ * {@link SnapshotTable.ColumnType#DICTIONARY} values is stored as last block with the tag
+ * {@link SnapshotEncoder#DICTIONARY_TAG}, followed by a footer containing its offset and {@link SnapshotEncoder#MAGIC}.
+ * All integral values are stored as variable length integers, so small deltas take a single byte.
+ */
+public class SnapshotEncoder implements Closeable {
+    /**
+     * The first and last bytes of every snapshot file.
+     */
+    public static final int MAGIC = 0x424b534e;
+    /**
+     * The version of the format written by this class.
+     */
+    public static final short FORMAT_VERSION = 3;
+    /**
+     * The number of bytes of the header of a snapshot.
+     */
+    public static final int HEADER_SIZE = Integer.BYTES + Short.BYTES + Long.BYTES;
+    /**
+     * The number of bytes of the footer of a snapshot.
+     */
+    public static final int FOOTER_SIZE = Long.BYTES + Integer.BYTES;
+    /**
+     * The number of bytes of the header of a block.
+     */
+    public static final int BLOCK_HEADER_SIZE = 1 + 3 * Integer.BYTES;
+    /**
+     * The tag of the block containing the dictionary.
+     */
+    public static final byte DICTIONARY_TAG = Byte.MAX_VALUE;
+    /**
+     * The maximum number of rows of a block.
+     */
+    public static final int BLOCK_ROWS = 65536;
+    @NotNull
+    private final FileChannel channel;
+    @NotNull
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    @NotNull
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    @NotNull
+    private final List<String> dictionaryValues = new ArrayList<>();
+    private SnapshotTable table;
+    private ByteArrayOutputStream[] columns;
+    private long[] previous;
+    private int rows;
+
+    /**
+     * Creates a new {@link SnapshotEncoder} instance writing to the given file. An existing file is overwritten.
+     *
+     * @param file must not be null.
+     * @throws IOException if the file could not be created.
+     */
+    public SnapshotEncoder(@NonNull Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putShort(FORMAT_VERSION).putLong(System.currentTimeMillis());
+        writeFully(header.flip());
+    }
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static void writeVarLong(@NonNull ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7fL) != 0) {
+            out.write((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * Starts the rows of the given {@link SnapshotTable}. The rows of the previous table are written.
+     *
+     * @param table must not be null.
+     * @throws IOException if the previous rows could not be written.
+     */
+    public void begin(@NonNull SnapshotTable table) throws IOException {
+        flush();
+        this.table = table;
+        columns = new ByteArrayOutputStream[table.getColumns().size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new ByteArrayOutputStream();
+        }
+        previous = new long[columns.length];
+    }
+
+    /**
+     * Adds the current row of the given {@link ResultSet}, which must contain the columns of the current
+     * {@link SnapshotTable} in their order.
+     *
+     * @param resultSet must not be null.
+     * @throws SQLException if a column could not be read.
+     * @throws IOException  if a full block could not be written.
+     */
+    public void add(@NonNull ResultSet resultSet) throws SQLException, IOException {
+        if (table == null) {
+            throw new IllegalStateException("No table begun");
+        }
+        for (int i = 0; i < columns.length; i++) {
+            Column column = table.getColumns().get(i);
+            switch (column.getType()) {
+                case LONG:
+                    long value = resultSet.getLong(i + 1);
+                    writeDelta(i, resultSet.wasNull() ? null : value);
+                    break;
+                case DATE:
+                    Date date = resultSet.getDate(i + 1);
+                    writeDelta(i, date == null ? null : date.toLocalDate().toEpochDay());
+                    break;
+                case DICTIONARY:
+                    String key = resultSet.getString(i + 1);
+                    writeVarLong(columns[i], key == null ? 0 : dictionary.computeIfAbsent(key, k -> {
+                        dictionaryValues.add(k);
+                        return dictionaryValues.size();
+                    }));
+                    break;
+                case TEXT:
+                    writeText(columns[i], resultSet.getString(i + 1));
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown column type " + column.getType());
+            }
+        }
+        if (++rows == BLOCK_ROWS) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the remaining rows, the dictionary and the footer. No rows can be added afterwards.
+     *
+     * @throws IOException if the snapshot could not be written.
+     */
+    public void finish() throws IOException {
+        flush();
+        table = null;
+        long dictionaryOffset = channel.position();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        dictionaryValues.forEach(value -> writeText(out, value));
+        writeBlock(DICTIONARY_TAG, dictionaryValues.size(), out.toByteArray());
+        ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+        footer.putLong(dictionaryOffset).putInt(MAGIC);
+        writeFully(footer.flip());
+        channel.force(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        deflater.end();
+        channel.close();
+    }
+
+    private void writeDelta(int column, Long value) {
+        if (value == null) {
+            writeVarLong(columns[column], 0);
+            return;
+        }
+        writeVarLong(columns[column], zigZag(value - previous[column]) + 1);
+        previous[column] = value;
+    }
+
+    private static void writeText(@NonNull ByteArrayOutputStream out, String text) {
+        if (text == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length + 1L);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private void flush() throws IOException {
+        if (table == null || rows == 0) {
+            return;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < columns.length; i++) {
+            columns[i].writeTo(out);
+            columns[i].reset();
+        }
+        previous = new long[columns.length];
+        writeBlock((byte) table.ordinal(), rows, out.toByteArray());
+        rows = 0;
+    }
+
+    private void writeBlock(byte tag, int rows, byte[] raw) throws IOException {
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+        byte[] chunk = new byte[8192];
+        while (!deflater.finished()) {
+            compressed.write(chunk, 0, deflater.deflate(chunk));
+        }
+        ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+        header.put(tag).putInt(rows).putInt(raw.length).putInt(compressed.size());
+        writeFully(header.flip());
+        writeFully(ByteBuffer.wrap(compressed.toByteArray()));
+    }
+
+    private void writeFully(@NonNull ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.peternaggschga.books.snapshot;
+
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Creates and restores snapshots of the library in the format of {@link SnapshotEncoder}. Both operations work on
+ * the tables directly, bypassing the management services, their events and caches. They are meant to be run by
+ * {@link SnapshotCommand} while the application does not serve requests.
+ */
+@Service
+public class SnapshotService {
+    private static final Logger LOG = LoggerFactory.getLogger(SnapshotService.class);
+    private static final int FETCH_SIZE = 1000;
+    private static final List<String> SEQUENCED_TABLES = List.of(SnapshotTable.AUTHOR.getName(),
+            SnapshotTable.BOOK.getName(), SnapshotTable.SERIES.getName(), SnapshotTable.READING.getName(),
+            SnapshotTable.ACCOUNT.getName(), "outbox_entry");
+    @NotNull
+    private final JdbcTemplate jdbcTemplate;
+    @NotNull
+    private final TransactionTemplate transactionTemplate;
+    @NotNull
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    /**
+     * Creates a new {@link SnapshotService} instance with the given {@link DataSource} and
+     * {@link PlatformTransactionManager}.
+     *
+     * @param dataSource         must not be null.
+     * @param transactionManager must not be null.
+     */
+    public SnapshotService(@NonNull DataSource dataSource, @NonNull PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Writes a snapshot of all {@link SnapshotTable}s to the given file. The snapshot is written to a temporary file
+     * first, so an existing snapshot is only replaced by a complete one.
+     *
+     * @param file must not be null.
+     * @throws IOException if the snapshot could not be written.
+     */
+    public void createSnapshot(@NonNull Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (SnapshotEncoder encoder = new SnapshotEncoder(temporary)) {
+                readOnlyTransactionTemplate.executeWithoutResult(status -> {
+                    for (SnapshotTable table : SnapshotTable.values()) {
+                        try {
+                            encoder.begin(table);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        jdbcTemplate.query(table.getSelectSql(), resultSet -> {
+                            try {
+                                encoder.add(resultSet);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        });
+                    }
+                });
+                encoder.finish();
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        LOG.info("Snapshot geschrieben: " + file + " (" + Files.size(file) + " Bytes)");
+    }
+
+    /**
+     * Replaces the content of all {@link SnapshotTable}s by the given snapshot. Referential integrity is not checked
+     * while restoring and every block of rows is inserted by a single batch in its own transaction, so a failed
+     * restore leaves the tables incomplete and has to be repeated. The id sequence is continued after the highest
+     * restored id.
+     *
+     * @param file must not be null.
+     * @throws IOException if the snapshot could not be read.
+     */
+    public void restoreSnapshot(@NonNull Path file) throws IOException {
+        try (SnapshotDecoder decoder = new SnapshotDecoder(file)) {
+            jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY FALSE");
+            try {
+                for (SnapshotTable table : SnapshotTable.values()) {
+                    jdbcTemplate.execute("TRUNCATE TABLE " + table.getName());
+                }
+                decoder.forEachBlock((table, rows) -> transactionTemplate.executeWithoutResult(status ->
+                        jdbcTemplate.batchUpdate(table.getInsertSql(), rows)));
+                Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM ("
+                        + SEQUENCED_TABLES.stream().map(table -> "SELECT MAX(id) id FROM " + table)
+                        .collect(Collectors.joining(" UNION ALL ")) + ")", Long.class);
+                jdbcTemplate.execute("ALTER SEQUENCE hibernate_sequence RESTART WITH " + (maxId + 1));
+            } finally {
+                jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY TRUE");
+            }
+        }
+        LOG.info("Snapshot wiederhergestellt: " + file);
+    }
+}
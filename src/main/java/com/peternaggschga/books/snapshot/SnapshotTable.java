@@ -0,0 +1,122 @@
+package com.peternaggschga.books.snapshot;
+
+import lombok.NonNull;
+
+import javax.validation.constraints.NotNull;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The tables contained in a snapshot, in the order they are written and restored. The ordinal of a table identifies
+ * its blocks in the snapshot file, so new tables must only be appended and changes require a new
+ * {@link SnapshotEncoder#FORMAT_VERSION}.
+ */
+public enum SnapshotTable {
+    AUTHOR("author", new Column("id", ColumnType.LONG), new Column("version", ColumnType.LONG),
+            new Column("first_name", ColumnType.DICTIONARY), new Column("last_name", ColumnType.DICTIONARY),
+            new Column("birth_date", ColumnType.DATE), new Column("death_date", ColumnType.DATE),
+            new Column("nationality", ColumnType.LONG), new Column("tenant_id", ColumnType.LONG)),
+    BOOK("book", new Column("id", ColumnType.LONG), new Column("version", ColumnType.LONG),
+            new Column("title", ColumnType.TEXT), new Column("published", ColumnType.DATE),
+            new Column("isbn", ColumnType.TEXT), new Column("pages", ColumnType.LONG),
+            new Column("language", ColumnType.DICTIONARY), new Column("tenant_id", ColumnType.LONG),
+            new Column("cover_hash", ColumnType.TEXT)),
+    BOOK_AUTHORS("book_authors", new Column("book_id", ColumnType.LONG), new Column("authors_id", ColumnType.LONG)),
+    SERIES("series", new Column("id", ColumnType.LONG), new Column("version", ColumnType.LONG),
+            new Column("title", ColumnType.TEXT), new Column("tenant_id", ColumnType.LONG)),
+    SERIES_BOOKS("series_books", new Column("series_id", ColumnType.LONG), new Column("books_id", ColumnType.LONG),
+            new Column("volume", ColumnType.LONG)),
+    READING("reading", new Column("id", ColumnType.LONG), new Column("version", ColumnType.LONG),
+            new Column("book_id", ColumnType.LONG), new Column("beginning", ColumnType.DATE),
+            new Column("end", ColumnType.DATE), new Column("pages_per_hour", ColumnType.LONG),
+            new Column("tenant_id", ColumnType.LONG)),
+    ACCOUNT("account", new Column("id", ColumnType.LONG), new Column("username", ColumnType.TEXT),
+            new Column("password", ColumnType.TEXT), new Column("default_tenant", ColumnType.LONG));
+
+    @NotNull
+    private final String name;
+    @NotNull
+    private final List<Column> columns;
+
+    SnapshotTable(@NonNull String name, @NonNull Column... columns) {
+        this.name = name;
+        this.columns = Collections.unmodifiableList(Arrays.asList(columns));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<Column> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Returns the query selecting all rows of the table, ordered by the first two columns, so ids are stored as small
+     * deltas.
+     *
+     * @return a SQL {@link String}, never null.
+     */
+    public String getSelectSql() {
+        String names = columns.stream().map(Column::getName).collect(Collectors.joining(", "));
+        return "SELECT " + names + " FROM " + name + " ORDER BY " + columns.get(0).getName() + ", "
+                + columns.get(1).getName();
+    }
+
+    /**
+     * Returns the statement inserting a single row into the table, expecting a parameter for every column.
+     *
+     * @return a SQL {@link String}, never null.
+     */
+    public String getInsertSql() {
+        return "INSERT INTO " + name + " (" + columns.stream().map(Column::getName).collect(Collectors.joining(", "))
+                + ") VALUES (" + columns.stream().map(column -> "?").collect(Collectors.joining(", ")) + ")";
+    }
+
+    /**
+     * The encodings of the columns of a snapshot. Every value can be null.
+     */
+    public enum ColumnType {
+        /**
+         * An integral value, stored as delta to the previous value of the column.
+         */
+        LONG,
+        /**
+         * A date, stored as delta of its epoch day to the previous value of the column.
+         */
+        DATE,
+        /**
+         * A text with few distinct values, stored as index into the dictionary of the snapshot.
+         */
+        DICTIONARY,
+        /**
+         * An arbitrary text, stored as UTF-8.
+         */
+        TEXT
+    }
+
+    /**
+     * A column of a {@link SnapshotTable}.
+     */
+    public static final class Column {
+        @NotNull
+        private final String name;
+        @NotNull
+        private final ColumnType type;
+
+        private Column(@NonNull String name, @NonNull ColumnType type) {
+            this.name = name;
+            this.type = type;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public ColumnType getType() {
+            return type;
+        }
+    }
+}
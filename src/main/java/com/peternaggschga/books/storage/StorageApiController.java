@@ -0,0 +1,46 @@
+package com.peternaggschga.books.storage;
+
+import com.peternaggschga.books.account.AccountDetails;
+import lombok.NonNull;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.validation.constraints.NotNull;
+import java.sql.SQLException;
+
+/**
+ * A controller exposing the {@link StorageStatistics} of the {@link StorageMaintenance} via the JSON API. The database
+ * is shared by all tenants, so only the owner of the instance, granted {@link AccountDetails#ADMIN_ROLE}, may read its
+ * statistics or compact it.
+ */
+@RestController
+@PreAuthorize("hasRole('" + AccountDetails.ADMIN_ROLE + "')")
+@RequestMapping("/api/v1/storage")
+@ConditionalOnProperty(name = "books.storage.maintenance.enabled", havingValue = "true", matchIfMissing = true)
+public class StorageApiController {
+    @NotNull
+    private final StorageMaintenance maintenance;
+
+    /**
+     * Creates a new {@link StorageApiController} instance with the given {@link StorageMaintenance}.
+     *
+     * @param maintenance must not be null.
+     */
+    public StorageApiController(@NonNull StorageMaintenance maintenance) {
+        this.maintenance = maintenance;
+    }
+
+    @GetMapping
+    public StorageStatistics getStatistics() throws SQLException {
+        return maintenance.sample();
+    }
+
+    @PostMapping("/compaction")
+    public StorageStatistics compact() throws SQLException {
+        return maintenance.compact();
+    }
+}
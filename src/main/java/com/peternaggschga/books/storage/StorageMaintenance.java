@@ -0,0 +1,273 @@
+package com.peternaggschga.books.storage;
+
+import com.peternaggschga.books.events.EntityChangedEvent;
+import lombok.NonNull;
+import org.h2.engine.Session;
+import org.h2.engine.SessionInterface;
+import org.h2.jdbc.JdbcConnection;
+import org.h2.mvstore.FileStore;
+import org.h2.mvstore.MVStore;
+import org.h2.mvstore.db.MVTableEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.sql.DataSource;
+import javax.validation.constraints.NotNull;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Keeps the size of the H2 database file close to the size of its live data. The MVStore never overwrites data in
+ * place, so every change leaves unused space behind, which is only reused or released by compaction. A maintenance
+ * thread samples the size, fill rate and written bytes of the file. Once no change was committed for the configured
+ * idle time and the fill rate dropped below the configured threshold, sparse chunks are rewritten and moved to the
+ * start of the file, so the file can be truncated while the application is running. On shutdown, a file that is still
+ * sparse is defragmented completely. The defragmentation closes the database, so it runs in the last phase of the
+ * shutdown, after all other {@link SmartLifecycle} components like the
+ * {@link com.peternaggschga.books.events.OutboxDispatcher} stopped.
+ */
+@Component
+@ConditionalOnProperty(name = "books.storage.maintenance.enabled", havingValue = "true", matchIfMissing = true)
+public class StorageMaintenance implements SmartLifecycle {
+    private static final Logger LOG = LoggerFactory.getLogger(StorageMaintenance.class);
+    @NotNull
+    private final DataSource dataSource;
+    private final long checkInterval;
+    private final long idleTime;
+    private final int compactFillRate;
+    private final int compactWriteLimit;
+    private final boolean defragOnShutdown;
+    @NotNull
+    private final AtomicLong changeCount = new AtomicLong();
+    private volatile long lastChange = System.currentTimeMillis();
+    private long compactionCount;
+    private long reclaimedBytes;
+    private Instant lastCompaction;
+    private long changeCountAtCompaction = -1;
+    private volatile StorageStatistics statistics;
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * Creates a new {@link StorageMaintenance} instance with the given {@link DataSource} and configuration.
+     *
+     * @param dataSource        must not be null, must connect to an embedded H2 database.
+     * @param checkInterval     the milliseconds between two samples of the database file, must be positive.
+     * @param idleTime          the milliseconds without committed changes before the file is compacted.
+     * @param compactFillRate   the fill rate in percent below which the file is compacted, must be between 1 and 100.
+     * @param compactWriteLimit the maximum number of bytes rewritten by a single compaction, must be positive.
+     * @param defragOnShutdown  whether a file with a fill rate below compactFillRate is defragmented on shutdown.
+     */
+    public StorageMaintenance(@NonNull DataSource dataSource,
+                              @Value("${books.storage.check-interval:60000}") long checkInterval,
+                              @Value("${books.storage.idle-time:300000}") long idleTime,
+                              @Value("${books.storage.compact-fill-rate:80}") int compactFillRate,
+                              @Value("${books.storage.compact-write-limit:16777216}") int compactWriteLimit,
+                              @Value("${books.storage.defrag-on-shutdown:true}") boolean defragOnShutdown) {
+        if (checkInterval <= 0 || compactWriteLimit <= 0) {
+            throw new IllegalArgumentException("Check interval and write limit must be positive");
+        }
+        if (compactFillRate < 1 || compactFillRate > 100) {
+            throw new IllegalArgumentException("Compaction fill rate must be between 1 and 100");
+        }
+        this.dataSource = dataSource;
+        this.checkInterval = checkInterval;
+        this.idleTime = idleTime;
+        this.compactFillRate = compactFillRate;
+        this.compactWriteLimit = compactWriteLimit;
+        this.defragOnShutdown = defragOnShutdown;
+    }
+
+    /**
+     * Starts the maintenance thread once the application is ready.
+     */
+    @Override
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::maintain, "storage-maintenance");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the maintenance thread and defragments the database file if enabled and necessary. The database is closed
+     * by the defragmentation, so this must be the last access to it.
+     */
+    @Override
+    public void stop() {
+        Thread stopped;
+        synchronized (this) {
+            running = false;
+            stopped = thread;
+            thread = null;
+        }
+        if (stopped != null) {
+            stopped.interrupt();
+            try {
+                stopped.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (!defragOnShutdown) {
+            return;
+        }
+        try {
+            StorageStatistics current = sample();
+            if (current.getFileSize() == 0 || current.getFillRate() >= compactFillRate) {
+                return;
+            }
+            LOG.info("Defragmentiere Datenbank mit Füllgrad " + current.getFillRate() + "%");
+            try (Connection connection = dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.execute("SHUTDOWN DEFRAG");
+            }
+        } catch (SQLException | RuntimeException e) {
+            LOG.error("Fehler beim Defragmentieren der Datenbank: " + e);
+        }
+    }
+
+    /**
+     * Returns false, the maintenance thread is started once the application is ready, after the command line runners.
+     *
+     * @return false.
+     */
+    @Override
+    public boolean isAutoStartup() {
+        return false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Returns the lowest phase, so this is the last component stopped on shutdown.
+     *
+     * @return {@link Integer#MIN_VALUE}.
+     */
+    @Override
+    public int getPhase() {
+        return Integer.MIN_VALUE;
+    }
+
+    /**
+     * Counts a committed change and postpones the next compaction until the database was idle again.
+     *
+     * @param event must not be null.
+     */
+    @TransactionalEventListener
+    public void onEntityChanged(@NonNull EntityChangedEvent event) {
+        changeCount.incrementAndGet();
+        lastChange = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the last sample of the database file, taking a new one if none was taken yet.
+     *
+     * @return a {@link StorageStatistics}, never null.
+     * @throws SQLException if the database could not be accessed.
+     */
+    public StorageStatistics getStatistics() throws SQLException {
+        StorageStatistics current = statistics;
+        return current == null ? sample() : current;
+    }
+
+    /**
+     * Takes a new sample of the database file.
+     *
+     * @return a new {@link StorageStatistics}, never null.
+     * @throws SQLException if the database could not be accessed.
+     */
+    public synchronized StorageStatistics sample() throws SQLException {
+        StorageStatistics current = withStore(store -> {
+            FileStore file = store.getFileStore();
+            return file == null ? new StorageStatistics(Instant.now(), 0, 100, 0, changeCount.get(),
+                    compactionCount, reclaimedBytes, lastCompaction)
+                    : new StorageStatistics(Instant.now(), file.size(), file.getFillRate(), file.getWriteBytes(),
+                    changeCount.get(), compactionCount, reclaimedBytes, lastCompaction);
+        });
+        statistics = current;
+        return current;
+    }
+
+    /**
+     * Compacts the database file while the application is running. Chunks with less than compactFillRate percent live
+     * data are rewritten, afterwards all chunks are moved to the start of the file and the free space at its end is
+     * released. At most compactWriteLimit bytes are written by each step, so a single compaction never blocks writes
+     * for long.
+     *
+     * @return a new {@link StorageStatistics} after the compaction, never null.
+     * @throws SQLException if the database could not be accessed.
+     */
+    public synchronized StorageStatistics compact() throws SQLException {
+        long changes = changeCount.get();
+        long reclaimed = withStore(store -> {
+            if (store.getFileStore() == null) {
+                return 0L;
+            }
+            long before = store.getFileStore().size();
+            store.compact(compactFillRate, compactWriteLimit);
+            store.compactMoveChunks(compactFillRate, compactWriteLimit);
+            return before - store.getFileStore().size();
+        });
+        compactionCount++;
+        reclaimedBytes += Math.max(reclaimed, 0);
+        lastCompaction = Instant.now();
+        changeCountAtCompaction = changes;
+        LOG.info("Datenbank kompaktiert, " + reclaimed + " Bytes freigegeben");
+        return sample();
+    }
+
+    private void maintain() {
+        while (running) {
+            try {
+                Thread.sleep(checkInterval);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                StorageStatistics current = sample();
+                // compact once per idle period, a compaction without changes in between would not release more space
+                if (System.currentTimeMillis() - lastChange >= idleTime && current.getFillRate() < compactFillRate
+                        && current.getChangeCount() != changeCountAtCompaction) {
+                    compact();
+                }
+            } catch (SQLException | RuntimeException e) {
+                LOG.error("Fehler bei der Wartung der Datenbank: " + e);
+            }
+        }
+    }
+
+    private <T> T withStore(@NonNull Function<MVStore, T> action) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            SessionInterface session = connection.unwrap(JdbcConnection.class).getSession();
+            if (!(session instanceof Session)) {
+                throw new IllegalStateException("Storage maintenance requires an embedded H2 database");
+            }
+            MVTableEngine.Store store = ((Session) session).getDatabase().getStore();
+            if (store == null) {
+                throw new IllegalStateException("Storage maintenance requires an MVStore database");
+            }
+            return action.apply(store.getMvStore());
+        }
+    }
+}
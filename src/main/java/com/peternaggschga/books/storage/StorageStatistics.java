@@ -0,0 +1,97 @@
+package com.peternaggschga.books.storage;
+
+import lombok.NonNull;
+
+import javax.validation.constraints.NotNull;
+import java.time.Instant;
+
+/**
+ * A sample of the health of the database file taken by the {@link StorageMaintenance}. Samples are immutable.
+ */
+public class StorageStatistics {
+    @NotNull
+    private final Instant sampled;
+    private final long fileSize;
+    private final int fillRate;
+    private final long writtenBytes;
+    private final long changeCount;
+    private final long compactionCount;
+    private final long reclaimedBytes;
+    private final Instant lastCompaction;
+
+    /**
+     * Creates a new {@link StorageStatistics} instance with the given values.
+     *
+     * @param sampled         must not be null.
+     * @param fileSize        the size of the database file in bytes.
+     * @param fillRate        the percentage of the database file used by live data.
+     * @param writtenBytes    the number of bytes written to the database file since it was opened.
+     * @param changeCount     the number of committed changes since the database file was opened.
+     * @param compactionCount the number of online compactions since the database file was opened.
+     * @param reclaimedBytes  the number of bytes the database file shrank by online compactions.
+     * @param lastCompaction  can be null if no compaction ran yet.
+     */
+    public StorageStatistics(@NonNull Instant sampled, long fileSize, int fillRate, long writtenBytes,
+                             long changeCount, long compactionCount, long reclaimedBytes, Instant lastCompaction) {
+        this.sampled = sampled;
+        this.fileSize = fileSize;
+        this.fillRate = fillRate;
+        this.writtenBytes = writtenBytes;
+        this.changeCount = changeCount;
+        this.compactionCount = compactionCount;
+        this.reclaimedBytes = reclaimedBytes;
+        this.lastCompaction = lastCompaction;
+    }
+
+    public Instant getSampled() {
+        return sampled;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public int getFillRate() {
+        return fillRate;
+    }
+
+    /**
+     * Returns the estimated number of bytes of live data, i.e. the size the database file would have after a full
+     * compaction.
+     *
+     * @return a non-negative long.
+     */
+    public long getLiveBytes() {
+        return fileSize * fillRate / 100;
+    }
+
+    public long getWrittenBytes() {
+        return writtenBytes;
+    }
+
+    public long getChangeCount() {
+        return changeCount;
+    }
+
+    /**
+     * Returns the write amplification, i.e. the number of bytes written to the database file per committed change.
+     * Includes the writes of compactions, as they are caused by earlier changes.
+     *
+     * @return a non-negative double, 0 if nothing changed yet.
+     */
+    public double getBytesPerChange() {
+        return changeCount == 0 ? 0 : (double) writtenBytes / changeCount;
+    }
+
+    public long getCompactionCount() {
+        return compactionCount;
+    }
+
+    public long getReclaimedBytes() {
+        return reclaimedBytes;
+    }
+
+    public Instant getLastCompaction() {
+        return lastCompaction;
+    }
+}
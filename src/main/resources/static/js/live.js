@@ -0,0 +1,76 @@
+/*
+ * Live updates of list pages. The table body with the attribute data-live-stream listens to the server-sent events of
+ * that URL. Every event named changes contains a batch of changed entities, those of the type in data-live-type are
+ * applied to the rows identified by the attribute data-row-id: deleted rows are removed, updated rows are replaced by
+ * the row fetched from <data-live-rows>/<id>/row. Rows of created entities are only added if data-live-insert
+ * is set, at the start or end of the table. The event named reload is sent if changes were lost and reloads the page.
+ */
+document.addEventListener('DOMContentLoaded', function () {
+    const rows = document.querySelector('[data-live-stream]');
+    if (rows === null || !('EventSource' in window)) {
+        return;
+    }
+    const type = rows.getAttribute('data-live-type');
+    const insert = rows.getAttribute('data-live-insert');
+    const requests = {};
+
+    function findRow(id) {
+        return rows.querySelector('tr[data-row-id="' + id + '"]');
+    }
+
+    function fetchRow(id) {
+        // only the latest request of a row is applied, responses to earlier ones might be outdated
+        const request = (requests[id] || 0) + 1;
+        requests[id] = request;
+        fetch(rows.getAttribute('data-live-rows') + '/' + id + '/row', {headers: {'Accept': 'text/html'}})
+            .then(function (response) {
+                if (!response.ok) {
+                    throw new Error(response.statusText);
+                }
+                return response.text();
+            })
+            .then(function (html) {
+                if (requests[id] !== request) {
+                    return;
+                }
+                delete requests[id];
+                const row = findRow(id);
+                if (row !== null) {
+                    row.insertAdjacentHTML('afterend', html);
+                    row.remove();
+                } else if (insert !== null) {
+                    rows.insertAdjacentHTML(insert === 'start' ? 'afterbegin' : 'beforeend', html);
+                }
+            })
+            .catch(function () {
+                if (requests[id] === request) {
+                    delete requests[id];
+                }
+            });
+    }
+
+    const source = new EventSource(rows.getAttribute('data-live-stream'));
+    source.addEventListener('changes', function (event) {
+        JSON.parse(event.data).forEach(function (change) {
+            if (change.entityType !== type) {
+                return;
+            }
+            const row = findRow(change.entityId);
+            if (change.changeType === 'DELETED') {
+                delete requests[change.entityId];
+                if (row !== null) {
+                    row.remove();
+                }
+            } else if (row !== null || (change.changeType === 'CREATED' && insert !== null)) {
+                fetchRow(change.entityId);
+            }
+        });
+    });
+    source.addEventListener('reload', function () {
+        source.close();
+        window.location.reload();
+    });
+    window.addEventListener('pagehide', function () {
+        source.close();
+    });
+});
@@ -0,0 +1,39 @@
+/*
+ * Deletion of table rows without reloading the list page. Forms with the attribute data-row-delete are submitted in
+ * the background with the request header X-Partial. The server answers with the header X-Deleted-Row containing the
+ * id of the deleted entity, whose row is identified by the attribute data-row-id and removed. If the request fails,
+ * the form is submitted as usual, so errors are displayed as without JavaScript.
+ */
+document.addEventListener('DOMContentLoaded', function () {
+    document.addEventListener('submit', function (event) {
+        const form = event.target;
+        if (!form.hasAttribute('data-row-delete') || !('fetch' in window)) {
+            return;
+        }
+        event.preventDefault();
+        const button = form.querySelector('[type=submit]');
+        if (button !== null) {
+            button.disabled = true;
+        }
+        fetch(form.action, {
+            method: 'POST',
+            headers: {'Accept': 'text/html', 'X-Partial': 'row'},
+            body: new URLSearchParams(new FormData(form)),
+            redirect: 'manual'
+        })
+            .then(function (response) {
+                const id = response.headers.get('X-Deleted-Row');
+                if (!response.ok || id === null) {
+                    throw new Error(response.statusText);
+                }
+                document.querySelectorAll('tr[data-row-id="' + id + '"]').forEach(function (row) {
+                    if (row.closest('table') === form.closest('table')) {
+                        row.remove();
+                    }
+                });
+            })
+            .catch(function () {
+                form.submit();
+            });
+    });
+});
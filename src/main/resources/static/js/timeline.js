@@ -0,0 +1,54 @@
+/*
+ * Infinite scrolling of the reading timeline. The link with the attribute data-timeline-next points to the next page
+ * of the timeline and is followed without JavaScript. Otherwise, as soon as it becomes visible, the rows of the next
+ * window are requested from the URL in data-timeline-next and appended to the element with the attribute
+ * data-timeline-rows. The response header X-Next-Rows contains the URL of the following window and is missing on the
+ * last one.
+ */
+document.addEventListener('DOMContentLoaded', function () {
+    const more = document.querySelector('[data-timeline-next]');
+    const rows = document.querySelector('[data-timeline-rows]');
+    if (more === null || rows === null || !('IntersectionObserver' in window)) {
+        return;
+    }
+    let loading = false;
+
+    function load() {
+        if (loading) {
+            return;
+        }
+        loading = true;
+        fetch(more.getAttribute('data-timeline-next'), {headers: {'Accept': 'text/html'}})
+            .then(function (response) {
+                if (!response.ok) {
+                    throw new Error(response.statusText);
+                }
+                const next = response.headers.get('X-Next-Rows');
+                return response.text().then(function (html) {
+                    rows.insertAdjacentHTML('beforeend', html);
+                    if (next === null) {
+                        observer.disconnect();
+                        more.parentElement.remove();
+                    } else {
+                        more.setAttribute('data-timeline-next', next);
+                        more.setAttribute('href', next.replace('/readings/rows', '/readings'));
+                        observer.unobserve(more);
+                        observer.observe(more);
+                    }
+                    loading = false;
+                });
+            })
+            .catch(function () {
+                observer.disconnect();
+            });
+    }
+
+    const observer = new IntersectionObserver(function (entries) {
+        if (entries.some(function (entry) {
+            return entry.isIntersecting;
+        })) {
+            load();
+        }
+    }, {rootMargin: '200px'});
+    observer.observe(more);
+});
@@ -0,0 +1,131 @@
+/*
+ * Typeahead pickers for the edit forms. A picker is an element with the attributes data-typeahead-name (the name of the
+ * submitted form field) and data-typeahead-source (the lookup URL). It contains a search input, an element with the
+ * attribute data-typeahead-suggestions and an element with the attribute data-typeahead-selection holding the checked
+ * inputs of the current selection. Pickers with the attribute data-typeahead-single select a single value using radio
+ * buttons, pickers with the attribute data-typeahead-browse show the first page of suggestions before anything was
+ * typed.
+ * The lookup URL is queried with the parameters q and page and must return either a JSON array of objects containing
+ * id and label or an object containing such an array as items and the index of the next page as next.
+ */
+document.addEventListener('DOMContentLoaded', function () {
+    document.querySelectorAll('[data-typeahead-source]').forEach(function (picker) {
+        const name = picker.getAttribute('data-typeahead-name');
+        const source = picker.getAttribute('data-typeahead-source');
+        const single = picker.hasAttribute('data-typeahead-single');
+        const browse = picker.hasAttribute('data-typeahead-browse');
+        const input = picker.querySelector('input[type=search]');
+        const suggestions = picker.querySelector('[data-typeahead-suggestions]');
+        const selection = picker.querySelector('[data-typeahead-selection]');
+        let timeout = null;
+        let request = 0;
+
+        function select(item) {
+            const id = name + item.id;
+            if (single) {
+                selection.querySelectorAll('.form-check').forEach(function (check) {
+                    if (check.querySelector('input').id !== id) {
+                        check.remove();
+                    }
+                });
+            }
+            const existing = document.getElementById(id);
+            if (existing !== null) {
+                existing.checked = true;
+                return;
+            }
+            const check = document.createElement('div');
+            check.className = 'form-check';
+            const box = document.createElement('input');
+            box.className = 'form-check-input';
+            box.type = single ? 'radio' : 'checkbox';
+            box.name = name;
+            box.id = id;
+            box.value = item.id;
+            box.checked = true;
+            box.required = single;
+            const label = document.createElement('label');
+            label.className = 'form-check-label';
+            label.htmlFor = id;
+            label.textContent = item.label;
+            check.append(box, label);
+            selection.append(check);
+        }
+
+        function show(items, next, query) {
+            items.forEach(function (item) {
+                const button = document.createElement('button');
+                button.type = 'button';
+                button.className = 'list-group-item list-group-item-action';
+                button.textContent = item.label;
+                button.addEventListener('click', function () {
+                    select(item);
+                    suggestions.replaceChildren();
+                    input.value = '';
+                    input.focus();
+                });
+                suggestions.append(button);
+            });
+            if (next !== undefined && next !== null) {
+                const more = document.createElement('button');
+                more.type = 'button';
+                more.className = 'list-group-item list-group-item-action text-muted';
+                more.textContent = '…';
+                more.addEventListener('click', function () {
+                    more.remove();
+                    load(query, next, false);
+                });
+                suggestions.append(more);
+            }
+        }
+
+        function load(query, page, replace) {
+            const current = replace ? ++request : request;
+            fetch(source + (source.includes('?') ? '&' : '?') + 'q=' + encodeURIComponent(query) + '&page=' + page,
+                {headers: {'Accept': 'application/json'}})
+                .then(function (response) {
+                    return response.ok ? response.json() : [];
+                })
+                .then(function (result) {
+                    if (current !== request) {
+                        return;
+                    }
+                    if (replace) {
+                        suggestions.replaceChildren();
+                    }
+                    if (Array.isArray(result)) {
+                        show(result, null, query);
+                    } else {
+                        show(result.items, result.next, query);
+                    }
+                });
+        }
+
+        input.addEventListener('input', function () {
+            clearTimeout(timeout);
+            const query = input.value.trim();
+            if (query === '' && !browse) {
+                ++request;
+                suggestions.replaceChildren();
+                return;
+            }
+            timeout = setTimeout(function () {
+                load(query, 0, true);
+            }, 150);
+        });
+        input.addEventListener('focus', function () {
+            if (browse && input.value.trim() === '' && suggestions.childElementCount === 0) {
+                load('', 0, true);
+            }
+        });
+        input.addEventListener('keydown', function (event) {
+            if (event.key === 'Enter') {
+                event.preventDefault();
+                const first = suggestions.querySelector('button');
+                if (first !== null) {
+                    first.click();
+                }
+            }
+        });
+    });
+});
@@ -0,0 +1,204 @@
+package com.peternaggschga.books;
+
+import com.neovisionaries.i18n.CountryCode;
+import com.peternaggschga.books.account.Account;
+import com.peternaggschga.books.account.AccountDetails;
+import com.peternaggschga.books.account.AccountRepository;
+import com.peternaggschga.books.author.Author;
+import com.peternaggschga.books.author.AuthorManagement;
+import com.peternaggschga.books.books.BookManagement;
+import com.peternaggschga.books.books.book.Book;
+import com.peternaggschga.books.reading.ReadingManagement;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Helpers shared by the benchmarks. Benchmarks are named *Benchmark, so they are not run by the default build, and are
+ * tagged with {@link BenchmarkSupport#TAG}. They are run with the Maven profile benchmark, e.g.
+ * {@code ./mvnw -P benchmark test} or {@code ./mvnw -P benchmark test -Dtest=ReadingTableBenchmark}, and print their
+ * results to the standard output.
+ */
+public final class BenchmarkSupport {
+    /**
+     * The tag of all benchmarks.
+     */
+    public static final String TAG = "benchmark";
+    /**
+     * The password of all accounts created by {@link BenchmarkSupport#createAccount(ConfigurableApplicationContext,
+     * String)}.
+     */
+    public static final String PASSWORD = "benchmark";
+    private static final int READINGS_PER_TRANSACTION = 1000;
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Starts the application with an in-memory database of the given name and the given additional properties. The
+     * web server listens on a random port, background maintenance and live updates are disabled.
+     *
+     * @param name       the name of the database and of the directory below target/benchmark used for files.
+     * @param sources    additional configuration classes, e.g. replacing beans of the application.
+     * @param properties additional properties in the form key=value.
+     * @return the started {@link ConfigurableApplicationContext}, has to be closed by the caller.
+     */
+    public static ConfigurableApplicationContext start(String name, List<Class<?>> sources, String... properties) {
+        List<String> all = new ArrayList<>(List.of(
+                "spring.datasource.url=jdbc:h2:mem:" + name,
+                "books.changelog.directory=target/benchmark/" + name + "/changelog",
+                "books.covers.directory=target/benchmark/" + name + "/covers",
+                "books.storage.maintenance.enabled=false",
+                "books.live.enabled=false",
+                "server.port=0",
+                "spring.main.banner-mode=off"));
+        all.addAll(Arrays.asList(properties));
+        List<Class<?>> allSources = new ArrayList<>(sources);
+        allSources.add(0, BooksApplication.class);
+        return new SpringApplicationBuilder(allSources.toArray(Class<?>[]::new))
+                .properties(all.toArray(String[]::new)).run();
+    }
+
+    /**
+     * Saves a new {@link Account} with the given username and {@link BenchmarkSupport#PASSWORD}, which owns a new,
+     * empty library. The password is stored without hashing, so creating thousands of accounts is fast.
+     *
+     * @param context  must not be null.
+     * @param username must not be null or blank, must not be taken.
+     * @return the new {@link Account}.
+     */
+    public static Account createAccount(ConfigurableApplicationContext context, String username) {
+        return context.getBean(AccountRepository.class).save(new Account(username, "{noop}" + PASSWORD, false));
+    }
+
+    /**
+     * Fills the library of the given {@link Account} with a single {@link Author}, the given number of {@link Book}s
+     * and the given number of readings, which are distributed evenly over the {@link Book}s.
+     *
+     * @param context  must not be null.
+     * @param account  must not be null.
+     * @param books    the number of {@link Book}s, must be positive.
+     * @param readings the number of readings.
+     */
+    public static void createLibrary(ConfigurableApplicationContext context, Account account, int books,
+                                     int readings) {
+        AuthorManagement authorManagement = context.getBean(AuthorManagement.class);
+        BookManagement bookManagement = context.getBean(BookManagement.class);
+        ReadingManagement readingManagement = context.getBean(ReadingManagement.class);
+        TransactionTemplate transactions = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        LocalDate epoch = LocalDate.of(2000, 1, 1);
+        signIn(account);
+        try {
+            List<Book> created = transactions.execute(status -> {
+                Author author = authorManagement.createAuthor("Benchmark", account.getUsername(), null, null,
+                        CountryCode.DE);
+                List<Book> list = new ArrayList<>();
+                for (int i = 0; i < books; i++) {
+                    list.add(bookManagement.createBook("Book " + i, Set.of(author), epoch.plusDays(i),
+                            String.format(Locale.ROOT, "978%010d", i), 100 + i % 900, Locale.GERMAN));
+                }
+                return list;
+            });
+            for (int first = 0; first < readings; first += READINGS_PER_TRANSACTION) {
+                int from = first;
+                int to = Math.min(readings, first + READINGS_PER_TRANSACTION);
+                transactions.executeWithoutResult(status -> {
+                    for (int i = from; i < to; i++) {
+                        LocalDate beginning = epoch.plusDays(i % 9000);
+                        readingManagement.createReading(created.get(i % books), beginning, beginning.plusDays(7),
+                                20 + i % 40);
+                    }
+                });
+            }
+        } finally {
+            signOut();
+        }
+    }
+
+    /**
+     * Signs in the given {@link Account} on the current thread, so all following calls are bound to its library.
+     *
+     * @param account must not be null.
+     */
+    public static void signIn(Account account) {
+        AccountDetails details = new AccountDetails(account);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(details, null, details.getAuthorities()));
+    }
+
+    /**
+     * Signs out the {@link Account} signed in on the current thread.
+     */
+    public static void signOut() {
+        SecurityContextHolder.clearContext();
+    }
+
+    /**
+     * Runs the given task the given number of times without measuring it, followed by the given number of measured
+     * runs.
+     *
+     * @param warmups    the number of runs before measuring.
+     * @param iterations the number of measured runs, must be positive.
+     * @param task       must not be null.
+     * @return the durations of the measured runs in nanoseconds, sorted ascending.
+     * @throws Exception if the task failed.
+     */
+    public static long[] measure(int warmups, int iterations, Task task) throws Exception {
+        for (int i = 0; i < warmups; i++) {
+            task.run();
+        }
+        long[] durations = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            task.run();
+            durations[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(durations);
+        return durations;
+    }
+
+    /**
+     * Returns the given percentile of the given sorted durations.
+     *
+     * @param sorted     must not be null or empty, must be sorted ascending.
+     * @param percentile between 0 and 100.
+     * @return a duration in nanoseconds.
+     */
+    public static long percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    /**
+     * Prints a line summarizing the given sorted durations and returns it.
+     *
+     * @param name   the name of the measured case.
+     * @param sorted must not be null or empty, must be sorted ascending.
+     * @return the printed line.
+     */
+    public static String report(String name, long[] sorted) {
+        String line = String.format(Locale.ROOT, "%-40s runs %6d  mean %10.3f ms  p50 %10.3f ms  p99 %10.3f ms"
+                        + "  max %10.3f ms", name, sorted.length, Arrays.stream(sorted).average().orElse(0) / 1e6,
+                percentile(sorted, 50) / 1e6, percentile(sorted, 99) / 1e6, sorted[sorted.length - 1] / 1e6);
+        System.out.println(line);
+        return line;
+    }
+
+    /**
+     * A measured task.
+     */
+    @FunctionalInterface
+    public interface Task {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,121 @@
+package com.peternaggschga.books;
+
+import com.peternaggschga.books.account.Account;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Compares the platform thread pools with virtual threads (books.execution.mode) under concurrent load. The
+ * application is started once per mode, a signed in client sends pages of the reading API with a fixed number of
+ * requests in flight, and the latencies and the throughput of every concurrency level are printed. The virtual mode
+ * is skipped unless the benchmark runs on Java 21 or newer, e.g.
+ * {@code JAVA_HOME=/path/to/jdk-21 ./mvnw -P benchmark test -Dtest=ExecutionModeBenchmark}.
+ */
+@Tag(BenchmarkSupport.TAG)
+public class ExecutionModeBenchmark {
+    static final int BOOKS = 100;
+    static final int READINGS = 5_000;
+    static final int[] CONCURRENCY = {50, 200, 1000};
+    static final int REQUESTS = 20_000;
+    static final Pattern CSRF_TOKEN = Pattern.compile("name=\"_csrf\"[^>]*value=\"([^\"]+)\"");
+
+    @Test
+    void platformThreads() throws Exception {
+        run("platform");
+    }
+
+    @Test
+    void virtualThreads() throws Exception {
+        assumeTrue(Runtime.version().feature() >= 21, "Virtual threads require a Java 21 runtime");
+        run("virtual");
+    }
+
+    private void run(String mode) throws Exception {
+        try (ConfigurableApplicationContext context = BenchmarkSupport.start("execution-" + mode, List.of(),
+                "books.execution.mode=" + mode)) {
+            Account account = BenchmarkSupport.createAccount(context, "benchmark");
+            BenchmarkSupport.createLibrary(context, account, BOOKS, READINGS);
+            String base = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+                    .cookieHandler(new CookieManager()).build();
+            signIn(client, base, account.getUsername());
+            HttpRequest request = HttpRequest.newBuilder(URI.create(base + "/api/v1/readings?limit=50"))
+                    .header("Accept", "application/json").build();
+            for (int concurrency : CONCURRENCY) {
+                load(client, request, concurrency, REQUESTS / 4);
+                long start = System.nanoTime();
+                long[] latencies = load(client, request, concurrency, REQUESTS);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                BenchmarkSupport.report(mode + ", " + concurrency + " in flight", latencies);
+                System.out.printf(Locale.ROOT, "%-40s %10.0f requests/s%n", mode + ", " + concurrency + " in flight",
+                        REQUESTS / seconds);
+            }
+        }
+    }
+
+    private static void signIn(HttpClient client, String base, String username) throws Exception {
+        HttpResponse<String> login = client.send(HttpRequest.newBuilder(URI.create(base + "/login")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        Matcher token = CSRF_TOKEN.matcher(login.body());
+        assertTrue(token.find(), "Login page contains no CSRF token");
+        String form = "username=" + URLEncoder.encode(username, StandardCharsets.UTF_8)
+                + "&password=" + URLEncoder.encode(BenchmarkSupport.PASSWORD, StandardCharsets.UTF_8)
+                + "&_csrf=" + URLEncoder.encode(token.group(1), StandardCharsets.UTF_8);
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(base + "/login"))
+                        .header("Content-Type", "application/x-www-form-urlencoded")
+                        .POST(HttpRequest.BodyPublishers.ofString(form)).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertFalse(response.headers().firstValue("Location").orElse("").contains("error"), "Sign in failed");
+    }
+
+    /**
+     * Sends the given number of requests, keeping the given number of requests in flight.
+     *
+     * @return the sorted latencies of all requests in nanoseconds.
+     */
+    private static long[] load(HttpClient client, HttpRequest request, int concurrency, int requests)
+            throws Exception {
+        Semaphore inFlight = new Semaphore(concurrency);
+        AtomicInteger failures = new AtomicInteger();
+        long[] latencies = new long[requests];
+        CompletableFuture<?>[] responses = new CompletableFuture<?>[requests];
+        for (int i = 0; i < requests; i++) {
+            inFlight.acquire();
+            int index = i;
+            long start = System.nanoTime();
+            responses[i] = client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        latencies[index] = System.nanoTime() - start;
+                        if (error != null || response.statusCode() != 200) {
+                            failures.incrementAndGet();
+                        }
+                        inFlight.release();
+                    });
+        }
+        CompletableFuture.allOf(responses).exceptionally(error -> null).join();
+        assertEquals(0, failures.get(), "Failed requests");
+        Arrays.sort(latencies);
+        return latencies;
+    }
+}
@@ -0,0 +1,161 @@
+package com.peternaggschga.books;
+
+import com.neovisionaries.i18n.CountryCode;
+import com.peternaggschga.books.author.Author;
+import com.peternaggschga.books.author.AuthorManagement;
+import com.peternaggschga.books.author.EditAuthorForm;
+import com.peternaggschga.books.books.BookManagement;
+import com.peternaggschga.books.books.book.Book;
+import com.peternaggschga.books.books.book.EditBookForm;
+import com.peternaggschga.books.books.series.EditSeriesForm;
+import com.peternaggschga.books.books.series.Series;
+import com.peternaggschga.books.reading.EditReadingForm;
+import com.peternaggschga.books.reading.Reading;
+import com.peternaggschga.books.reading.ReadingManagement;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:optimistic-locking",
+        "books.changelog.directory=target/test/optimistic-locking/changelog",
+        "books.covers.directory=target/test/optimistic-locking/covers",
+        "books.storage.maintenance.enabled=false",
+        "books.live.enabled=false"})
+public class OptimisticLockingIntegrationTest {
+    static final LocalDate PUBLISHED = LocalDate.of(2011, 4, 25);
+    static final LocalDate BEGINNING = LocalDate.of(2021, 1, 1);
+
+    @Autowired
+    AuthorManagement authorManagement;
+    @Autowired
+    BookManagement bookManagement;
+    @Autowired
+    ReadingManagement readingManagement;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    Author author;
+    Book book;
+    Series series;
+    Reading reading;
+
+    static EditAuthorForm authorForm(String lastName, long version) {
+        return new EditAuthorForm("Brandon", lastName, "", "", "US", version);
+    }
+
+    @BeforeEach
+    void setUp() {
+        author = authorManagement.createAuthor("Brandon", "Sanderson", null, null, CountryCode.US);
+        book = bookManagement.createBook("Der Weg der Könige", Set.of(author), PUBLISHED, "3453267176", 896,
+                Locale.GERMAN);
+        series = bookManagement.createSeries("Die Sturmlicht-Chroniken", Set.of(book));
+        reading = readingManagement.createReading(book, BEGINNING, null, 40);
+    }
+
+    @Nested
+    class FormVersionTests {
+
+        @Test
+        void updateWithCurrentVersionSucceeds() {
+            long version = author.getVersion();
+            authorManagement.updateAuthor(author.getId(), authorForm("Sanderson-Bushman", version));
+            Author updated = authorManagement.findAuthorById(author.getId());
+            assertEquals("Sanderson-Bushman", updated.getLastName());
+            assertEquals(version + 1, updated.getVersion());
+        }
+
+        @Test
+        void updateAuthorWithStaleVersionThrows() {
+            long version = author.getVersion();
+            authorManagement.updateAuthor(author.getId(), authorForm("Sanderson-Bushman", version));
+            try {
+                authorManagement.updateAuthor(author.getId(), authorForm("Bushman", version));
+                fail();
+            } catch (ObjectOptimisticLockingFailureException ignored) {
+            }
+            assertEquals("Sanderson-Bushman", authorManagement.findAuthorById(author.getId()).getLastName());
+        }
+
+        @Test
+        void updateBookWithStaleVersionThrows() {
+            EditBookForm form = new EditBookForm("Der Weg der Könige", List.of(author.getId()),
+                    PUBLISHED.toString(), "3453267176", 900, Locale.GERMAN.toString(), null, book.getVersion() + 1);
+            try {
+                bookManagement.updateBook(book.getId(), form, Set.of(author));
+                fail();
+            } catch (ObjectOptimisticLockingFailureException ignored) {
+            }
+            assertEquals(896, bookManagement.findBookById(book.getId()).getPages());
+        }
+
+        @Test
+        void updateSeriesWithStaleVersionThrows() {
+            EditSeriesForm form = new EditSeriesForm("Sturmlicht", null, series.getVersion() + 1);
+            try {
+                bookManagement.updateSeries(series.getId(), form);
+                fail();
+            } catch (ObjectOptimisticLockingFailureException ignored) {
+            }
+            assertEquals("Die Sturmlicht-Chroniken", bookManagement.findSeriesById(series.getId()).getTitle());
+        }
+
+        @Test
+        void updateReadingWithStaleVersionThrows() {
+            EditReadingForm form = new EditReadingForm(book.getId(), BEGINNING.toString(), null, 50,
+                    reading.getVersion() + 1);
+            try {
+                readingManagement.updateReading(reading.getId(), form, book);
+                fail();
+            } catch (ObjectOptimisticLockingFailureException ignored) {
+            }
+            assertEquals(40, readingManagement.findReadingById(reading.getId()).getPagesPerHour());
+        }
+
+        @Test
+        void updateWithoutVersionSkipsCheck() {
+            authorManagement.updateAuthor(author.getId(), "Brandon", "Sanderson-Bushman", null, null,
+                    CountryCode.US);
+            authorManagement.updateAuthor(author.getId(), new EditAuthorForm("Brandon", "Bushman", "", "", "US",
+                    null));
+            assertEquals("Bushman", authorManagement.findAuthorById(author.getId()).getLastName());
+        }
+    }
+
+    @Nested
+    class ConcurrentUpdateTests {
+
+        @Test
+        void concurrentCommitFailsOlderTransaction() {
+            TransactionTemplate outer = new TransactionTemplate(transactionManager);
+            TransactionTemplate inner = new TransactionTemplate(transactionManager);
+            inner.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            try {
+                outer.executeWithoutResult(status -> {
+                    authorManagement.findAuthorById(author.getId());
+                    inner.executeWithoutResult(innerStatus -> authorManagement.updateAuthor(author.getId(),
+                            "Brandon", "Sanderson-Bushman", null, null, CountryCode.US));
+                    authorManagement.updateAuthor(author.getId(), "Brandon", "Bushman", null, null,
+                            CountryCode.US);
+                });
+                fail();
+            } catch (OptimisticLockingFailureException ignored) {
+            }
+            assertEquals("Sanderson-Bushman", authorManagement.findAuthorById(author.getId()).getLastName());
+        }
+    }
+}
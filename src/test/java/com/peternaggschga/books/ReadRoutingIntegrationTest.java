@@ -0,0 +1,78 @@
+package com.peternaggschga.books;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:read-routing",
+        "spring.jpa.open-in-view=false",
+        "books.datasource.read-routing=true",
+        "books.changelog.directory=target/test/read-routing/changelog",
+        "books.covers.directory=target/test/read-routing/covers",
+        "books.storage.maintenance.enabled=false",
+        "books.live.enabled=false"})
+public class ReadRoutingIntegrationTest {
+
+    @Autowired
+    @Qualifier("writeDataSource")
+    HikariDataSource writeDataSource;
+    @Autowired
+    @Qualifier("readDataSource")
+    HikariDataSource readDataSource;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    static int activeConnections(HikariDataSource dataSource) {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        return pool == null ? 0 : pool.getActiveConnections();
+    }
+
+    /**
+     * Runs a statement in a transaction with the given read-only flag and returns the number of connections of the
+     * write and read pool in use while the transaction was running.
+     */
+    int[] activeConnectionsDuring(boolean readOnly) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(readOnly);
+        return transactionTemplate.execute(status -> {
+            jdbcTemplate.queryForObject("SELECT COUNT(*) FROM author", Long.class);
+            return new int[]{activeConnections(writeDataSource), activeConnections(readDataSource)};
+        });
+    }
+
+    @Test
+    void readOnlyTransactionUsesReadPool() {
+        assertArrayEquals(new int[]{0, 1}, activeConnectionsDuring(true));
+    }
+
+    @Test
+    void writingTransactionUsesWritePool() {
+        assertArrayEquals(new int[]{1, 0}, activeConnectionsDuring(false));
+    }
+
+    @Test
+    void readPoolIsReadOnly() {
+        assertTrue(readDataSource.isReadOnly());
+        assertFalse(writeDataSource.isReadOnly());
+        assertNotEquals(writeDataSource.getPoolName(), readDataSource.getPoolName());
+    }
+
+    @Test
+    void connectionsAreReturnedAfterTransaction() {
+        activeConnectionsDuring(true);
+        activeConnectionsDuring(false);
+        assertEquals(0, activeConnections(writeDataSource));
+        assertEquals(0, activeConnections(readDataSource));
+    }
+}
@@ -0,0 +1,279 @@
+package com.peternaggschga.books.account;
+
+import com.neovisionaries.i18n.CountryCode;
+import com.peternaggschga.books.api.CursorPage;
+import com.peternaggschga.books.api.ResourceDefinition;
+import com.peternaggschga.books.author.Author;
+import com.peternaggschga.books.author.AuthorManagement;
+import com.peternaggschga.books.books.BookManagement;
+import com.peternaggschga.books.books.book.Book;
+import com.peternaggschga.books.books.series.Series;
+import com.peternaggschga.books.reading.Reading;
+import com.peternaggschga.books.reading.ReadingManagement;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:tenant-isolation",
+        "books.changelog.directory=target/test/tenant-isolation/changelog",
+        "books.covers.directory=target/test/tenant-isolation/covers",
+        "books.storage.maintenance.enabled=false",
+        "books.live.enabled=false"})
+public class TenantIsolationIntegrationTest {
+    static final LocalDate PUBLISHED = LocalDate.of(2011, 4, 25);
+    static final LocalDate BEGINNING = LocalDate.of(2021, 1, 1);
+    static final AtomicInteger ACCOUNTS = new AtomicInteger();
+    static final String COVER_HASH = "a".repeat(64);
+
+    @Autowired
+    AccountRepository accountRepository;
+    @Autowired
+    AuthorManagement authorManagement;
+    @Autowired
+    BookManagement bookManagement;
+    @Autowired
+    ReadingManagement readingManagement;
+
+    Library own;
+    Library other;
+
+    /**
+     * The entities of a single tenant.
+     */
+    static class Library {
+        Account account;
+        Author author;
+        Book book;
+        Series series;
+        Reading reading;
+    }
+
+    static void signIn(Account account) {
+        AccountDetails details = new AccountDetails(account);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(details, null, details.getAuthorities()));
+    }
+
+    static List<Long> ids(Iterable<? extends TenantOwned> entities) {
+        return StreamSupport.stream(entities.spliterator(), false).map(TenantIsolationIntegrationTest::id)
+                .collect(Collectors.toList());
+    }
+
+    static List<Object> ids(CursorPage page) {
+        return page.getItems().stream().map(item -> item.get(ResourceDefinition.ID)).collect(Collectors.toList());
+    }
+
+    static long id(TenantOwned entity) {
+        if (entity instanceof Author) {
+            return ((Author) entity).getId();
+        }
+        if (entity instanceof Book) {
+            return ((Book) entity).getId();
+        }
+        if (entity instanceof Series) {
+            return ((Series) entity).getId();
+        }
+        return ((Reading) entity).getId();
+    }
+
+    static void assertNotFound(Executable executable) {
+        assertThrows(NoSuchElementException.class, executable);
+    }
+
+    Library createLibrary() {
+        Library library = new Library();
+        library.account = accountRepository.save(new Account("tenant-" + ACCOUNTS.incrementAndGet(),
+                "{noop}password", false));
+        signIn(library.account);
+        try {
+            library.author = authorManagement.createAuthor("Brandon", "Sanderson", null, null, CountryCode.US);
+            library.book = bookManagement.createBook("Der Weg der Könige", Set.of(library.author), PUBLISHED,
+                    "3453267176", 896, Locale.GERMAN);
+            library.series = bookManagement.createSeries("Die Sturmlicht-Chroniken", Set.of(library.book));
+            library.reading = readingManagement.createReading(library.book, BEGINNING, null, 40);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+        return library;
+    }
+
+    @BeforeEach
+    void setUp() {
+        other = createLibrary();
+        own = createLibrary();
+        signIn(own.account);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Nested
+    class FindTests {
+
+        @Test
+        void findByIdOfOtherTenantThrows() {
+            assertNotFound(() -> authorManagement.findAuthorById(other.author.getId()));
+            assertNotFound(() -> bookManagement.findBookById(other.book.getId()));
+            assertNotFound(() -> bookManagement.findSeriesById(other.series.getId()));
+            assertNotFound(() -> readingManagement.findReadingById(other.reading.getId()));
+        }
+
+        @Test
+        void findResourceByIdOfOtherTenantThrows() {
+            assertNotFound(() -> authorManagement.findAuthorResourceById(other.author.getId(),
+                    AuthorManagement.AUTHOR_RESOURCE.parseFields(null)));
+            assertNotFound(() -> bookManagement.findBookResourceById(other.book.getId(),
+                    BookManagement.BOOK_RESOURCE.parseFields(null)));
+            assertNotFound(() -> bookManagement.findSeriesResourceById(other.series.getId(),
+                    BookManagement.SERIES_RESOURCE.parseFields(null)));
+            assertNotFound(() -> readingManagement.findReadingResourceById(other.reading.getId(),
+                    ReadingManagement.READING_RESOURCE.parseFields(null)));
+        }
+
+        @Test
+        void findByIdOfOwnTenantSucceeds() {
+            assertEquals(own.author.getId(), authorManagement.findAuthorById(own.author.getId()).getId());
+            assertEquals(own.book.getId(), bookManagement.findBookById(own.book.getId()).getId());
+            assertEquals(own.series.getId(), bookManagement.findSeriesById(own.series.getId()).getId());
+            assertEquals(own.reading.getId(), readingManagement.findReadingById(own.reading.getId()).getId());
+        }
+    }
+
+    @Nested
+    class UpdateTests {
+
+        @Test
+        void updateOfOtherTenantThrows() {
+            assertNotFound(() -> authorManagement.updateAuthor(other.author.getId(), "Jon", "Smith", null, null,
+                    CountryCode.GB));
+            assertNotFound(() -> bookManagement.updateBook(other.book.getId(), "Der Hobbit", Set.of(own.author),
+                    PUBLISHED, "3453267176", 100, Locale.GERMAN));
+            assertNotFound(() -> bookManagement.updateSeries(other.series.getId(), "Mittelerde", null));
+            assertNotFound(() -> readingManagement.updateReading(other.reading.getId(), own.book, BEGINNING,
+                    null, 50));
+            signIn(other.account);
+            assertEquals("Sanderson", authorManagement.findAuthorById(other.author.getId()).getLastName());
+            assertEquals("Der Weg der Könige", bookManagement.findBookById(other.book.getId()).getTitle());
+            assertEquals(40, readingManagement.findReadingById(other.reading.getId()).getPagesPerHour());
+        }
+    }
+
+    @Nested
+    class DeleteTests {
+
+        @Test
+        void deleteOfOtherTenantThrows() {
+            assertNotFound(() -> readingManagement.deleteReading(other.reading.getId()));
+            assertNotFound(() -> bookManagement.deleteSeries(other.series.getId()));
+            assertNotFound(() -> bookManagement.deleteBook(other.book.getId()));
+            assertNotFound(() -> authorManagement.deleteAuthor(other.author.getId()));
+            assertEquals(1, readingManagement.getReadingCount());
+            signIn(other.account);
+            assertEquals(other.reading.getId(), readingManagement.findReadingById(other.reading.getId()).getId());
+            assertEquals(other.series.getId(), bookManagement.findSeriesById(other.series.getId()).getId());
+            assertEquals(other.book.getId(), bookManagement.findBookById(other.book.getId()).getId());
+            assertEquals(other.author.getId(), authorManagement.findAuthorById(other.author.getId()).getId());
+            assertEquals(1, readingManagement.getReadingCount());
+            assertEquals(1, readingManagement.getSeriesCount());
+        }
+
+        @Test
+        void deleteOfOwnTenantSucceeds() {
+            readingManagement.deleteReading(own.reading.getId());
+            bookManagement.deleteSeries(own.series.getId());
+            assertNotFound(() -> readingManagement.findReadingById(own.reading.getId()));
+            assertNotFound(() -> bookManagement.findSeriesById(own.series.getId()));
+            assertEquals(0, readingManagement.getReadingCount());
+            assertEquals(0, readingManagement.getSeriesCount());
+            signIn(other.account);
+            assertEquals(1, readingManagement.getReadingCount());
+            assertEquals(1, readingManagement.getSeriesCount());
+        }
+    }
+
+    @Nested
+    class CoverTests {
+
+        @Test
+        void coverOfOtherTenantIsNotAccessible() {
+            signIn(other.account);
+            bookManagement.updateCover(other.book.getId(), COVER_HASH);
+            assertTrue(bookManagement.isCoverAccessible(COVER_HASH));
+            signIn(own.account);
+            assertFalse(bookManagement.isCoverAccessible(COVER_HASH));
+        }
+
+        @Test
+        void sharedCoverIsAccessibleToEveryTenantUsingIt() {
+            bookManagement.updateCover(own.book.getId(), COVER_HASH);
+            signIn(other.account);
+            assertFalse(bookManagement.isCoverAccessible(COVER_HASH));
+            bookManagement.updateCover(other.book.getId(), COVER_HASH);
+            assertTrue(bookManagement.isCoverAccessible(COVER_HASH));
+            signIn(own.account);
+            assertTrue(bookManagement.isCoverAccessible(COVER_HASH));
+        }
+
+        @Test
+        void updateCoverOfOtherTenantThrows() {
+            assertNotFound(() -> bookManagement.updateCover(other.book.getId(), COVER_HASH));
+            assertFalse(bookManagement.isCoverAccessible(COVER_HASH));
+        }
+    }
+
+    @Nested
+    class ListTests {
+
+        @Test
+        void listsContainOnlyOwnTenant() {
+            assertEquals(List.of(own.author.getId()), ids(authorManagement.findAllAuthors()));
+            assertEquals(List.of(own.book.getId()), ids(bookManagement.findAllBooks()));
+            assertEquals(List.of(own.series.getId()), ids(bookManagement.findAllSeries()));
+            assertEquals(List.of(own.reading.getId()), ids(readingManagement.findAllReadings()));
+            assertEquals(List.of(own.reading.getId()),
+                    ids(readingManagement.findTimeline(null, null, null, 50).getReadings()));
+            assertEquals(List.of(own.reading.getId()), ids(readingManagement.findReadingsInProgress()));
+        }
+
+        @Test
+        void resourcePagesContainOnlyOwnTenant() {
+            assertEquals(List.of(own.author.getId()), ids(authorManagement
+                    .findAuthorResources(AuthorManagement.AUTHOR_RESOURCE.parseFields(null), 0, 50)));
+            assertEquals(List.of(own.book.getId()), ids(bookManagement
+                    .findBookResources(BookManagement.BOOK_RESOURCE.parseFields(null), 0, 50)));
+            assertEquals(List.of(own.series.getId()), ids(bookManagement
+                    .findSeriesResources(BookManagement.SERIES_RESOURCE.parseFields(null), 0, 50)));
+            assertEquals(List.of(own.reading.getId()), ids(readingManagement
+                    .findReadingResources(ReadingManagement.READING_RESOURCE.parseFields(null), 0, 50)));
+        }
+
+        @Test
+        void countsContainOnlyOwnTenant() {
+            assertEquals(1, readingManagement.getAuthorCount());
+            assertEquals(1, readingManagement.getBookCount());
+            assertEquals(1, readingManagement.getSeriesCount());
+            assertEquals(1, readingManagement.getReadingCount());
+            assertEquals(1, readingManagement.getReadingInProgressCount());
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.peternaggschga.books.account;
+
+import com.peternaggschga.books.BenchmarkSupport;
+import com.peternaggschga.books.author.AuthorManagement;
+import com.peternaggschga.books.books.BookManagement;
+import com.peternaggschga.books.reading.ReadingManagement;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Measures the latency of the list queries of a single library while the number of tenants grows to thousands. All
+ * libraries have the same size, so the latency should stay flat if every query is restricted by the leading tenant
+ * index. For every number of tenants, the queries are run for a sample of tenants spread over all of them.
+ */
+@Tag(BenchmarkSupport.TAG)
+public class TenantScalingBenchmark {
+    static final int[] TENANTS = {10, 100, 1000, 5000};
+    static final int BOOKS = 5;
+    static final int READINGS = 20;
+    static final int SAMPLED_TENANTS = 100;
+    static final int WARMUPS = 2;
+    static final int ITERATIONS = 5;
+
+    @Test
+    void listQueriesPerTenant() throws Exception {
+        try (ConfigurableApplicationContext context = BenchmarkSupport.start("tenant-scaling", List.of())) {
+            AuthorManagement authorManagement = context.getBean(AuthorManagement.class);
+            BookManagement bookManagement = context.getBean(BookManagement.class);
+            ReadingManagement readingManagement = context.getBean(ReadingManagement.class);
+            Set<String> fields = ReadingManagement.READING_RESOURCE.parseFields(null);
+            Map<String, BenchmarkSupport.Task> queries = new LinkedHashMap<>();
+            queries.put("authors", () -> assertEquals(1, authorManagement.findAllAuthors().toList().size()));
+            queries.put("books", () -> assertEquals(BOOKS, bookManagement.findAllBooks().toList().size()));
+            queries.put("reading timeline", () -> assertEquals(READINGS,
+                    readingManagement.findTimeline(null, null, null, 50).getReadings().size()));
+            queries.put("reading resources", () -> assertEquals(READINGS,
+                    readingManagement.findReadingResources(fields, 0, 50).getItems().size()));
+            List<Account> accounts = new ArrayList<>();
+            for (int tenants : TENANTS) {
+                while (accounts.size() < tenants) {
+                    Account account = BenchmarkSupport.createAccount(context, "tenant-" + accounts.size());
+                    BenchmarkSupport.createLibrary(context, account, BOOKS, READINGS);
+                    accounts.add(account);
+                }
+                for (Map.Entry<String, BenchmarkSupport.Task> query : queries.entrySet()) {
+                    List<long[]> durations = new ArrayList<>();
+                    int sampled = Math.min(SAMPLED_TENANTS, tenants);
+                    for (int i = 0; i < sampled; i++) {
+                        BenchmarkSupport.signIn(accounts.get(i * tenants / sampled));
+                        try {
+                            durations.add(BenchmarkSupport.measure(WARMUPS, ITERATIONS, query.getValue()));
+                        } finally {
+                            BenchmarkSupport.signOut();
+                        }
+                    }
+                    long[] all = durations.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+                    BenchmarkSupport.report(tenants + " tenants, " + query.getKey(), all);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.peternaggschga.books.api;
+
+import com.peternaggschga.books.api.BatchResult.Status;
+import com.peternaggschga.books.author.AuthorManagement;
+import com.peternaggschga.books.books.BookManagement;
+import com.peternaggschga.books.books.series.EditSeriesForm;
+import com.peternaggschga.books.books.series.Series;
+import com.peternaggschga.books.reading.ReadingManagement;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class BatchServiceUnitTest {
+    static Validator validator;
+
+    BookManagement bookManagement;
+    AuthorManagement authorManagement;
+    ReadingManagement readingManagement;
+    RecordingTransactionManager transactionManager;
+    BatchService batchService;
+
+    @BeforeAll
+    static void createValidator() {
+        validator = Validation.buildDefaultValidatorFactory().getValidator();
+    }
+
+    static BatchOperation operation(String op, String type, Long id, Map<String, Object> data) {
+        BatchOperation operation = new BatchOperation();
+        operation.setOp(op);
+        operation.setType(type);
+        operation.setId(id);
+        operation.setData(data);
+        return operation;
+    }
+
+    static List<Status> statuses(List<BatchResult> results) {
+        return results.stream().map(BatchResult::getStatus).collect(Collectors.toList());
+    }
+
+    @BeforeEach
+    void setUp() {
+        bookManagement = mock(BookManagement.class);
+        authorManagement = mock(AuthorManagement.class);
+        readingManagement = mock(ReadingManagement.class);
+        transactionManager = new RecordingTransactionManager();
+        batchService = new BatchService(bookManagement, authorManagement, readingManagement, validator,
+                transactionManager);
+    }
+
+    @Nested
+    class ValidationTests {
+
+        @Test
+        void executeAssertsTooManyOperations() {
+            List<BatchOperation> operations = Collections.nCopies(BatchService.MAX_OPERATIONS + 1,
+                    operation("delete", "book", 1L, null));
+            try {
+                batchService.execute(operations);
+                fail();
+            } catch (IllegalArgumentException ignored) {
+            }
+            assertEquals(0, transactionManager.begun);
+        }
+
+        @Test
+        void invalidOperationsSkipAllOthers() {
+            List<BatchResult> results = batchService.execute(List.of(
+                    operation("delete", "reading", 1L, null),
+                    operation("delete", "author", 2L, null),
+                    operation("update", "book", null, Map.of()),
+                    operation("create", "series", null, Map.of("title", " ")),
+                    operation("create", "reading", null, Map.of("book", "one"))));
+            assertEquals(List.of(Status.SKIPPED, Status.INVALID, Status.INVALID, Status.INVALID, Status.INVALID),
+                    statuses(results));
+            assertNull(results.get(0).getError());
+            assertEquals("Unknown operation delete of type author", results.get(1).getError());
+            assertEquals(2L, results.get(1).getId());
+            assertEquals("Id must not be null for operation update", results.get(2).getError());
+            assertTrue(results.get(3).getError().startsWith("title "));
+            assertEquals("book must be a number", results.get(4).getError());
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(i, results.get(i).getIndex());
+            }
+            assertEquals(0, transactionManager.begun);
+            verifyNoInteractions(bookManagement, authorManagement, readingManagement);
+        }
+
+        @Test
+        void invalidBookFormListsAllViolations() {
+            List<BatchResult> results = batchService.execute(List.of(operation("create", "book", null,
+                    Map.of("title", "Der Weg der Könige", "isbn", "123", "pages", 0))));
+            assertEquals(List.of(Status.INVALID), statuses(results));
+            List<String> properties = new ArrayList<>();
+            for (String violation : results.get(0).getError().split(", ")) {
+                properties.add(violation.substring(0, violation.indexOf(' ')));
+            }
+            assertEquals(List.of("authors", "isbn", "languageString", "pages", "publishedString"),
+                    properties.stream().distinct().collect(Collectors.toList()));
+        }
+    }
+
+    @Nested
+    class ExecutionTests {
+
+        @Test
+        void validOperationsRunInSingleTransaction() {
+            Series series = mock(Series.class);
+            when(series.getId()).thenReturn(7L);
+            when(bookManagement.createSeries(any(EditSeriesForm.class))).thenReturn(series);
+            List<BatchResult> results = batchService.execute(List.of(
+                    operation("delete", "reading", 1L, null),
+                    operation("create", "series", null, Map.of("title", "Die Sturmlicht-Chroniken")),
+                    operation("delete", "book", 2L, null)));
+            assertEquals(List.of(Status.OK, Status.OK, Status.OK), statuses(results));
+            assertEquals(List.of(1L, 7L, 2L), results.stream().map(BatchResult::getId)
+                    .collect(Collectors.toList()));
+            assertEquals(1, transactionManager.begun);
+            assertEquals(1, transactionManager.committed);
+            assertEquals(0, transactionManager.rolledBack);
+            verify(readingManagement).deleteReading(1L);
+            verify(bookManagement).deleteBook(2L);
+        }
+
+        @Test
+        void failedOperationRollsBackBatch() {
+            doThrow(new IllegalArgumentException("Book not found")).when(bookManagement).deleteBook(2L);
+            List<BatchResult> results = batchService.execute(List.of(
+                    operation("delete", "reading", 1L, null),
+                    operation("delete", "reading", 3L, null),
+                    operation("delete", "book", 2L, null),
+                    operation("delete", "series", 4L, null)));
+            assertEquals(List.of(Status.ROLLED_BACK, Status.ROLLED_BACK, Status.FAILED, Status.SKIPPED),
+                    statuses(results));
+            assertEquals(1L, results.get(0).getId());
+            assertEquals(3L, results.get(1).getId());
+            assertEquals(2L, results.get(2).getId());
+            assertEquals("Book not found", results.get(2).getError());
+            assertNull(results.get(3).getId());
+            assertEquals(1, transactionManager.begun);
+            assertEquals(0, transactionManager.committed);
+            assertEquals(1, transactionManager.rolledBack);
+            verify(bookManagement, never()).deleteSeries(anyLong());
+        }
+
+        @Test
+        void failedCommitFailsAllOperations() {
+            transactionManager.failCommit = true;
+            List<BatchResult> results = batchService.execute(List.of(
+                    operation("delete", "reading", 1L, null),
+                    operation("delete", "book", 2L, null)));
+            assertEquals(List.of(Status.FAILED, Status.FAILED), statuses(results));
+            assertEquals(List.of(1L, 2L), results.stream().map(BatchResult::getId).collect(Collectors.toList()));
+            assertNotNull(results.get(0).getError());
+            assertEquals(1, transactionManager.begun);
+            assertEquals(0, transactionManager.committed);
+        }
+
+        @Test
+        void emptyBatchSucceeds() {
+            assertTrue(batchService.execute(List.of()).isEmpty());
+        }
+    }
+
+    @Nested
+    class ControllerTests {
+        BatchService service;
+        BatchApiController controller;
+
+        @BeforeEach
+        void setUp() {
+            service = mock(BatchService.class);
+            controller = new BatchApiController(service);
+        }
+
+        @Test
+        void executeBatchReturnsOkIfAllSucceeded() {
+            List<BatchResult> results = List.of(new BatchResult(0, Status.OK, 1L, null),
+                    new BatchResult(1, Status.OK, 2L, null));
+            List<BatchOperation> operations = List.of(operation("delete", "book", 1L, null),
+                    operation("delete", "book", 2L, null));
+            when(service.execute(operations)).thenReturn(results);
+            ResponseEntity<List<BatchResult>> response = controller.executeBatch(operations);
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+            assertSame(results, response.getBody());
+        }
+
+        @Test
+        void executeBatchReturnsUnprocessableEntityIfAnyFailed() {
+            List<BatchOperation> operations = List.of(operation("delete", "book", 1L, null),
+                    operation("delete", "book", 2L, null));
+            for (Status status : List.of(Status.INVALID, Status.FAILED, Status.ROLLED_BACK, Status.SKIPPED)) {
+                List<BatchResult> results = List.of(new BatchResult(0, Status.OK, 1L, null),
+                        new BatchResult(1, status, 2L, "error"));
+                when(service.execute(operations)).thenReturn(results);
+                ResponseEntity<List<BatchResult>> response = controller.executeBatch(operations);
+                assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, response.getStatusCode(), status.name());
+                assertSame(results, response.getBody());
+            }
+        }
+    }
+
+    /**
+     * Counts the transactions begun, committed and rolled back without any resources.
+     */
+    static class RecordingTransactionManager extends AbstractPlatformTransactionManager {
+        int begun;
+        int committed;
+        int rolledBack;
+        boolean failCommit;
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+            begun++;
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+            if (failCommit) {
+                throw new TransactionSystemException("Commit failed");
+            }
+            committed++;
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+            rolledBack++;
+        }
+    }
+}
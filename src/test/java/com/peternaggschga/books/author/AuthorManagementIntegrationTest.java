@@ -0,0 +1,138 @@
+package com.peternaggschga.books.author;
+
+import com.neovisionaries.i18n.CountryCode;
+import com.peternaggschga.books.books.BookManagement;
+import com.peternaggschga.books.books.book.Book;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:author-management",
+        "books.datasource.read-routing=false",
+        "books.changelog.directory=target/test/author-management/changelog",
+        "books.covers.directory=target/test/author-management/covers",
+        "books.storage.maintenance.enabled=false",
+        "books.live.enabled=false"})
+public class AuthorManagementIntegrationTest {
+    static final LocalDate PUBLISHED = LocalDate.of(2011, 4, 25);
+
+    @Autowired
+    AuthorManagement authorManagement;
+    @Autowired
+    BookManagement bookManagement;
+    @Autowired
+    AuthorRepository authorRepository;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    Author survivor;
+    Author duplicate;
+    Author other;
+    Book both;
+    Book duplicateOnly;
+    Book duplicateAndOther;
+    Book survivorOnly;
+
+    @BeforeEach
+    void setUp() {
+        survivor = authorManagement.createAuthor("Brandon", "Sanderson", null, null, CountryCode.US);
+        duplicate = authorManagement.createAuthor("Sanderson", "Brandon", null, null, CountryCode.US);
+        other = authorManagement.createAuthor("Janci", "Patterson", null, null, CountryCode.US);
+        both = createBook("Der Weg der Könige", survivor, duplicate);
+        duplicateOnly = createBook("Pfad der Winde", duplicate);
+        duplicateAndOther = createBook("Das Spiel der Zwerge", duplicate, other);
+        survivorOnly = createBook("Elantris", survivor);
+    }
+
+    Book createBook(String title, Author... authors) {
+        return bookManagement.createBook(title, Set.of(authors), PUBLISHED, "3453267176", 896, Locale.GERMAN);
+    }
+
+    List<Long> authorIdsOf(Book book) {
+        return jdbcTemplate.queryForList("SELECT authors_id FROM book_authors WHERE book_id = ? ORDER BY authors_id",
+                Long.class, book.getId());
+    }
+
+    long versionOf(Book book) {
+        return bookManagement.findBookById(book.getId()).getVersion();
+    }
+
+    @Test
+    void mergeAuthorsAssertsDifferentIds() {
+        try {
+            authorManagement.mergeAuthors(survivor.getId(), survivor.getId());
+            fail();
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    void mergeAuthorsReassignsBooksWithoutCollisions() {
+        long bothVersion = versionOf(both);
+        long duplicateOnlyVersion = versionOf(duplicateOnly);
+        long duplicateAndOtherVersion = versionOf(duplicateAndOther);
+        long survivorOnlyVersion = versionOf(survivorOnly);
+
+        Author merged = authorManagement.mergeAuthors(survivor.getId(), duplicate.getId());
+
+        assertEquals(survivor.getId(), merged.getId());
+        assertEquals(List.of(survivor.getId()), authorIdsOf(both));
+        assertEquals(List.of(survivor.getId()), authorIdsOf(duplicateOnly));
+        assertEquals(List.of(survivor.getId(), other.getId()), authorIdsOf(duplicateAndOther));
+        assertEquals(List.of(survivor.getId()), authorIdsOf(survivorOnly));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM book_authors WHERE authors_id = ?",
+                Long.class, duplicate.getId()));
+
+        assertEquals(bothVersion + 1, versionOf(both));
+        assertEquals(duplicateOnlyVersion + 1, versionOf(duplicateOnly));
+        assertEquals(duplicateAndOtherVersion + 1, versionOf(duplicateAndOther));
+        assertEquals(survivorOnlyVersion, versionOf(survivorOnly));
+    }
+
+    @Test
+    void deleteAuthorFindsBooksCreatedInSameTransaction() {
+        long[] ids = new TransactionTemplate(transactionManager).execute(status -> {
+            Author author = authorManagement.createAuthor("Patrick", "Rothfuss", null, null, CountryCode.US);
+            Book book = createBook("Der Name des Windes", author);
+            long seriesId = bookManagement.createSeries("Die Königsmörder-Chronik", List.of(book)).getId();
+            authorManagement.deleteAuthor(author);
+            return new long[]{book.getId(), seriesId};
+        });
+        try {
+            bookManagement.findBookById(ids[0]);
+            fail();
+        } catch (NoSuchElementException ignored) {
+        }
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM series_books WHERE series_id = ?",
+                Long.class, ids[1]));
+        assertEquals(List.of(), bookManagement.findSeriesIdsByBook(ids[0]));
+    }
+
+    @Test
+    void mergeAuthorsDeletesDuplicate() {
+        authorManagement.mergeAuthors(survivor.getId(), duplicate.getId());
+        assertTrue(authorRepository.findById(duplicate.getId()).isEmpty());
+        try {
+            authorManagement.findAuthorById(duplicate.getId());
+            fail();
+        } catch (NoSuchElementException ignored) {
+        }
+        assertTrue(authorRepository.findById(survivor.getId()).isPresent());
+        assertTrue(authorRepository.findById(other.getId()).isPresent());
+    }
+}
@@ -0,0 +1,64 @@
+package com.peternaggschga.books.covers;
+
+import com.peternaggschga.books.books.BookManagement;
+import org.apache.catalina.Globals;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+public class CoverControllerUnitTest {
+    static final String HASH = "a".repeat(64);
+
+    CoverStore coverStore;
+    BookManagement bookManagement;
+    CoverController controller;
+    MockHttpServletRequest request;
+    MockHttpServletResponse response;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        coverStore = mock(CoverStore.class);
+        bookManagement = mock(BookManagement.class);
+        CoverFile file = new CoverFile(Path.of("cover.png"), "image/png", 0, "\"" + HASH + "\"");
+        when(coverStore.findCover(HASH)).thenReturn(Optional.of(file));
+        when(coverStore.findThumbnail(HASH)).thenReturn(Optional.of(file));
+        controller = new CoverController(coverStore, bookManagement);
+        request = new MockHttpServletRequest();
+        response = new MockHttpServletResponse();
+    }
+
+    @Test
+    void inaccessibleCoverIsNotFound() throws IOException {
+        when(bookManagement.isCoverAccessible(HASH)).thenReturn(false);
+        controller.showCover(HASH, request, response);
+        assertEquals(404, response.getStatus());
+        verifyNoInteractions(coverStore);
+    }
+
+    @Test
+    void inaccessibleThumbnailIsNotFound() throws IOException {
+        when(bookManagement.isCoverAccessible(HASH)).thenReturn(false);
+        controller.showThumbnail(HASH, request, response);
+        assertEquals(404, response.getStatus());
+        verifyNoInteractions(coverStore);
+    }
+
+    @Test
+    void accessibleCoverIsSent() throws IOException {
+        when(bookManagement.isCoverAccessible(HASH)).thenReturn(true);
+        request.setAttribute(Globals.SENDFILE_SUPPORTED_ATTR, true);
+        controller.showCover(HASH, request, response);
+        assertEquals(200, response.getStatus());
+        assertEquals("image/png", response.getContentType());
+        assertEquals(Path.of("cover.png").toAbsolutePath().toString(),
+                request.getAttribute(Globals.SENDFILE_FILENAME_ATTR));
+    }
+}
@@ -0,0 +1,224 @@
+package com.peternaggschga.books.dedup;
+
+import com.peternaggschga.books.author.AuthorRepository;
+import com.peternaggschga.books.books.book.BookRepository;
+import com.peternaggschga.books.events.EntityChangedEvent.EntityType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class DuplicateDetectorUnitTest {
+    static final double THRESHOLD = 0.75;
+    static final int MAX_BLOCK_SIZE = 100;
+    static final long TENANT = 0;
+    static final long OTHER_TENANT = 5;
+    static final double DELTA = 1e-9;
+
+    AuthorRepository authorRepository;
+    BookRepository bookRepository;
+    PlatformTransactionManager transactionManager;
+    AsyncTaskExecutor taskExecutor;
+
+    @BeforeEach
+    void setUp() {
+        authorRepository = mock(AuthorRepository.class);
+        bookRepository = mock(BookRepository.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        taskExecutor = mock(AsyncTaskExecutor.class);
+        when(authorRepository.findAllNames()).thenReturn(List.of(
+                new Object[]{1L, "John", "Smith", TENANT},
+                new Object[]{2L, "Smith", "John", TENANT},
+                new Object[]{3L, "Jon", "Smith", TENANT},
+                new Object[]{4L, "John", "Smith", OTHER_TENANT}));
+        when(bookRepository.findAllTitles()).thenReturn(List.of(
+                new Object[]{10L, "Der Weg der Könige", "3-453-26717-6", TENANT},
+                new Object[]{11L, "The Way of Kings", "ISBN 978-3-453-26717-6", TENANT},
+                new Object[]{13L, "Der Hobbit", null, TENANT},
+                new Object[]{14L, "Der Hobbit", null, TENANT},
+                new Object[]{15L, "Der Hobbit", null, TENANT},
+                new Object[]{16L, "Der Hobbit", null, OTHER_TENANT}));
+        when(bookRepository.findAllAuthorIds()).thenReturn(List.of(
+                new Object[]{10L, 1L}, new Object[]{11L, 3L}, new Object[]{13L, 1L}, new Object[]{14L, 3L},
+                new Object[]{15L, 1L}, new Object[]{16L, 4L}));
+    }
+
+    DuplicateDetector detector(double threshold, int maxBlockSize) {
+        return new DuplicateDetector(authorRepository, bookRepository, transactionManager, taskExecutor, threshold,
+                maxBlockSize);
+    }
+
+    static List<String> pairs(DuplicateReport report) {
+        return report.getCandidates().stream()
+                .map(candidate -> candidate.getEntityType() + ":" + candidate.getFirstId() + "-"
+                        + candidate.getSecondId())
+                .collect(Collectors.toList());
+    }
+
+    @Nested
+    class ConstructorTests {
+
+        @Test
+        void constructorAssertsThresholdRange() {
+            try {
+                detector(-0.1, MAX_BLOCK_SIZE);
+                fail();
+            } catch (IllegalArgumentException ignored) {
+            }
+            try {
+                detector(1.1, MAX_BLOCK_SIZE);
+                fail();
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+
+        @Test
+        void constructorAssertsMaxBlockSize() {
+            try {
+                detector(THRESHOLD, 1);
+                fail();
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+    }
+
+    @Nested
+    class IsbnTests {
+
+        @Test
+        void normalizeIsbnConvertsIsbn10() {
+            assertEquals("9783453267176", DuplicateDetector.normalizeIsbn("3453267176"));
+            assertEquals("9783453267176", DuplicateDetector.normalizeIsbn("3-453-26717-6"));
+            assertEquals("9780306406157", DuplicateDetector.normalizeIsbn("0-306-40615-2"));
+        }
+
+        @Test
+        void normalizeIsbnConvertsIsbn10WithCheckCharacterX() {
+            assertEquals("9780804429573", DuplicateDetector.normalizeIsbn("080442957X"));
+            assertEquals("9780804429573", DuplicateDetector.normalizeIsbn("0-8044-2957-x"));
+        }
+
+        @Test
+        void normalizeIsbnRemovesPrefixAndSeparators() {
+            assertEquals("9783453267176", DuplicateDetector.normalizeIsbn("978-3-453-26717-6"));
+            assertEquals("9783453267176", DuplicateDetector.normalizeIsbn("ISBN 978 3 453 26717 6"));
+            assertEquals("9783453267176", DuplicateDetector.normalizeIsbn(" ISBN-13: 978-3-453-26717-6 "));
+            assertEquals("9783453267176", DuplicateDetector.normalizeIsbn("isbn-10: 3-453-26717-6"));
+        }
+
+        @Test
+        void normalizeIsbnOfNullOrBlankIsEmpty() {
+            assertEquals("", DuplicateDetector.normalizeIsbn(null));
+            assertEquals("", DuplicateDetector.normalizeIsbn(" "));
+        }
+    }
+
+    @Nested
+    class ScanTests {
+
+        @Test
+        void scanFindsDuplicatesOfSameTenant() {
+            DuplicateReport report = detector(THRESHOLD, MAX_BLOCK_SIZE).scan();
+            assertEquals(List.of("AUTHOR:1-2", "BOOK:10-11", "BOOK:13-15"), pairs(report));
+            report.getCandidates().forEach(candidate -> {
+                assertEquals(1, candidate.getScore(), DELTA);
+                assertEquals(TENANT, candidate.getTenantId());
+            });
+            assertEquals(10, report.getEntityCount());
+            assertEquals("John Smith", report.getCandidates().get(0).getFirstLabel());
+            assertEquals("Smith John", report.getCandidates().get(0).getSecondLabel());
+            assertEquals("Der Weg der Könige (3-453-26717-6)", report.getCandidates().get(1).getFirstLabel());
+            assertEquals("Der Hobbit", report.getCandidates().get(2).getFirstLabel());
+        }
+
+        @Test
+        void scanComparesEveryPairOnce() {
+            // authors 1-2, 1-3 and 2-3 share several blocks, books 10-11 share their isbn and books 13, 14 and 15
+            // their title
+            assertEquals(3 + 1 + 3, detector(THRESHOLD, MAX_BLOCK_SIZE).scan().getComparisonCount());
+        }
+
+        @Test
+        void scanSkipsLargeBlocks() {
+            // the block "smith" of tenant 0 and the block "hobbit" of tenant 0 contain three entities each
+            DuplicateReport report = detector(THRESHOLD, 2).scan();
+            assertEquals(List.of("AUTHOR:1-2", "BOOK:10-11"), pairs(report));
+            assertEquals(2, report.getComparisonCount());
+        }
+
+        @Test
+        void scanReportsPairsAtThreshold() {
+            // equal titles of books without shared authors score exactly the title weight
+            DuplicateReport report = detector(0.7, MAX_BLOCK_SIZE).scan();
+            assertEquals(List.of("AUTHOR:1-2", "BOOK:10-11", "BOOK:13-15", "BOOK:13-14", "BOOK:14-15"),
+                    pairs(report));
+            assertEquals(0.7, report.getCandidates().get(3).getScore(), DELTA);
+        }
+
+        @Test
+        void scanReportsSimilarNamesBelowThresholdOfOne() {
+            DuplicateReport report = detector(0.6, MAX_BLOCK_SIZE).scan();
+            List<String> pairs = pairs(report);
+            assertTrue(pairs.contains("AUTHOR:1-3"));
+            assertTrue(pairs.contains("AUTHOR:2-3"));
+            assertTrue(report.getCandidates().stream().allMatch(candidate -> candidate.getTenantId() == TENANT));
+        }
+
+        @Test
+        void scanWithThresholdOneReportsOnlyEqualPairs() {
+            assertEquals(List.of("AUTHOR:1-2", "BOOK:10-11", "BOOK:13-15"),
+                    pairs(detector(1, MAX_BLOCK_SIZE).scan()));
+        }
+    }
+
+    @Nested
+    class ReportTests {
+
+        @Test
+        void startScanReplacesReport() {
+            doAnswer(invocation -> {
+                ((Runnable) invocation.getArgument(0)).run();
+                return null;
+            }).when(taskExecutor).execute(any(Runnable.class));
+            DuplicateDetector detector = detector(THRESHOLD, MAX_BLOCK_SIZE);
+            assertNull(detector.getReport());
+            assertTrue(detector.startScan());
+            assertFalse(detector.isRunning());
+            assertEquals(3, detector.getReport().getCandidates().size());
+        }
+
+        @Test
+        void startScanIsRejectedWhileRunning() {
+            DuplicateDetector detector = detector(THRESHOLD, MAX_BLOCK_SIZE);
+            assertTrue(detector.startScan());
+            assertTrue(detector.isRunning());
+            assertFalse(detector.startScan());
+            verify(taskExecutor, times(1)).execute(any(Runnable.class));
+        }
+
+        @Test
+        void removeFromReportRemovesCandidatesOfEntity() {
+            doAnswer(invocation -> {
+                ((Runnable) invocation.getArgument(0)).run();
+                return null;
+            }).when(taskExecutor).execute(any(Runnable.class));
+            DuplicateDetector detector = detector(THRESHOLD, MAX_BLOCK_SIZE);
+            detector.removeFromReport(EntityType.BOOK, 15);
+            assertNull(detector.getReport());
+            detector.startScan();
+            detector.removeFromReport(EntityType.BOOK, 15);
+            detector.removeFromReport(EntityType.BOOK, 1);
+            assertEquals(List.of("AUTHOR:1-2", "BOOK:10-11"), pairs(detector.getReport()));
+        }
+    }
+}
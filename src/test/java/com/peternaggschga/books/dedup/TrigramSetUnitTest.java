@@ -0,0 +1,90 @@
+package com.peternaggschga.books.dedup;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TrigramSetUnitTest {
+    static final double DELTA = 1e-9;
+
+    @Nested
+    class OfTests {
+
+        @Test
+        void ofAssertsNull() {
+            try {
+                TrigramSet.of(null);
+                fail();
+            } catch (NullPointerException ignored) {
+            }
+        }
+
+        @Test
+        void ofBlankTextIsEmpty() {
+            assertEquals(0, TrigramSet.of("").size());
+            assertEquals(0, TrigramSet.of(" \t ").size());
+        }
+
+        @Test
+        void ofPadsWords() {
+            // "  abc " contains "  a", " ab", "abc" and "bc "
+            assertEquals(4, TrigramSet.of("abc").size());
+            // "  a " contains "  a" and " a "
+            assertEquals(2, TrigramSet.of("a").size());
+        }
+
+        @Test
+        void ofRemovesDuplicateTrigrams() {
+            // "  aaaa " contains "  a", " aa", "aaa" twice and "aa "
+            assertEquals(4, TrigramSet.of("aaaa").size());
+            // "  abc  abc " only adds "c  " to the trigrams of "abc"
+            assertEquals(5, TrigramSet.of("abc abc").size());
+        }
+    }
+
+    @Nested
+    class SimilarityTests {
+
+        @Test
+        void similarityOfEqualTextsIsOne() {
+            TrigramSet trigrams = TrigramSet.of("Der Weg der Könige");
+            assertEquals(1, trigrams.similarity(TrigramSet.of("Der Weg der Könige")), DELTA);
+        }
+
+        @Test
+        void similarityIgnoresCaseDiacriticsAndWhitespace() {
+            assertEquals(1, TrigramSet.of("Der Weg der Könige").similarity(TrigramSet.of(" der  WEG der konige ")),
+                    DELTA);
+        }
+
+        @Test
+        void similarityOfEmptySets() {
+            assertEquals(1, TrigramSet.of("").similarity(TrigramSet.of(" ")), DELTA);
+            assertEquals(0, TrigramSet.of("").similarity(TrigramSet.of("abc")), DELTA);
+            assertEquals(0, TrigramSet.of("abc").similarity(TrigramSet.of("")), DELTA);
+        }
+
+        @Test
+        void similarityIsJaccardIndex() {
+            // shared "  a" and " ab" of six distinct trigrams
+            assertEquals(2.0 / 6, TrigramSet.of("abc").similarity(TrigramSet.of("abd")), DELTA);
+            assertEquals(0, TrigramSet.of("abc").similarity(TrigramSet.of("xyz")), DELTA);
+        }
+
+        @Test
+        void similarityIsSymmetric() {
+            TrigramSet first = TrigramSet.of("Der Weg der Könige");
+            TrigramSet second = TrigramSet.of("Der Weg des Königs");
+            assertEquals(first.similarity(second), second.similarity(first), DELTA);
+            assertTrue(first.similarity(second) > 0.5);
+            assertTrue(first.similarity(second) < 1);
+        }
+
+        @Test
+        void similarityDependsOnWordOrder() {
+            // only "b  " and "d  " differ of eight distinct trigrams
+            assertEquals(6.0 / 8, TrigramSet.of("ab cd").similarity(TrigramSet.of("cd ab")), DELTA);
+        }
+    }
+}
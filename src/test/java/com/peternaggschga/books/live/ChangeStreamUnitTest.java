@@ -0,0 +1,331 @@
+package com.peternaggschga.books.live;
+
+import com.peternaggschga.books.account.Account;
+import com.peternaggschga.books.account.AccountDetails;
+import com.peternaggschga.books.events.EntityChangedEvent;
+import com.peternaggschga.books.events.EntityChangedEvent.ChangeType;
+import com.peternaggschga.books.events.EntityChangedEvent.EntityType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChangeStreamUnitTest {
+    static final long NEVER = TimeUnit.HOURS.toMillis(1);
+    static final int MAX_PENDING = 3;
+    static final long SEND_TIMEOUT = 5;
+
+    RecordingChangeStream changeStream;
+
+    static EntityChangedEvent event(EntityType entityType, long id, ChangeType changeType) {
+        return new EntityChangedEvent(entityType, id, changeType);
+    }
+
+    /**
+     * Flushes the given {@link ChangeStream} until the given connection sent an event. A single flush may skip the
+     * connection, as its previous send might not have finished yet.
+     */
+    static SentEvent receive(ChangeStream changeStream, RecordingEmitter emitter) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SEND_TIMEOUT);
+        while (System.nanoTime() < deadline) {
+            changeStream.flush();
+            SentEvent event = emitter.sent.poll(10, TimeUnit.MILLISECONDS);
+            if (event != null) {
+                return event;
+            }
+        }
+        return fail("No event sent");
+    }
+
+    @BeforeEach
+    void setUp() {
+        changeStream = new RecordingChangeStream();
+        AccountDetails details = new AccountDetails(new Account("reader", "{noop}reader", true));
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(details, null, details.getAuthorities()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        changeStream.stop();
+    }
+
+    @Nested
+    class ConstructorTests {
+
+        @Test
+        void constructorAssertsPositiveLimits() {
+            try {
+                new ChangeStream(NEVER, NEVER, NEVER, 0, 10, 1);
+                fail();
+            } catch (IllegalArgumentException ignored) {
+            }
+            try {
+                new ChangeStream(0, NEVER, NEVER, MAX_PENDING, 10, 1);
+                fail();
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+    }
+
+    @Nested
+    class CoalescingTests {
+
+        @Test
+        void changesOfSameEntityAreCoalesced() throws InterruptedException {
+            RecordingEmitter emitter = changeStream.subscribeRecording(null);
+            changeStream.onEntityChanged(event(EntityType.BOOK, 1, ChangeType.UPDATED));
+            changeStream.onEntityChanged(event(EntityType.BOOK, 1, ChangeType.UPDATED));
+            changeStream.onEntityChanged(event(EntityType.BOOK, 2, ChangeType.CREATED));
+            changeStream.onEntityChanged(event(EntityType.BOOK, 2, ChangeType.UPDATED));
+            changeStream.onEntityChanged(event(EntityType.BOOK, 3, ChangeType.CREATED));
+            changeStream.onEntityChanged(event(EntityType.BOOK, 3, ChangeType.DELETED));
+            changeStream.onEntityChanged(event(EntityType.AUTHOR, 1, ChangeType.DELETED));
+            SentEvent sent = receive(changeStream, emitter);
+            assertEquals(ChangeStream.CHANGES_EVENT, sent.name);
+            assertEquals(changeStream.eventId(7), sent.id);
+            assertEquals(List.of("BOOK#1 UPDATED", "BOOK#2 CREATED", "AUTHOR#1 DELETED"), sent.changes);
+        }
+
+        @Test
+        void updateMovesEntityToEnd() throws InterruptedException {
+            RecordingEmitter emitter = changeStream.subscribeRecording(null);
+            changeStream.onEntityChanged(event(EntityType.BOOK, 1, ChangeType.UPDATED));
+            changeStream.onEntityChanged(event(EntityType.BOOK, 2, ChangeType.UPDATED));
+            changeStream.onEntityChanged(event(EntityType.BOOK, 1, ChangeType.DELETED));
+            assertEquals(List.of("BOOK#2 UPDATED", "BOOK#1 DELETED"), receive(changeStream, emitter).changes);
+        }
+
+        @Test
+        void flushWithoutChangesSendsNothing() throws InterruptedException {
+            RecordingEmitter emitter = changeStream.subscribeRecording(null);
+            changeStream.flush();
+            assertTrue(emitter.isEmpty());
+        }
+
+        @Test
+        void flushAfterStopRejectsSendsQuietly() throws InterruptedException {
+            RecordingEmitter emitter = changeStream.subscribeRecording(null);
+            changeStream.stop();
+            changeStream.onEntityChanged(event(EntityType.BOOK, 1, ChangeType.UPDATED));
+            changeStream.flush();
+            changeStream.flush();
+            assertTrue(emitter.isEmpty());
+        }
+
+        @Test
+        void changesWithoutTenantAreNotSent() throws InterruptedException {
+            RecordingEmitter emitter = changeStream.subscribeRecording(null);
+            SecurityContextHolder.clearContext();
+            changeStream.onEntityChanged(event(EntityType.BOOK, 1, ChangeType.UPDATED));
+            changeStream.flush();
+            assertTrue(emitter.isEmpty());
+        }
+    }
+
+    @Nested
+    class OverflowTests {
+
+        @Test
+        void tooManyChangesSendReload() throws InterruptedException {
+            RecordingEmitter emitter = changeStream.subscribeRecording(null);
+            for (long id = 1; id <= MAX_PENDING + 1; id++) {
+                changeStream.onEntityChanged(event(EntityType.BOOK, id, ChangeType.UPDATED));
+            }
+            changeStream.onEntityChanged(event(EntityType.BOOK, 1, ChangeType.UPDATED));
+            SentEvent sent = receive(changeStream, emitter);
+            assertEquals(ChangeStream.RELOAD_EVENT, sent.name);
+            assertEquals(changeStream.eventId(MAX_PENDING + 2), sent.id);
+            assertTrue(sent.changes.isEmpty());
+        }
+
+        @Test
+        void changesAfterReloadAreSentAgain() throws InterruptedException {
+            RecordingEmitter emitter = changeStream.subscribeRecording(null);
+            for (long id = 1; id <= MAX_PENDING + 1; id++) {
+                changeStream.onEntityChanged(event(EntityType.BOOK, id, ChangeType.UPDATED));
+            }
+            assertEquals(ChangeStream.RELOAD_EVENT, receive(changeStream, emitter).name);
+            changeStream.onEntityChanged(event(EntityType.SERIES, 1, ChangeType.CREATED));
+            SentEvent sent = receive(changeStream, emitter);
+            assertEquals(ChangeStream.CHANGES_EVENT, sent.name);
+            assertEquals(changeStream.eventId(MAX_PENDING + 2), sent.id);
+            assertEquals(List.of("SERIES#1 CREATED"), sent.changes);
+        }
+
+        @Test
+        void overflowOfOneConnectionDoesNotAffectOthers() throws InterruptedException {
+            RecordingEmitter full = changeStream.subscribeRecording(null);
+            for (long id = 1; id <= MAX_PENDING; id++) {
+                changeStream.onEntityChanged(event(EntityType.BOOK, id, ChangeType.UPDATED));
+            }
+            RecordingEmitter fresh = changeStream.subscribeRecording(changeStream.eventId(MAX_PENDING));
+            changeStream.onEntityChanged(event(EntityType.BOOK, MAX_PENDING + 1, ChangeType.UPDATED));
+            assertEquals(ChangeStream.RELOAD_EVENT, receive(changeStream, full).name);
+            assertEquals(List.of("BOOK#" + (MAX_PENDING + 1) + " UPDATED"), fresh.next().changes);
+        }
+    }
+
+    @Nested
+    class ReconnectTests {
+
+        @Test
+        void reconnectWithCurrentIdReceivesChanges() throws InterruptedException {
+            changeStream.subscribeRecording(null);
+            changeStream.onEntityChanged(event(EntityType.BOOK, 1, ChangeType.UPDATED));
+            RecordingEmitter emitter = changeStream.subscribeRecording(changeStream.eventId(1));
+            changeStream.flush();
+            assertTrue(emitter.isEmpty());
+            changeStream.onEntityChanged(event(EntityType.BOOK, 2, ChangeType.UPDATED));
+            assertEquals(List.of("BOOK#2 UPDATED"), receive(changeStream, emitter).changes);
+        }
+
+        @Test
+        void reconnectWithOlderIdSendsReload() throws InterruptedException {
+            changeStream.subscribeRecording(null);
+            changeStream.onEntityChanged(event(EntityType.BOOK, 1, ChangeType.UPDATED));
+            changeStream.onEntityChanged(event(EntityType.BOOK, 2, ChangeType.UPDATED));
+            RecordingEmitter emitter = changeStream.subscribeRecording(changeStream.eventId(1));
+            SentEvent sent = receive(changeStream, emitter);
+            assertEquals(ChangeStream.RELOAD_EVENT, sent.name);
+            assertEquals(changeStream.eventId(2), sent.id);
+        }
+
+        @Test
+        void reconnectWithIdOfOtherEpochSendsReload() throws InterruptedException {
+            // a restarted instance counts from 0 again, so equal sequence numbers do not prove that nothing was missed
+            RecordingChangeStream restarted = new RecordingChangeStream();
+            try {
+                String id = changeStream.eventId(0);
+                while (restarted.eventId(0).equals(id)) {
+                    restarted.stop();
+                    restarted = new RecordingChangeStream();
+                }
+                RecordingEmitter emitter = restarted.subscribeRecording(id);
+                assertEquals(ChangeStream.RELOAD_EVENT, receive(restarted, emitter).name);
+            } finally {
+                restarted.stop();
+            }
+        }
+
+        @Test
+        void reconnectWithIdWithoutEpochSendsReload() throws InterruptedException {
+            RecordingEmitter emitter = changeStream.subscribeRecording("0");
+            assertEquals(ChangeStream.RELOAD_EVENT, receive(changeStream, emitter).name);
+        }
+
+        @Test
+        void isCurrentComparesEpochAndSequence() {
+            String id = changeStream.eventId(5);
+            String epoch = id.substring(0, id.indexOf('-'));
+            assertTrue(changeStream.isCurrent(id, 5));
+            assertFalse(changeStream.isCurrent(id, 6));
+            assertFalse(changeStream.isCurrent(epoch + "-4", 5));
+            assertFalse(changeStream.isCurrent((Long.parseLong(epoch) + 1) + "-5", 5));
+            assertFalse(changeStream.isCurrent("5", 5));
+            assertFalse(changeStream.isCurrent("", 5));
+            assertFalse(changeStream.isCurrent("-5", 5));
+            assertFalse(changeStream.isCurrent(epoch + "-", 5));
+            assertFalse(changeStream.isCurrent("abc-5", 5));
+        }
+    }
+
+    /**
+     * A {@link ChangeStream} never flushing on its own, whose connections record the sent events.
+     */
+    static class RecordingChangeStream extends ChangeStream {
+
+        RecordingChangeStream() {
+            super(NEVER, NEVER, NEVER, MAX_PENDING, 10, 1);
+        }
+
+        @Override
+        SseEmitter createEmitter(long timeout) {
+            return new RecordingEmitter(timeout);
+        }
+
+        RecordingEmitter subscribeRecording(String lastEventId) {
+            return (RecordingEmitter) subscribe(lastEventId);
+        }
+    }
+
+    /**
+     * An {@link SseEmitter} without a response, recording the sent events instead.
+     */
+    static class RecordingEmitter extends SseEmitter {
+        final BlockingQueue<SentEvent> sent = new LinkedBlockingQueue<>();
+
+        RecordingEmitter(long timeout) {
+            super(timeout);
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            StringBuilder text = new StringBuilder();
+            List<String> changes = new ArrayList<>();
+            for (DataWithMediaType data : builder.build()) {
+                if (data.getData() instanceof List) {
+                    for (Object change : (List<?>) data.getData()) {
+                        EntityChangedEvent event = (EntityChangedEvent) change;
+                        changes.add(event.getEntityType() + "#" + event.getEntityId() + " "
+                                + event.getChangeType());
+                    }
+                } else {
+                    text.append(data.getData());
+                }
+            }
+            sent.add(new SentEvent(text.toString(), changes));
+        }
+
+        /**
+         * Waits for the next event sent by the sender threads.
+         */
+        SentEvent next() throws InterruptedException {
+            SentEvent event = sent.poll(SEND_TIMEOUT, TimeUnit.SECONDS);
+            assertNotNull(event, "No event sent");
+            return event;
+        }
+
+        /**
+         * Waits a moment for events sent by the sender threads and returns whether there were none.
+         */
+        boolean isEmpty() throws InterruptedException {
+            return sent.poll(100, TimeUnit.MILLISECONDS) == null;
+        }
+    }
+
+    /**
+     * The name, id and changes of a sent event, the name and id are empty for comments.
+     */
+    static class SentEvent {
+        final String name;
+        final String id;
+        final List<String> changes;
+
+        SentEvent(String text, List<String> changes) {
+            List<String> lines = text.lines().collect(Collectors.toList());
+            this.name = field(lines, "event:");
+            this.id = field(lines, "id:");
+            this.changes = changes;
+        }
+
+        private static String field(List<String> lines, String prefix) {
+            return lines.stream().filter(line -> line.startsWith(prefix)).map(line -> line.substring(prefix.length()))
+                    .findFirst().orElse("");
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.peternaggschga.books.readmodel;
+
+import com.neovisionaries.i18n.CountryCode;
+import com.peternaggschga.books.author.Author;
+import com.peternaggschga.books.books.book.Book;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class LibraryUnitTest {
+    static final LocalDate PUBLISHED = LocalDate.of(2011, 4, 25);
+    static final LocalDate BEGINNING = LocalDate.of(2021, 1, 1);
+
+    AuthorView sanderson;
+    AuthorView tolkien;
+    BookView kings;
+    BookView radiance;
+    BookView hobbit;
+    SeriesView stormlight;
+    ReadingView first;
+    ReadingView second;
+    ReadingView third;
+    Library library;
+
+    static AuthorView author(long id, String lastName) {
+        Author author = mock(Author.class);
+        when(author.getId()).thenReturn(id);
+        when(author.getFirstName()).thenReturn("First");
+        when(author.getLastName()).thenReturn(lastName);
+        when(author.getNationality()).thenReturn(CountryCode.DE);
+        return new AuthorView(author);
+    }
+
+    static BookView book(long id, String title, AuthorView... authors) {
+        Book book = mock(Book.class);
+        when(book.getId()).thenReturn(id);
+        when(book.getTitle()).thenReturn(title);
+        when(book.getPublished()).thenReturn(PUBLISHED);
+        when(book.getIsbn()).thenReturn("3453267176");
+        when(book.getPages()).thenReturn(896);
+        when(book.getLanguage()).thenReturn(Locale.GERMAN);
+        return new BookView(book, List.of(authors));
+    }
+
+    static List<Long> ids(Iterable<?> views) {
+        return StreamSupport.stream(views.spliterator(), false).map(view -> {
+            if (view instanceof ReadingView) {
+                return ((ReadingView) view).getId();
+            }
+            if (view instanceof BookView) {
+                return ((BookView) view).getId();
+            }
+            if (view instanceof SeriesView) {
+                return ((SeriesView) view).getId();
+            }
+            return ((AuthorView) view).getId();
+        }).collect(Collectors.toList());
+    }
+
+    @BeforeEach
+    void setUp() {
+        sanderson = author(1, "Sanderson");
+        tolkien = author(2, "Tolkien");
+        kings = book(10, "Der Weg der Könige", sanderson);
+        radiance = book(11, "Pfad der Winde", sanderson);
+        hobbit = book(12, "Der Hobbit", tolkien);
+        stormlight = new SeriesView(20, 0, "Die Sturmlicht-Chroniken", List.of(kings, radiance));
+        first = new ReadingView(30, 0, kings, BEGINNING, BEGINNING.plusDays(7), 40);
+        second = new ReadingView(31, 0, radiance, BEGINNING.plusDays(10), null, 45);
+        third = new ReadingView(32, 0, kings, BEGINNING.plusDays(5), null, 50);
+        library = Library.builder().addReading(second).addBook(hobbit).addAuthor(tolkien).addSeries(stormlight)
+                .addReading(first).addBook(radiance).addAuthor(sanderson).addBook(kings).addReading(third).build();
+    }
+
+    @Nested
+    class BuilderTests {
+
+        @Test
+        void builderOrdersViewsById() {
+            assertEquals(List.of(1L, 2L), ids(library.getAuthors()));
+            assertEquals(List.of(10L, 11L, 12L), ids(library.getBooks()));
+            assertEquals(List.of(20L), ids(library.getSeries()));
+        }
+
+        @Test
+        void builderOrdersReadingsByBeginningDescending() {
+            assertEquals(List.of(31L, 32L, 30L), ids(library.getReadings()));
+            assertEquals(3, library.getReadingCount());
+        }
+
+        @Test
+        void emptyLibraryContainsNothing() {
+            assertTrue(Library.EMPTY.getAuthors().isEmpty());
+            assertTrue(Library.EMPTY.getBooks().isEmpty());
+            assertTrue(Library.EMPTY.getSeries().isEmpty());
+            assertEquals(0, Library.EMPTY.getReadingCount());
+            assertFalse(Library.EMPTY.getReadings().iterator().hasNext());
+        }
+    }
+
+    @Nested
+    class AuthorTests {
+
+        @Test
+        void withAuthorReplacesDependentViews() {
+            AuthorView renamed = author(1, "Sandersen");
+            Library changed = library.withAuthor(renamed);
+            assertSame(renamed, changed.getAuthors().get(1));
+            assertSame(renamed, changed.getBooks().get(10).getAuthors().get(0));
+            assertSame(renamed, changed.getBooks().get(11).getAuthors().get(0));
+            assertSame(changed.getBooks().get(10), changed.getSeries().get(20).getVolumes().get(0));
+            assertSame(changed.getBooks().get(11), changed.getSeries().get(20).getVolumes().get(1));
+            changed.getReadings().forEach(reading ->
+                    assertSame(changed.getBooks().get(reading.getBook().getId()), reading.getBook()));
+            assertSame(hobbit, changed.getBooks().get(12));
+        }
+
+        @Test
+        void withAuthorDoesNotChangeOriginal() {
+            library.withAuthor(author(1, "Sandersen"));
+            assertSame(sanderson, library.getAuthors().get(1));
+            assertSame(kings, library.getBooks().get(10));
+            assertSame(kings, library.getSeries().get(20).getVolumes().get(0));
+        }
+
+        @Test
+        void withAuthorAddsNewAuthor() {
+            AuthorView pratchett = author(3, "Pratchett");
+            Library changed = library.withAuthor(pratchett);
+            assertEquals(List.of(1L, 2L, 3L), ids(changed.getAuthors()));
+            assertSame(kings, changed.getBooks().get(10));
+        }
+
+        @Test
+        void withoutAuthorRemovesOnlyAuthor() {
+            Library changed = library.withoutAuthor(2);
+            assertEquals(List.of(1L), ids(changed.getAuthors()));
+            assertSame(hobbit, changed.getBooks().get(12));
+            assertEquals(List.of(1L, 2L), ids(library.withoutAuthor(3).getAuthors()));
+        }
+    }
+
+    @Nested
+    class BookTests {
+
+        @Test
+        void withBookReplacesDependentViews() {
+            BookView retitled = book(10, "The Way of Kings", sanderson);
+            Library changed = library.withBook(retitled);
+            assertSame(retitled, changed.getBooks().get(10));
+            assertSame(retitled, changed.getSeries().get(20).getVolumes().get(0));
+            assertSame(radiance, changed.getSeries().get(20).getVolumes().get(1));
+            List<ReadingView> readings = changed.streamReadings().collect(Collectors.toList());
+            assertSame(radiance, readings.get(0).getBook());
+            assertSame(retitled, readings.get(1).getBook());
+            assertSame(retitled, readings.get(2).getBook());
+        }
+
+        @Test
+        void withBookMovesBookToOtherAuthor() {
+            Library changed = library.withBook(book(10, "Der Weg der Könige", tolkien));
+            AuthorView renamed = author(1, "Sandersen");
+            changed = changed.withAuthor(renamed);
+            assertSame(tolkien, changed.getBooks().get(10).getAuthors().get(0));
+            assertSame(renamed, changed.getBooks().get(11).getAuthors().get(0));
+            AuthorView renamedTolkien = author(2, "Tolkin");
+            changed = changed.withAuthor(renamedTolkien);
+            assertSame(renamedTolkien, changed.getBooks().get(10).getAuthors().get(0));
+            assertSame(renamedTolkien, changed.getBooks().get(12).getAuthors().get(0));
+        }
+
+        @Test
+        void withoutBookRemovesReadingsAndVolume() {
+            Library changed = library.withoutBook(10);
+            assertEquals(List.of(11L, 12L), ids(changed.getBooks()));
+            assertEquals(List.of(31L), ids(changed.getReadings()));
+            assertEquals(1, changed.getReadingCount());
+            assertEquals(List.of(11L), ids(changed.getSeries().get(20).getVolumes()));
+            AuthorView renamed = author(1, "Sandersen");
+            changed = changed.withAuthor(renamed);
+            assertNull(changed.getBooks().get(10));
+            assertSame(renamed, changed.getBooks().get(11).getAuthors().get(0));
+        }
+
+        @Test
+        void withoutBookDoesNotChangeOriginal() {
+            library.withoutBook(10);
+            assertEquals(List.of(10L, 11L, 12L), ids(library.getBooks()));
+            assertEquals(List.of(31L, 32L, 30L), ids(library.getReadings()));
+            assertEquals(2, library.getSeries().get(20).getVolumes().size());
+        }
+    }
+
+    @Nested
+    class SeriesTests {
+
+        @Test
+        void withSeriesReplacesVolumes() {
+            SeriesView replaced = new SeriesView(20, 1, "Die Sturmlicht-Chroniken", List.of(radiance, hobbit));
+            Library changed = library.withSeries(replaced);
+            assertSame(replaced, changed.getSeries().get(20));
+            BookView retitledKings = book(10, "The Way of Kings", sanderson);
+            BookView retitledHobbit = book(12, "The Hobbit", tolkien);
+            changed = changed.withBook(retitledKings).withBook(retitledHobbit);
+            assertEquals(List.of(11L, 12L), ids(changed.getSeries().get(20).getVolumes()));
+            assertSame(retitledHobbit, changed.getSeries().get(20).getVolumes().get(1));
+        }
+
+        @Test
+        void withoutSeriesRemovesIndex() {
+            Library changed = library.withoutSeries(20);
+            assertTrue(changed.getSeries().isEmpty());
+            changed = changed.withBook(book(10, "The Way of Kings", sanderson));
+            assertTrue(changed.getSeries().isEmpty());
+            assertEquals(1, library.getSeries().size());
+        }
+    }
+
+    @Nested
+    class ReadingTests {
+
+        @Test
+        void withReadingReordersByBeginning() {
+            ReadingView moved = new ReadingView(30, 1, kings, BEGINNING.plusDays(20), null, 40);
+            Library changed = library.withReading(moved);
+            assertEquals(List.of(30L, 31L, 32L), ids(changed.getReadings()));
+            assertEquals(3, changed.getReadingCount());
+            assertEquals(List.of(31L, 32L, 30L), ids(library.getReadings()));
+        }
+
+        @Test
+        void withReadingMovesReadingToOtherBook() {
+            ReadingView moved = new ReadingView(30, 1, hobbit, BEGINNING, null, 40);
+            Library changed = library.withReading(moved);
+            BookView retitledKings = book(10, "The Way of Kings", sanderson);
+            BookView retitledHobbit = book(12, "The Hobbit", tolkien);
+            changed = changed.withBook(retitledKings).withBook(retitledHobbit);
+            List<ReadingView> readings = changed.streamReadings().collect(Collectors.toList());
+            assertEquals(List.of(31L, 32L, 30L), ids(readings));
+            assertSame(retitledKings, readings.get(1).getBook());
+            assertSame(retitledHobbit, readings.get(2).getBook());
+        }
+
+        @Test
+        void withReadingAddsReadingsOfSameDay() {
+            ReadingView sameDay = new ReadingView(33, 0, hobbit, BEGINNING.plusDays(5), null, 30);
+            Library changed = library.withReading(sameDay);
+            assertEquals(List.of(31L, 32L, 33L, 30L), ids(changed.getReadings()));
+            changed = changed.withoutReading(32);
+            assertEquals(List.of(31L, 33L, 30L), ids(changed.getReadings()));
+        }
+
+        @Test
+        void streamTimelineOrdersByBeginningAndIdDescending() {
+            ReadingView sameDay = new ReadingView(33, 0, hobbit, BEGINNING.plusDays(5), null, 30);
+            Library changed = library.withReading(sameDay);
+            assertEquals(List.of(31L, 33L, 32L, 30L), ids(changed.streamTimeline(LocalDate.MIN, LocalDate.MAX,
+                    LocalDate.MAX, Long.MAX_VALUE).collect(Collectors.toList())));
+        }
+
+        @Test
+        void streamTimelineContinuesAfterPosition() {
+            ReadingView sameDay = new ReadingView(33, 0, hobbit, BEGINNING.plusDays(5), null, 30);
+            Library changed = library.withReading(sameDay);
+            assertEquals(List.of(32L, 30L), ids(changed.streamTimeline(LocalDate.MIN, LocalDate.MAX,
+                    BEGINNING.plusDays(5), 33).collect(Collectors.toList())));
+            assertEquals(List.of(30L), ids(changed.streamTimeline(LocalDate.MIN, LocalDate.MAX,
+                    BEGINNING.plusDays(5), 32).collect(Collectors.toList())));
+        }
+
+        @Test
+        void streamTimelineIsLimitedToRange() {
+            assertEquals(List.of(32L), ids(library.streamTimeline(BEGINNING.plusDays(1), BEGINNING.plusDays(9),
+                    LocalDate.MAX, Long.MAX_VALUE).collect(Collectors.toList())));
+            assertEquals(List.of(), ids(library.streamTimeline(BEGINNING.plusDays(11), LocalDate.MAX,
+                    LocalDate.MAX, Long.MAX_VALUE).collect(Collectors.toList())));
+            assertEquals(List.of(), ids(Library.EMPTY.streamTimeline(LocalDate.MIN, LocalDate.MAX,
+                    LocalDate.MAX, Long.MAX_VALUE).collect(Collectors.toList())));
+        }
+
+        @Test
+        void withoutReadingRemovesReading() {
+            Library changed = library.withoutReading(31).withoutReading(99);
+            assertEquals(List.of(32L, 30L), ids(changed.getReadings()));
+            assertEquals(2, changed.getReadingCount());
+            changed = changed.withBook(book(11, "Words of Radiance", sanderson));
+            assertEquals(List.of(32L, 30L), ids(changed.getReadings()));
+        }
+    }
+}
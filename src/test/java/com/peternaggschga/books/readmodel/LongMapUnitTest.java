@@ -0,0 +1,311 @@
+package com.peternaggschga.books.readmodel;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LongMapUnitTest {
+    static final int CHUNK_SIZE = 256;
+
+    static LongMap<String> build(long from, long to) {
+        LongMap.Builder<String> builder = LongMap.builder();
+        for (long key = from; key < to; key++) {
+            builder.put(key, "v" + key);
+        }
+        return builder.build();
+    }
+
+    static void assertContent(TreeMap<Long, String> expected, LongMap<String> map) {
+        assertEquals(expected.size(), map.size());
+        assertEquals(new ArrayList<>(expected.values()), map.stream().collect(Collectors.toList()));
+        expected.forEach((key, value) -> assertEquals(value, map.get(key)));
+    }
+
+    @Nested
+    class BuilderTests {
+
+        @Test
+        void buildWithoutEntriesReturnsEmpty() {
+            assertSame(LongMap.empty(), LongMap.builder().build());
+            assertTrue(LongMap.empty().isEmpty());
+            assertNull(LongMap.empty().get(1));
+        }
+
+        @Test
+        void buildFillsChunks() {
+            LongMap<String> map = build(0, 3 * CHUNK_SIZE + 1);
+            assertEquals(3 * CHUNK_SIZE + 1, map.size());
+            assertEquals(4, map.chunkCount());
+            assertEquals("v0", map.get(0));
+            assertEquals("v" + 3 * CHUNK_SIZE, map.get(3 * CHUNK_SIZE));
+            assertNull(map.get(-1));
+            assertNull(map.get(3 * CHUNK_SIZE + 1));
+        }
+
+        @Test
+        void putAssertsAscendingKeys() {
+            LongMap.Builder<String> builder = LongMap.builder();
+            builder.put(2, "b");
+            try {
+                builder.put(2, "c");
+                fail();
+            } catch (IllegalArgumentException ignored) {
+            }
+            try {
+                builder.put(1, "a");
+                fail();
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+
+        @Test
+        void putAssertsAscendingKeysAcrossChunks() {
+            LongMap.Builder<String> builder = LongMap.builder();
+            for (long key = 0; key < CHUNK_SIZE; key++) {
+                builder.put(key, "v" + key);
+            }
+            try {
+                builder.put(CHUNK_SIZE - 1, "v");
+                fail();
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+
+        @Test
+        void putAssertsValueNull() {
+            try {
+                LongMap.<String>builder().put(1, null);
+                fail();
+            } catch (NullPointerException ignored) {
+            }
+        }
+    }
+
+    @Nested
+    class WithTests {
+
+        @Test
+        void withDoesNotChangeOriginal() {
+            LongMap<String> map = build(0, 10);
+            LongMap<String> changed = map.with(20, "v20").with(5, "x");
+            assertEquals(10, map.size());
+            assertNull(map.get(20));
+            assertEquals("v5", map.get(5));
+            assertEquals(11, changed.size());
+            assertEquals("x", changed.get(5));
+            assertEquals("v20", changed.get(20));
+        }
+
+        @Test
+        void withSameValueReturnsSameMap() {
+            LongMap<String> map = build(0, 10);
+            assertSame(map, map.with(5, map.get(5)));
+        }
+
+        @Test
+        void withKeySmallerThanAllKeys() {
+            LongMap<String> map = build(0, 2 * CHUNK_SIZE).with(-5, "v-5");
+            assertEquals("v-5", map.get(-5));
+            assertEquals("v-5", map.iterator().next());
+            assertEquals("v0", map.get(0));
+        }
+
+        @Test
+        void withSplitsFullChunk() {
+            LongMap<String> map = LongMap.empty();
+            TreeMap<Long, String> expected = new TreeMap<>();
+            for (long key = 2 * CHUNK_SIZE; key >= 0; key--) {
+                map = map.with(key, "v" + key);
+                expected.put(key, "v" + key);
+                assertEquals(key == 0 ? 2 : 1, map.chunkCount(), "Key " + key);
+            }
+            assertContent(expected, map);
+        }
+
+        @Test
+        void withSplitsInnerChunk() {
+            LongMap<String> map = build(0, 3 * CHUNK_SIZE);
+            TreeMap<Long, String> expected = new TreeMap<>();
+            map.stream().forEach(value -> expected.put(Long.parseLong(value.substring(1)), value));
+            for (int i = 0; i <= CHUNK_SIZE; i++) {
+                long key = CHUNK_SIZE * 10_000L + i;
+                map = map.with(key, "v" + key);
+                expected.put(key, "v" + key);
+            }
+            assertEquals(4, map.chunkCount());
+            for (int i = 0; i <= CHUNK_SIZE; i++) {
+                long key = -(i + 1);
+                map = map.with(key, "v" + key);
+                expected.put(key, "v" + key);
+            }
+            assertEquals(5, map.chunkCount());
+            assertContent(expected, map);
+        }
+    }
+
+    @Nested
+    class WithoutTests {
+
+        @Test
+        void withoutUnknownKeyReturnsSameMap() {
+            LongMap<String> map = build(0, 10);
+            assertSame(map, map.without(10));
+            assertSame(map, map.without(-1));
+            assertSame(LongMap.empty(), LongMap.<String>empty().without(1));
+        }
+
+        @Test
+        void withoutLastEntryReturnsEmpty() {
+            assertSame(LongMap.empty(), LongMap.<String>empty().with(1, "a").without(1));
+        }
+
+        @Test
+        void withoutDoesNotChangeOriginal() {
+            LongMap<String> map = build(0, 10);
+            LongMap<String> changed = map.without(0).without(5);
+            assertEquals(10, map.size());
+            assertEquals("v0", map.get(0));
+            assertEquals(8, changed.size());
+            assertNull(changed.get(0));
+            assertNull(changed.get(5));
+            assertEquals("v1", changed.iterator().next());
+        }
+
+        @Test
+        void withoutMergesSmallChunks() {
+            LongMap<String> map = build(0, 4 * CHUNK_SIZE);
+            TreeMap<Long, String> expected = new TreeMap<>();
+            map.stream().forEach(value -> expected.put(Long.parseLong(value.substring(1)), value));
+            assertEquals(4, map.chunkCount());
+            for (long key = CHUNK_SIZE; key < CHUNK_SIZE + CHUNK_SIZE / 2; key++) {
+                map = map.without(key);
+                expected.remove(key);
+            }
+            assertEquals(4, map.chunkCount());
+            for (long key = 2 * CHUNK_SIZE; key < 2 * CHUNK_SIZE + CHUNK_SIZE / 2 + 1; key++) {
+                map = map.without(key);
+                expected.remove(key);
+            }
+            assertEquals(3, map.chunkCount());
+            assertContent(expected, map);
+        }
+
+        @Test
+        void withoutMergesLastChunkWithPrevious() {
+            LongMap<String> map = build(0, CHUNK_SIZE + 2);
+            assertEquals(2, map.chunkCount());
+            map = map.without(CHUNK_SIZE + 1);
+            assertEquals(1, map.chunkCount());
+            assertEquals(CHUNK_SIZE + 1, map.size());
+            assertEquals("v" + CHUNK_SIZE, map.get(CHUNK_SIZE));
+        }
+
+        @Test
+        void withoutRemovesEmptyChunk() {
+            LongMap<String> map = build(0, 2 * CHUNK_SIZE);
+            for (long key = 10 * CHUNK_SIZE; key < 10 * CHUNK_SIZE + 200; key++) {
+                map = map.with(key, "v" + key);
+            }
+            assertEquals(2, map.chunkCount());
+            for (long key = 0; key < CHUNK_SIZE - 1; key++) {
+                map = map.without(key);
+            }
+            assertEquals(2, map.chunkCount());
+            map = map.without(CHUNK_SIZE - 1);
+            assertEquals(1, map.chunkCount());
+            assertEquals(CHUNK_SIZE + 200, map.size());
+            assertNull(map.get(0));
+            assertEquals("v" + CHUNK_SIZE, map.iterator().next());
+        }
+
+        @Test
+        void withoutFirstKeyOfChunkKeepsLookups() {
+            LongMap<String> map = build(0, 2 * CHUNK_SIZE).without(CHUNK_SIZE);
+            assertNull(map.get(CHUNK_SIZE));
+            assertEquals("v" + (CHUNK_SIZE - 1), map.get(CHUNK_SIZE - 1));
+            assertEquals("v" + (CHUNK_SIZE + 1), map.get(CHUNK_SIZE + 1));
+            map = map.with(CHUNK_SIZE, "x");
+            assertEquals("x", map.get(CHUNK_SIZE));
+            assertEquals(2 * CHUNK_SIZE, map.size());
+        }
+    }
+
+    @Nested
+    class RandomTests {
+
+        @Test
+        void randomChangesMatchTreeMap() {
+            Random random = new Random(42);
+            LongMap<String> map = LongMap.empty();
+            TreeMap<Long, String> expected = new TreeMap<>();
+            for (int i = 0; i < 50_000; i++) {
+                long key = random.nextInt(4 * CHUNK_SIZE);
+                if (random.nextInt(3) == 0) {
+                    map = map.without(key);
+                    expected.remove(key);
+                } else {
+                    map = map.with(key, "v" + i);
+                    expected.put(key, "v" + i);
+                }
+            }
+            assertContent(expected, map);
+            for (long key : new ArrayList<>(expected.keySet())) {
+                map = map.without(key);
+                expected.remove(key);
+                assertEquals(expected.size(), map.size());
+            }
+            assertSame(LongMap.empty(), map);
+        }
+    }
+
+    @Nested
+    class IteratorTests {
+
+        @Test
+        void iteratorFailsAfterLastValue() {
+            Iterator<String> iterator = build(0, 1).iterator();
+            assertEquals("v0", iterator.next());
+            assertFalse(iterator.hasNext());
+            try {
+                iterator.next();
+                fail();
+            } catch (NoSuchElementException ignored) {
+            }
+        }
+
+        @Test
+        void streamIsOrderedByKey() {
+            List<String> values = LongMap.<String>empty().with(3, "c").with(1, "a").with(2, "b").stream()
+                    .collect(Collectors.toList());
+            assertEquals(List.of("a", "b", "c"), values);
+        }
+
+        @Test
+        void tailStreamStartsAtKey() {
+            LongMap<String> map = build(0, 3 * CHUNK_SIZE);
+            assertEquals(map.stream().skip(CHUNK_SIZE).collect(Collectors.toList()),
+                    map.tailStream(CHUNK_SIZE).collect(Collectors.toList()));
+            assertEquals(map.stream().collect(Collectors.toList()), map.tailStream(-1).collect(Collectors.toList()));
+            assertEquals(List.of("v" + (3 * CHUNK_SIZE - 1)),
+                    map.tailStream(3 * CHUNK_SIZE - 1).collect(Collectors.toList()));
+            assertEquals(0, map.tailStream(3 * CHUNK_SIZE).count());
+            assertEquals(0, LongMap.empty().tailStream(0).count());
+        }
+
+        @Test
+        void tailStreamStartsAfterMissingKey() {
+            LongMap<String> map = LongMap.<String>empty().with(1, "a").with(3, "c").with(5, "e");
+            assertEquals(List.of("c", "e"), map.tailStream(2).collect(Collectors.toList()));
+            assertEquals(List.of("e"), map.tailStream(4).collect(Collectors.toList()));
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.peternaggschga.books.rendering;
+
+import com.peternaggschga.books.BenchmarkSupport;
+import com.peternaggschga.books.account.Account;
+import com.peternaggschga.books.account.AccountDetails;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+import org.thymeleaf.context.IExpressionContext;
+import org.thymeleaf.expression.IExpressionObjectFactory;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.util.List;
+import java.util.Set;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Measures rendering the complete reading list page with 50k rows, once with the cached formatters of
+ * {@link DateFormats} and once with a {@link DisplayDialect} building a new formatter for every date, as the entities
+ * did before. The row cache is disabled, so every request renders all rows.
+ */
+@Tag(BenchmarkSupport.TAG)
+public class ReadingTableBenchmark {
+    static final int ROWS = 50_000;
+    static final int BOOKS = 500;
+    static final int WARMUPS = 3;
+    static final int ITERATIONS = 10;
+
+    @Test
+    void cachedFormatters() throws Exception {
+        run("reading-table-cached", List.of());
+    }
+
+    @Test
+    void formatterPerDate() throws Exception {
+        run("reading-table-uncached", List.of(FormatterPerDateConfig.class),
+                "spring.main.allow-bean-definition-overriding=true");
+    }
+
+    private void run(String name, List<Class<?>> sources, String... properties) throws Exception {
+        String[] all = new String[properties.length + 2];
+        all[0] = "books.readings.window-size=" + ROWS;
+        all[1] = "books.rendering.row-cache-size=0";
+        System.arraycopy(properties, 0, all, 2, properties.length);
+        try (ConfigurableApplicationContext context = BenchmarkSupport.start(name, sources, all)) {
+            Account account = BenchmarkSupport.createAccount(context, "benchmark");
+            BenchmarkSupport.createLibrary(context, account, BOOKS, ROWS);
+            MockMvc mvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).apply(springSecurity())
+                    .build();
+            AccountDetails details = new AccountDetails(account);
+            BenchmarkSupport.report(name + ", " + ROWS + " rows", BenchmarkSupport.measure(WARMUPS, ITERATIONS,
+                    () -> mvc.perform(get("/readings").with(user(details))).andExpect(status().isOk())));
+        }
+    }
+
+    /**
+     * Replaces the {@link DisplayDialect} by one formatting every date with a new formatter in the default
+     * {@link java.util.Locale} of the JVM. Not annotated as configuration, so it is not picked up by the component scan
+     * of the other benchmarks.
+     */
+    static class FormatterPerDateConfig {
+
+        @Bean
+        public DisplayDialect displayDialect() {
+            return new DisplayDialect() {
+                @Override
+                public IExpressionObjectFactory getExpressionObjectFactory() {
+                    return new IExpressionObjectFactory() {
+                        @Override
+                        public Set<String> getAllExpressionObjectNames() {
+                            return Set.of("display");
+                        }
+
+                        @Override
+                        public Object buildObject(IExpressionContext context, String expressionObjectName) {
+                            return new FormatterPerDate();
+                        }
+
+                        @Override
+                        public boolean isCacheable(String expressionObjectName) {
+                            return true;
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    public static final class FormatterPerDate {
+
+        public String date(LocalDate date) {
+            return date == null ? null : date.format(DateTimeFormatter.ofLocalizedDate(FormatStyle.MEDIUM));
+        }
+    }
+}
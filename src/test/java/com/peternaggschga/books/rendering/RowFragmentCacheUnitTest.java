@@ -0,0 +1,199 @@
+package com.peternaggschga.books.rendering;
+
+import com.peternaggschga.books.author.Author;
+import com.peternaggschga.books.books.book.Book;
+import com.peternaggschga.books.books.series.SeriesSummary;
+import com.peternaggschga.books.events.EntityChangedEvent;
+import com.peternaggschga.books.events.EntityChangedEvent.ChangeType;
+import com.peternaggschga.books.events.EntityChangedEvent.EntityType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.web.csrf.CsrfToken;
+import org.springframework.security.web.csrf.DefaultCsrfToken;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.IContext;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RowFragmentCacheUnitTest {
+    static final int MAXIMUM_SIZE = 3;
+
+    AtomicInteger renderCount;
+    MockHttpServletRequest request;
+    RowFragmentCache cache;
+
+    static Author author(long id, long version) {
+        Author author = mock(Author.class);
+        when(author.getId()).thenReturn(id);
+        when(author.getVersion()).thenReturn(version);
+        return author;
+    }
+
+    static Book book(long id, long version, Author... authors) {
+        Book book = mock(Book.class);
+        when(book.getId()).thenReturn(id);
+        when(book.getVersion()).thenReturn(version);
+        when(book.getAuthors()).thenReturn(Set.of(authors));
+        return book;
+    }
+
+    static EntityChangedEvent event(EntityType entityType, long id) {
+        return new EntityChangedEvent(entityType, id, ChangeType.UPDATED);
+    }
+
+    void useCsrfToken(String token) {
+        request.setAttribute(CsrfToken.class.getName(), new DefaultCsrfToken("X-CSRF-TOKEN", "_csrf", token));
+    }
+
+    @BeforeEach
+    void setUp() {
+        renderCount = new AtomicInteger();
+        ITemplateEngine templateEngine = mock(ITemplateEngine.class);
+        when(templateEngine.process(anyString(), anySet(), any(IContext.class)))
+                .thenAnswer(invocation -> "<tr>" + renderCount.incrementAndGet() + " __csrf_token__</tr>");
+        cache = new RowFragmentCache(templateEngine, MAXIMUM_SIZE);
+        request = new MockHttpServletRequest();
+        useCsrfToken("token");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request,
+                new MockHttpServletResponse()));
+        LocaleContextHolder.setLocale(Locale.GERMAN);
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+        LocaleContextHolder.resetLocaleContext();
+    }
+
+    @Nested
+    class VersionTests {
+
+        @Test
+        void sameVersionIsRenderedOnce() {
+            Author author = author(1, 0);
+            assertEquals("<tr>1 token</tr>", cache.renderAuthor(author));
+            assertEquals("<tr>1 token</tr>", cache.renderAuthor(author));
+            assertEquals(1, renderCount.get());
+        }
+
+        @Test
+        void newVersionIsRenderedAgain() {
+            cache.renderAuthor(author(1, 0));
+            assertEquals("<tr>2 token</tr>", cache.renderAuthor(author(1, 1)));
+            assertEquals("<tr>2 token</tr>", cache.renderAuthor(author(1, 1)));
+            assertEquals(2, renderCount.get());
+        }
+
+        @Test
+        void rowsAreCachedPerLocale() {
+            Author author = author(1, 0);
+            cache.renderAuthor(author);
+            LocaleContextHolder.setLocale(Locale.ENGLISH);
+            cache.renderAuthor(author);
+            cache.renderAuthor(author);
+            assertEquals(2, renderCount.get());
+        }
+
+        @Test
+        void csrfTokenIsReplacedOnEveryAccess() {
+            Author author = author(1, 0);
+            cache.renderAuthor(author);
+            useCsrfToken("other");
+            assertEquals("<tr>1 other</tr>", cache.renderAuthor(author));
+        }
+
+        @Test
+        void renderWithoutCsrfTokenThrows() {
+            request.removeAttribute(CsrfToken.class.getName());
+            try {
+                cache.renderAuthor(author(1, 0));
+                fail();
+            } catch (IllegalStateException ignored) {
+            }
+        }
+    }
+
+    @Nested
+    class InvalidationTests {
+
+        @Test
+        void changeEvictsRowOfEntity() {
+            Author author = author(1, 0);
+            cache.renderAuthor(author);
+            cache.onEntityChanged(event(EntityType.AUTHOR, 1));
+            cache.renderAuthor(author);
+            assertEquals(2, renderCount.get());
+        }
+
+        @Test
+        void changeOfAuthorEvictsRowsOfTheirBooks() {
+            Author author = author(1, 0);
+            Book book = book(10, 0, author);
+            Book other = book(11, 0, author(2, 0));
+            cache.renderBook(book);
+            cache.renderBook(other);
+            cache.onEntityChanged(event(EntityType.AUTHOR, 1));
+            cache.renderBook(book);
+            cache.renderBook(other);
+            assertEquals(3, renderCount.get());
+        }
+
+        @Test
+        void changeOfAnyBookEvictsSeriesRows() {
+            SeriesSummary series = new SeriesSummary(20, 0, "Die Sturmlicht-Chroniken", 2, "Brandon Sanderson",
+                    Set.of(1L));
+            cache.renderSeries(series);
+            cache.onEntityChanged(event(EntityType.BOOK, 99));
+            cache.renderSeries(series);
+            assertEquals(2, renderCount.get());
+        }
+
+        @Test
+        void changeOfOtherEntityKeepsRow() {
+            Author author = author(1, 0);
+            cache.renderAuthor(author);
+            cache.onEntityChanged(event(EntityType.AUTHOR, 2));
+            cache.onEntityChanged(event(EntityType.BOOK, 1));
+            cache.renderAuthor(author);
+            assertEquals(1, renderCount.get());
+        }
+
+        @Test
+        void clearEvictsAllRows() {
+            Author author = author(1, 0);
+            cache.renderAuthor(author);
+            cache.clear();
+            cache.renderAuthor(author);
+            assertEquals(2, renderCount.get());
+        }
+
+        @Test
+        void leastRecentlyUsedRowIsEvictedBeyondMaximumSize() {
+            Author first = author(1, 0);
+            cache.renderAuthor(first);
+            cache.renderAuthor(author(2, 0));
+            cache.renderAuthor(author(3, 0));
+            cache.renderAuthor(first);
+            cache.renderAuthor(author(4, 0));
+            assertEquals(4, renderCount.get());
+            cache.renderAuthor(first);
+            assertEquals(4, renderCount.get());
+            cache.renderAuthor(author(2, 0));
+            assertEquals(5, renderCount.get());
+        }
+    }
+}
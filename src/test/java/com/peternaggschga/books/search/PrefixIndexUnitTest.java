@@ -0,0 +1,215 @@
+package com.peternaggschga.books.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = PrefixIndex.class)
+public class PrefixIndexUnitTest {
+    static final long TENANT = 0;
+    static final long OTHER_TENANT = 42;
+    static final long TOLKIEN = 1;
+    static final long TOLSTOY = 2;
+    static final long AUSTEN = 3;
+
+    PrefixIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new PrefixIndex();
+        index.put(TENANT, TOLKIEN, "John Ronald Reuel Tolkien");
+        index.put(TENANT, TOLSTOY, "Lew Nikolajewitsch Tolstoi");
+        index.put(TENANT, AUSTEN, "Jane Austen");
+    }
+
+    @Nested
+    class NormalizeTests {
+
+        @Test
+        void normalizeRemovesDiacriticsAndCase() {
+            assertEquals("cafe creme", PrefixIndex.normalize("Café Crème"));
+            assertEquals("uber bucher", PrefixIndex.normalize("ÜBER BÜCHER"));
+        }
+
+        @Test
+        void normalizeCollapsesWhitespace() {
+            assertEquals("a b c", PrefixIndex.normalize("  a \t b\n\nc  "));
+            assertEquals("", PrefixIndex.normalize(" \t "));
+        }
+
+        @Test
+        void normalizeAssertsNull() {
+            try {
+                PrefixIndex.normalize(null);
+                fail();
+            } catch (NullPointerException ignored) {
+            }
+        }
+    }
+
+    @Nested
+    class PutTests {
+
+        @Test
+        void putIndexesEveryWord() {
+            assertEquals(List.of(TOLKIEN), index.find(TENANT, "john", 10));
+            assertEquals(List.of(TOLKIEN), index.find(TENANT, "reuel", 10));
+            assertEquals(List.of(TOLKIEN), index.find(TENANT, "ronald reuel", 10));
+            assertEquals(List.of(AUSTEN), index.find(TENANT, "austen", 10));
+        }
+
+        @Test
+        void putDoesNotIndexInnerParts() {
+            assertTrue(index.find(TENANT, "olkien", 10).isEmpty());
+            assertTrue(index.find(TENANT, "john tolkien", 10).isEmpty());
+        }
+
+        @Test
+        void putIgnoresNullAndBlankTexts() {
+            int size = index.size();
+            index.put(TENANT, 4, null, " ");
+            assertEquals(size, index.size());
+        }
+
+        @Test
+        void putReplacesTermsOfId() {
+            index.put(TENANT, TOLKIEN, "Christopher Tolkien");
+            assertTrue(index.find(TENANT, "john", 10).isEmpty());
+            assertEquals(List.of(TOLKIEN), index.find(TENANT, "christopher", 10));
+            assertEquals(List.of(TOLKIEN), index.find(TENANT, "tolkien", 10));
+        }
+
+        @Test
+        void putMovesIdToOtherPartition() {
+            index.put(OTHER_TENANT, TOLKIEN, "John Ronald Reuel Tolkien");
+            assertTrue(index.find(TENANT, "tolkien", 10).isEmpty());
+            assertEquals(List.of(TOLKIEN), index.find(OTHER_TENANT, "tolkien", 10));
+        }
+
+        @Test
+        void putGrowsBeyondInitialCapacity() {
+            for (long id = 100; id < 200; id++) {
+                index.put(TENANT, id, "Author " + id);
+            }
+            assertEquals(100, index.find(TENANT, "author", 1000).size());
+            assertEquals(List.of(150L), index.find(TENANT, "author 150", 10));
+        }
+    }
+
+    @Nested
+    class RemoveTests {
+
+        @Test
+        void removeDeletesAllTermsOfId() {
+            int size = index.size();
+            index.remove(TOLKIEN);
+            assertEquals(size - 4, index.size());
+            assertTrue(index.find(TENANT, "john", 10).isEmpty());
+            assertEquals(List.of(TOLSTOY), index.find(TENANT, "tol", 10));
+        }
+
+        @Test
+        void removeIgnoresUnknownId() {
+            int size = index.size();
+            index.remove(4);
+            assertEquals(size, index.size());
+        }
+    }
+
+    @Nested
+    class FindTests {
+
+        @Test
+        void findReturnsIdsInOrderOfTerms() {
+            assertEquals(List.of(TOLKIEN, TOLSTOY), index.find(TENANT, "tol", 10));
+            assertEquals(List.of(AUSTEN, TOLKIEN), index.find(TENANT, "j", 10));
+        }
+
+        @Test
+        void findContainsEveryIdOnce() {
+            index.put(TENANT, 4, "Tolkien Tolkien Tolkiens");
+            assertEquals(List.of(TOLKIEN, 4L), index.find(TENANT, "tolkien", 10));
+        }
+
+        @Test
+        void findNormalizesPrefix() {
+            assertEquals(List.of(TOLKIEN, TOLSTOY), index.find(TENANT, "  TÖL ", 10));
+            index.put(TENANT, 4, "Émile Zola");
+            assertEquals(List.of(4L), index.find(TENANT, "emi", 10));
+        }
+
+        @Test
+        void findRespectsPrefixBounds() {
+            index.put(TENANT, 4, "Tolkiem");
+            index.put(TENANT, 5, "Tolkieo");
+            assertEquals(List.of(TOLKIEN), index.find(TENANT, "tolkien", 10));
+            assertEquals(List.of(4L, TOLKIEN, 5L), index.find(TENANT, "tolkie", 10));
+            assertTrue(index.find(TENANT, "tolkienz", 10).isEmpty());
+            assertTrue(index.find(TENANT, "zz", 10).isEmpty());
+            assertEquals(List.of(AUSTEN), index.find(TENANT, "a", 10));
+        }
+
+        @Test
+        void findRespectsLimit() {
+            assertEquals(List.of(TOLKIEN), index.find(TENANT, "tol", 1));
+            assertEquals(List.of(TOLKIEN, TOLSTOY), index.find(TENANT, "tol", 2));
+        }
+
+        @Test
+        void findAssertsLimitNotPositive() {
+            try {
+                index.find(TENANT, "tol", 0);
+                fail();
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+
+        @Test
+        void findReturnsEmptyListForBlankPrefix() {
+            assertTrue(index.find(TENANT, " ", 10).isEmpty());
+        }
+
+        @Test
+        void findIsRestrictedToPartition() {
+            index.put(OTHER_TENANT, 4, "John Tolkien");
+            index.put(-1, 5, "John Tolkien");
+            index.put(Long.MAX_VALUE, 6, "John Tolkien");
+            assertEquals(List.of(TOLKIEN), index.find(TENANT, "john", 10));
+            assertEquals(List.of(4L), index.find(OTHER_TENANT, "john", 10));
+            assertEquals(List.of(5L), index.find(-1, "john", 10));
+            assertEquals(List.of(6L), index.find(Long.MAX_VALUE, "john", 10));
+            assertTrue(index.find(1, "john", 10).isEmpty());
+        }
+    }
+
+    @Nested
+    class ReplaceAllTests {
+
+        @Test
+        void replaceAllReplacesContent() {
+            index.replaceAll(Map.of(4L, List.of("Jane Austen"), 5L, List.of("Émile Zola", "Zola")),
+                    Map.of(4L, OTHER_TENANT));
+            assertTrue(index.find(TENANT, "tolkien", 10).isEmpty());
+            assertTrue(index.find(TENANT, "austen", 10).isEmpty());
+            assertEquals(List.of(4L), index.find(OTHER_TENANT, "austen", 10));
+            assertEquals(List.of(5L), index.find(TENANT, "zola", 10));
+            assertEquals(4, index.size());
+        }
+
+        @Test
+        void replaceAllWithEmptyMapClearsIndex() {
+            index.replaceAll(Collections.emptyMap(), Collections.emptyMap());
+            assertEquals(0, index.size());
+            assertTrue(index.find(TENANT, "j", 10).isEmpty());
+            index.put(TENANT, TOLKIEN, "Tolkien");
+            assertEquals(List.of(TOLKIEN), index.find(TENANT, "tolkien", 10));
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.peternaggschga.books.snapshot;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnapshotCodecUnitTest {
+    static final LocalDate EPOCH = LocalDate.of(2000, 1, 1);
+    static final int LARGE_ROWS = 500_000;
+    static final Duration RESTORE_TIMEOUT = Duration.ofMinutes(2);
+
+    @TempDir
+    static Path directory;
+
+    /**
+     * Returns a {@link ResultSet} positioned on a single row with the given values, as read by
+     * {@link SnapshotEncoder#add(ResultSet)}. Dates are given as {@link LocalDate}s.
+     */
+    static ResultSet row(Object... values) {
+        boolean[] wasNull = new boolean[1];
+        return (ResultSet) Proxy.newProxyInstance(SnapshotCodecUnitTest.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, (proxy, method, arguments) -> {
+                    switch (method.getName()) {
+                        case "getLong":
+                            Object value = values[(int) arguments[0] - 1];
+                            wasNull[0] = value == null;
+                            return value == null ? 0L : ((Number) value).longValue();
+                        case "getDate":
+                            LocalDate date = (LocalDate) values[(int) arguments[0] - 1];
+                            wasNull[0] = date == null;
+                            return date == null ? null : Date.valueOf(date);
+                        case "getString":
+                            String text = (String) values[(int) arguments[0] - 1];
+                            wasNull[0] = text == null;
+                            return text;
+                        case "wasNull":
+                            return wasNull[0];
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    static void write(Path file, SnapshotTable table, List<Object[]> rows) throws IOException, SQLException {
+        try (SnapshotEncoder encoder = new SnapshotEncoder(file)) {
+            encoder.begin(table);
+            for (Object[] row : rows) {
+                encoder.add(row(row));
+            }
+            encoder.finish();
+        }
+    }
+
+    static List<List<Object[]>> readBlocks(Path file, SnapshotTable expectedTable) throws IOException {
+        List<List<Object[]>> blocks = new ArrayList<>();
+        try (SnapshotDecoder decoder = new SnapshotDecoder(file)) {
+            decoder.forEachBlock((table, rows) -> {
+                assertEquals(expectedTable, table);
+                blocks.add(rows);
+            });
+        }
+        return blocks;
+    }
+
+    static void assertRowsEqual(List<Object[]> expected, List<Object[]> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i), actual.get(i), "Row " + i);
+        }
+    }
+
+    static List<Object[]> readings(int count) {
+        List<Object[]> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            LocalDate beginning = EPOCH.plusDays(i % 9000);
+            rows.add(new Object[]{i + 1L, 0L, i % 500 + 1L, beginning, i % 7 == 0 ? null : beginning.plusDays(7),
+                    20L + i % 40, i % 100L});
+        }
+        return rows;
+    }
+
+    @Nested
+    class VarLongTests {
+
+        @Test
+        void zigZagMapsSmallMagnitudesToSmallValues() {
+            assertEquals(0, SnapshotEncoder.zigZag(0));
+            assertEquals(1, SnapshotEncoder.zigZag(-1));
+            assertEquals(2, SnapshotEncoder.zigZag(1));
+            assertEquals(3, SnapshotEncoder.zigZag(-2));
+            assertEquals(-1, SnapshotEncoder.zigZag(Long.MIN_VALUE));
+        }
+
+        @Test
+        void varLongRoundTrip() {
+            long[] values = {0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, Long.MAX_VALUE, -1, Long.MIN_VALUE};
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            for (long value : values) {
+                SnapshotEncoder.writeVarLong(out, value);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+            for (long value : values) {
+                assertEquals(value, SnapshotDecoder.readVarLong(buffer));
+            }
+            assertFalse(buffer.hasRemaining());
+        }
+
+        @Test
+        void smallValuesTakeSingleByte() {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            SnapshotEncoder.writeVarLong(out, 127);
+            assertEquals(1, out.size());
+            SnapshotEncoder.writeVarLong(out, 128);
+            assertEquals(3, out.size());
+        }
+    }
+
+    @Nested
+    class RoundTripTests {
+
+        @Test
+        void roundTripRestoresNulls() throws Exception {
+            Path file = directory.resolve("nulls.snapshot");
+            List<Object[]> rows = List.of(
+                    new Object[]{1L, 0L, null, null, null, null, null, null},
+                    new Object[]{2L, null, "Jane", "Austen", LocalDate.of(1775, 12, 16), null, 235L, 0L},
+                    new Object[]{null, null, null, null, null, null, null, null},
+                    new Object[]{4L, 1L, "Jane", null, null, LocalDate.of(1817, 7, 18), null, 0L});
+            write(file, SnapshotTable.AUTHOR, rows);
+            List<List<Object[]>> blocks = readBlocks(file, SnapshotTable.AUTHOR);
+            assertEquals(1, blocks.size());
+            assertRowsEqual(rows, blocks.get(0));
+        }
+
+        @Test
+        void roundTripRestoresNegativeDeltas() throws Exception {
+            Path file = directory.resolve("deltas.snapshot");
+            List<Object[]> rows = List.of(
+                    new Object[]{1_000_000L, 5L, 900L, EPOCH, EPOCH.plusDays(3), 60L, 7L},
+                    new Object[]{3L, 0L, 1L, LocalDate.of(1900, 1, 1), LocalDate.of(1899, 12, 31), -60L, 0L},
+                    new Object[]{1L << 40, 2L, -5L, LocalDate.of(1969, 12, 31), EPOCH, 0L, 7L},
+                    new Object[]{-(1L << 40), 1L, 900L, EPOCH, LocalDate.of(1970, 1, 1), 1L, 0L});
+            write(file, SnapshotTable.READING, rows);
+            List<List<Object[]>> blocks = readBlocks(file, SnapshotTable.READING);
+            assertEquals(1, blocks.size());
+            assertRowsEqual(rows, blocks.get(0));
+        }
+
+        @Test
+        void roundTripRestoresDictionaryAndTextColumns() throws Exception {
+            Path file = directory.resolve("dictionary.snapshot");
+            List<Object[]> rows = new ArrayList<>();
+            String[] languages = {"de", "en", "fr", null};
+            for (int i = 0; i < 100; i++) {
+                String title = i % 3 == 0 ? "Über „Bücher“ " + i : "Title " + i;
+                rows.add(new Object[]{i + 1L, 0L, title, EPOCH.plusDays(i), i % 2 == 0 ? "978" + i : null, 100L + i,
+                        languages[i % languages.length], 0L, i % 5 == 0 ? "" : null});
+            }
+            write(file, SnapshotTable.BOOK, rows);
+            List<List<Object[]>> blocks = readBlocks(file, SnapshotTable.BOOK);
+            assertEquals(1, blocks.size());
+            assertRowsEqual(rows, blocks.get(0));
+        }
+
+        @Test
+        void dictionaryIsSharedBetweenTables() throws Exception {
+            Path file = directory.resolve("tables.snapshot");
+            List<Object[]> authors = List.<Object[]>of(new Object[]{1L, 0L, "de", "en", null, null, 276L, 0L});
+            List<Object[]> books = List.<Object[]>of(new Object[]{2L, 0L, "Title", EPOCH, null, 100L, "en", 0L, null});
+            try (SnapshotEncoder encoder = new SnapshotEncoder(file)) {
+                encoder.begin(SnapshotTable.AUTHOR);
+                encoder.add(row(authors.get(0)));
+                encoder.begin(SnapshotTable.BOOK_AUTHORS);
+                encoder.begin(SnapshotTable.BOOK);
+                encoder.add(row(books.get(0)));
+                encoder.finish();
+            }
+            List<SnapshotTable> tables = new ArrayList<>();
+            List<List<Object[]>> blocks = new ArrayList<>();
+            try (SnapshotDecoder decoder = new SnapshotDecoder(file)) {
+                decoder.forEachBlock((table, rows) -> {
+                    tables.add(table);
+                    blocks.add(rows);
+                });
+            }
+            assertEquals(List.of(SnapshotTable.AUTHOR, SnapshotTable.BOOK), tables);
+            assertRowsEqual(authors, blocks.get(0));
+            assertRowsEqual(books, blocks.get(1));
+        }
+
+        @Test
+        void blockBoundarySplitsRows() throws Exception {
+            Path file = directory.resolve("boundary.snapshot");
+            List<Object[]> rows = readings(SnapshotEncoder.BLOCK_ROWS + 1);
+            write(file, SnapshotTable.READING, rows);
+            List<List<Object[]>> blocks = readBlocks(file, SnapshotTable.READING);
+            assertEquals(2, blocks.size());
+            assertEquals(SnapshotEncoder.BLOCK_ROWS, blocks.get(0).size());
+            assertEquals(1, blocks.get(1).size());
+            assertRowsEqual(rows.subList(0, SnapshotEncoder.BLOCK_ROWS), blocks.get(0));
+            assertRowsEqual(rows.subList(SnapshotEncoder.BLOCK_ROWS, rows.size()), blocks.get(1));
+        }
+
+        @Test
+        void fullBlockIsNotFollowedByEmptyBlock() throws Exception {
+            Path file = directory.resolve("full.snapshot");
+            List<Object[]> rows = readings(SnapshotEncoder.BLOCK_ROWS);
+            write(file, SnapshotTable.READING, rows);
+            List<List<Object[]>> blocks = readBlocks(file, SnapshotTable.READING);
+            assertEquals(1, blocks.size());
+            assertRowsEqual(rows, blocks.get(0));
+        }
+
+        @Test
+        void addWithoutTableFails() throws Exception {
+            try (SnapshotEncoder encoder = new SnapshotEncoder(directory.resolve("empty.snapshot"))) {
+                encoder.add(row(1L));
+                fail();
+            } catch (IllegalStateException ignored) {
+            }
+        }
+
+        @Test
+        void decoderRejectsIncompleteSnapshot() throws Exception {
+            Path file = directory.resolve("incomplete.snapshot");
+            try (SnapshotEncoder encoder = new SnapshotEncoder(file)) {
+                encoder.begin(SnapshotTable.READING);
+                encoder.add(row(readings(1).get(0)));
+            }
+            try {
+                new SnapshotDecoder(file).close();
+                fail();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Restores a generated snapshot of {@link SnapshotCodecUnitTest#LARGE_ROWS} readings into an in-memory database
+     * with the tables of all {@link SnapshotTable}s and prints the time taken.
+     */
+    @Nested
+    class RestoreTests {
+
+        @Test
+        void restoreLargeSnapshot() throws Exception {
+            DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:snapshot-restore;"
+                    + "DB_CLOSE_DELAY=-1", "sa", "");
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            for (SnapshotTable table : SnapshotTable.values()) {
+                jdbcTemplate.execute("CREATE TABLE " + table.getName() + " (" + table.getColumns().stream()
+                        .map(column -> column.getName() + " " + (column.getType() == SnapshotTable.ColumnType.LONG
+                                ? "BIGINT" : column.getType() == SnapshotTable.ColumnType.DATE ? "DATE"
+                                : "VARCHAR(255)"))
+                        .collect(Collectors.joining(", ")) + ")");
+            }
+            jdbcTemplate.execute("CREATE TABLE outbox_entry (id BIGINT)");
+            jdbcTemplate.execute("CREATE SEQUENCE hibernate_sequence");
+            try {
+                Path file = directory.resolve("large.snapshot");
+                List<Object[]> rows = readings(LARGE_ROWS);
+                write(file, SnapshotTable.READING, rows);
+                SnapshotService service = new SnapshotService(dataSource, new DataSourceTransactionManager(dataSource));
+                long start = System.nanoTime();
+                assertTimeout(RESTORE_TIMEOUT, () -> service.restoreSnapshot(file));
+                System.out.printf(Locale.ROOT, "Restored %d rows in %.1f ms%n", LARGE_ROWS,
+                        (System.nanoTime() - start) / 1e6);
+                assertEquals(LARGE_ROWS, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM reading", Long.class));
+                Object[] last = rows.get(LARGE_ROWS - 1);
+                assertEquals(Arrays.asList(last), jdbcTemplate.queryForObject("SELECT id, version, book_id, "
+                        + "beginning, end, pages_per_hour, tenant_id FROM reading WHERE id = ?", (resultSet, index) ->
+                        Arrays.asList(resultSet.getLong(1), resultSet.getLong(2), resultSet.getLong(3),
+                                resultSet.getDate(4).toLocalDate(), resultSet.getDate(5) == null ? null
+                                        : resultSet.getDate(5).toLocalDate(), resultSet.getLong(6),
+                                resultSet.getLong(7)), last[0]));
+                assertEquals(LARGE_ROWS + 1L, jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR hibernate_sequence",
+                        Long.class));
+            } finally {
+                jdbcTemplate.execute("DROP ALL OBJECTS");
+            }
+        }
+    }
+}